@@ -1,8 +1,10 @@
 module spin.core {
     requires junit;
     requires java.sql;
+    requires java.management;
     requires com.google.gson;
     requires camel.test;
 
     exports spin.core;
+    exports spin.core.annotation;
 }
\ No newline at end of file
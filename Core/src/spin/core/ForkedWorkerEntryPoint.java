@@ -0,0 +1,29 @@
+package spin.core;
+
+import spin.core.execution.WorkerLoop;
+import spin.core.util.Logger;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+
+/**
+ * The entry point of a worker JVM launched by a forked worker, which runs the tests it is sent over its stdin and stdout
+ * until it is told to exit. Anything written to stderr other than by a test goes to Spin's own stderr.
+ */
+public final class ForkedWorkerEntryPoint {
+    private ForkedWorkerEntryPoint() {}
+
+    public static void main(String[] args) {
+        Logger.globalDisable();
+        int status = 0;
+        try {
+            WorkerLoop.serve(System.in, new FileOutputStream(FileDescriptor.out));
+        } catch (Throwable t) {
+            System.err.println("Forked worker encountered an unexpected error:");
+            t.printStackTrace();
+            status = 1;
+        }
+        // Threads left behind by the tests must not keep the worker alive.
+        System.exit(status);
+    }
+}
@@ -7,6 +7,9 @@ import spin.core.lifecycle.PanicOnlyMonitor;
 import spin.core.util.Logger;
 import spin.core.util.ThreadLocalPrintStream;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -22,6 +25,17 @@ public final class LongLivedEntryPoint {
         String writeToDbProperty = System.getProperty("write_to_db");
         String dbConfigPath = System.getProperty("db_config_path");
         String numThreadsProperty = System.getProperty("num_threads");
+        String minThreadsProperty = System.getProperty("min_threads");
+        String maxThreadsProperty = System.getProperty("max_threads");
+        String virtualThreadsProperty = System.getProperty("virtual_threads", "false");
+        String splitIoBoundProperty = System.getProperty("split_io_bound", "false");
+        String cpuThreadsProperty = System.getProperty("cpu_threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        String classInitThreadsProperty = System.getProperty("class_init_threads", "0");
+        String maxOutputBytesProperty = System.getProperty("max_output_bytes", "1048576");
+        String forkWorkersProperty = System.getProperty("fork_workers", "false");
+        String forkRecycleSuitesProperty = System.getProperty("fork_recycle_suites", "50");
+        String forkJvmArgsProperty = System.getProperty("fork_jvm_args", "");
+        String resultCacheProperty = System.getProperty("result_cache", "false");
 
         if (enableLoggerProperty == null) {
             throw new NullPointerException("Must provider an enable_logger property value.");
@@ -41,10 +55,32 @@ public final class LongLivedEntryPoint {
         }
         boolean writeToDb = Boolean.parseBoolean(writeToDbProperty);
         int numThreads = Integer.parseInt(numThreadsProperty);
+        int minThreads = (minThreadsProperty == null) ? numThreads : Integer.parseInt(minThreadsProperty);
+        int maxThreads = (maxThreadsProperty == null) ? numThreads : Integer.parseInt(maxThreadsProperty);
+        boolean useVirtualThreads = Boolean.parseBoolean(virtualThreadsProperty);
+        boolean splitIoBound = Boolean.parseBoolean(splitIoBoundProperty);
+        int cpuThreads = Integer.parseInt(cpuThreadsProperty);
+        int numClassInitThreads = Integer.parseInt(classInitThreadsProperty);
+        int maxOutputBytes = Integer.parseInt(maxOutputBytesProperty);
+        boolean forkWorkers = Boolean.parseBoolean(forkWorkersProperty);
+        int forkRecycleSuites = Integer.parseInt(forkRecycleSuitesProperty);
+        List<String> forkJvmArgs = forkJvmArgsProperty.trim().isEmpty() ? Collections.emptyList() : Arrays.asList(forkJvmArgsProperty.trim().split("\\s+"));
+        boolean cacheResults = Boolean.parseBoolean(resultCacheProperty);
         LOGGER.log("enable_logger property: " + enableLoggerProperty);
         LOGGER.log("write_to_db property: " + writeToDbProperty);
         LOGGER.log("db_config_path property: " + dbConfigPath);
         LOGGER.log("num_threads property: " + numThreadsProperty);
+        LOGGER.log("min_threads property: " + minThreadsProperty);
+        LOGGER.log("max_threads property: " + maxThreadsProperty);
+        LOGGER.log("virtual_threads property: " + virtualThreadsProperty);
+        LOGGER.log("split_io_bound property: " + splitIoBoundProperty);
+        LOGGER.log("cpu_threads property: " + cpuThreadsProperty);
+        LOGGER.log("class_init_threads property: " + classInitThreadsProperty);
+        LOGGER.log("max_output_bytes property: " + maxOutputBytesProperty);
+        LOGGER.log("fork_workers property: " + forkWorkersProperty);
+        LOGGER.log("fork_recycle_suites property: " + forkRecycleSuitesProperty);
+        LOGGER.log("fork_jvm_args property: " + forkJvmArgsProperty);
+        LOGGER.log("result_cache property: " + resultCacheProperty);
 
         overrideOutputStreams();
 
@@ -59,7 +95,14 @@ public final class LongLivedEntryPoint {
                 .setPathOfDatabaseConfigFile(dbConfigPath)
                 .setWhetherToOutputResultsToDatabase(writeToDb)
                 .setNumberOfTestExecutors(numThreads)
+                .setExecutorThreadBounds(minThreads, maxThreads)
+                .setWhetherToRunTestsOnVirtualThreads(useVirtualThreads)
+                .setWhetherToSplitIoBoundTests(splitIoBound, cpuThreads)
                 .setCapacityOfInterComponentQueues(INTER_COMPONENT_QUEUE_CAPACITY)
+                .setNumberOfClassInitializationThreads(numClassInitThreads)
+                .setMaxInMemoryOutputBytesPerTest(maxOutputBytes)
+                .setWhetherToForkWorkers(forkWorkers, forkRecycleSuites, forkJvmArgs)
+                .setWhetherToCacheResults(cacheResults)
                 .build();
 
         LifecycleManager lifecycleManager = LifecycleManager.newManager(config);
@@ -0,0 +1,33 @@
+package spin.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares how the tests of a test class may be run relative to one another, overriding the mode given for the suite.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ClassExecutionMode {
+    Mode value();
+
+    enum Mode {
+        /**
+         * The tests of the class may run on any executor, at the same time as one another, each on an instance of its
+         * own. This is the default.
+         */
+        PARALLEL_METHODS,
+        /**
+         * All of the tests of the class run one after another on the same thread of a single executor, each on an
+         * instance of its own, for classes that are not thread-safe.
+         */
+        SAME_THREAD,
+        /**
+         * Like {@link #SAME_THREAD}, except that the tests all run on one instance of the class, for classes that keep
+         * no state between tests and are costly to construct.
+         */
+        SAME_INSTANCE
+    }
+}
@@ -0,0 +1,18 @@
+package spin.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a test method, or every test method of a test class, as spending most of its time blocked, on sleeps, sockets
+ * or other I/O, rather than on the CPU.
+ *
+ * When Spin runs CPU-bound and I/O-bound tests on separate executor pools, annotated tests are always run on the pool
+ * for blocking work, regardless of how they were classified from their measurements on earlier runs.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface IoBound {
+}
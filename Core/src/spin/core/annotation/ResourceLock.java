@@ -0,0 +1,36 @@
+package spin.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares that a test method, or every test method of a test class, uses the named shared resource, such as a static
+ * singleton, and so must not run at the same time as tests that use it in a conflicting mode.
+ *
+ * Any number of tests may hold a resource in {@link Mode#READ} mode at once, while a test holding it in
+ * {@link Mode#READ_WRITE} mode excludes every other test that uses it. Spin only hands a test to an executor once all
+ * of its resources are free, so that the rest of the suite keeps running in parallel around it. The locks declared on a
+ * test class apply to each of its tests in addition to those declared on the test itself.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Repeatable(ResourceLocks.class)
+public @interface ResourceLock {
+    /**
+     * The name of the shared resource.
+     */
+    String value();
+
+    /**
+     * The mode the resource is used in.
+     */
+    Mode mode() default Mode.READ_WRITE;
+
+    enum Mode {
+        READ,
+        READ_WRITE
+    }
+}
@@ -0,0 +1,15 @@
+package spin.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Holds the {@link ResourceLock}s of a test method or class that declares more than one.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface ResourceLocks {
+    ResourceLock[] value();
+}
@@ -0,0 +1,180 @@
+package spin.core.execution;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The output a test wrote to stdout or stderr while it ran.
+ *
+ * The output is kept as the raw UTF-8 encoded bytes the test wrote and is only decoded into a String if something asks
+ * for it as text, since most consumers just copy it on to another stream. Tests that write nothing all share the one
+ * {@link #EMPTY} instance.
+ *
+ * Output that grew past the in-memory limit while it was being captured has been spilled to a temporary file instead.
+ * In that case only its head and tail are held in memory, {@link #writeTo(OutputStream)} and {@link #openReader()}
+ * stream the full output from the file and {@link #asString()} returns only the head and tail. The file is deleted when
+ * the output is discarded.
+ *
+ * This class is thread-safe.
+ */
+public final class CapturedOutput {
+    private static final Logger LOGGER = Logger.forClass(CapturedOutput.class);
+    public static final CapturedOutput EMPTY = new CapturedOutput(new byte[0], null, 0, null);
+    private final byte[] bytes;
+    private final Path spillFile;
+    private final long size;
+    private final byte[] tail;
+    private volatile boolean isDiscarded = false;
+
+    private CapturedOutput(byte[] bytesOrHead, Path spillFile, long size, byte[] tail) {
+        this.bytes = bytesOrHead;
+        this.spillFile = spillFile;
+        this.size = size;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns captured output holding the specified bytes. The array must not be modified afterwards.
+     *
+     * @param bytes The UTF-8 encoded output.
+     * @return the captured output.
+     */
+    static CapturedOutput ofBytes(byte[] bytes) {
+        ObjectChecker.assertNonNull(bytes);
+        return (bytes.length == 0) ? EMPTY : new CapturedOutput(bytes, null, bytes.length, null);
+    }
+
+    /**
+     * Returns captured output holding the specified text.
+     *
+     * @param text The output.
+     * @return the captured output.
+     */
+    static CapturedOutput ofString(String text) {
+        ObjectChecker.assertNonNull(text);
+        return ofBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns captured output whose full contents are in the specified file, of which the first and last bytes are also
+     * given. The file becomes owned by the returned object.
+     *
+     * @param spillFile The file holding all of the output.
+     * @param size The number of bytes in the file.
+     * @param head The first bytes of the output.
+     * @param tail The last bytes of the output.
+     * @return the captured output.
+     */
+    static CapturedOutput spilled(Path spillFile, long size, byte[] head, byte[] tail) {
+        ObjectChecker.assertNonNull(spillFile, head, tail);
+        return new CapturedOutput(head, spillFile, size, tail);
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns true iff the output was too large to keep in memory and was spilled to a file.
+     *
+     * @return whether or not the output was spilled.
+     */
+    public boolean isSpilled() {
+        return this.spillFile != null;
+    }
+
+    /**
+     * Returns the number of bytes of output.
+     *
+     * @return the size of the output.
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Writes the full output to the specified stream as is.
+     *
+     * @param stream The stream to write to.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        ObjectChecker.assertNonNull(stream);
+        if (this.spillFile == null) {
+            stream.write(this.bytes, 0, this.bytes.length);
+        } else {
+            assertNotDiscarded();
+            Files.copy(this.spillFile, stream);
+        }
+    }
+
+    /**
+     * Returns a reader over the full output decoded as UTF-8. The caller must close the reader.
+     *
+     * @return a reader over the output.
+     */
+    public Reader openReader() throws IOException {
+        InputStream stream;
+        if (this.spillFile == null) {
+            stream = new ByteArrayInputStream(this.bytes);
+        } else {
+            assertNotDiscarded();
+            stream = Files.newInputStream(this.spillFile);
+        }
+        return new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the output decoded as a UTF-8 String. If the output was spilled then only its head and tail are returned,
+     * with a marker in between them saying how much was left out.
+     *
+     * @return the output as a String.
+     */
+    public String asString() {
+        if (this.spillFile == null) {
+            return isEmpty() ? "" : new String(this.bytes, StandardCharsets.UTF_8);
+        }
+        long numOmitted = this.size - this.bytes.length - this.tail.length;
+        if (numOmitted == 0) {
+            return new String(this.bytes, StandardCharsets.UTF_8) + new String(this.tail, StandardCharsets.UTF_8);
+        }
+        return new String(this.bytes, StandardCharsets.UTF_8)
+                + "\n... [" + numOmitted + " bytes omitted] ...\n"
+                + new String(this.tail, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the file the output was spilled to, if any. The full output of a spilled result can no longer be read
+     * after this. This method is idempotent.
+     */
+    public void discard() {
+        if ((this.spillFile != null) && (!this.isDiscarded)) {
+            this.isDiscarded = true;
+            try {
+                Files.deleteIfExists(this.spillFile);
+            } catch (IOException e) {
+                LOGGER.log("Failed to delete spilled output file: " + this.spillFile);
+            }
+        }
+    }
+
+    private void assertNotDiscarded() {
+        if (this.isDiscarded) {
+            throw new IllegalStateException("Cannot read spilled output: it has already been discarded.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { num bytes: " + this.size + (this.spillFile == null ? " }" : ", spilled to: " + this.spillFile + " }");
+    }
+}
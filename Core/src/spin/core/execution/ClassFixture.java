@@ -0,0 +1,204 @@
+package spin.core.execution;
+
+import spin.core.util.ObjectChecker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The class fixture of a test class: its methods annotated with {@code @BeforeClass} and {@code @AfterClass}, including
+ * those inherited from its superclasses, resolved once into method handles.
+ *
+ * The tests of a class that has a class fixture are dispatched in {@link Share}s, each of which is handed to a single
+ * executor as one {@link TestBatch}. The fixture is set up by the first test of a share to run and torn down after the
+ * last, so that an executor pays for the fixture once for its share of the class rather than once for every test.
+ *
+ * Fixture methods are static and set up static state, which every share run in the same JVM would share. So in this
+ * JVM the next share of a class is only handed out once the previous one is done, and a class is only split into
+ * several shares that run at once when they run in forked workers, each of which has static state of its own.
+ *
+ * As in JUnit the tear down methods are run even if setting up the fixture failed, and every one of them is run even if
+ * one of them fails.
+ *
+ * This class is immutable.
+ */
+public final class ClassFixture {
+    private static final MethodType FIXTURE_METHOD_TYPE = MethodType.methodType(void.class);
+    private final Class<?> testClass;
+    private final List<MethodHandle> setUpMethods;
+    private final List<MethodHandle> tearDownMethods;
+    private final IllegalAccessException lookupError;
+
+    private ClassFixture(Class<?> testClass, List<MethodHandle> setUpMethods, List<MethodHandle> tearDownMethods, IllegalAccessException lookupError) {
+        this.testClass = testClass;
+        this.setUpMethods = setUpMethods;
+        this.tearDownMethods = tearDownMethods;
+        this.lookupError = lookupError;
+    }
+
+    /**
+     * Resolves the class fixture of the specified test class, or returns null if the class has none.
+     *
+     * If a fixture method could not be resolved, the error is thrown when the fixture is set up, so that it is reported
+     * against the tests of the class.
+     *
+     * @param testClass The test class.
+     * @return the class fixture or null.
+     */
+    public static ClassFixture forClass(Class<?> testClass) {
+        ObjectChecker.assertNonNull(testClass);
+        try {
+            List<MethodHandle> setUpMethods = FixtureMethods.resolve(testClass, org.junit.BeforeClass.class, true, true);
+            List<MethodHandle> tearDownMethods = FixtureMethods.resolve(testClass, org.junit.AfterClass.class, true, false);
+            if (setUpMethods.isEmpty() && tearDownMethods.isEmpty()) {
+                return null;
+            }
+            return new ClassFixture(testClass, asFixtureType(setUpMethods), asFixtureType(tearDownMethods), null);
+        } catch (IllegalAccessException e) {
+            return new ClassFixture(testClass, Collections.emptyList(), Collections.emptyList(), e);
+        }
+    }
+
+    /**
+     * Returns a new share of the specified number of tests of this fixture's class.
+     *
+     * @param numTests The number of tests in the share.
+     * @return the new share.
+     */
+    public Share newShare(int numTests) {
+        ObjectChecker.assertPositive(numTests);
+        return new Share(this, numTests);
+    }
+
+    /**
+     * Runs the set up methods of this fixture, stopping at the first one that fails.
+     */
+    void setUp() throws ReflectiveOperationException {
+        if (this.lookupError != null) {
+            throw this.lookupError;
+        }
+        for (MethodHandle setUpMethod : this.setUpMethods) {
+            try {
+                setUpMethod.invokeExact();
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+
+    /**
+     * Runs every tear down method of this fixture and returns the first error thrown, or null if there was none.
+     */
+    Throwable tearDown() {
+        Throwable failure = null;
+        for (MethodHandle tearDownMethod : this.tearDownMethods) {
+            try {
+                tearDownMethod.invokeExact();
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = new InvocationTargetException(t);
+                }
+            }
+        }
+        return failure;
+    }
+
+    private static List<MethodHandle> asFixtureType(List<MethodHandle> methods) {
+        List<MethodHandle> fixtureMethods = new ArrayList<>(methods.size());
+        for (MethodHandle method : methods) {
+            fixtureMethods.add(method.asType(FIXTURE_METHOD_TYPE));
+        }
+        return fixtureMethods;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { class: " + this.testClass.getName() + (this.lookupError == null ? " }" : ", [unresolved] }");
+    }
+
+    /**
+     * A group of tests of a class with a class fixture that run on the same executor under a single set up of the
+     * fixture. Tests of a share may run concurrently if the executor runs its tests on test threads.
+     *
+     * This class is thread-safe.
+     */
+    public static final class Share {
+        private final ClassFixture fixture;
+        private int numRemainingTests;
+        private boolean hasAbandonedTest = false;
+        private boolean isSetUp = false;
+        private Throwable setUpFailure = null;
+
+        private Share(ClassFixture fixture, int numTests) {
+            this.fixture = fixture;
+            this.numRemainingTests = numTests;
+        }
+
+        /**
+         * Sets up the fixture if no test of this share has done so yet and returns the error thrown doing so, or null if
+         * the fixture was set up successfully. Every test of the share sees the outcome of the one set up.
+         */
+        public synchronized Throwable setUp() {
+            if (!this.isSetUp) {
+                this.isSetUp = true;
+                try {
+                    this.fixture.setUp();
+                } catch (ReflectiveOperationException e) {
+                    this.setUpFailure = e;
+                }
+            }
+            return this.setUpFailure;
+        }
+
+        /**
+         * Marks one of the tests of this share as done, whether it was run or not. Once every test of the share is done
+         * the fixture is torn down, if it was set up and no test of the share was abandoned. Returns the error thrown tearing it down, or null if there was
+         * none or the fixture was not torn down.
+         */
+        public synchronized Throwable finishTest() {
+            this.numRemainingTests--;
+            if ((this.numRemainingTests == 0) && (this.isSetUp) && (!this.hasAbandonedTest)) {
+                return this.fixture.tearDown();
+            }
+            return null;
+        }
+
+        /**
+         * Marks one of the tests of this share as done where the test never returned and the {@link TestWatchdog}
+         * abandoned it. The fixture is not torn down under the test, which may still be using it, even if it was the
+         * last test of the share.
+         */
+        synchronized void abandonTest() {
+            this.numRemainingTests--;
+            this.hasAbandonedTest = true;
+        }
+
+        /**
+         * Returns true iff every test of this share is done and the fixture has been torn down, if it was going to be,
+         * so that the next share of the class may be set up in this JVM.
+         *
+         * @return whether this share is done.
+         */
+        public synchronized boolean isDone() {
+            return this.numRemainingTests == 0;
+        }
+
+        /**
+         * Marks one of the tests of this share as done where the fixture is run by a {@link ForkedWorker} rather than by
+         * this share, and returns true iff it was the last test of the share, after which the worker tears it down.
+         */
+        synchronized boolean finishForkedTest() {
+            this.numRemainingTests--;
+            return this.numRemainingTests == 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return this.getClass().getSimpleName() + " { class: " + this.fixture.testClass.getName() + ", remaining tests: " + this.numRemainingTests + " }";
+        }
+    }
+}
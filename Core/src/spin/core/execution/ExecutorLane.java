@@ -0,0 +1,172 @@
+package spin.core.execution;
+
+import spin.core.runner.TestSuiteDetails;
+import spin.core.util.CloseableBlockingQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single lane of the {@link ExecutorPool}: a queue of {@link TestBatch}es to run, the {@link TestExecutor} running them on its own
+ * thread and the queue its results are placed in.
+ *
+ * A lane can be retired, after which it accepts no new tests. Once every test already submitted to it has been taken by
+ * its executor, the executor is shut down, and once the executor has exited and all of its results have been consumed,
+ * the lane is dead and can be dropped.
+ *
+ * This class is thread-safe.
+ */
+public final class ExecutorLane {
+    private enum State { ACTIVE, RETIRING, DRAINING }
+    public final int id;
+    private final CloseableBlockingQueue<TestBatch> tests;
+    public final CloseableBlockingQueue<TestResult> results;
+    private TestExecutor executor;
+    private Thread thread;
+    private State state = State.ACTIVE;
+    private int numSubmitting = 0;
+    private long assignedNanos = 0;
+
+    ExecutorLane(int id, CloseableBlockingQueue<TestBatch> tests, CloseableBlockingQueue<TestResult> results, TestExecutor executor, Thread thread) {
+        this.id = id;
+        this.tests = tests;
+        this.results = results;
+        this.executor = executor;
+        this.thread = thread;
+    }
+
+    /**
+     * Attempts to submit the specified batch to this lane, blocking for at most the given timeout if the lane is full.
+     *
+     * Returns true iff the batch was submitted, in which case its predicted duration is added to the work assigned to
+     * this lane. A retiring lane never accepts a batch.
+     *
+     * @param batch The batch to submit.
+     * @param timeout The timeout duration.
+     * @param unit The time units the duration is specified in.
+     * @return whether or not the batch was submitted.
+     */
+    public boolean submit(TestBatch batch, long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            if (this.state != State.ACTIVE) {
+                return false;
+            }
+            this.numSubmitting++;
+        }
+        boolean isSubmitted = false;
+        try {
+            isSubmitted = this.tests.add(batch, timeout, unit);
+            return isSubmitted;
+        } finally {
+            synchronized (this) {
+                this.numSubmitting--;
+                if (isSubmitted) {
+                    this.assignedNanos += batch.getPredictedDurationNanos();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tests submitted to this lane that its executor has not yet taken.
+     *
+     * @return the number of queued tests.
+     */
+    public int getNumQueuedTests() {
+        int numQueuedTests = 0;
+        for (TestBatch batch : this.tests.snapshot()) {
+            numQueuedTests += batch.size();
+        }
+        return numQueuedTests;
+    }
+
+    /**
+     * Returns the total predicted duration of all of the tests ever submitted to this lane, plus whatever it started out
+     * with.
+     *
+     * @return the assigned work in nanoseconds.
+     */
+    public synchronized long getAssignedNanos() {
+        return this.assignedNanos;
+    }
+
+    synchronized void setAssignedNanos(long assignedNanos) {
+        this.assignedNanos = assignedNanos;
+    }
+
+    /**
+     * Takes every test of the specified suite that its executor has not yet taken off of this lane, and publishes a
+     * skipped result for each of them on the lane. Returns the number of tests skipped.
+     */
+    int skipQueuedTests(TestSuiteDetails testSuiteDetails) {
+        List<TestInfo> removed = new ArrayList<>();
+        for (TestBatch batch : this.tests.removeMatching((TestBatch batch) -> batch.testSuiteDetails == testSuiteDetails)) {
+            synchronized (this) {
+                this.assignedNanos -= batch.getPredictedDurationNanos();
+            }
+            removed.addAll(batch.getTestInfos());
+        }
+        for (TestInfo testInfo : removed) {
+            getExecutor().publishSkippedResult(testInfo);
+        }
+        return removed.size();
+    }
+
+    synchronized TestExecutor getExecutor() {
+        return this.executor;
+    }
+
+    synchronized Thread getThread() {
+        return this.thread;
+    }
+
+    synchronized boolean isActive() {
+        return this.state == State.ACTIVE;
+    }
+
+    synchronized void startRetiring() {
+        if (this.state == State.ACTIVE) {
+            this.state = State.RETIRING;
+        }
+    }
+
+    /**
+     * Moves a retiring lane along towards being dead and returns true iff it now is dead. A lane is only dead once its
+     * executor has exited and every result on its results queue has been consumed, which the {@link ExecutorPool}
+     * relies on when it publishes results on a lane on behalf of tests the lane never ran.
+     */
+    synchronized boolean advanceRetirement() {
+        if ((this.state == State.RETIRING) && (this.numSubmitting == 0) && (this.tests.size() == 0)) {
+            // Nothing more can arrive, so once the executor is done with whatever it has taken it can exit.
+            this.executor.shutdown();
+            this.state = State.DRAINING;
+        }
+        if ((this.state == State.DRAINING) && (!this.thread.isAlive()) && (this.results.size() == 0)) {
+            this.tests.close();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Swaps in the given executor and thread for the ones currently in this lane.
+     */
+    synchronized void replaceExecutor(TestExecutor executor, Thread thread) {
+        this.executor = executor;
+        this.thread = thread;
+        if (this.state == State.DRAINING) {
+            executor.shutdown();
+        }
+    }
+
+    void closeQueues() {
+        this.tests.close();
+        this.results.close();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getSimpleName() + " { id: " + this.id + ", state: " + this.state + ", queued tests: " + this.tests.size() + " }";
+    }
+}
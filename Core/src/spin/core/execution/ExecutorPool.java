@@ -0,0 +1,400 @@
+package spin.core.execution;
+
+import spin.core.lifecycle.PanicOnlyMonitor;
+import spin.core.runner.TestSuiteDetails;
+import spin.core.util.CloseableBlockingQueue;
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pool of {@link ExecutorLane}s that tests are run on.
+ *
+ * The lanes are kept in a copy-on-write list so that the suite runner, which submits tests to them, and the result
+ * outputter, which consumes their results, can each iterate over a consistent snapshot of the lanes without locking
+ * while lanes are added and retired underneath them.
+ *
+ * The pool starts out with a fixed number of lanes whose executors wait on the startup barrier along with the other
+ * components. If adaptive sizing is enabled, an {@link ExecutorPoolController} then adds and retires lanes within the
+ * configured bounds; lanes added later do not wait on the barrier. Any executor abandoned by the {@link TestWatchdog} is
+ * replaced within its own lane.
+ *
+ * The executors of a fixed or adaptive pool can also each run their tests in a {@link ForkedWorker} JVM of their own.
+ *
+ * Alternatively the pool can consist of a single lane whose executor runs each test on a {@link TestThreads} thread of
+ * its own, which suits suites of tests that mostly block.
+ *
+ * This class is thread-safe.
+ */
+public final class ExecutorPool {
+    private static final Logger LOGGER = Logger.forClass(ExecutorPool.class);
+    private final List<ExecutorLane> lanes = new CopyOnWriteArrayList<>();
+    private final PanicOnlyMonitor shutdownMonitor;
+    private final int testQueueCapacity;
+    private final int resultQueueCapacity;
+    private final boolean writeToDb;
+    private final int maxInMemoryOutputBytes;
+    private final TestWatchdog watchdog;
+    private final TestThreads testThreads;
+    private final ForkedWorker.Launcher workerLauncher;
+    private final ExecutorPoolController controller;
+    private final AtomicInteger nextSubmissionLane = new AtomicInteger(0);
+    private int nextLaneId = 0;
+    private int numReplacedExecutors = 0;
+    private boolean isShutdown = false;
+
+    private ExecutorPool(PanicOnlyMonitor shutdownMonitor, int testQueueCapacity, int resultQueueCapacity, boolean writeToDb, int maxInMemoryOutputBytes, int minLanes, int maxLanes, TestThreads testThreads, ForkedWorker.Launcher workerLauncher) {
+        this.shutdownMonitor = shutdownMonitor;
+        this.testQueueCapacity = testQueueCapacity;
+        this.resultQueueCapacity = resultQueueCapacity;
+        this.writeToDb = writeToDb;
+        this.maxInMemoryOutputBytes = maxInMemoryOutputBytes;
+        this.watchdog = TestWatchdog.withReplacementHandler(this::replaceExecutor);
+        this.testThreads = testThreads;
+        this.workerLauncher = workerLauncher;
+        this.controller = (minLanes == maxLanes) ? null : ExecutorPoolController.forPool(this, minLanes, maxLanes);
+    }
+
+    /**
+     * Constructs a new pool of a fixed number of lanes, whose executors wait on the given barrier before running.
+     *
+     * @param barrier The barrier the initial executors wait on before running.
+     * @param shutdownMonitor The shutdown monitor.
+     * @param numLanes The number of lanes.
+     * @param queueCapacity The capacity of the test and result queues of each lane.
+     * @param writeToDb Whether or not database writes are enabled for result recording.
+     * @param maxInMemoryOutputBytes The most bytes of a test's stdout, and of its stderr, to hold in memory.
+     * @param workerLauncher The launcher of the forked workers to run the tests on, or null to run them in this JVM.
+     * @return the new pool.
+     */
+    public static ExecutorPool fixed(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, int numLanes, int queueCapacity, boolean writeToDb, int maxInMemoryOutputBytes, ForkedWorker.Launcher workerLauncher) {
+        ObjectChecker.assertNonNull(barrier, shutdownMonitor);
+        ObjectChecker.assertPositive(numLanes);
+        ExecutorPool pool = new ExecutorPool(shutdownMonitor, queueCapacity, queueCapacity, writeToDb, maxInMemoryOutputBytes, numLanes, numLanes, null, workerLauncher);
+        pool.createInitialLanes(barrier, numLanes);
+        return pool;
+    }
+
+    /**
+     * Constructs a new pool that starts out with the given number of lanes, whose executors wait on the given barrier
+     * before running, and that grows and shrinks itself within the specified bounds.
+     *
+     * Each lane only queues up a handful of tests at a time, so that the suite's backlog stays with the suite runner
+     * and can be picked up by any lanes added later.
+     *
+     * @param barrier The barrier the initial executors wait on before running.
+     * @param shutdownMonitor The shutdown monitor.
+     * @param numInitialLanes The number of lanes to start with.
+     * @param minLanes The fewest lanes to shrink down to.
+     * @param maxLanes The most lanes to grow up to.
+     * @param testQueueCapacity The capacity of the test queue of each lane.
+     * @param resultQueueCapacity The capacity of the result queue of each lane.
+     * @param writeToDb Whether or not database writes are enabled for result recording.
+     * @param maxInMemoryOutputBytes The most bytes of a test's stdout, and of its stderr, to hold in memory.
+     * @param workerLauncher The launcher of the forked workers to run the tests on, or null to run them in this JVM.
+     * @return the new pool.
+     */
+    public static ExecutorPool adaptive(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, int numInitialLanes, int minLanes, int maxLanes, int testQueueCapacity, int resultQueueCapacity, boolean writeToDb, int maxInMemoryOutputBytes, ForkedWorker.Launcher workerLauncher) {
+        ObjectChecker.assertNonNull(barrier, shutdownMonitor);
+        ObjectChecker.assertPositive(minLanes);
+        if ((numInitialLanes < minLanes) || (numInitialLanes > maxLanes)) {
+            throw new IllegalArgumentException("numInitialLanes must be within [" + minLanes + ", " + maxLanes + "] but was: " + numInitialLanes);
+        }
+        ExecutorPool pool = new ExecutorPool(shutdownMonitor, testQueueCapacity, resultQueueCapacity, writeToDb, maxInMemoryOutputBytes, minLanes, maxLanes, null, workerLauncher);
+        pool.createInitialLanes(barrier, numInitialLanes);
+        return pool;
+    }
+
+    /**
+     * Constructs a new pool of a single lane, whose executor waits on the given barrier before running and then runs
+     * each test on a thread of its own, virtual if the runtime supports it, with at most the specified number of tests
+     * running at once.
+     *
+     * @param barrier The barrier the executor waits on before running.
+     * @param shutdownMonitor The shutdown monitor.
+     * @param maxConcurrentTests The most tests to run at once.
+     * @param queueCapacity The capacity of the test and result queues of the lane.
+     * @param writeToDb Whether or not database writes are enabled for result recording.
+     * @param maxInMemoryOutputBytes The most bytes of a test's stdout, and of its stderr, to hold in memory.
+     * @return the new pool.
+     */
+    public static ExecutorPool onTestThreads(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, int maxConcurrentTests, int queueCapacity, boolean writeToDb, int maxInMemoryOutputBytes) {
+        ObjectChecker.assertNonNull(barrier, shutdownMonitor);
+        TestThreads testThreads = TestThreads.preferringVirtualThreads(maxConcurrentTests);
+        ExecutorPool pool = new ExecutorPool(shutdownMonitor, queueCapacity, queueCapacity, writeToDb, maxInMemoryOutputBytes, 1, 1, testThreads, null);
+        pool.createInitialLanes(barrier, 1);
+        LOGGER.log("Running tests on " + testThreads);
+        return pool;
+    }
+
+    /**
+     * Returns a snapshot of the current lanes. Retiring lanes are included until they are dead.
+     *
+     * @return the lanes.
+     */
+    public List<ExecutorLane> getLanes() {
+        return Collections.unmodifiableList(new ArrayList<>(this.lanes));
+    }
+
+    /**
+     * Returns true iff the executors of this pool run their tests in forked worker JVMs rather than in this one.
+     *
+     * @return whether the pool's tests run in forked workers.
+     */
+    public boolean isForked() {
+        return this.workerLauncher != null;
+    }
+
+    /**
+     * Attempts to submit the specified batch to one of the lanes, preferring the lane with the least predicted work
+     * assigned to it so far and going round the lanes when that is a tie, so that they each receive a roughly equal
+     * load. Submitting tests longest first this way packs the lanes greedily by predicted duration.
+     *
+     * Each lane is only waited on for at most the given timeout if it is full, so that a batch is not held back behind
+     * one slow lane while others are free. The lanes are looked up anew on every call since the pool may have grown or
+     * shrunk.
+     *
+     * Returns true iff the batch was submitted.
+     *
+     * @param batch The batch to submit.
+     * @param timeout The most time to wait on each lane.
+     * @param unit The time units the timeout is specified in.
+     * @return whether or not the batch was submitted.
+     */
+    public boolean submit(TestBatch batch, long timeout, TimeUnit unit) throws InterruptedException {
+        List<ExecutorLane> lanes = getLanes();
+        if (lanes.isEmpty()) {
+            return false;
+        }
+
+        int start = Math.floorMod(this.nextSubmissionLane.getAndIncrement(), lanes.size());
+        List<ExecutorLane> candidates = new ArrayList<>(lanes.size());
+        for (int i = 0; i < lanes.size(); i++) {
+            candidates.add(lanes.get((start + i) % lanes.size()));
+        }
+        candidates.sort(Comparator.comparingLong(ExecutorLane::getAssignedNanos));
+
+        for (ExecutorLane lane : candidates) {
+            if (lane.submit(batch, timeout, unit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips the tests of the specified suite that are queued up on any of the lanes but not yet taken by their executors,
+     * as well as the given tests of the suite that were never submitted, publishing a skipped result for each of them.
+     * Returns the number of tests skipped.
+     *
+     * The results of the unsubmitted tests are published on the first lane. A lane is never dropped while its results
+     * queue holds results, see {@link ExecutorLane#advanceRetirement()}, and lanes are only dropped under the pool's
+     * lock, which this holds. So the lane cannot be dropped between being picked and taking the results, nor after
+     * that until they are consumed.
+     *
+     * @param testSuiteDetails The details of the suite whose tests to skip.
+     * @param unsubmittedTests The tests of the suite that were never submitted.
+     * @return the number of tests skipped.
+     */
+    public synchronized int skipTests(TestSuiteDetails testSuiteDetails, Collection<TestInfo> unsubmittedTests) {
+        ObjectChecker.assertNonNull(testSuiteDetails, unsubmittedTests);
+        int numSkipped = 0;
+        for (ExecutorLane lane : this.lanes) {
+            numSkipped += lane.skipQueuedTests(testSuiteDetails);
+        }
+        if ((!unsubmittedTests.isEmpty()) && (this.lanes.isEmpty())) {
+            throw new IllegalStateException("unable to skip tests: the pool has no lanes.");
+        }
+        for (TestInfo testInfo : unsubmittedTests) {
+            this.lanes.get(0).getExecutor().publishSkippedResult(testInfo);
+            numSkipped++;
+        }
+        return numSkipped;
+    }
+
+    /**
+     * Publishes a cached result for each of the specified tests, which are never submitted since they passed before with
+     * the same inputs, on the first lane. That lane is kept until the results are consumed just as it is for
+     * {@link #skipTests(TestSuiteDetails, Collection)}.
+     *
+     * @param cachedTests The tests to publish cached results for.
+     */
+    public synchronized void publishCachedResults(Collection<TestInfo> cachedTests) {
+        ObjectChecker.assertNonNull(cachedTests);
+        if ((!cachedTests.isEmpty()) && (this.lanes.isEmpty())) {
+            throw new IllegalStateException("unable to publish results: the pool has no lanes.");
+        }
+        for (TestInfo testInfo : cachedTests) {
+            this.lanes.get(0).getExecutor().publishCachedResult(testInfo);
+        }
+    }
+
+    /**
+     * Publishes the result of the specified test as reported by another daemon that ran it, on the first lane. That lane
+     * is kept until the result is consumed just as it is for {@link #skipTests(TestSuiteDetails, Collection)}.
+     *
+     * @param testInfo The test.
+     * @param skipped Whether the test was skipped rather than run.
+     * @param successful Whether the test passed.
+     * @param durationNanos How long the test ran for.
+     * @param cpuNanos The CPU time the test used, or -1 if unknown.
+     * @param stdout What the test wrote to stdout.
+     * @param stderr What the test wrote to stderr.
+     */
+    public synchronized void publishRemoteResult(TestInfo testInfo, boolean skipped, boolean successful, long durationNanos, long cpuNanos, String stdout, String stderr) {
+        ObjectChecker.assertNonNull(testInfo, stdout, stderr);
+        ObjectChecker.assertNonNegative(durationNanos);
+        if (this.lanes.isEmpty()) {
+            throw new IllegalStateException("unable to publish result: the pool has no lanes.");
+        }
+        this.lanes.get(0).getExecutor().publishRemoteResult(testInfo, skipped, successful, durationNanos, cpuNanos, stdout, stderr);
+    }
+
+    /**
+     * Starts the threads of all of the lanes, the watchdog and, if adaptive sizing is enabled, the controller.
+     */
+    public synchronized void start() {
+        this.watchdog.start();
+        for (ExecutorLane lane : this.lanes) {
+            lane.getThread().start();
+        }
+        if (this.controller != null) {
+            this.controller.start();
+        }
+    }
+
+    /**
+     * Closes the queues of all of the lanes.
+     */
+    public void closeQueues() {
+        for (ExecutorLane lane : this.lanes) {
+            lane.closeQueues();
+        }
+    }
+
+    /**
+     * Shuts down the executors of all of the lanes, the watchdog and the controller.
+     */
+    public synchronized void shutdown() {
+        this.isShutdown = true;
+        if (this.controller != null) {
+            this.controller.shutdown();
+        }
+        for (ExecutorLane lane : this.lanes) {
+            lane.getExecutor().shutdown();
+        }
+        this.watchdog.shutdown();
+    }
+
+    /**
+     * Waits for the threads of all of the lanes to exit. Threads of executors abandoned by the watchdog are not waited
+     * on, since they may never exit.
+     */
+    public void waitForShutdown() throws InterruptedException {
+        for (ExecutorLane lane : getLanes()) {
+            lane.getThread().join();
+        }
+    }
+
+    /**
+     * Adds and starts a new lane, unless the pool is shut down. Returns the new lane or null if none was added.
+     */
+    synchronized ExecutorLane addLane() {
+        if (this.isShutdown) {
+            return null;
+        }
+        // A new lane starts out level with the least loaded lane so that it does not draw every test for itself.
+        long leastAssignedNanos = Long.MAX_VALUE;
+        for (ExecutorLane existing : this.lanes) {
+            leastAssignedNanos = Math.min(leastAssignedNanos, existing.getAssignedNanos());
+        }
+        ExecutorLane lane = createLane(null);
+        lane.setAssignedNanos((leastAssignedNanos == Long.MAX_VALUE) ? 0 : leastAssignedNanos);
+        lane.getThread().start();
+        LOGGER.log("Added executor lane #" + lane.id + ", now at " + this.lanes.size() + " lanes.");
+        return lane;
+    }
+
+    /**
+     * Drops every retiring lane that is now dead and returns the number of lanes dropped.
+     */
+    synchronized int dropDeadLanes() {
+        int numDropped = 0;
+        for (ExecutorLane lane : this.lanes) {
+            if ((!lane.isActive()) && (lane.advanceRetirement())) {
+                this.lanes.remove(lane);
+                numDropped++;
+                LOGGER.log("Retired executor lane #" + lane.id + ", now at " + this.lanes.size() + " lanes.");
+            }
+        }
+        return numDropped;
+    }
+
+    private void createInitialLanes(CyclicBarrier barrier, int numLanes) {
+        for (int i = 0; i < numLanes; i++) {
+            createLane(barrier);
+        }
+    }
+
+    private ExecutorLane createLane(CyclicBarrier barrier) {
+        CloseableBlockingQueue<TestBatch> tests = CloseableBlockingQueue.withCapacity(this.testQueueCapacity);
+        CloseableBlockingQueue<TestResult> results = CloseableBlockingQueue.withCapacity(this.resultQueueCapacity);
+        ForkedWorker worker = (this.workerLauncher == null) ? null : this.workerLauncher.newWorker();
+        TestExecutor executor;
+        if (this.testThreads != null) {
+            executor = TestExecutor.onTestThreads(barrier, this.shutdownMonitor, tests, results, this.writeToDb, this.maxInMemoryOutputBytes, this.watchdog, this.testThreads);
+        } else if (barrier == null) {
+            executor = TestExecutor.startingLate(this.shutdownMonitor, tests, results, this.writeToDb, this.maxInMemoryOutputBytes, this.watchdog, worker);
+        } else {
+            executor = TestExecutor.withQueues(barrier, this.shutdownMonitor, tests, results, this.writeToDb, this.maxInMemoryOutputBytes, this.watchdog, worker);
+        }
+        int id = this.nextLaneId++;
+        ExecutorLane lane = new ExecutorLane(id, tests, results, executor, createExecutorThread(executor, "TestExecutor-" + id));
+        this.lanes.add(lane);
+        return lane;
+    }
+
+    /**
+     * Replaces the specified executor, which the watchdog has abandoned while it was stuck in a test, with a new
+     * executor and thread that take over its lane. The abandoned thread is left to exit on its own, if ever.
+     */
+    private synchronized void replaceExecutor(TestExecutor abandoned) {
+        if (this.isShutdown) {
+            return;
+        }
+        for (ExecutorLane lane : this.lanes) {
+            if (lane.getExecutor() == abandoned) {
+                this.numReplacedExecutors++;
+                TestExecutor replacement = TestExecutor.replacing(abandoned);
+                Thread replacementThread = createExecutorThread(replacement, "TestExecutor-" + lane.id + "-r" + this.numReplacedExecutors);
+                lane.replaceExecutor(replacement, replacementThread);
+                replacementThread.start();
+                LOGGER.log("Replaced abandoned executor of lane #" + lane.id + ".");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Executor threads are daemons so that a test that never returns cannot keep the JVM alive after shutdown.
+     */
+    private static Thread createExecutorThread(TestExecutor executor, String name) {
+        Thread thread = new Thread(executor, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { num lanes: " + this.lanes.size() + (this.testThreads != null ? ", [test threads] }" : (this.controller == null ? ", [fixed]" : ", [adaptive]") + (this.workerLauncher != null ? ", [forked] }" : " }"));
+    }
+}
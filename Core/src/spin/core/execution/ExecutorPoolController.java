@@ -0,0 +1,160 @@
+package spin.core.execution;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class that periodically samples the utilization of an {@link ExecutorPool} and grows or shrinks it within its
+ * bounds.
+ *
+ * Every sample looks at how busy the executors of the active lanes were since the last sample, how many tests are
+ * queued up on those lanes and the system load average relative to the number of processors:
+ *
+ * - If the executors were almost always busy, tests are queued up behind them and the processors are not saturated, a
+ *   lane is added. This is the case of tests that mostly sleep or block on I/O and so can be run many at a time.
+ * - If the executors were mostly idle, or the processors are heavily oversubscribed, for several samples in a row, a
+ *   lane is retired. Oversubscription is the case of CPU-bound tests, for which more threads only add contention.
+ *
+ * Growing happens one lane per sample and shrinking more reluctantly, so that a brief lull does not throw away lanes
+ * that are about to be needed again.
+ *
+ * This class is thread-safe.
+ */
+final class ExecutorPoolController {
+    private static final Logger LOGGER = Logger.forClass(ExecutorPoolController.class);
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    private static final double GROW_WHEN_BUSY_ABOVE = 0.9;
+    private static final double SHRINK_WHEN_BUSY_BELOW = 0.25;
+    private static final double SATURATED_LOAD_PER_CPU = 0.9;
+    private static final double OVERSUBSCRIBED_LOAD_PER_CPU = 1.5;
+    private static final int SAMPLES_BEFORE_SHRINKING = 3;
+    private final Object monitor = new Object();
+    private final ExecutorPool pool;
+    private final int minLanes;
+    private final int maxLanes;
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+    private final Map<TestExecutor, Long> lastBusyNanos = new HashMap<>();
+    private final Thread thread;
+    private long lastSampleNanos;
+    private int numShrinkSamples = 0;
+    private volatile boolean isAlive = true;
+
+    private ExecutorPoolController(ExecutorPool pool, int minLanes, int maxLanes) {
+        this.pool = pool;
+        this.minLanes = minLanes;
+        this.maxLanes = maxLanes;
+        this.thread = new Thread(this::control, "ExecutorPoolController");
+        this.thread.setDaemon(true);
+    }
+
+    static ExecutorPoolController forPool(ExecutorPool pool, int minLanes, int maxLanes) {
+        ObjectChecker.assertNonNull(pool);
+        ObjectChecker.assertPositive(minLanes);
+        if (maxLanes < minLanes) {
+            throw new IllegalArgumentException("maxLanes (" + maxLanes + ") must be at least minLanes (" + minLanes + ").");
+        }
+        return new ExecutorPoolController(pool, minLanes, maxLanes);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    void shutdown() {
+        synchronized (this.monitor) {
+            this.isAlive = false;
+            this.monitor.notifyAll();
+        }
+    }
+
+    private void control() {
+        LOGGER.log(Thread.currentThread().getName() + " thread started.");
+        this.lastSampleNanos = System.nanoTime();
+        try {
+            while (this.isAlive) {
+                synchronized (this.monitor) {
+                    if (this.isAlive) {
+                        this.monitor.wait(SAMPLE_INTERVAL_MILLIS);
+                    }
+                }
+                if (this.isAlive) {
+                    sample();
+                }
+            }
+        } catch (InterruptedException e) {
+            // We are only ever interrupted during shutdown.
+        } finally {
+            LOGGER.log("Exiting.");
+        }
+    }
+
+    private void sample() {
+        this.pool.dropDeadLanes();
+
+        long now = System.nanoTime();
+        long intervalNanos = Math.max(1, now - this.lastSampleNanos);
+        this.lastSampleNanos = now;
+
+        int numActiveLanes = 0;
+        int numQueuedTests = 0;
+        double totalBusyFraction = 0;
+        ExecutorLane leastLoadedLane = null;
+        Map<TestExecutor, Long> busyNanos = new HashMap<>();
+        List<ExecutorLane> lanes = this.pool.getLanes();
+        for (ExecutorLane lane : lanes) {
+            TestExecutor executor = lane.getExecutor();
+            long executorBusyNanos = executor.getBusyNanos();
+            busyNanos.put(executor, executorBusyNanos);
+
+            if (lane.isActive()) {
+                numActiveLanes++;
+                numQueuedTests += lane.getNumQueuedTests();
+                long busySinceLastSample = executorBusyNanos - this.lastBusyNanos.getOrDefault(executor, 0L);
+                totalBusyFraction += Math.min(1.0, Math.max(0, busySinceLastSample) / (double) intervalNanos);
+                if ((leastLoadedLane == null) || (lane.getNumQueuedTests() <= leastLoadedLane.getNumQueuedTests())) {
+                    leastLoadedLane = lane;
+                }
+            }
+        }
+        this.lastBusyNanos.clear();
+        this.lastBusyNanos.putAll(busyNanos);
+
+        if (numActiveLanes == 0) {
+            return;
+        }
+
+        double busyFraction = totalBusyFraction / numActiveLanes;
+        double loadAverage = this.operatingSystem.getSystemLoadAverage();
+        double loadPerCpu = (loadAverage < 0) ? -1 : loadAverage / this.operatingSystem.getAvailableProcessors();
+        LOGGER.log("Active lanes: " + numActiveLanes + ", busy: " + busyFraction + ", queued tests: " + numQueuedTests + ", load per cpu: " + loadPerCpu);
+
+        boolean isSaturated = (loadPerCpu >= SATURATED_LOAD_PER_CPU);
+        boolean isOversubscribed = (loadPerCpu >= OVERSUBSCRIBED_LOAD_PER_CPU);
+
+        if ((numActiveLanes < this.maxLanes) && (busyFraction >= GROW_WHEN_BUSY_ABOVE) && (numQueuedTests >= numActiveLanes) && (!isSaturated)) {
+            this.numShrinkSamples = 0;
+            this.pool.addLane();
+        } else if ((numActiveLanes > this.minLanes) && ((busyFraction < SHRINK_WHEN_BUSY_BELOW) || (isOversubscribed))) {
+            this.numShrinkSamples++;
+            if (this.numShrinkSamples >= SAMPLES_BEFORE_SHRINKING) {
+                this.numShrinkSamples = 0;
+                LOGGER.log("Retiring executor lane #" + leastLoadedLane.id);
+                leastLoadedLane.startRetiring();
+            }
+        } else {
+            this.numShrinkSamples = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { min lanes: " + this.minLanes + ", max lanes: " + this.maxLanes + (this.isAlive ? ", [running] }" : ", [shutdown] }");
+    }
+}
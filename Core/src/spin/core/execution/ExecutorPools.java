@@ -0,0 +1,166 @@
+package spin.core.execution;
+
+import spin.core.runner.TestSuiteDetails;
+import spin.core.util.ObjectChecker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The executor pools that tests are run on: either a single pool for every test, or a pool for CPU-bound tests that is
+ * sized to the number of processors alongside a larger pool for tests that spend most of their time blocked.
+ *
+ * Splitting the tests lets the blocking tests run many at a time without taking executors away from the CPU-bound
+ * tests, and without the CPU-bound tests oversubscribing the processors. Which pool a test runs on is decided by
+ * {@link TestInfo#isIoBound()}.
+ *
+ * This class is thread-safe.
+ */
+public final class ExecutorPools {
+    private final ExecutorPool cpuBoundPool;
+    private final ExecutorPool ioBoundPool;
+
+    private ExecutorPools(ExecutorPool cpuBoundPool, ExecutorPool ioBoundPool) {
+        this.cpuBoundPool = cpuBoundPool;
+        this.ioBoundPool = ioBoundPool;
+    }
+
+    /**
+     * Returns pools consisting of the one given pool, which every test is run on.
+     *
+     * @param pool The pool.
+     * @return the pools.
+     */
+    public static ExecutorPools single(ExecutorPool pool) {
+        ObjectChecker.assertNonNull(pool);
+        return new ExecutorPools(pool, null);
+    }
+
+    /**
+     * Returns pools that run CPU-bound tests on the first given pool and I/O-bound tests on the second.
+     *
+     * @param cpuBoundPool The pool to run CPU-bound tests on.
+     * @param ioBoundPool The pool to run I/O-bound tests on.
+     * @return the pools.
+     */
+    public static ExecutorPools split(ExecutorPool cpuBoundPool, ExecutorPool ioBoundPool) {
+        ObjectChecker.assertNonNull(cpuBoundPool, ioBoundPool);
+        return new ExecutorPools(cpuBoundPool, ioBoundPool);
+    }
+
+    /**
+     * Returns true iff I/O-bound tests are run on a pool of their own.
+     *
+     * @return whether or not the pools are split.
+     */
+    public boolean isSplit() {
+        return this.ioBoundPool != null;
+    }
+
+    /**
+     * Returns the pool that the specified test is to be run on.
+     *
+     * @param testInfo The test.
+     * @return the pool.
+     */
+    public ExecutorPool poolFor(TestInfo testInfo) {
+        return ((this.ioBoundPool != null) && testInfo.isIoBound()) ? this.ioBoundPool : this.cpuBoundPool;
+    }
+
+    /**
+     * Returns a snapshot of the current lanes of all of the pools.
+     *
+     * @return the lanes.
+     */
+    public List<ExecutorLane> getLanes() {
+        List<ExecutorLane> lanes = new ArrayList<>(this.cpuBoundPool.getLanes());
+        if (this.ioBoundPool != null) {
+            lanes.addAll(this.ioBoundPool.getLanes());
+        }
+        return lanes;
+    }
+
+    /**
+     * Skips the tests of the specified suite that are queued up on any of the pools, as well as the given tests of the
+     * suite that were never submitted, publishing a skipped result for each of them. Returns the number of tests
+     * skipped.
+     *
+     * @param testSuiteDetails The details of the suite whose tests to skip.
+     * @param unsubmittedTests The tests of the suite that were never submitted.
+     * @return the number of tests skipped.
+     */
+    public int skipTests(TestSuiteDetails testSuiteDetails, Collection<TestInfo> unsubmittedTests) {
+        int numSkipped = this.cpuBoundPool.skipTests(testSuiteDetails, unsubmittedTests);
+        if (this.ioBoundPool != null) {
+            numSkipped += this.ioBoundPool.skipTests(testSuiteDetails, Collections.emptyList());
+        }
+        return numSkipped;
+    }
+
+    /**
+     * Publishes a cached result for each of the specified tests, which are never submitted since they passed before with
+     * the same inputs. Such results all go through the CPU bound pool, since the tests do not run on either pool.
+     *
+     * @see ExecutorPool#publishCachedResults(Collection)
+     */
+    public void publishCachedResults(Collection<TestInfo> cachedTests) {
+        this.cpuBoundPool.publishCachedResults(cachedTests);
+    }
+
+    /**
+     * Publishes the result of the specified test as reported by another daemon that ran it. Such results also go through
+     * the CPU bound pool.
+     *
+     * @see ExecutorPool#publishRemoteResult(TestInfo, boolean, boolean, long, long, String, String)
+     */
+    public void publishRemoteResult(TestInfo testInfo, boolean skipped, boolean successful, long durationNanos, long cpuNanos, String stdout, String stderr) {
+        this.cpuBoundPool.publishRemoteResult(testInfo, skipped, successful, durationNanos, cpuNanos, stdout, stderr);
+    }
+
+    /**
+     * Starts all of the pools.
+     */
+    public void start() {
+        this.cpuBoundPool.start();
+        if (this.ioBoundPool != null) {
+            this.ioBoundPool.start();
+        }
+    }
+
+    /**
+     * Closes the queues of all of the pools.
+     */
+    public void closeQueues() {
+        this.cpuBoundPool.closeQueues();
+        if (this.ioBoundPool != null) {
+            this.ioBoundPool.closeQueues();
+        }
+    }
+
+    /**
+     * Shuts down all of the pools.
+     */
+    public void shutdown() {
+        this.cpuBoundPool.shutdown();
+        if (this.ioBoundPool != null) {
+            this.ioBoundPool.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the threads of all of the pools to exit.
+     */
+    public void waitForShutdown() throws InterruptedException {
+        this.cpuBoundPool.waitForShutdown();
+        if (this.ioBoundPool != null) {
+            this.ioBoundPool.waitForShutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { cpu-bound: " + this.cpuBoundPool + (this.ioBoundPool == null ? " }" : ", io-bound: " + this.ioBoundPool + " }");
+    }
+}
@@ -0,0 +1,68 @@
+package spin.core.execution;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolves the fixture methods of a test class, those annotated with one of JUnit's {@code @Before}, {@code @After},
+ * {@code @BeforeClass} or {@code @AfterClass} annotations, into method handles.
+ *
+ * As in JUnit the fixture methods declared by superclasses are included, unless a subclass shadows them by declaring a
+ * method of the same name, and set up methods run superclass first while tear down methods run subclass first.
+ */
+final class FixtureMethods {
+    private FixtureMethods() {
+    }
+
+    /**
+     * Resolves the fixture methods of the specified class that carry the given annotation, in the order they are to be
+     * run in. Class fixture methods must be public, static, take no arguments and return void, while test fixture
+     * methods must be the same except not static.
+     *
+     * @param testClass The test class.
+     * @param annotation The fixture annotation.
+     * @param isClassFixture Whether the methods are class fixture methods rather than test fixture methods.
+     * @param superclassFirst Whether the methods of superclasses run before those of their subclasses.
+     * @return the method handles, which are empty if there are no such methods.
+     */
+    static List<MethodHandle> resolve(Class<?> testClass, Class<? extends Annotation> annotation, boolean isClassFixture, boolean superclassFirst) throws IllegalAccessException {
+        List<List<MethodHandle>> handlesPerClass = new ArrayList<>();
+        Set<String> seenNames = new HashSet<>();
+        for (Class<?> current = testClass; (current != null) && (current != Object.class); current = current.getSuperclass()) {
+            List<MethodHandle> handles = new ArrayList<>();
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.getAnnotation(annotation) == null) {
+                    continue;
+                }
+                if (!seenNames.add(method.getName())) {
+                    // Shadowed by a method of a subclass.
+                    continue;
+                }
+                if ((!Modifier.isPublic(method.getModifiers())) || (Modifier.isStatic(method.getModifiers()) != isClassFixture)
+                        || (method.getParameterCount() != 0) || (method.getReturnType() != void.class)) {
+                    throw new IllegalAccessException("@" + annotation.getSimpleName() + " method " + current.getName() + "." + method.getName()
+                            + " must be public" + (isClassFixture ? " static" : "") + ", take no arguments and return void");
+                }
+                handles.add(MethodHandles.publicLookup().unreflect(method));
+            }
+            handlesPerClass.add(handles);
+        }
+
+        if (superclassFirst) {
+            Collections.reverse(handlesPerClass);
+        }
+        List<MethodHandle> orderedHandles = new ArrayList<>();
+        for (List<MethodHandle> handles : handlesPerClass) {
+            orderedHandles.addAll(handles);
+        }
+        return orderedHandles;
+    }
+}
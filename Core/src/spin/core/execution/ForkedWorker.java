@@ -0,0 +1,268 @@
+package spin.core.execution;
+
+import spin.core.ForkedWorkerEntryPoint;
+import spin.core.runner.TestSuiteDetails;
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived JVM of its own that a single {@link TestExecutor} runs its tests in, so that a test that exits the JVM,
+ * leaks threads, corrupts static state or exhausts the heap only takes down the worker rather than Spin itself along
+ * with every other suite.
+ *
+ * The worker JVM is launched when the first test is run on it and is then reused for test after test and suite after
+ * suite, so that the cost of starting a JVM is not paid per test. When the next suite starts, the worker is recycled,
+ * that is shut down and launched anew, if it has already run its quota of suites or if its heap was under pressure
+ * after its last test. A worker that dies while running a test fails the test and is launched anew for the next one.
+ * A worker only runs more than one suite in a daemon that outlives a suite: one running shards, watching a suite or
+ * using a registered classpath. A daemon that runs an ordinary suite shuts down, along with its workers, once the
+ * suite is complete.
+ *
+ * The worker loads the classes of each suite itself, from the suite's classpath, and runs their class fixtures as
+ * well, see {@link WorkerLoop}. The two sides talk over the worker's stdin and stdout, see {@link WorkerProtocol}.
+ *
+ * This class is not thread-safe, except for {@link #kill()}.
+ */
+public final class ForkedWorker {
+    private static final Logger LOGGER = Logger.forClass(ForkedWorker.class);
+    private static final double MAX_HEAP_FRACTION = 0.8;
+    private static final long EXIT_GRACE_MILLIS = 1000;
+    private final Launcher launcher;
+    private volatile Process process = null;
+    private DataInputStream fromWorker = null;
+    private DataOutputStream toWorker = null;
+    private TestSuiteDetails currentSuite = null;
+    private int numSuitesRun = 0;
+    private boolean isUnderHeapPressure = false;
+
+    private ForkedWorker(Launcher launcher) {
+        this.launcher = launcher;
+    }
+
+    /**
+     * Runs the specified test on the worker JVM, launching it first if need be, and writes the test's output to the
+     * given streams.
+     *
+     * @param testInfo The test to run.
+     * @param isLastOfShare Whether the test is the last of the share of its class fixture.
+     * @param stdout The stream to write the test's stdout to.
+     * @param stderr The stream to write the test's stderr to.
+     * @return the outcome of the test.
+     */
+    Outcome run(TestInfo testInfo, boolean isLastOfShare, PrintStream stdout, PrintStream stderr) {
+        long startNanos = System.nanoTime();
+        try {
+            prepareFor(testInfo.testSuiteDetails);
+            byte flags = 0;
+            if (testInfo.getSharedInstance() != null) {
+                flags |= WorkerProtocol.SHARED_INSTANCE_FLAG;
+            }
+            if (isLastOfShare) {
+                flags |= WorkerProtocol.LAST_OF_SHARE_FLAG;
+            }
+            WorkerProtocol.writeTest(this.toWorker, testInfo.testClass.getName(), testInfo.method.getName(), flags);
+
+            WorkerProtocol.Frame frame = WorkerProtocol.readFrame(this.fromWorker);
+            if (frame.type != WorkerProtocol.RESULT) {
+                throw new IOException("expected a result but received " + frame);
+            }
+            WorkerProtocol.WorkerResult result = WorkerProtocol.readResult(frame.payload);
+            stdout.write(result.stdout);
+            stderr.write(result.stderr);
+            this.isUnderHeapPressure = (result.maxHeap > 0) && (result.heapUsedAfterGc > MAX_HEAP_FRACTION * result.maxHeap);
+            return new Outcome(result.successful, result.durationNanos, result.cpuNanos);
+        } catch (IOException e) {
+            stderr.println("Forked worker failed while running the test: " + describeFailure(e));
+            discard();
+            return new Outcome(false, System.nanoTime() - startNanos, -1);
+        }
+    }
+
+    /**
+     * Kills the worker JVM, failing the test it is running, if any. This may be invoked from any thread.
+     */
+    void kill() {
+        Process process = this.process;
+        if (process != null) {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Kills the worker JVM, as for a worker whose executor was abandoned, and returns a new worker launched the same way
+     * to take its place.
+     *
+     * @return the new worker.
+     */
+    ForkedWorker replace() {
+        kill();
+        return this.launcher.newWorker();
+    }
+
+    /**
+     * Asks the worker JVM to tear down and exit, and kills it if it does not do so in time.
+     */
+    void shutdown() {
+        Process process = this.process;
+        if (process == null) {
+            return;
+        }
+        try {
+            new WorkerProtocol.FrameWriter(WorkerProtocol.EXIT).writeTo(this.toWorker);
+            process.waitFor(EXIT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            // The worker is already gone.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        discard();
+    }
+
+    private void prepareFor(TestSuiteDetails testSuiteDetails) throws IOException {
+        if ((this.process != null) && (!this.process.isAlive())) {
+            // The worker was killed after its last test returned, or exited on its own since.
+            discard();
+        }
+        if ((this.process != null) && (testSuiteDetails != this.currentSuite)
+                && ((this.numSuitesRun >= this.launcher.numSuitesPerWorker) || (this.isUnderHeapPressure))) {
+            LOGGER.log("Recycling forked worker after " + this.numSuitesRun + " suites" + (this.isUnderHeapPressure ? ", its heap is under pressure." : "."));
+            shutdown();
+        }
+        if (this.process == null) {
+            launch();
+        }
+        if (testSuiteDetails != this.currentSuite) {
+            WorkerProtocol.writeSuite(this.toWorker, testSuiteDetails.getClasspath());
+            this.currentSuite = testSuiteDetails;
+            this.numSuitesRun++;
+        }
+    }
+
+    private void launch() throws IOException {
+        Process process = new ProcessBuilder(this.launcher.command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        this.fromWorker = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        this.toWorker = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        this.currentSuite = null;
+        this.numSuitesRun = 0;
+        this.isUnderHeapPressure = false;
+        this.process = process;
+        LOGGER.log("Launched forked worker " + process.pid() + ".");
+    }
+
+    private void discard() {
+        Process process = this.process;
+        if (process == null) {
+            return;
+        }
+        process.destroyForcibly();
+        try {
+            this.toWorker.close();
+        } catch (IOException e) {
+            // The worker is gone regardless.
+        }
+        try {
+            this.fromWorker.close();
+        } catch (IOException e) {
+            // The worker is gone regardless.
+        }
+        this.process = null;
+        this.currentSuite = null;
+    }
+
+    /**
+     * Describes why talking to the worker failed, which is usually because it exited or was killed.
+     */
+    private String describeFailure(IOException e) {
+        Process process = this.process;
+        if (process == null) {
+            return e.toString();
+        }
+        try {
+            if (process.waitFor(EXIT_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                return "worker exited with code " + process.exitValue();
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return e.toString();
+    }
+
+    @Override
+    public String toString() {
+        Process process = this.process;
+        return this.getClass().getSimpleName() + ((process == null) ? " { [not running] }" : " { pid: " + process.pid() + ", suites run: " + this.numSuitesRun + " }");
+    }
+
+    /**
+     * The outcome of a test run on a worker.
+     *
+     * This class is immutable.
+     */
+    static final class Outcome {
+        final boolean successful;
+        final long durationNanos;
+        final long cpuNanos;
+
+        private Outcome(boolean successful, long durationNanos, long cpuNanos) {
+            this.successful = successful;
+            this.durationNanos = durationNanos;
+            this.cpuNanos = cpuNanos;
+        }
+    }
+
+    /**
+     * How to launch the worker JVMs of a pool: the same Java runtime and classpath as this JVM, with the given JVM
+     * arguments, and how many suites each worker runs before it is recycled.
+     *
+     * This class is immutable.
+     */
+    public static final class Launcher {
+        private final List<String> command;
+        private final int numSuitesPerWorker;
+
+        private Launcher(List<String> command, int numSuitesPerWorker) {
+            this.command = command;
+            this.numSuitesPerWorker = numSuitesPerWorker;
+        }
+
+        /**
+         * Constructs a new launcher of worker JVMs like this one.
+         *
+         * @param jvmArguments The arguments to pass to each worker JVM, such as its heap size.
+         * @param numSuitesPerWorker The number of suites each worker runs before it is recycled.
+         * @return the new launcher.
+         */
+        public static Launcher forCurrentJvm(List<String> jvmArguments, int numSuitesPerWorker) {
+            ObjectChecker.assertNonNull(jvmArguments);
+            ObjectChecker.assertPositive(numSuitesPerWorker);
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(jvmArguments);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ForkedWorkerEntryPoint.class.getName());
+            return new Launcher(Collections.unmodifiableList(command), numSuitesPerWorker);
+        }
+
+        ForkedWorker newWorker() {
+            return new ForkedWorker(this);
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + " { command: " + this.command + ", suites per worker: " + this.numSuitesPerWorker + " }";
+        }
+    }
+}
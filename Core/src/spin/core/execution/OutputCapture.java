@@ -0,0 +1,246 @@
+package spin.core.execution;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A reusable buffer that a single executor captures the output of each of its tests into, one test at a time.
+ *
+ * The buffer and the print stream over it are created once per executor and are reset after each test rather than
+ * being created anew for every test. If a chatty test grows the buffer past a sixteenth of the in-memory limit (see
+ * below) it is swapped back down to its initial capacity afterwards, so that one test's output is not held onto for the
+ * lifetime of the executor. The buffer never grows past the limit itself, so shrinking must kick in well below it.
+ *
+ * At most a configured number of bytes of a test's output is held in memory. Once a test writes more than that, what
+ * has been buffered so far and everything after it is appended to a temporary file instead, and only the first and last
+ * few kilobytes are kept in memory. Should the file fail to be created the middle of the output is dropped instead.
+ *
+ * This class is not thread-safe.
+ */
+final class OutputCapture {
+    private static final Logger LOGGER = Logger.forClass(OutputCapture.class);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int RETAINED_CAPACITY_DIVISOR = 16;
+    private static final int HEAD_SIZE = 8 * 1024;
+    private static final int TAIL_SIZE = 8 * 1024;
+    private final Sink sink;
+    final PrintStream stream;
+
+    private OutputCapture(int maxInMemoryBytes) {
+        this.sink = new Sink(maxInMemoryBytes);
+        this.stream = new PrintStream(this.sink);
+    }
+
+    /**
+     * Constructs a new capture that holds at most the specified number of bytes of a test's output in memory.
+     *
+     * @param maxInMemoryBytes The in-memory limit.
+     * @return the new capture.
+     */
+    static OutputCapture withMaxInMemoryBytes(int maxInMemoryBytes) {
+        ObjectChecker.assertPositive(maxInMemoryBytes);
+        return new OutputCapture(maxInMemoryBytes);
+    }
+
+    /**
+     * Returns everything written to the stream since the last time this method was called, and resets the buffer.
+     *
+     * @return the captured output.
+     */
+    CapturedOutput takeCapturedOutput() {
+        this.stream.flush();
+        CapturedOutput output = this.sink.toCapturedOutput();
+        this.sink.reset();
+        return output;
+    }
+
+    /**
+     * Returns the current capacity of the in-memory buffer.
+     *
+     * @return the buffer's capacity, in bytes.
+     */
+    int getBufferCapacity() {
+        return this.sink.buffer.length;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { num bytes buffered: " + this.sink.count + " }";
+    }
+
+    private static final class Sink extends OutputStream {
+        private final int maxInMemoryBytes;
+        private final int maxRetainedCapacity;
+        private byte[] buffer = new byte[INITIAL_CAPACITY];
+        private int count = 0;
+
+        // Only used once the output has gone past the in-memory limit.
+        private boolean isOverLimit = false;
+        private Path spillFile = null;
+        private OutputStream spillStream = null;
+        private long totalBytes = 0;
+        private final byte[] head = new byte[HEAD_SIZE];
+        private int headCount = 0;
+        private final byte[] tail = new byte[TAIL_SIZE];
+        private int tailEnd = 0;
+        private boolean isTailFull = false;
+
+        private Sink(int maxInMemoryBytes) {
+            this.maxInMemoryBytes = maxInMemoryBytes;
+            this.maxRetainedCapacity = Math.max(INITIAL_CAPACITY, maxInMemoryBytes / RETAINED_CAPACITY_DIVISOR);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{ (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if ((!this.isOverLimit) && (length <= this.maxInMemoryBytes - this.count)) {
+                if (this.count + length > this.buffer.length) {
+                    this.buffer = Arrays.copyOf(this.buffer, Math.min(this.maxInMemoryBytes, Math.max(this.count + length, this.buffer.length * 2)));
+                }
+                System.arraycopy(bytes, offset, this.buffer, this.count, length);
+                this.count += length;
+                return;
+            }
+
+            if (!this.isOverLimit) {
+                startSpilling();
+            }
+            if (this.spillStream != null) {
+                try {
+                    this.spillStream.write(bytes, offset, length);
+                } catch (IOException e) {
+                    LOGGER.log("Failed to spill test output to disk, the middle of the output will be dropped.");
+                    closeSpillStream();
+                    deleteSpillFile();
+                }
+            }
+            appendToHeadAndTail(bytes, offset, length);
+        }
+
+        private void startSpilling() {
+            this.isOverLimit = true;
+            try {
+                this.spillFile = Files.createTempFile("spin-output-", ".log");
+                this.spillStream = new BufferedOutputStream(Files.newOutputStream(this.spillFile));
+                this.spillStream.write(this.buffer, 0, this.count);
+            } catch (IOException e) {
+                LOGGER.log("Failed to spill test output to disk, the middle of the output will be dropped.");
+                closeSpillStream();
+                deleteSpillFile();
+            }
+            appendToHeadAndTail(this.buffer, 0, this.count);
+        }
+
+        private void appendToHeadAndTail(byte[] bytes, int offset, int length) {
+            this.totalBytes += length;
+
+            int numToHead = Math.min(length, HEAD_SIZE - this.headCount);
+            System.arraycopy(bytes, offset, this.head, this.headCount, numToHead);
+            this.headCount += numToHead;
+
+            // The tail only needs to see the bytes after the head, and of those only the last TAIL_SIZE.
+            int tailOffset = offset + numToHead;
+            int tailLength = length - numToHead;
+            if (tailLength > TAIL_SIZE) {
+                tailOffset += tailLength - TAIL_SIZE;
+                tailLength = TAIL_SIZE;
+            }
+            while (tailLength > 0) {
+                int chunk = Math.min(tailLength, TAIL_SIZE - this.tailEnd);
+                System.arraycopy(bytes, tailOffset, this.tail, this.tailEnd, chunk);
+                tailOffset += chunk;
+                tailLength -= chunk;
+                this.tailEnd += chunk;
+                if (this.tailEnd == TAIL_SIZE) {
+                    this.tailEnd = 0;
+                    this.isTailFull = true;
+                }
+            }
+        }
+
+        private CapturedOutput toCapturedOutput() {
+            if (!this.isOverLimit) {
+                return (this.count == 0) ? CapturedOutput.EMPTY : CapturedOutput.ofBytes(Arrays.copyOf(this.buffer, this.count));
+            }
+
+            byte[] headBytes = Arrays.copyOf(this.head, this.headCount);
+            byte[] tailBytes;
+            if (this.isTailFull) {
+                tailBytes = new byte[TAIL_SIZE];
+                System.arraycopy(this.tail, this.tailEnd, tailBytes, 0, TAIL_SIZE - this.tailEnd);
+                System.arraycopy(this.tail, 0, tailBytes, TAIL_SIZE - this.tailEnd, this.tailEnd);
+            } else {
+                tailBytes = Arrays.copyOf(this.tail, this.tailEnd);
+            }
+
+            if (this.spillStream != null && closeSpillStream()) {
+                Path file = this.spillFile;
+                this.spillFile = null;
+                return CapturedOutput.spilled(file, this.totalBytes, headBytes, tailBytes);
+            }
+
+            // We could not spill, so all we have is the head and tail.
+            deleteSpillFile();
+            long numDropped = this.totalBytes - headBytes.length - tailBytes.length;
+            byte[] marker = ("\n... [" + numDropped + " bytes dropped] ...\n").getBytes(StandardCharsets.UTF_8);
+            byte[] truncated = Arrays.copyOf(headBytes, headBytes.length + marker.length + tailBytes.length);
+            System.arraycopy(marker, 0, truncated, headBytes.length, marker.length);
+            System.arraycopy(tailBytes, 0, truncated, headBytes.length + marker.length, tailBytes.length);
+            return CapturedOutput.ofBytes(truncated);
+        }
+
+        /**
+         * Closes the spill stream if open and returns true iff everything written to it made it to the file.
+         */
+        private boolean closeSpillStream() {
+            if (this.spillStream == null) {
+                return false;
+            }
+            try {
+                this.spillStream.close();
+                return true;
+            } catch (IOException e) {
+                LOGGER.log("Failed to finish spilling test output to disk.");
+                return false;
+            } finally {
+                this.spillStream = null;
+            }
+        }
+
+        private void deleteSpillFile() {
+            if (this.spillFile != null) {
+                try {
+                    Files.deleteIfExists(this.spillFile);
+                } catch (IOException e) {
+                    LOGGER.log("Failed to delete spilled output file: " + this.spillFile);
+                }
+                this.spillFile = null;
+            }
+        }
+
+        private void reset() {
+            this.count = 0;
+            if (this.buffer.length > this.maxRetainedCapacity) {
+                this.buffer = new byte[INITIAL_CAPACITY];
+            }
+            this.isOverLimit = false;
+            this.totalBytes = 0;
+            this.headCount = 0;
+            this.tailEnd = 0;
+            this.isTailFull = false;
+        }
+    }
+}
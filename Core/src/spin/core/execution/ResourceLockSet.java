@@ -0,0 +1,136 @@
+package spin.core.execution;
+
+import spin.core.annotation.ResourceLock;
+import spin.core.annotation.ResourceLocks;
+import spin.core.util.ObjectChecker;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The named shared resources a test uses, each either shared with other readers or held exclusively.
+ *
+ * This class is immutable.
+ */
+public final class ResourceLockSet {
+    public static final ResourceLockSet EMPTY = new ResourceLockSet(Collections.emptyMap());
+    private final Map<String, Boolean> exclusiveByName;
+
+    private ResourceLockSet(Map<String, Boolean> exclusiveByName) {
+        this.exclusiveByName = exclusiveByName;
+    }
+
+    /**
+     * Constructs a new lock set of the specified resources.
+     *
+     * @param exclusiveByName Whether each named resource is held exclusively, rather than shared with other readers.
+     * @return the new lock set.
+     */
+    public static ResourceLockSet of(Map<String, Boolean> exclusiveByName) {
+        ObjectChecker.assertNonNull(exclusiveByName);
+        return exclusiveByName.isEmpty() ? EMPTY : new ResourceLockSet(Collections.unmodifiableMap(new TreeMap<>(exclusiveByName)));
+    }
+
+    /**
+     * Returns the lock set of the shared resources the specified test uses, as declared by {@link ResourceLock}
+     * annotations on it and on its class. A resource declared more than once is held exclusively if any of its
+     * declarations is {@link ResourceLock.Mode#READ_WRITE}. Like {@link spin.core.annotation.IoBound} the annotations
+     * are matched by name, and their elements are read reflectively, so that they are recognized even if the test suite
+     * brings its own copy of them.
+     *
+     * @param testClass The class of the test.
+     * @param method The test method.
+     * @return the lock set of the test.
+     */
+    public static ResourceLockSet declaredOn(Class<?> testClass, Method method) {
+        ObjectChecker.assertNonNull(testClass, method);
+        Map<String, Boolean> exclusiveByName = new HashMap<>();
+        collectDeclaredLocks(testClass, exclusiveByName);
+        collectDeclaredLocks(method, exclusiveByName);
+        return of(exclusiveByName);
+    }
+
+    private static void collectDeclaredLocks(AnnotatedElement element, Map<String, Boolean> exclusiveByName) {
+        for (Annotation annotation : element.getAnnotations()) {
+            String annotationName = annotation.annotationType().getName();
+            if (annotationName.equals(ResourceLock.class.getName())) {
+                addDeclaredLock(annotation, exclusiveByName);
+            } else if (annotationName.equals(ResourceLocks.class.getName())) {
+                for (Object lock : (Object[]) annotationElement(annotation, "value")) {
+                    addDeclaredLock((Annotation) lock, exclusiveByName);
+                }
+            }
+        }
+    }
+
+    private static void addDeclaredLock(Annotation lock, Map<String, Boolean> exclusiveByName) {
+        String resource = (String) annotationElement(lock, "value");
+        boolean isExclusive = !((Enum<?>) annotationElement(lock, "mode")).name().equals(ResourceLock.Mode.READ.name());
+        exclusiveByName.merge(resource, isExclusive, Boolean::logicalOr);
+    }
+
+    private static Object annotationElement(Annotation annotation, String elementName) {
+        try {
+            return annotation.annotationType().getMethod(elementName).invoke(annotation);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("unable to read element " + elementName + " of " + annotation, e);
+        }
+    }
+
+    /**
+     * Returns the lock set of the resources of both this and the specified lock set, each held exclusively if either
+     * holds it so.
+     *
+     * @param other The other lock set.
+     * @return the union of the lock sets.
+     */
+    public ResourceLockSet union(ResourceLockSet other) {
+        ObjectChecker.assertNonNull(other);
+        if (other.isEmpty()) {
+            return this;
+        }
+        Map<String, Boolean> exclusiveByName = new TreeMap<>(this.exclusiveByName);
+        for (Map.Entry<String, Boolean> lock : other.exclusiveByName.entrySet()) {
+            exclusiveByName.merge(lock.getKey(), lock.getValue(), Boolean::logicalOr);
+        }
+        return of(exclusiveByName);
+    }
+
+    public boolean isEmpty() {
+        return this.exclusiveByName.isEmpty();
+    }
+
+    /**
+     * Returns true iff at least one of the resources of this lock set is held exclusively, so that two tests that both
+     * hold this lock set conflict with one another.
+     *
+     * @return whether any resource is held exclusively.
+     */
+    public boolean hasExclusive() {
+        return this.exclusiveByName.containsValue(true);
+    }
+
+    Map<String, Boolean> getExclusiveByName() {
+        return this.exclusiveByName;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof ResourceLockSet) && (this.exclusiveByName.equals(((ResourceLockSet) other).exclusiveByName));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.exclusiveByName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { locks: " + this.exclusiveByName + " }";
+    }
+}
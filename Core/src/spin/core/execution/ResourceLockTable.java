@@ -0,0 +1,130 @@
+package spin.core.execution;
+
+import spin.core.util.ObjectChecker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared resources held by the running tests of a suite. A resource is either free, shared by one or more readers
+ * or held exclusively by a single writer.
+ *
+ * Resources are acquired by the dispatcher when it hands a test to an executor and released once the test is done,
+ * so that a test is only ever queued up on an executor once nothing it conflicts with is queued up or running.
+ *
+ * This class is thread-safe.
+ */
+public final class ResourceLockTable {
+    private static final int EXCLUSIVE = -1;
+    private final Object monitor = new Object();
+    private final Map<String, Integer> holdersByName = new HashMap<>();
+
+    /**
+     * Returns true iff all of the specified resources can be acquired right now.
+     *
+     * @param locks The resources.
+     * @return whether or not the resources are free.
+     */
+    public boolean isFree(ResourceLockSet locks) {
+        ObjectChecker.assertNonNull(locks);
+        synchronized (this.monitor) {
+            for (Map.Entry<String, Boolean> lock : locks.getExclusiveByName().entrySet()) {
+                Integer holders = this.holdersByName.get(lock.getKey());
+                if ((holders != null) && ((lock.getValue()) || (holders == EXCLUSIVE))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Acquires all of the specified resources on behalf of the given number of tests, which are dispatched together
+     * and hold the resources until the last of them is done. The resources must be free.
+     *
+     * @param locks The resources.
+     * @param numTests The number of tests the resources are acquired for.
+     * @return the grant to release the resources with.
+     */
+    public Grant acquire(ResourceLockSet locks, int numTests) {
+        ObjectChecker.assertPositive(numTests);
+        synchronized (this.monitor) {
+            if (!isFree(locks)) {
+                throw new IllegalStateException("resources are not free: " + locks);
+            }
+            for (Map.Entry<String, Boolean> lock : locks.getExclusiveByName().entrySet()) {
+                this.holdersByName.merge(lock.getKey(), lock.getValue() ? EXCLUSIVE : 1, Integer::sum);
+            }
+            return new Grant(this, locks, numTests);
+        }
+    }
+
+    /**
+     * Waits until some resource is released, or the timeout elapses.
+     *
+     * @param timeout The most time to wait.
+     * @param unit The unit of the timeout.
+     */
+    public void awaitRelease(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this.monitor) {
+            unit.timedWait(this.monitor, timeout);
+        }
+    }
+
+    private void release(ResourceLockSet locks) {
+        synchronized (this.monitor) {
+            for (Map.Entry<String, Boolean> lock : locks.getExclusiveByName().entrySet()) {
+                Integer holders = this.holdersByName.get(lock.getKey());
+                if ((holders == EXCLUSIVE) || (holders == 1)) {
+                    this.holdersByName.remove(lock.getKey());
+                } else {
+                    this.holdersByName.put(lock.getKey(), holders - 1);
+                }
+            }
+            this.monitor.notifyAll();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (this.monitor) {
+            return this.getClass().getSimpleName() + " { held: " + this.holdersByName.keySet() + " }";
+        }
+    }
+
+    /**
+     * The resources acquired for a group of tests, which are released once every one of the tests is done with them.
+     *
+     * This class is thread-safe.
+     */
+    public static final class Grant {
+        private final ResourceLockTable table;
+        private final ResourceLockSet locks;
+        private int numRemainingTests;
+
+        private Grant(ResourceLockTable table, ResourceLockSet locks, int numTests) {
+            this.table = table;
+            this.locks = locks;
+            this.numRemainingTests = numTests;
+        }
+
+        /**
+         * Marks one of the tests of this grant as done with the resources, and releases them once all of the tests are.
+         */
+        void release() {
+            synchronized (this) {
+                this.numRemainingTests--;
+                if (this.numRemainingTests != 0) {
+                    return;
+                }
+            }
+            this.table.release(this.locks);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return this.getClass().getSimpleName() + " { locks: " + this.locks + ", remaining tests: " + this.numRemainingTests + " }";
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package spin.core.execution;
+
+import spin.core.runner.TestSuiteDetails;
+import spin.core.util.ObjectChecker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of tests of the same class that is handed to an executor as a single unit, so that suites of many short tests
+ * do not pay for a queue operation per test. The executor runs the tests of a batch one after another, in order.
+ *
+ * An executor that runs its tests on test threads may run the tests of a batch at the same time, unless the batch is
+ * serial, in which case they run one after another on the executor's own thread.
+ *
+ * This class is immutable.
+ */
+public final class TestBatch {
+    public final Class<?> testClass;
+    public final TestSuiteDetails testSuiteDetails;
+    private final List<TestInfo> testInfos;
+    private final long predictedDurationNanos;
+    private final boolean isSerial;
+
+    private TestBatch(List<TestInfo> testInfos, boolean isSerial) {
+        this.testInfos = Collections.unmodifiableList(testInfos);
+        this.isSerial = isSerial;
+        this.testClass = testInfos.get(0).testClass;
+        this.testSuiteDetails = testInfos.get(0).testSuiteDetails;
+        long predictedDurationNanos = 0;
+        for (TestInfo testInfo : testInfos) {
+            predictedDurationNanos += testInfo.getPredictedDurationNanos();
+        }
+        this.predictedDurationNanos = predictedDurationNanos;
+    }
+
+    /**
+     * Constructs a new batch of the specified tests, which must all be of the same class and suite.
+     *
+     * @param testInfos The tests of the batch.
+     * @return the new batch.
+     */
+    public static TestBatch of(List<TestInfo> testInfos) {
+        assertSameClassAndSuite(testInfos);
+        return new TestBatch(new ArrayList<>(testInfos), false);
+    }
+
+    /**
+     * Constructs a new serial batch of the specified tests, which must all be of the same class and suite. The tests of
+     * a serial batch are never run at the same time as one another.
+     *
+     * @param testInfos The tests of the batch.
+     * @return the new batch.
+     */
+    public static TestBatch serial(List<TestInfo> testInfos) {
+        assertSameClassAndSuite(testInfos);
+        return new TestBatch(new ArrayList<>(testInfos), true);
+    }
+
+    private static void assertSameClassAndSuite(List<TestInfo> testInfos) {
+        ObjectChecker.assertNonNull(testInfos);
+        if (testInfos.isEmpty()) {
+            throw new IllegalArgumentException("testInfos must be non-empty.");
+        }
+        for (TestInfo testInfo : testInfos) {
+            if ((testInfo.testClass != testInfos.get(0).testClass) || (testInfo.testSuiteDetails != testInfos.get(0).testSuiteDetails)) {
+                throw new IllegalArgumentException("all tests of a batch must be of the same class and suite but found: " + testInfo);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new batch of the single specified test.
+     *
+     * @param testInfo The test.
+     * @return the new batch.
+     */
+    public static TestBatch of(TestInfo testInfo) {
+        ObjectChecker.assertNonNull(testInfo);
+        return new TestBatch(Collections.singletonList(testInfo), false);
+    }
+
+    public List<TestInfo> getTestInfos() {
+        return this.testInfos;
+    }
+
+    public boolean isSerial() {
+        return this.isSerial;
+    }
+
+    public int size() {
+        return this.testInfos.size();
+    }
+
+    /**
+     * Returns the sum of the predicted durations of the tests of this batch.
+     *
+     * @return the predicted duration in nanoseconds.
+     */
+    public long getPredictedDurationNanos() {
+        return this.predictedDurationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { class: " + this.testClass.getName() + ", num tests: " + this.testInfos.size() + (this.isSerial ? ", [serial] }" : " }");
+    }
+}
@@ -6,36 +6,67 @@ import spin.core.util.Logger;
 import spin.core.util.ThreadLocalPrintStream;
 import spin.core.util.ObjectChecker;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A class that executes tests.
  *
- * Tests can be loaded into this executor dynamically as {@link TestInfo} objects and this executor will place the
- * results into a queue that can be polled by a consumer.
+ * Tests can be loaded into this executor dynamically as {@link TestBatch}es and this executor will place the result of
+ * each test into a queue that can be polled by a consumer. The executor finishes the batch it has taken before it takes
+ * the next one, or exits.
+ *
+ * By default the executor runs its tests one at a time on its own thread. An executor created with {@link TestThreads}
+ * instead hands each test to a thread of its own and runs as many at once as the test threads allow, borrowing a pair of
+ * output captures for each running test. The tests of a serial batch are always run one at a time on the executor's own
+ * thread.
+ *
+ * An executor created with a {@link ForkedWorker} runs its tests one at a time in the worker's JVM rather than in this
+ * one, along with their class fixtures.
  */
 public final class TestExecutor implements Runnable {
     private static final Logger LOGGER = Logger.forClass(TestExecutor.class);
+    private static final long NOT_RUNNING = Long.MIN_VALUE;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
     private final Object monitor = new Object();
     private final CyclicBarrier barrier;
     private final PanicOnlyMonitor shutdownMonitor;
-    private final CloseableBlockingQueue<TestInfo> tests;
+    private final CloseableBlockingQueue<TestBatch> tests;
     private final CloseableBlockingQueue<TestResult> results;
     private final boolean writeToDb;
+    private final int maxInMemoryOutputBytes;
+    private final TestWatchdog watchdog;
+    private final TestThreads testThreads;
+    private final ForkedWorker worker;
+    private final OutputCapture stdoutCapture;
+    private final OutputCapture stderrCapture;
+    private final Queue<OutputCapture> idleCaptures = new ConcurrentLinkedQueue<>();
+    private final Queue<TestInfo> batchInHand = new ConcurrentLinkedQueue<>();
     private volatile boolean isAlive = true;
+    private volatile boolean isBatchInHandSerial = false;
+    private volatile Thread thread = null;
+    private volatile long busyNanos = 0;
+    private volatile long currentTestStartNanos = NOT_RUNNING;
 
-    private TestExecutor(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, CloseableBlockingQueue<TestInfo> tests, CloseableBlockingQueue<TestResult> results, boolean writeToDb) {
-        ObjectChecker.assertNonNull(barrier, shutdownMonitor, tests, results);
+    private TestExecutor(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, CloseableBlockingQueue<TestBatch> tests, CloseableBlockingQueue<TestResult> results, boolean writeToDb, int maxInMemoryOutputBytes, TestWatchdog watchdog, TestThreads testThreads, ForkedWorker worker) {
+        ObjectChecker.assertNonNull(shutdownMonitor, tests, results);
         this.barrier = barrier;
         this.shutdownMonitor = shutdownMonitor;
         this.tests = tests;
         this.results = results;
         this.writeToDb = writeToDb;
+        this.maxInMemoryOutputBytes = maxInMemoryOutputBytes;
+        this.watchdog = watchdog;
+        this.testThreads = testThreads;
+        this.worker = worker;
+        this.stdoutCapture = OutputCapture.withMaxInMemoryBytes(maxInMemoryOutputBytes);
+        this.stderrCapture = OutputCapture.withMaxInMemoryBytes(maxInMemoryOutputBytes);
     }
 
     /**
@@ -49,82 +80,351 @@ public final class TestExecutor implements Runnable {
      * @param tests The queue in which all incoming tests to be executed by this executor are submitted.
      * @param results The queue that all results are placed in when done by this executor.
      * @param writeToDb Whether or not database writes are enabled for result recording.
+     * @param maxInMemoryOutputBytes The most bytes of a test's stdout, and of its stderr, to hold in memory before the
+     *                               rest is spilled to disk.
+     * @param watchdog The watchdog that enforces the timeouts of the tests run by this executor.
+     * @param worker The forked worker to run the tests on, or null to run them in this JVM.
+     * @return the new executor.
+     */
+    public static TestExecutor withQueues(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, CloseableBlockingQueue<TestBatch> tests, CloseableBlockingQueue<TestResult> results, boolean writeToDb, int maxInMemoryOutputBytes, TestWatchdog watchdog, ForkedWorker worker) {
+        ObjectChecker.assertNonNull(barrier, watchdog);
+        return new TestExecutor(barrier, shutdownMonitor, tests, results, writeToDb, maxInMemoryOutputBytes, watchdog, null, worker);
+    }
+
+    /**
+     * Creates a new executor like {@link #withQueues(CyclicBarrier, PanicOnlyMonitor, CloseableBlockingQueue, CloseableBlockingQueue, boolean, int, TestWatchdog, ForkedWorker)}
+     * does, except that each test is run on one of the given test threads, as many at once as they allow.
+     */
+    static TestExecutor onTestThreads(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, CloseableBlockingQueue<TestBatch> tests, CloseableBlockingQueue<TestResult> results, boolean writeToDb, int maxInMemoryOutputBytes, TestWatchdog watchdog, TestThreads testThreads) {
+        ObjectChecker.assertNonNull(barrier, watchdog, testThreads);
+        return new TestExecutor(barrier, shutdownMonitor, tests, results, writeToDb, maxInMemoryOutputBytes, watchdog, testThreads, null);
+    }
+
+    /**
+     * Creates a new executor like {@link #withQueues(CyclicBarrier, PanicOnlyMonitor, CloseableBlockingQueue, CloseableBlockingQueue, boolean, int, TestWatchdog, ForkedWorker)}
+     * does, except that it does not wait on any barrier, since it is created once everything is already running.
+     */
+    public static TestExecutor startingLate(PanicOnlyMonitor shutdownMonitor, CloseableBlockingQueue<TestBatch> tests, CloseableBlockingQueue<TestResult> results, boolean writeToDb, int maxInMemoryOutputBytes, TestWatchdog watchdog, ForkedWorker worker) {
+        ObjectChecker.assertNonNull(watchdog);
+        return new TestExecutor(null, shutdownMonitor, tests, results, writeToDb, maxInMemoryOutputBytes, watchdog, null, worker);
+    }
+
+    /**
+     * Creates a new executor that takes over the queues of the specified executor, which has been abandoned by the
+     * {@link TestWatchdog} while stuck in a test, along with the tests of its batch that it had yet to run.
+     *
+     * The new executor does not wait on any barrier, since it is created once everything is already running. If the
+     * abandoned executor ran its tests on a forked worker, its worker is killed and the new executor gets one of its own.
+     *
+     * @param abandoned The executor being replaced.
      * @return the new executor.
      */
-    public static TestExecutor withQueues(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, CloseableBlockingQueue<TestInfo> tests, CloseableBlockingQueue<TestResult> results, boolean writeToDb) {
-        return new TestExecutor(barrier, shutdownMonitor, tests, results, writeToDb);
+    public static TestExecutor replacing(TestExecutor abandoned) {
+        ObjectChecker.assertNonNull(abandoned);
+        TestExecutor replacement = new TestExecutor(null, abandoned.shutdownMonitor, abandoned.tests, abandoned.results, abandoned.writeToDb, abandoned.maxInMemoryOutputBytes, abandoned.watchdog, abandoned.testThreads,
+                (abandoned.worker == null) ? null : abandoned.worker.replace());
+        TestInfo testInfo;
+        while ((testInfo = abandoned.batchInHand.poll()) != null) {
+            replacement.batchInHand.add(testInfo);
+        }
+        replacement.isBatchInHandSerial = abandoned.isBatchInHandSerial;
+        return replacement;
     }
 
     @Override
     public void run() {
+        this.thread = Thread.currentThread();
+        boolean wasReplaced = false;
         try {
-            LOGGER.log("Waiting for other threads to hit barrier.");
-            this.barrier.await();
+            if (this.barrier != null) {
+                LOGGER.log("Waiting for other threads to hit barrier.");
+                this.barrier.await();
+            }
             LOGGER.log(Thread.currentThread().getName() + " thread started.");
 
-            while (this.isAlive) {
-                LOGGER.log("[" + Thread.currentThread().getName() + "] Waiting for new test method to be loaded...");
-                TestInfo testInfo = null;
-                try {
-                    testInfo = this.tests.poll(5, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-
-                if (testInfo != null) {
-                    LOGGER.log("[" + Thread.currentThread().getName() + "] Found new test method to run.");
-                    TestResult result;
-
-                    // Capture the stdout & stderr of the test method on its own private stream so we can publish it later.
-                    ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-                    ByteArrayOutputStream stderr = new ByteArrayOutputStream();
-                    ((ThreadLocalPrintStream) System.out).setStream(new PrintStream(new BufferedOutputStream(stdout)));
-                    ((ThreadLocalPrintStream) System.err).setStream(new PrintStream(new BufferedOutputStream(stderr)));
-
-                    long startTime = System.nanoTime();
+            while ((this.isAlive) || (!this.batchInHand.isEmpty())) {
+                TestInfo testInfo = this.batchInHand.poll();
+                if (testInfo == null) {
+                    LOGGER.log("[" + Thread.currentThread().getName() + "] Waiting for new test batch to be loaded...");
+                    TestBatch batch = null;
                     try {
-                        Object instance = testInfo.testClass.getConstructor().newInstance();
-                        testInfo.method.invoke(instance);
-                        long endTime = System.nanoTime();
-
-                        String capturedStdout = closeAndCaptureStream(true, stdout);
-                        String capturedStderr = closeAndCaptureStream(false, stderr);
-
-                        result = (this.writeToDb)
-                                ? TestResult.withDatabaseId(testInfo.testClass, testInfo.method, true, endTime - startTime, capturedStdout, capturedStderr, testInfo.testSuiteDetails, testInfo.sessionContext, testInfo.getTestSuiteDatabaseId(), testInfo.getTestClassDatabaseId())
-                                : TestResult.result(testInfo.testClass, testInfo.method, true, endTime - startTime, capturedStdout, capturedStderr, testInfo.testSuiteDetails, testInfo.sessionContext);
-
-                    } catch (Exception e) {
-                        long endTime = System.nanoTime();
-
-                        String capturedStdout = closeAndCaptureStream(true, stdout);
-                        String capturedStderr = closeAndCaptureStream(false, stderr);
+                        batch = this.tests.poll(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
 
-                        result = (this.writeToDb)
-                                ? TestResult.withDatabaseId(testInfo.testClass, testInfo.method, false, endTime - startTime, capturedStdout, capturedStderr, testInfo.testSuiteDetails, testInfo.sessionContext, testInfo.getTestSuiteDatabaseId(), testInfo.getTestClassDatabaseId())
-                                : TestResult.result(testInfo.testClass, testInfo.method, false, endTime - startTime, capturedStdout, capturedStderr, testInfo.testSuiteDetails, testInfo.sessionContext);
+                    if (batch != null) {
+                        this.isBatchInHandSerial = batch.isSerial();
+                        this.batchInHand.addAll(batch.getTestInfos());
                     }
+                    continue;
+                }
 
-                    synchronized (this.monitor) {
-                        try {
-                            if (!this.results.add(result)) {
-                                throw new IllegalStateException("unable to submit result: queue is closed.");
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
+                if ((this.testThreads == null) || (this.isBatchInHandSerial)) {
+                    if (!runAndPublish(testInfo, this.stdoutCapture, this.stderrCapture)) {
+                        // We have been replaced by another executor, so we are done.
+                        wasReplaced = true;
+                        break;
                     }
-                    LOGGER.log("[" + Thread.currentThread().getName() + "] Completed running test " + testInfo.method.getName() + " in class " + testInfo.testClass.getName());
+                } else {
+                    dispatchToTestThread(testInfo);
                 }
             }
         } catch (Throwable t) {
             this.shutdownMonitor.panic(t);
         } finally {
             this.isAlive = false;
+            // The test threads of an executor that has been replaced are its replacement's now.
+            if ((this.testThreads != null) && (!wasReplaced)) {
+                this.testThreads.shutdown();
+            }
+            if (this.worker != null) {
+                this.worker.shutdown();
+            }
             LOGGER.log("[" + Thread.currentThread().getName() + "] Exiting.");
         }
     }
 
+    /**
+     * Runs the specified test on the calling thread, capturing its output into the given captures, and publishes its
+     * result. Returns false iff the test timed out and this executor was abandoned by the watchdog while running it.
+     *
+     * If the test belongs to a share of a class with a class fixture, the fixture is set up before the test if it is
+     * the first of the share to run, and torn down after it if it is the last. The fixture's output is captured along
+     * with the test's, and the test fails if the fixture does. The fixture is not subject to the test's timeout. If this
+     * executor runs its tests on a forked worker, the worker runs the fixture instead and is told when to tear it down,
+     * and there the fixture does count against the timeout of the test it is run with.
+     */
+    private boolean runAndPublish(TestInfo testInfo, OutputCapture stdoutCapture, OutputCapture stderrCapture) {
+        LOGGER.log("[" + Thread.currentThread().getName() + "] Found new test method to run.");
+        ClassFixture.Share share = testInfo.getClassFixtureShare();
+
+        // A test whose suite has had as many failures as it allows is skipped. A test whose class failed its static
+        // initialization cannot be run, it fails with that error instead.
+        TestResult result;
+        if (testInfo.testSuiteDetails.isFailureLimitReached()) {
+            finishShareOutsideOfTest(share);
+            result = createSkippedResult(testInfo);
+        } else if (testInfo.getClassInitializationFailure() == null) {
+            // Capture the stdout & stderr of the test method on private streams so we can publish it later.
+            ((ThreadLocalPrintStream) System.out).setStream(stdoutCapture.stream);
+            ((ThreadLocalPrintStream) System.err).setStream(stderrCapture.stream);
+            boolean runsShare = (share != null) && (this.worker == null);
+            Throwable setUpFailure = (runsShare) ? share.setUp() : null;
+
+            TestWatchdog.Ticket ticket = (testInfo.getTimeoutMillis() > 0) ? this.watchdog.watch(this, testInfo, testInfo.getTimeoutMillis()) : null;
+            long startNanos = System.nanoTime();
+            if (this.testThreads == null) {
+                this.currentTestStartNanos = startNanos;
+            }
+            boolean successful;
+            long durationNanos;
+            long cpuTime;
+            if (this.worker == null) {
+                long startCpuTime = currentThreadCpuTime();
+                successful = (setUpFailure == null) && invokeTest(testInfo);
+                long endCpuTime = currentThreadCpuTime();
+                durationNanos = System.nanoTime() - startNanos;
+                cpuTime = ((startCpuTime < 0) || (endCpuTime < 0)) ? -1 : endCpuTime - startCpuTime;
+            } else {
+                boolean isLastOfShare = (share != null) && (share.finishForkedTest());
+                ForkedWorker.Outcome outcome = this.worker.run(testInfo, isLastOfShare, stdoutCapture.stream, stderrCapture.stream);
+                successful = outcome.successful;
+                durationNanos = outcome.durationNanos;
+                cpuTime = outcome.cpuNanos;
+            }
+            long endNanos = System.nanoTime();
+            if (this.testThreads == null) {
+                this.currentTestStartNanos = NOT_RUNNING;
+                this.busyNanos += endNanos - startNanos;
+            }
+            // The test has returned, so the watchdog stops watching it before the class fixture is torn down.
+            boolean isOnTime = (ticket == null) || (ticket.complete());
+
+            if (setUpFailure != null) {
+                System.err.println("Class fixture failed to set up:");
+                setUpFailure.printStackTrace();
+            }
+            // The watchdog has already given up the part in the share of a test that it abandoned.
+            Throwable tearDownFailure = ((runsShare) && ((isOnTime) || (!ticket.wasAbandoned()))) ? share.finishTest() : null;
+            if (tearDownFailure != null) {
+                System.err.println("Class fixture failed to tear down:");
+                tearDownFailure.printStackTrace();
+                successful = false;
+            }
+            CapturedOutput capturedStdout = restoreAndCaptureStream(true, stdoutCapture);
+            CapturedOutput capturedStderr = restoreAndCaptureStream(false, stderrCapture);
+
+            if (!isOnTime) {
+                // The test timed out and the watchdog has already published a result for it in our place.
+                LOGGER.log("[" + Thread.currentThread().getName() + "] Discarding result of timed out test " + testInfo.method.getName());
+                capturedStdout.discard();
+                capturedStderr.discard();
+                // The test is no longer running, so the tests it conflicts with may now run.
+                testInfo.releaseResourceLocks();
+                return !ticket.wasAbandoned();
+            }
+            result = createResult(testInfo, successful, durationNanos, cpuTime, capturedStdout, capturedStderr);
+        } else {
+            finishShareOutsideOfTest(share);
+            result = createResult(testInfo, false, 0, -1, CapturedOutput.EMPTY, CapturedOutput.ofString(stackTraceOf(testInfo.getClassInitializationFailure())));
+        }
+
+        testInfo.releaseResourceLocks();
+        if (!submitResult(result)) {
+            throw new IllegalStateException("unable to submit result: queue is closed.");
+        }
+        LOGGER.log("[" + Thread.currentThread().getName() + "] Completed running test " + testInfo.method.getName() + " in class " + testInfo.testClass.getName());
+        return true;
+    }
+
+    /**
+     * Marks a test that is not run as done with its share, if it has one. There is no test to report a failure to tear
+     * down the fixture against, so it is only logged.
+     */
+    private static void finishShareOutsideOfTest(ClassFixture.Share share) {
+        Throwable tearDownFailure = (share == null) ? null : share.finishTest();
+        if (tearDownFailure != null) {
+            LOGGER.log("[" + Thread.currentThread().getName() + "] Class fixture failed to tear down: " + stackTraceOf(tearDownFailure));
+        }
+    }
+
+    /**
+     * Waits for a permit and hands the specified test to a test thread, or drops it, and the rest of the batch in hand,
+     * if this executor is shut down first. The test thread gives the permit back once it is done with the test, unless
+     * the test never returned and the watchdog abandoned it, in which case the watchdog gives the permit back instead.
+     */
+    private void dispatchToTestThread(TestInfo testInfo) throws InterruptedException {
+        while (!this.testThreads.tryAcquire(1, TimeUnit.SECONDS)) {
+            if (!this.isAlive) {
+                // The rest of the batch is dropped along with this test rather than waited on one test at a time.
+                this.batchInHand.clear();
+                return;
+            }
+        }
+
+        this.testThreads.execute(() -> {
+            OutputCapture stdoutCapture = borrowCapture();
+            OutputCapture stderrCapture = borrowCapture();
+            boolean wasAbandoned = false;
+            try {
+                wasAbandoned = !runAndPublish(testInfo, stdoutCapture, stderrCapture);
+            } catch (Throwable t) {
+                this.shutdownMonitor.panic(t);
+            } finally {
+                if (!wasAbandoned) {
+                    this.idleCaptures.add(stdoutCapture);
+                    this.idleCaptures.add(stderrCapture);
+                    this.testThreads.release();
+                }
+            }
+        });
+    }
+
+    private OutputCapture borrowCapture() {
+        OutputCapture capture = this.idleCaptures.poll();
+        return (capture != null) ? capture : OutputCapture.withMaxInMemoryBytes(this.maxInMemoryOutputBytes);
+    }
+
+    /**
+     * Returns true iff the specified thread, on which this executor is running a test, is one of its test threads rather
+     * than the executor's own thread.
+     */
+    boolean isTestThread(Thread thread) {
+        return (this.testThreads != null) && (thread != this.thread);
+    }
+
+    /**
+     * Interrupts the test that the specified thread is running on this executor or, if this executor runs its tests on a
+     * forked worker, kills the worker, which fails the test. This is invoked by the {@link TestWatchdog}.
+     */
+    void interruptTest(Thread thread) {
+        if (this.worker != null) {
+            this.worker.kill();
+        } else {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Gives back the permit held by a test that never returned from running on a test thread, which the watchdog has
+     * abandoned. This is invoked by the {@link TestWatchdog}.
+     */
+    void releaseAbandonedTestThread() {
+        this.testThreads.release();
+    }
+
+    /**
+     * Gives up the part of the specified test in its share of the class fixture, if it has one that this executor runs,
+     * since the test never returned and the watchdog abandoned it. This is invoked by the {@link TestWatchdog}.
+     */
+    void abandonShareOf(TestInfo testInfo) {
+        ClassFixture.Share share = testInfo.getClassFixtureShare();
+        if ((share != null) && (this.worker == null)) {
+            share.abandonTest();
+        }
+    }
+
+    /**
+     * Publishes a failed result for the specified test, which timed out while this executor was running it, on behalf
+     * of this executor. This is invoked by the {@link TestWatchdog}.
+     */
+    void publishTimeoutResult(TestInfo testInfo, long durationNanos, String message) {
+        // The test may still be running, so it keeps its resources until the watchdog sees it return or gives up on it.
+        if (!submitResult(createResult(testInfo, false, durationNanos, -1, CapturedOutput.EMPTY, CapturedOutput.ofString(message)))) {
+            LOGGER.log("Unable to submit timeout result: queue is closed.");
+        }
+    }
+
+    /**
+     * Publishes a skipped result for the specified test, which was taken off this executor's queue before it was run
+     * since its suite reached its failure limit.
+     */
+    void publishSkippedResult(TestInfo testInfo) {
+        testInfo.releaseResourceLocks();
+        if (!submitResult(createSkippedResult(testInfo))) {
+            LOGGER.log("Unable to submit skipped result: queue is closed.");
+        }
+    }
+
+    /**
+     * Publishes a cached result for the specified test, which was never run since it passed before with the same inputs.
+     */
+    void publishCachedResult(TestInfo testInfo) {
+        TestResult result = (this.writeToDb)
+                ? TestResult.cached(testInfo.testClass, testInfo.method, testInfo.testSuiteDetails, testInfo.sessionContext, testInfo.getTestSuiteDatabaseId(), testInfo.getTestClassDatabaseId())
+                : TestResult.cached(testInfo.testClass, testInfo.method, testInfo.testSuiteDetails, testInfo.sessionContext, -1, -1);
+        if (!submitResult(result)) {
+            LOGGER.log("Unable to submit cached result: queue is closed.");
+        }
+    }
+
+    /**
+     * Publishes the result of the specified test as reported by another daemon that ran it, which happens for the tests
+     * of a suite whose shards are run by other daemons. A skipped test is published as such and its other details are
+     * ignored.
+     */
+    void publishRemoteResult(TestInfo testInfo, boolean skipped, boolean successful, long durationNanos, long cpuNanos, String stdout, String stderr) {
+        TestResult result = skipped
+                ? createSkippedResult(testInfo)
+                : createResult(testInfo, successful, durationNanos, cpuNanos, CapturedOutput.ofString(stdout), CapturedOutput.ofString(stderr));
+        if (!submitResult(result)) {
+            LOGGER.log("Unable to submit remote result: queue is closed.");
+        }
+    }
+
+    /**
+     * Returns the total time this executor has spent running tests, including the time spent so far on the test it is
+     * currently running, if any. This is not tracked for executors that run their tests on test threads, for which it
+     * is always zero.
+     *
+     * @return the time spent running tests in nanoseconds.
+     */
+    public long getBusyNanos() {
+        long startNanos = this.currentTestStartNanos;
+        return this.busyNanos + ((startNanos == NOT_RUNNING) ? 0 : System.nanoTime() - startNanos);
+    }
+
     /**
      * Shuts down this executor.
      */
@@ -141,27 +441,89 @@ public final class TestExecutor implements Runnable {
     }
 
     /**
-     * If isStdout is true then the stream captures stdout otherwise it captures stderr.
-     *
-     * This method will flush the stream, return its contents as a UTF-8 String, then close the stream and restore the
-     * {@link ThreadLocalPrintStream} back to its initial value if and only if the given stream is non-null.
-     *
-     * If the given stream is null then nothing happens and this method simply returns an empty string.
+     * Invokes the specified test and returns true iff it passed.
+     */
+    private static boolean invokeTest(TestInfo testInfo) {
+        try {
+            if (testInfo.getSharedInstance() == null) {
+                testInfo.invoker.invoke();
+            } else {
+                testInfo.invoker.invoke(testInfo.getSharedInstance());
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds the result to the results queue and returns true, or returns false if the queue is closed.
      *
-     * ASSUMPTION: the given stream is the stream that the {@link ThreadLocalPrintStream} injected into {@link System#err}/{@link System#out}
-     * is redirecting to.
+     * An interrupt while waiting for room in the queue does not drop the result, since the suite would then never
+     * complete. The wait carries on and the interrupt is restored once the result is added.
      */
-    private static String closeAndCaptureStream(boolean isStdout, ByteArrayOutputStream stream) {
-        String output = "";
+    private boolean submitResult(TestResult result) {
+        boolean wasInterrupted = false;
+        try {
+            synchronized (this.monitor) {
+                while (true) {
+                    try {
+                        return this.results.add(result);
+                    } catch (InterruptedException e) {
+                        wasInterrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (wasInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
-        if (stream != null) {
-            ThreadLocalPrintStream threadLocalOut = (ThreadLocalPrintStream) ((isStdout) ? System.out : System.err);
-            threadLocalOut.flush();
-            output = new String(stream.toByteArray(), StandardCharsets.UTF_8);
-            threadLocalOut.close();
-            threadLocalOut.restoreInitialStream();
+    private TestResult createResult(TestInfo testInfo, boolean successful, long duration, long cpuTime, CapturedOutput stdout, CapturedOutput stderr) {
+        return (this.writeToDb)
+                ? TestResult.withDatabaseId(testInfo.testClass, testInfo.method, successful, duration, cpuTime, stdout, stderr, testInfo.testSuiteDetails, testInfo.sessionContext, testInfo.getTestSuiteDatabaseId(), testInfo.getTestClassDatabaseId())
+                : TestResult.result(testInfo.testClass, testInfo.method, successful, duration, cpuTime, stdout, stderr, testInfo.testSuiteDetails, testInfo.sessionContext);
+    }
+
+    private TestResult createSkippedResult(TestInfo testInfo) {
+        return (this.writeToDb)
+                ? TestResult.skipped(testInfo.testClass, testInfo.method, testInfo.testSuiteDetails, testInfo.sessionContext, testInfo.getTestSuiteDatabaseId(), testInfo.getTestClassDatabaseId())
+                : TestResult.skipped(testInfo.testClass, testInfo.method, testInfo.testSuiteDetails, testInfo.sessionContext, -1, -1);
+    }
+
+    /**
+     * Returns the CPU time used by the calling thread so far, or -1 if it cannot be measured, as is the case for virtual
+     * threads.
+     */
+    private static long currentThreadCpuTime() {
+        try {
+            return (THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()) ? THREADS.getCurrentThreadCpuTime() : -1;
+        } catch (UnsupportedOperationException e) {
+            return -1;
         }
+    }
+
+    private static String stackTraceOf(Throwable error) {
+        StringWriter stackTrace = new StringWriter();
+        error.printStackTrace(new PrintWriter(stackTrace));
+        return stackTrace.toString();
+    }
 
-        return output;
+    /**
+     * If isStdout is true then the capture is of stdout otherwise it is of stderr.
+     *
+     * This method will restore the {@link ThreadLocalPrintStream} back to its initial value and return everything the
+     * test wrote into the given capture, leaving the capture empty and ready for the next test. The capture's stream is
+     * reused and so is not closed.
+     *
+     * ASSUMPTION: the given capture's stream is the stream that the {@link ThreadLocalPrintStream} injected into {@link System#err}/{@link System#out}
+     * is redirecting to.
+     */
+    private static CapturedOutput restoreAndCaptureStream(boolean isStdout, OutputCapture capture) {
+        ThreadLocalPrintStream threadLocalOut = (ThreadLocalPrintStream) ((isStdout) ? System.out : System.err);
+        threadLocalOut.restoreInitialStream();
+        return capture.takeCapturedOutput();
     }
 }
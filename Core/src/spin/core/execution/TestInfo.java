@@ -4,22 +4,33 @@ import spin.core.server.session.RequestSessionContext;
 import spin.core.runner.TestSuiteDetails;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * A class that holds basic information about a test. The test method itself, the class the test is declared in as well
- * as the suite details for the test suite that this test is apart of.
+ * A class that holds basic information about a test. The test method itself, the class the test is declared in, the
+ * invoker used to run it as well as the suite details for the test suite that this test is apart of.
  */
 public final class TestInfo {
     public final Class<?> testClass;
     public final Method method;
+    public final TestInvoker invoker;
     public final TestSuiteDetails testSuiteDetails;
     public final RequestSessionContext sessionContext;
     private int testSuiteDatabaseId;
     private int testClassDatabaseId;
+    private Throwable classInitializationFailure = null;
+    private long timeoutMillis = 0;
+    private boolean isIoBound = false;
+    private long predictedDurationNanos = 0;
+    private ClassFixture.Share classFixtureShare = null;
+    private TestInvoker.SharedInstance sharedInstance = null;
+    private ResourceLockSet resourceLocks = ResourceLockSet.EMPTY;
+    private final AtomicReference<ResourceLockTable.Grant> resourceLockGrant = new AtomicReference<>();
 
-    public TestInfo(Class<?> testClass, Method method, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext) {
+    public TestInfo(Class<?> testClass, Method method, TestInvoker invoker, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext) {
         this.testClass = testClass;
         this.method = method;
+        this.invoker = invoker;
         this.testSuiteDetails = testSuiteDetails;
         this.sessionContext = sessionContext;
     }
@@ -40,6 +51,122 @@ public final class TestInfo {
         return this.testSuiteDatabaseId;
     }
 
+    /**
+     * Marks the class of this test as having failed its static initialization with the given error, so that the test is
+     * reported as failed without being run.
+     *
+     * @param failure The error thrown while initializing the test class.
+     */
+    public void setClassInitializationFailure(Throwable failure) {
+        this.classInitializationFailure = failure;
+    }
+
+    public Throwable getClassInitializationFailure() {
+        return this.classInitializationFailure;
+    }
+
+    /**
+     * Sets how long the test may run for before the {@link TestWatchdog} fails it, or zero if it may run indefinitely.
+     *
+     * @param timeoutMillis The timeout in milliseconds.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    /**
+     * Marks the test as spending most of its time blocked rather than on the CPU, so that it is run on the executor
+     * pool for blocking work if there is one.
+     *
+     * @param isIoBound Whether or not the test is I/O-bound.
+     */
+    public void setIoBound(boolean isIoBound) {
+        this.isIoBound = isIoBound;
+    }
+
+    public boolean isIoBound() {
+        return this.isIoBound;
+    }
+
+    /**
+     * Sets how long the test is predicted to take, from its earlier runs, or zero if there is no prediction.
+     *
+     * @param predictedDurationNanos The predicted duration in nanoseconds.
+     */
+    public void setPredictedDurationNanos(long predictedDurationNanos) {
+        this.predictedDurationNanos = predictedDurationNanos;
+    }
+
+    public long getPredictedDurationNanos() {
+        return this.predictedDurationNanos;
+    }
+
+    /**
+     * Sets the share of its class this test is dispatched in, whose class fixture is set up around the test, or null if
+     * its class has no class fixture.
+     *
+     * @param classFixtureShare The share of the class.
+     */
+    public void setClassFixtureShare(ClassFixture.Share classFixtureShare) {
+        this.classFixtureShare = classFixtureShare;
+    }
+
+    public ClassFixture.Share getClassFixtureShare() {
+        return this.classFixtureShare;
+    }
+
+    /**
+     * Sets the instance of its class this test is run on, which is shared with other tests of the class, or null if it
+     * is run on an instance of its own.
+     *
+     * @param sharedInstance The shared instance of the class.
+     */
+    public void setSharedInstance(TestInvoker.SharedInstance sharedInstance) {
+        this.sharedInstance = sharedInstance;
+    }
+
+    public TestInvoker.SharedInstance getSharedInstance() {
+        return this.sharedInstance;
+    }
+
+    /**
+     * Sets the shared resources this test uses, which must be free before it can be handed to an executor.
+     *
+     * @param resourceLocks The resources of the test.
+     */
+    public void setResourceLocks(ResourceLockSet resourceLocks) {
+        this.resourceLocks = resourceLocks;
+    }
+
+    public ResourceLockSet getResourceLocks() {
+        return this.resourceLocks;
+    }
+
+    /**
+     * Hands this test the grant of the resources it uses, to be released once it is done.
+     *
+     * @param grant The grant of the test's resources, which may be shared with the other tests of its batch.
+     */
+    public void setResourceLockGrant(ResourceLockTable.Grant grant) {
+        this.resourceLockGrant.set(grant);
+    }
+
+    /**
+     * Releases the resources held by this test, if any. This is invoked once the test has a result and is no longer
+     * running, whether it ran or was skipped. A test that timed out only releases its resources once it returns or its
+     * thread is abandoned. Releasing the resources of a test more than once has no effect.
+     */
+    void releaseResourceLocks() {
+        ResourceLockTable.Grant grant = this.resourceLockGrant.getAndSet(null);
+        if (grant != null) {
+            grant.release();
+        }
+    }
+
     @Override
     public String toString() {
         return this.getClass().getName() + " { class: " + this.testClass.getName() + ", method: " + this.method.getName() + " }";
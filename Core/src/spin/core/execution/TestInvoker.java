@@ -0,0 +1,215 @@
+package spin.core.execution;
+
+import spin.core.util.ObjectChecker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that constructs an instance of a test class and invokes a test method on it using method handles that are
+ * resolved once, rather than looking up the constructor and going through {@link Method#invoke(Object, Object...)} with
+ * all of its access checks and argument boxing for every single test.
+ *
+ * An invoker is first created for a test class, which resolves its constructor and its {@code @Before} and
+ * {@code @After} methods, and from that an invoker is created for each of its test methods so that all the tests of a
+ * class share the one set of handles. As in JUnit the {@code @After} methods are run even if a {@code @Before} method
+ * or the test failed, and every one of them is run even if one of them fails.
+ *
+ * Each test is normally run on a new instance of its class. The tests of a class whose instance is shared instead run
+ * on the one instance of a {@link SharedInstance}, which is constructed by whichever of them runs first.
+ *
+ * The invoker behaves like reflection does: anything thrown by the constructor or the test is wrapped in an
+ * {@link InvocationTargetException}, and if the constructor or method could not be resolved the error is thrown when the
+ * test is invoked rather than when the invoker is created, so that it is reported against the test.
+ *
+ * This class is immutable.
+ */
+public final class TestInvoker {
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType TEST_METHOD_TYPE = MethodType.methodType(void.class, Object.class);
+    private final Class<?> testClass;
+    private final MethodHandle constructor;
+    private final List<MethodHandle> setUpMethods;
+    private final List<MethodHandle> tearDownMethods;
+    private final MethodHandle testMethod;
+    private final ReflectiveOperationException lookupError;
+
+    private TestInvoker(Class<?> testClass, MethodHandle constructor, List<MethodHandle> setUpMethods, List<MethodHandle> tearDownMethods, MethodHandle testMethod, ReflectiveOperationException lookupError) {
+        this.testClass = testClass;
+        this.constructor = constructor;
+        this.setUpMethods = setUpMethods;
+        this.tearDownMethods = tearDownMethods;
+        this.testMethod = testMethod;
+        this.lookupError = lookupError;
+    }
+
+    /**
+     * Resolves the public no-argument constructor and the test fixture methods of the specified test class and returns
+     * an invoker for the class, from which invokers for each of its test methods can be created.
+     *
+     * @param testClass The test class.
+     * @return the class invoker.
+     */
+    public static TestInvoker forClass(Class<?> testClass) {
+        ObjectChecker.assertNonNull(testClass);
+        try {
+            MethodHandle constructor = MethodHandles.publicLookup().findConstructor(testClass, MethodType.methodType(void.class));
+            List<MethodHandle> setUpMethods = asTestMethodType(FixtureMethods.resolve(testClass, org.junit.Before.class, false, true));
+            List<MethodHandle> tearDownMethods = asTestMethodType(FixtureMethods.resolve(testClass, org.junit.After.class, false, false));
+            return new TestInvoker(testClass, constructor.asType(CONSTRUCTOR_TYPE), setUpMethods, tearDownMethods, null, null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return new TestInvoker(testClass, null, Collections.emptyList(), Collections.emptyList(), null, e);
+        }
+    }
+
+    /**
+     * Returns a new invoker for the specified test method of this invoker's class, sharing this invoker's constructor.
+     *
+     * @param method The test method.
+     * @return the test invoker.
+     */
+    public TestInvoker forMethod(Method method) {
+        ObjectChecker.assertNonNull(method);
+        if (method.getDeclaringClass() != this.testClass) {
+            throw new IllegalArgumentException("method " + method.getName() + " is not declared in " + this.testClass.getName());
+        }
+        if (this.lookupError != null) {
+            return this;
+        }
+
+        try {
+            MethodHandle testMethod = MethodHandles.publicLookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                testMethod = MethodHandles.dropArguments(testMethod, 0, Object.class);
+            }
+            return new TestInvoker(this.testClass, this.constructor, this.setUpMethods, this.tearDownMethods, testMethod.asType(TEST_METHOD_TYPE), null);
+        } catch (IllegalAccessException e) {
+            return new TestInvoker(this.testClass, this.constructor, this.setUpMethods, this.tearDownMethods, null, e);
+        }
+    }
+
+    /**
+     * Returns a new, not yet constructed, instance of the test class to be shared by tests of the class.
+     *
+     * @return the shared instance.
+     */
+    public SharedInstance newSharedInstance() {
+        return new SharedInstance(this);
+    }
+
+    /**
+     * Constructs a new instance of the test class and invokes the test method on it, surrounded by the test fixture.
+     */
+    public void invoke() throws ReflectiveOperationException {
+        assertResolved();
+        invokeOn(construct());
+    }
+
+    /**
+     * Invokes the test method on the specified shared instance of the test class, surrounded by the test fixture,
+     * constructing the instance first if no test has done so yet.
+     *
+     * @param sharedInstance The shared instance.
+     */
+    public void invoke(SharedInstance sharedInstance) throws ReflectiveOperationException {
+        ObjectChecker.assertNonNull(sharedInstance);
+        assertResolved();
+        invokeOn(sharedInstance.get());
+    }
+
+    private void assertResolved() throws ReflectiveOperationException {
+        if (this.lookupError != null) {
+            throw this.lookupError;
+        }
+        if (this.testMethod == null) {
+            throw new IllegalStateException("Cannot invoke: no test method has been resolved for " + this.testClass.getName());
+        }
+    }
+
+    private Object construct() throws InvocationTargetException {
+        try {
+            return (Object) this.constructor.invokeExact();
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    private void invokeOn(Object instance) throws InvocationTargetException {
+        Throwable failure = null;
+        try {
+            for (MethodHandle setUpMethod : this.setUpMethods) {
+                setUpMethod.invokeExact(instance);
+            }
+            this.testMethod.invokeExact(instance);
+        } catch (Throwable t) {
+            failure = t;
+        }
+        for (MethodHandle tearDownMethod : this.tearDownMethods) {
+            try {
+                tearDownMethod.invokeExact(instance);
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+        if (failure != null) {
+            throw new InvocationTargetException(failure);
+        }
+    }
+
+    private static List<MethodHandle> asTestMethodType(List<MethodHandle> methods) {
+        List<MethodHandle> testMethods = new ArrayList<>(methods.size());
+        for (MethodHandle method : methods) {
+            testMethods.add(method.asType(TEST_METHOD_TYPE));
+        }
+        return testMethods;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { class: " + this.testClass.getName() + (this.lookupError == null ? " }" : ", [unresolved] }");
+    }
+
+    /**
+     * An instance of a test class that is constructed once, by the first test to run on it, and then reused by the tests
+     * that follow. If constructing it fails, every test that runs on it fails with the same error.
+     *
+     * This class is thread-safe.
+     */
+    public static final class SharedInstance {
+        private final TestInvoker invoker;
+        private Object instance = null;
+        private InvocationTargetException constructionFailure = null;
+
+        private SharedInstance(TestInvoker invoker) {
+            this.invoker = invoker;
+        }
+
+        private synchronized Object get() throws InvocationTargetException {
+            if ((this.instance == null) && (this.constructionFailure == null)) {
+                try {
+                    this.instance = this.invoker.construct();
+                } catch (InvocationTargetException e) {
+                    this.constructionFailure = e;
+                }
+            }
+            if (this.constructionFailure != null) {
+                throw this.constructionFailure;
+            }
+            return this.instance;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return this.getClass().getSimpleName() + " { class: " + this.invoker.testClass.getName() + (this.instance == null ? " }" : ", [constructed] }");
+        }
+    }
+}
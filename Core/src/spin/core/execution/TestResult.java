@@ -9,7 +9,11 @@ import java.lang.reflect.Method;
  * The result of running a test.
  *
  * A test result has the test method reference itself, the class in which the test is defined, whether or not the test
- * was successful as well as the duration in nanoseconds the test took to execute.
+ * was successful, the duration in nanoseconds the test took to execute and the CPU time it used, if that could be
+ * measured, as well as whatever the test wrote to stdout and stderr. A test that was skipped, because its suite reached
+ * its failure limit before the test was run, has a result that is neither successful nor failed. A test that was not
+ * run because it passed before with the same inputs, according to the result cache, has a cached result that counts as
+ * successful.
  *
  * This result also holds onto a global {@link TestSuiteDetails} object that holds live information about the test suite
  * this test belongs to so that the suite can be tracked throughout the system.
@@ -18,19 +22,25 @@ public final class TestResult {
     public final Class<?> testClass;
     public final Method testMethod;
     public final boolean successful;
+    public final boolean skipped;
+    public final boolean cached;
     public final long durationNanos;
-    public final String stdout;
-    public final String stderr;
+    public final long cpuNanos;
+    public final CapturedOutput stdout;
+    public final CapturedOutput stderr;
     public final TestSuiteDetails testSuiteDetails;
     public final RequestSessionContext sessionContext;
     public final int testSuiteDbId;
     public final int testClassDbId;
 
-    private TestResult(Class<?> testClass, Method testMethod, boolean successful, long durationNanos, String stdout, String stderr, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext, int testSuiteDbId, int testClassDbId) {
+    private TestResult(Class<?> testClass, Method testMethod, boolean successful, boolean skipped, boolean cached, long durationNanos, long cpuNanos, CapturedOutput stdout, CapturedOutput stderr, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext, int testSuiteDbId, int testClassDbId) {
         this.testClass = testClass;
         this.testMethod = testMethod;
         this.successful = successful;
+        this.skipped = skipped;
+        this.cached = cached;
         this.durationNanos = durationNanos;
+        this.cpuNanos = cpuNanos;
         this.stdout = stdout;
         this.stderr = stderr;
         this.testSuiteDetails = testSuiteDetails;
@@ -39,16 +49,24 @@ public final class TestResult {
         this.testClassDbId = testClassDbId;
     }
 
-    static TestResult withDatabaseId(Class<?> testClass, Method testMethod, boolean successful, long durationNanos, String stdout, String stderr, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext, int testSuiteDbId, int testClassDbId) {
-        return new TestResult(testClass, testMethod, successful, durationNanos, stdout, stderr, testSuiteDetails, sessionContext, testSuiteDbId, testClassDbId);
+    static TestResult withDatabaseId(Class<?> testClass, Method testMethod, boolean successful, long durationNanos, long cpuNanos, CapturedOutput stdout, CapturedOutput stderr, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext, int testSuiteDbId, int testClassDbId) {
+        return new TestResult(testClass, testMethod, successful, false, false, durationNanos, cpuNanos, stdout, stderr, testSuiteDetails, sessionContext, testSuiteDbId, testClassDbId);
     }
 
-    static TestResult result(Class<?> testClass, Method testMethod, boolean successful, long durationNanos, String stdout, String stderr, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext) {
-        return new TestResult(testClass, testMethod, successful, durationNanos, stdout, stderr, testSuiteDetails, sessionContext, -1, -1);
+    static TestResult result(Class<?> testClass, Method testMethod, boolean successful, long durationNanos, long cpuNanos, CapturedOutput stdout, CapturedOutput stderr, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext) {
+        return new TestResult(testClass, testMethod, successful, false, false, durationNanos, cpuNanos, stdout, stderr, testSuiteDetails, sessionContext, -1, -1);
+    }
+
+    static TestResult skipped(Class<?> testClass, Method testMethod, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext, int testSuiteDbId, int testClassDbId) {
+        return new TestResult(testClass, testMethod, false, true, false, 0, -1, CapturedOutput.EMPTY, CapturedOutput.EMPTY, testSuiteDetails, sessionContext, testSuiteDbId, testClassDbId);
+    }
+
+    static TestResult cached(Class<?> testClass, Method testMethod, TestSuiteDetails testSuiteDetails, RequestSessionContext sessionContext, int testSuiteDbId, int testClassDbId) {
+        return new TestResult(testClass, testMethod, true, false, true, 0, -1, CapturedOutput.EMPTY, CapturedOutput.EMPTY, testSuiteDetails, sessionContext, testSuiteDbId, testClassDbId);
     }
 
     @Override
     public String toString() {
-        return this.getClass().getName() + " { class: " + this.testClass.getName() + ", method: " + this.testMethod.getName() + ", successful: " + this.successful + " }";
+        return this.getClass().getName() + " { class: " + this.testClass.getName() + ", method: " + this.testMethod.getName() + ", successful: " + this.successful + (this.skipped ? ", [skipped] }" : (this.cached ? ", [cached] }" : " }"));
     }
 }
@@ -0,0 +1,132 @@
+package spin.core.execution;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads that tests are run on when every test is given a thread of its own, rather than all of the tests of an
+ * executor being run one after another on the executor's thread.
+ *
+ * Virtual threads are used whenever the runtime supports them, so that thousands of tests that spend their time blocked
+ * on sockets or sleeping can run at once without a thousand OS threads. They are looked up reflectively since Spin is
+ * compiled against an older release. On runtimes without virtual threads a cached pool of daemon platform threads is
+ * used instead.
+ *
+ * Either way a semaphore bounds the number of tests running at once: a permit must be acquired before a test is handed
+ * over and is released once the test is done with it.
+ *
+ * This class is thread-safe.
+ */
+final class TestThreads {
+    private static final Logger LOGGER = Logger.forClass(TestThreads.class);
+    private final Semaphore permits;
+    private final int maxConcurrentTests;
+    private final ThreadFactory virtualThreadFactory;
+    private final ExecutorService platformThreads;
+
+    private TestThreads(int maxConcurrentTests, ThreadFactory virtualThreadFactory) {
+        this.permits = new Semaphore(maxConcurrentTests);
+        this.maxConcurrentTests = maxConcurrentTests;
+        this.virtualThreadFactory = virtualThreadFactory;
+        this.platformThreads = (virtualThreadFactory == null) ? Executors.newCachedThreadPool(newPlatformThreadFactory()) : null;
+    }
+
+    /**
+     * Constructs new test threads that run at most the specified number of tests at once, on virtual threads if the
+     * runtime supports them and on pooled platform threads otherwise.
+     *
+     * @param maxConcurrentTests The most tests to run at once.
+     * @return the new test threads.
+     */
+    static TestThreads preferringVirtualThreads(int maxConcurrentTests) {
+        ObjectChecker.assertPositive(maxConcurrentTests);
+        ThreadFactory virtualThreadFactory = lookUpVirtualThreadFactory();
+        if (virtualThreadFactory == null) {
+            LOGGER.log("Virtual threads are not supported by this runtime, falling back to pooled platform threads.");
+        }
+        return new TestThreads(maxConcurrentTests, virtualThreadFactory);
+    }
+
+    /**
+     * Returns true iff tests are run on virtual threads.
+     */
+    boolean isVirtual() {
+        return this.virtualThreadFactory != null;
+    }
+
+    /**
+     * Acquires a permit to run a test, blocking for at most the given timeout. Returns true iff a permit was acquired.
+     */
+    boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.permits.tryAcquire(timeout, unit);
+    }
+
+    /**
+     * Releases a permit acquired with {@link #tryAcquire(long, TimeUnit)}.
+     */
+    void release() {
+        this.permits.release();
+    }
+
+    /**
+     * Runs the given task on a test thread. The caller must hold a permit on the task's behalf.
+     */
+    void execute(Runnable task) {
+        if (this.virtualThreadFactory != null) {
+            this.virtualThreadFactory.newThread(task).start();
+        } else {
+            this.platformThreads.execute(task);
+        }
+    }
+
+    /**
+     * Stops accepting new tasks. Tests that are already running are left to finish.
+     */
+    void shutdown() {
+        if (this.platformThreads != null) {
+            this.platformThreads.shutdown();
+        }
+    }
+
+    /**
+     * Returns a factory of virtual threads, or null if the runtime does not support them. The equivalent of
+     * {@code Thread.ofVirtual().name("TestThread-", 0).factory()}.
+     */
+    private static ThreadFactory lookUpVirtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtual.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "TestThread-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Either there are no virtual threads at all or they are a preview feature that is not enabled.
+            return null;
+        }
+    }
+
+    /**
+     * Platform test threads are daemons so that a test that never returns cannot keep the JVM alive after shutdown.
+     */
+    private static ThreadFactory newPlatformThreadFactory() {
+        AtomicInteger numThreads = new AtomicInteger(0);
+        return (Runnable task) -> {
+            Thread thread = new Thread(task, "TestThread-" + numThreads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { max concurrent tests: " + this.maxConcurrentTests + (isVirtual() ? ", [virtual] }" : ", [platform] }");
+    }
+}
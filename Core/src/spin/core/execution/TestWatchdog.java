@@ -0,0 +1,224 @@
+package spin.core.execution;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A class that enforces per-test timeouts on behalf of the {@link TestExecutor}s.
+ *
+ * An executor takes out a {@link Ticket} before running a test that has a timeout and completes the ticket once the
+ * test returns, before it tears down any class fixture, so that the fixture does not count against the test's timeout.
+ * If the timeout elapses first, the watchdog interrupts the executor's thread, or kills the forked worker the test is
+ * running on, and publishes a failed timeout result for the test in the executor's place, so that the suite can still
+ * complete. The executor discards its own result for the test whenever it does eventually return.
+ *
+ * A test may ignore the interrupt and never return at all. If the executor has still not returned a grace period after
+ * being interrupted, the watchdog abandons it: the executor will exit as soon as it returns, if ever, and the executor
+ * is handed to the replacement handler so that a new executor can take over its queues. If the executor runs its tests
+ * on {@link TestThreads} then only the test's thread is abandoned and the executor is given back the permit it held.
+ *
+ * A timed out test keeps the shared resources it holds until it returns or is abandoned, since it may still be using
+ * them in the meantime, and a test that conflicts with it must not run alongside it.
+ *
+ * This class is thread-safe.
+ */
+public final class TestWatchdog {
+    private static final Logger LOGGER = Logger.forClass(TestWatchdog.class);
+    private static final long REPLACEMENT_GRACE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private final Object monitor = new Object();
+    private final PriorityQueue<Ticket> deadlines = new PriorityQueue<>(Comparator.comparingLong((Ticket ticket) -> ticket.deadlineNanos));
+    private final Consumer<TestExecutor> replacementHandler;
+    private final Thread thread;
+    private volatile boolean isAlive = true;
+
+    private TestWatchdog(Consumer<TestExecutor> replacementHandler) {
+        this.replacementHandler = replacementHandler;
+        this.thread = new Thread(this::watch, "TestWatchdog");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Constructs a new watchdog that hands any executor it abandons to the given handler to be replaced.
+     *
+     * @param replacementHandler The handler that replaces abandoned executors.
+     * @return the new watchdog.
+     */
+    public static TestWatchdog withReplacementHandler(Consumer<TestExecutor> replacementHandler) {
+        ObjectChecker.assertNonNull(replacementHandler);
+        return new TestWatchdog(replacementHandler);
+    }
+
+    /**
+     * Starts the watchdog thread.
+     */
+    public void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Shuts down the watchdog thread. Outstanding tickets are no longer enforced.
+     */
+    public void shutdown() {
+        synchronized (this.monitor) {
+            this.isAlive = false;
+            this.deadlines.clear();
+            this.monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Starts watching the test about to be run by the given executor on the calling thread.
+     */
+    Ticket watch(TestExecutor executor, TestInfo testInfo, long timeoutMillis) {
+        ObjectChecker.assertPositive(timeoutMillis);
+        Ticket ticket = new Ticket(executor, testInfo, Thread.currentThread(), timeoutMillis);
+        synchronized (this.monitor) {
+            this.deadlines.add(ticket);
+            this.monitor.notifyAll();
+        }
+        return ticket;
+    }
+
+    private void unwatch(Ticket ticket) {
+        synchronized (this.monitor) {
+            this.deadlines.remove(ticket);
+        }
+    }
+
+    private void watch() {
+        LOGGER.log(Thread.currentThread().getName() + " thread started.");
+        try {
+            while (this.isAlive) {
+                Ticket expired = null;
+                synchronized (this.monitor) {
+                    Ticket next = this.deadlines.peek();
+                    if (next == null) {
+                        this.monitor.wait();
+                    } else {
+                        long remainingNanos = next.deadlineNanos - System.nanoTime();
+                        if (remainingNanos > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(this.monitor, remainingNanos);
+                        } else {
+                            expired = this.deadlines.poll();
+                        }
+                    }
+                }
+
+                if ((expired != null) && (this.isAlive)) {
+                    handleExpiry(expired);
+                }
+            }
+        } catch (InterruptedException e) {
+            // We are only ever interrupted during shutdown.
+        } finally {
+            LOGGER.log("Exiting.");
+        }
+    }
+
+    private void handleExpiry(Ticket ticket) {
+        if (ticket.state.compareAndSet(Ticket.RUNNING, Ticket.TIMED_OUT)) {
+            LOGGER.log("Test timed out: " + ticket.testInfo);
+            long elapsedNanos = System.nanoTime() - ticket.startNanos;
+            String stackTrace = describeStackOf(ticket.thread);
+            synchronized (ticket) {
+                // The test may have returned in the meantime, in which case the executor must not be interrupted.
+                if (ticket.state.get() == Ticket.TIMED_OUT) {
+                    ticket.executor.interruptTest(ticket.thread);
+                }
+            }
+            ticket.executor.publishTimeoutResult(ticket.testInfo, elapsedNanos, "Test timed out after " + ticket.timeoutMillis + " ms.\n" + stackTrace);
+
+            // Give the executor a grace period in which to return before we give up on it.
+            synchronized (this.monitor) {
+                ticket.deadlineNanos = System.nanoTime() + REPLACEMENT_GRACE_NANOS;
+                this.deadlines.add(ticket);
+            }
+        } else if (ticket.state.compareAndSet(Ticket.TIMED_OUT, Ticket.ABANDONED)) {
+            // The test may never return, so its resources and its part in its share of the class fixture are given up
+            // along with it.
+            ticket.testInfo.releaseResourceLocks();
+            ticket.executor.abandonShareOf(ticket.testInfo);
+            if (ticket.executor.isTestThread(ticket.thread)) {
+                // Only the test's own thread is stuck, the executor itself just needs its permit back.
+                LOGGER.log("Test thread did not return from timed out test, abandoning it: " + ticket.testInfo);
+                ticket.executor.releaseAbandonedTestThread();
+            } else {
+                LOGGER.log("Executor did not return from timed out test, replacing it: " + ticket.testInfo);
+                this.replacementHandler.accept(ticket.executor);
+            }
+        }
+    }
+
+    private static String describeStackOf(Thread thread) {
+        StringBuilder builder = new StringBuilder("Stack of " + thread.getName() + " at time of timeout:\n");
+        for (StackTraceElement element : thread.getStackTrace()) {
+            builder.append("\tat ").append(element).append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + (this.isAlive ? " { [running] }" : " { [shutdown] }");
+    }
+
+    /**
+     * A ticket for a single test being watched. The executor running the test must complete the ticket once the test
+     * returns to find out whether or not its result still counts.
+     */
+    final class Ticket {
+        private static final int RUNNING = 0;
+        private static final int COMPLETED = 1;
+        private static final int TIMED_OUT = 2;
+        private static final int RETURNED_LATE = 3;
+        private static final int ABANDONED = 4;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private final TestExecutor executor;
+        private final TestInfo testInfo;
+        private final Thread thread;
+        private final long timeoutMillis;
+        private final long startNanos;
+        private long deadlineNanos;
+
+        private Ticket(TestExecutor executor, TestInfo testInfo, Thread thread, long timeoutMillis) {
+            this.executor = executor;
+            this.testInfo = testInfo;
+            this.thread = thread;
+            this.timeoutMillis = timeoutMillis;
+            this.startNanos = System.nanoTime();
+            this.deadlineNanos = this.startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        /**
+         * Marks the test as having returned and returns true iff it did so before it timed out, in which case its
+         * result should be published as usual.
+         *
+         * If this method returns false then a timeout result was already published for the test, and if in addition
+         * {@link #wasAbandoned()} returns true then the executor has been replaced and must exit.
+         */
+        boolean complete() {
+            if (this.state.compareAndSet(RUNNING, COMPLETED)) {
+                unwatch(this);
+                return true;
+            }
+            synchronized (this) {
+                if (this.state.compareAndSet(TIMED_OUT, RETURNED_LATE)) {
+                    unwatch(this);
+                }
+                // Clear the interrupt we may have been sent so that it does not leak into the next test.
+                Thread.interrupted();
+            }
+            return false;
+        }
+
+        boolean wasAbandoned() {
+            return this.state.get() == ABANDONED;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package spin.core.execution;
+
+import spin.core.util.ObjectChecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The loop that a worker JVM launched by a {@link ForkedWorker} runs: it reads the suites and tests it is sent off of its
+ * stdin, runs each test and writes its result back to its stdout, until it is told to exit or its stdin is closed.
+ *
+ * The classes of each suite are loaded by a class loader of its own over the suite's classpath, which is closed once the
+ * next suite starts. The class fixture of a test class is set up before the first of its tests that is run in a row and
+ * torn down after the last test of its share, or as soon as a test of another class is run should that test never
+ * arrive because it was skipped. A test that runs on a shared instance shares it with the other tests of its class in
+ * the same suite.
+ *
+ * The output of each test is captured by replacing {@link System#out} and {@link System#err}, so the protocol has the
+ * worker's real stdout to itself. A test's captured output is capped so that it always fits into a single frame.
+ *
+ * This class is not thread-safe.
+ */
+public final class WorkerLoop {
+    private static final int MAX_OUTPUT_BYTES = 16 * 1024 * 1024;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private final DataInputStream fromParent;
+    private final DataOutputStream toParent;
+    private final PrintStream realStderr;
+    private final CappedBuffer stdout = new CappedBuffer(MAX_OUTPUT_BYTES);
+    private final CappedBuffer stderr = new CappedBuffer(MAX_OUTPUT_BYTES);
+    private final Map<Method, TestInvoker> invokers = new HashMap<>();
+    private final Map<Class<?>, TestInvoker.SharedInstance> sharedInstances = new HashMap<>();
+    private URLClassLoader suiteLoader = null;
+    private Class<?> fixtureClass = null;
+    private ClassFixture fixture = null;
+    private Throwable fixtureSetUpFailure = null;
+
+    private WorkerLoop(InputStream fromParent, OutputStream toParent, PrintStream realStderr) {
+        this.fromParent = new DataInputStream(new BufferedInputStream(fromParent));
+        this.toParent = new DataOutputStream(new BufferedOutputStream(toParent));
+        this.realStderr = realStderr;
+    }
+
+    /**
+     * Serves the parent on the given streams until it says to exit or closes the stream it writes to. The output of the
+     * tests is captured throughout, and {@link System#out} and {@link System#err} are restored before returning.
+     *
+     * @param fromParent The stream the parent writes to, usually this JVM's stdin.
+     * @param toParent The stream to write to the parent, usually this JVM's stdout.
+     */
+    public static void serve(InputStream fromParent, OutputStream toParent) throws IOException {
+        ObjectChecker.assertNonNull(fromParent, toParent);
+        PrintStream realStdout = System.out;
+        PrintStream realStderr = System.err;
+        WorkerLoop loop = new WorkerLoop(fromParent, toParent, realStderr);
+        System.setOut(new PrintStream(loop.stdout, true));
+        System.setErr(new PrintStream(loop.stderr, true));
+        try {
+            loop.run();
+        } finally {
+            System.setOut(realStdout);
+            System.setErr(realStderr);
+        }
+    }
+
+    private void run() throws IOException {
+        try {
+            while (true) {
+                WorkerProtocol.Frame frame;
+                try {
+                    frame = WorkerProtocol.readFrame(this.fromParent);
+                } catch (EOFException e) {
+                    // The parent has gone away.
+                    return;
+                }
+
+                if (frame.type == WorkerProtocol.SUITE) {
+                    startSuite(WorkerProtocol.readSuite(frame.payload));
+                } else if (frame.type == WorkerProtocol.TEST) {
+                    String className = frame.payload.readUTF();
+                    String methodName = frame.payload.readUTF();
+                    byte flags = frame.payload.readByte();
+                    runTest(className, methodName, flags);
+                } else if (frame.type == WorkerProtocol.EXIT) {
+                    return;
+                } else {
+                    throw new IOException("unexpected frame: " + frame);
+                }
+            }
+        } finally {
+            tearDownFixtureBetweenTests();
+            closeSuiteLoader();
+        }
+    }
+
+    private void startSuite(List<String> classpath) throws IOException {
+        tearDownFixtureBetweenTests();
+        closeSuiteLoader();
+        URL[] urls = new URL[classpath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = new URL(classpath.get(i));
+        }
+        this.suiteLoader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader());
+    }
+
+    private void runTest(String className, String methodName, byte flags) throws IOException {
+        long startNanos = System.nanoTime();
+        long startCpuTime = currentThreadCpuTime();
+        boolean successful = false;
+        try {
+            if (this.suiteLoader == null) {
+                throw new IllegalStateException("no suite has been started.");
+            }
+            Class<?> testClass = Class.forName(className, true, this.suiteLoader);
+            if (testClass != this.fixtureClass) {
+                tearDownFixtureBetweenTests();
+                setUpFixture(testClass);
+            }
+
+            if (this.fixtureSetUpFailure != null) {
+                System.err.println("Class fixture failed to set up:");
+                this.fixtureSetUpFailure.printStackTrace();
+            } else {
+                successful = invokeTest(testClass, testClass.getDeclaredMethod(methodName), (flags & WorkerProtocol.SHARED_INSTANCE_FLAG) != 0);
+            }
+        } catch (Throwable t) {
+            // The class could not be loaded or initialized, or the method could not be found.
+            t.printStackTrace();
+        }
+
+        if ((flags & WorkerProtocol.LAST_OF_SHARE_FLAG) != 0) {
+            Throwable tearDownFailure = tearDownFixture();
+            if (tearDownFailure != null) {
+                System.err.println("Class fixture failed to tear down:");
+                tearDownFailure.printStackTrace();
+                successful = false;
+            }
+        }
+        long endCpuTime = currentThreadCpuTime();
+        long durationNanos = System.nanoTime() - startNanos;
+
+        long cpuNanos = ((startCpuTime < 0) || (endCpuTime < 0)) ? -1 : endCpuTime - startCpuTime;
+        WorkerProtocol.FrameWriter result = WorkerProtocol.startResult(successful, durationNanos, cpuNanos, heapUsedAfterLastCollection(), Runtime.getRuntime().maxMemory());
+        this.stdout.drainTo(result.payload);
+        this.stderr.drainTo(result.payload);
+        result.writeTo(this.toParent);
+    }
+
+    private boolean invokeTest(Class<?> testClass, Method method, boolean useSharedInstance) {
+        TestInvoker invoker = this.invokers.get(method);
+        if (invoker == null) {
+            invoker = TestInvoker.forClass(testClass).forMethod(method);
+            this.invokers.put(method, invoker);
+        }
+        try {
+            if (useSharedInstance) {
+                TestInvoker.SharedInstance sharedInstance = this.sharedInstances.get(testClass);
+                if (sharedInstance == null) {
+                    sharedInstance = invoker.newSharedInstance();
+                    this.sharedInstances.put(testClass, sharedInstance);
+                }
+                invoker.invoke(sharedInstance);
+            } else {
+                invoker.invoke();
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void setUpFixture(Class<?> testClass) {
+        this.fixtureClass = testClass;
+        this.fixture = ClassFixture.forClass(testClass);
+        this.fixtureSetUpFailure = null;
+        if (this.fixture != null) {
+            try {
+                this.fixture.setUp();
+            } catch (ReflectiveOperationException e) {
+                this.fixtureSetUpFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Tears down the current class fixture, if any, and returns the error thrown doing so, or null if there was none.
+     */
+    private Throwable tearDownFixture() {
+        ClassFixture fixture = this.fixture;
+        this.fixtureClass = null;
+        this.fixture = null;
+        this.fixtureSetUpFailure = null;
+        return (fixture == null) ? null : fixture.tearDown();
+    }
+
+    /**
+     * Tears down the current class fixture, if any, when there is no test to report a failure against, so it is written
+     * to the real stderr instead.
+     */
+    private void tearDownFixtureBetweenTests() {
+        Throwable tearDownFailure = tearDownFixture();
+        if (tearDownFailure != null) {
+            this.realStderr.println("Class fixture failed to tear down:");
+            tearDownFailure.printStackTrace(this.realStderr);
+        }
+    }
+
+    private void closeSuiteLoader() {
+        this.invokers.clear();
+        this.sharedInstances.clear();
+        if (this.suiteLoader != null) {
+            try {
+                this.suiteLoader.close();
+            } catch (IOException e) {
+                e.printStackTrace(this.realStderr);
+            }
+            this.suiteLoader = null;
+        }
+    }
+
+    /**
+     * Returns the bytes of heap in use right after the last garbage collection of each heap pool, which unlike the heap
+     * in use right now does not count garbage that has yet to be collected.
+     */
+    private static long heapUsedAfterLastCollection() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = (pool.getType() == MemoryType.HEAP) ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long currentThreadCpuTime() {
+        try {
+            return (THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()) ? THREADS.getCurrentThreadCpuTime() : -1;
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { fixture class: " + (this.fixtureClass == null ? "none" : this.fixtureClass.getName()) + " }";
+    }
+
+    /**
+     * A buffer that keeps the first bytes written to it up to a limit and counts the rest, which it drops. Threads the
+     * test leaves behind may write to it at any time, so it is synchronized like the {@link ByteArrayOutputStream} it is.
+     */
+    private static final class CappedBuffer extends ByteArrayOutputStream {
+        private final int maxBytes;
+        private long numDroppedBytes = 0;
+
+        private CappedBuffer(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (this.count < this.maxBytes) {
+                super.write(b);
+            } else {
+                this.numDroppedBytes++;
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            int numKept = Math.max(0, Math.min(length, this.maxBytes - this.count));
+            super.write(bytes, offset, numKept);
+            this.numDroppedBytes += length - numKept;
+        }
+
+        /**
+         * Writes everything in this buffer to the given payload, noting how much was dropped, if anything, and resets it.
+         */
+        synchronized void drainTo(DataOutputStream payload) throws IOException {
+            if (this.numDroppedBytes > 0) {
+                byte[] note = ("\n[" + this.numDroppedBytes + " more bytes of output were dropped]\n").getBytes();
+                super.write(note, 0, note.length);
+            }
+            WorkerProtocol.writeBytes(payload, this.buf, this.count);
+            reset();
+            this.numDroppedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package spin.core.execution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary protocol a {@link ForkedWorker} and the worker JVM it launched speak over the worker's stdin and stdout.
+ *
+ * Every message is a frame of a 4 byte length, a 1 byte type and then the payload, all big-endian as written by a
+ * {@link DataOutputStream}. The parent sends a {@link #SUITE} frame before the first test of each suite, followed by a
+ * {@link #TEST} frame per test, to each of which the worker replies with a {@link #RESULT} frame. An {@link #EXIT} frame
+ * asks the worker to tear down and exit.
+ *
+ * Payloads:
+ * <ul>
+ *     <li>SUITE: the number of classpath entries, followed by each entry as a URL in modified UTF-8.</li>
+ *     <li>TEST: the class name and method name in modified UTF-8, followed by a byte of flags.</li>
+ *     <li>RESULT: whether the test passed, its duration and CPU time in nanoseconds, the heap in use after the last
+ *     garbage collection and the maximum heap in bytes, then the stdout and stderr of the test, each as a 4 byte length
+ *     followed by the bytes.</li>
+ *     <li>EXIT: empty.</li>
+ * </ul>
+ */
+final class WorkerProtocol {
+    static final byte SUITE = 1;
+    static final byte TEST = 2;
+    static final byte EXIT = 3;
+    static final byte RESULT = 4;
+
+    /**
+     * The test is to be run on the worker's shared instance of its class rather than on a new instance.
+     */
+    static final byte SHARED_INSTANCE_FLAG = 1;
+    /**
+     * The test is the last of its share, so the worker tears down its class fixture after running it.
+     */
+    static final byte LAST_OF_SHARE_FLAG = 1 << 1;
+
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private WorkerProtocol() {
+    }
+
+    /**
+     * A frame as read off of a stream: its type and a stream over its payload.
+     */
+    static final class Frame {
+        final byte type;
+        final DataInputStream payload;
+
+        private Frame(byte type, DataInputStream payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + " { type: " + this.type + " }";
+        }
+    }
+
+    /**
+     * The result of a test as read off of a {@link #RESULT} frame.
+     */
+    static final class WorkerResult {
+        final boolean successful;
+        final long durationNanos;
+        final long cpuNanos;
+        final long heapUsedAfterGc;
+        final long maxHeap;
+        final byte[] stdout;
+        final byte[] stderr;
+
+        private WorkerResult(boolean successful, long durationNanos, long cpuNanos, long heapUsedAfterGc, long maxHeap, byte[] stdout, byte[] stderr) {
+            this.successful = successful;
+            this.durationNanos = durationNanos;
+            this.cpuNanos = cpuNanos;
+            this.heapUsedAfterGc = heapUsedAfterGc;
+            this.maxHeap = maxHeap;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + " { successful: " + this.successful + ", duration: " + this.durationNanos + "ns, stdout: " + this.stdout.length + " bytes, stderr: " + this.stderr.length + " bytes }";
+        }
+    }
+
+    /**
+     * A payload being written, which is sent as a single frame.
+     */
+    static final class FrameWriter {
+        private final byte type;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream payload = new DataOutputStream(this.bytes);
+
+        FrameWriter(byte type) {
+            this.type = type;
+        }
+
+        void writeTo(DataOutputStream stream) throws IOException {
+            this.payload.flush();
+            stream.writeInt(this.bytes.size());
+            stream.writeByte(this.type);
+            this.bytes.writeTo(stream);
+            stream.flush();
+        }
+    }
+
+    /**
+     * Reads the next frame off of the specified stream.
+     *
+     * @param stream The stream to read from.
+     * @return the frame.
+     * @throws EOFException if the stream ends before a whole frame is read.
+     */
+    static Frame readFrame(DataInputStream stream) throws IOException {
+        int length = stream.readInt();
+        if ((length < 0) || (length > MAX_FRAME_BYTES)) {
+            throw new IOException("malformed frame of length: " + length);
+        }
+        byte type = stream.readByte();
+        byte[] payload = new byte[length];
+        stream.readFully(payload);
+        return new Frame(type, new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+
+    static void writeSuite(DataOutputStream stream, List<String> classpath) throws IOException {
+        FrameWriter frame = new FrameWriter(SUITE);
+        frame.payload.writeInt(classpath.size());
+        for (String entry : classpath) {
+            frame.payload.writeUTF(entry);
+        }
+        frame.writeTo(stream);
+    }
+
+    static List<String> readSuite(DataInputStream payload) throws IOException {
+        int numEntries = payload.readInt();
+        List<String> classpath = new ArrayList<>(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            classpath.add(payload.readUTF());
+        }
+        return classpath;
+    }
+
+    static void writeTest(DataOutputStream stream, String className, String methodName, byte flags) throws IOException {
+        FrameWriter frame = new FrameWriter(TEST);
+        frame.payload.writeUTF(className);
+        frame.payload.writeUTF(methodName);
+        frame.payload.writeByte(flags);
+        frame.writeTo(stream);
+    }
+
+    /**
+     * Starts a {@link #RESULT} frame with everything but the output of the test, which is to be added to the frame's
+     * payload as its stdout and then its stderr with {@link #writeBytes(DataOutputStream, byte[], int)}.
+     */
+    static FrameWriter startResult(boolean successful, long durationNanos, long cpuNanos, long heapUsedAfterGc, long maxHeap) throws IOException {
+        FrameWriter frame = new FrameWriter(RESULT);
+        frame.payload.writeBoolean(successful);
+        frame.payload.writeLong(durationNanos);
+        frame.payload.writeLong(cpuNanos);
+        frame.payload.writeLong(heapUsedAfterGc);
+        frame.payload.writeLong(maxHeap);
+        return frame;
+    }
+
+    static WorkerResult readResult(DataInputStream payload) throws IOException {
+        boolean successful = payload.readBoolean();
+        long durationNanos = payload.readLong();
+        long cpuNanos = payload.readLong();
+        long heapUsedAfterGc = payload.readLong();
+        long maxHeap = payload.readLong();
+        return new WorkerResult(successful, durationNanos, cpuNanos, heapUsedAfterGc, maxHeap, readBytes(payload), readBytes(payload));
+    }
+
+    static void writeBytes(DataOutputStream payload, byte[] bytes, int length) throws IOException {
+        payload.writeInt(length);
+        payload.write(bytes, 0, length);
+    }
+
+    static byte[] readBytes(DataInputStream payload) throws IOException {
+        int length = payload.readInt();
+        if ((length < 0) || (length > MAX_FRAME_BYTES)) {
+            throw new IOException("malformed byte array of length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        payload.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,288 @@
+package spin.core.history;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import spin.core.loader.FileFingerprinter;
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The tests that passed on earlier runs, keyed by the contents of everything they could have depended on, which are
+ * persisted between runs in the Spin data directory so that a test whose inputs are unchanged since it last passed can
+ * be reported as passed again without being run.
+ *
+ * The key of a test class is a hash of its class file together with a hash of the suite's whole classpath, that is the
+ * contents of every jar and of every file in every directory on it, as well as the version of the Java runtime. Every
+ * file in the suite's base directory that its matcher takes for a test class is left out of the classpath hash, whether
+ * or not it is run, so that changing one test class does not invalidate the cached results of all of the others, and so
+ * that the key of a class is the same however the tests of a run were selected, be it by a plan, by changes or by shard.
+ * This assumes that test classes do not depend on each other, only on the rest of the classpath.
+ *
+ * For every test class the cache holds the key of the class as of its last run along with the tests of the class that
+ * passed on that run or on earlier runs with the same key. A test that fails is removed, and all of the tests of a class
+ * are forgotten once its key changes.
+ *
+ * A cache that cannot be read, because it does not exist yet or is corrupt, is treated as empty, which only means that
+ * every test is run.
+ *
+ * This class is thread-safe.
+ */
+public final class ResultCache {
+    private static final Logger LOGGER = Logger.forClass(ResultCache.class);
+    private static final String CLASSES_KEY = "classes";
+    private static final String KEY_KEY = "key";
+    private static final String PASSED_KEY = "passed";
+    private final FileFingerprinter fingerprinter = new FileFingerprinter();
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private boolean isDirty = false;
+
+    private ResultCache(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the file in the Spin data directory that the cache is persisted to by default.
+     *
+     * @return the default cache file.
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".spin", "result_cache.json");
+    }
+
+    /**
+     * Loads the cache persisted in the specified file, which is also where it will be saved to. If the file does not
+     * exist or cannot be read, the cache starts out empty.
+     *
+     * @param file The cache file.
+     * @return the cache.
+     */
+    public static ResultCache loadFrom(Path file) {
+        ObjectChecker.assertNonNull(file);
+        Map<String, Entry> entries = new HashMap<>();
+        if (Files.isRegularFile(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+                for (Map.Entry<String, JsonElement> testClass : json.getAsJsonObject(CLASSES_KEY).entrySet()) {
+                    JsonObject entry = testClass.getValue().getAsJsonObject();
+                    Set<String> passed = new HashSet<>();
+                    for (JsonElement methodName : entry.getAsJsonArray(PASSED_KEY)) {
+                        passed.add(methodName.getAsString());
+                    }
+                    entries.put(testClass.getKey(), new Entry(entry.get(KEY_KEY).getAsString(), passed));
+                }
+            } catch (IOException | JsonParseException | IllegalStateException | ClassCastException | NullPointerException | UnsupportedOperationException e) {
+                LOGGER.log("Ignoring unreadable result cache " + file + ": " + e);
+                entries.clear();
+            }
+        }
+        return new ResultCache(file, entries);
+    }
+
+    /**
+     * Hashes the specified classpath, leaving out the test class files in the specified test directory, which are the
+     * files there whose names match the specified pattern. Files whose size and last-modified time are unchanged since
+     * they were last hashed are not read again.
+     *
+     * @param classpath The classpath as URLs, such as a suite loader gives it.
+     * @param testDirectory The base directory of the suite's test classes.
+     * @param testClassPattern The pattern that the file names of the suite's test classes match.
+     * @return the hash of the classpath.
+     */
+    public String hashClasspath(List<String> classpath, File testDirectory, Pattern testClassPattern) throws IOException {
+        ObjectChecker.assertNonNull(classpath, testDirectory, testClassPattern);
+        File canonicalTestDirectory = testDirectory.getCanonicalFile();
+
+        MessageDigest digest = newDigest();
+        update(digest, System.getProperty("java.version"));
+        for (String entry : classpath) {
+            File file = Paths.get(URI.create(entry)).toFile();
+            if (file.isFile()) {
+                update(digest, "jar");
+                update(digest, this.fingerprinter.fingerprint(file).hash);
+            } else if (file.isDirectory()) {
+                update(digest, "directory");
+                boolean isTestDirectory = file.getCanonicalFile().equals(canonicalTestDirectory);
+                for (Path path : listFiles(file.toPath())) {
+                    if ((isTestDirectory) && (testClassPattern.matcher(path.getFileName().toString()).matches())) {
+                        continue;
+                    }
+                    update(digest, file.toPath().relativize(path).toString().replace(File.separatorChar, '/'));
+                    update(digest, this.fingerprinter.fingerprint(path.toFile()).hash);
+                }
+            } else {
+                update(digest, "missing");
+            }
+        }
+        return toHexString(digest.digest());
+    }
+
+    /**
+     * Returns the key of the test class whose class file is given, on a classpath with the specified hash.
+     *
+     * @param classFile The contents of the class file.
+     * @param classpathHash The hash of the classpath, as given by {@link #hashClasspath(List, File, Pattern)}.
+     * @return the key of the class.
+     */
+    public static String keyOf(InputStream classFile, String classpathHash) throws IOException {
+        ObjectChecker.assertNonNull(classFile, classpathHash);
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        int numRead;
+        while ((numRead = classFile.read(buffer)) != -1) {
+            digest.update(buffer, 0, numRead);
+        }
+        update(digest, classpathHash);
+        return toHexString(digest.digest());
+    }
+
+    /**
+     * Returns true iff the specified test passed when its class last had the given key.
+     *
+     * @param className The name of the test class.
+     * @param key The current key of the class.
+     * @param methodName The name of the test method.
+     * @return whether or not the test passed with its inputs unchanged.
+     */
+    public synchronized boolean hasPassed(String className, String key, String methodName) {
+        Entry entry = this.entries.get(className);
+        return (entry != null) && (entry.key.equals(key)) && (entry.passed.contains(methodName));
+    }
+
+    /**
+     * Records a run of the specified test, whose class had the given key.
+     *
+     * @param className The name of the test class.
+     * @param key The key of the class.
+     * @param methodName The name of the test method.
+     * @param successful Whether or not the test passed.
+     */
+    public synchronized void record(String className, String key, String methodName, boolean successful) {
+        ObjectChecker.assertNonNull(className, key, methodName);
+        Entry entry = this.entries.get(className);
+        if ((entry == null) || (!entry.key.equals(key))) {
+            entry = new Entry(key, new HashSet<>());
+            this.entries.put(className, entry);
+            this.isDirty = true;
+        }
+        if (successful ? entry.passed.add(methodName) : entry.passed.remove(methodName)) {
+            this.isDirty = true;
+        }
+    }
+
+    /**
+     * Saves the cache to its file if anything was recorded since it was loaded or last saved. The file is replaced
+     * atomically so that a concurrent reader never sees a partially written cache.
+     */
+    public synchronized void save() throws IOException {
+        if (!this.isDirty) {
+            return;
+        }
+
+        JsonObject classes = new JsonObject();
+        for (Map.Entry<String, Entry> testClass : this.entries.entrySet()) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty(KEY_KEY, testClass.getValue().key);
+            JsonArray passed = new JsonArray();
+            List<String> methodNames = new ArrayList<>(testClass.getValue().passed);
+            Collections.sort(methodNames);
+            for (String methodName : methodNames) {
+                passed.add(methodName);
+            }
+            entry.add(PASSED_KEY, passed);
+            classes.add(testClass.getKey(), entry);
+        }
+        JsonObject json = new JsonObject();
+        json.add(CLASSES_KEY, classes);
+
+        Path directory = this.file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporaryFile = Files.createTempFile(directory, "result_cache", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                writer.write(json.toString());
+            }
+            Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        this.isDirty = false;
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+
+    /**
+     * Adds the specified text to the digest, terminated so that no two sequences of texts are hashed the same.
+     */
+    private static void update(MessageDigest digest, String text) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getSimpleName() + " { file: " + this.file + ", num classes: " + this.entries.size() + " }";
+    }
+
+    /**
+     * The key of a test class as of its last run and the tests of the class that passed with that key.
+     */
+    private static final class Entry {
+        private final String key;
+        private final Set<String> passed;
+
+        private Entry(String key, Set<String> passed) {
+            this.key = key;
+            this.passed = passed;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package spin.core.history;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The measurements of each test from earlier runs, keyed by the test's class and method name, which are persisted
+ * between runs in the Spin data directory.
+ *
+ * For every test the history keeps how long it took to run and how much of that time it spent on the CPU. Both are
+ * smoothed over runs, each new measurement counting for half, so that a single unusually slow run does not throw off
+ * how the test is treated the next time. The history also keeps how many runs ago the test last failed.
+ *
+ * For every test class the history keeps a fingerprint of the class file as of the last run of all of its tests, so
+ * that a class that has changed since can be recognized.
+ *
+ * A history that cannot be read, because it does not exist yet or is corrupt, is treated as empty: the history only
+ * ever informs how tests are scheduled and never whether they are run.
+ *
+ * This class is thread-safe.
+ */
+public final class TestHistory {
+    private static final Logger LOGGER = Logger.forClass(TestHistory.class);
+    private static final String DURATION_KEY = "duration_nanos";
+    private static final String CPU_KEY = "cpu_nanos";
+    private static final String RUNS_SINCE_FAILURE_KEY = "runs_since_failure";
+    private static final String TESTS_KEY = "tests";
+    private static final String CLASSES_KEY = "classes";
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final Map<String, String> classFingerprints;
+    private boolean isDirty = false;
+
+    private TestHistory(Path file, Map<String, Entry> entries, Map<String, String> classFingerprints) {
+        this.file = file;
+        this.entries = entries;
+        this.classFingerprints = classFingerprints;
+    }
+
+    /**
+     * Returns the file in the Spin data directory that the history is persisted to by default.
+     *
+     * @return the default history file.
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".spin", "test_history.json");
+    }
+
+    /**
+     * Loads the history persisted in the specified file, which is also where it will be saved to. If the file does not
+     * exist or cannot be read, the history starts out empty.
+     *
+     * @param file The history file.
+     * @return the history.
+     */
+    public static TestHistory loadFrom(Path file) {
+        ObjectChecker.assertNonNull(file);
+        Map<String, Entry> entries = new HashMap<>();
+        Map<String, String> classFingerprints = new HashMap<>();
+        if (Files.isRegularFile(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+                for (Map.Entry<String, JsonElement> test : json.getAsJsonObject(TESTS_KEY).entrySet()) {
+                    JsonObject measurements = test.getValue().getAsJsonObject();
+                    entries.put(test.getKey(), new Entry(measurements.get(DURATION_KEY).getAsLong(), measurements.get(CPU_KEY).getAsLong(), measurements.get(RUNS_SINCE_FAILURE_KEY).getAsInt()));
+                }
+                for (Map.Entry<String, JsonElement> testClass : json.getAsJsonObject(CLASSES_KEY).entrySet()) {
+                    classFingerprints.put(testClass.getKey(), testClass.getValue().getAsString());
+                }
+            } catch (IOException | JsonParseException | IllegalStateException | ClassCastException | NullPointerException | UnsupportedOperationException e) {
+                LOGGER.log("Ignoring unreadable test history " + file + ": " + e);
+                entries.clear();
+                classFingerprints.clear();
+            }
+        }
+        return new TestHistory(file, entries, classFingerprints);
+    }
+
+    /**
+     * Returns the name the specified test is recorded under.
+     *
+     * @param testClass The test class.
+     * @param method The test method.
+     * @return the name of the test.
+     */
+    public static String nameOf(Class<?> testClass, Method method) {
+        return testClass.getName() + "#" + method.getName();
+    }
+
+    /**
+     * Returns the recorded measurements of the specified test, or null if it has none.
+     *
+     * @param testName The name of the test, as given by {@link #nameOf(Class, Method)}.
+     * @return the measurements or null.
+     */
+    public synchronized Entry get(String testName) {
+        return this.entries.get(testName);
+    }
+
+    /**
+     * Records a run of the specified test.
+     *
+     * @param testName The name of the test, as given by {@link #nameOf(Class, Method)}.
+     * @param successful Whether or not the test passed.
+     * @param durationNanos How long the test took to run.
+     * @param cpuNanos How much CPU time the test used, or a negative value if this was not measured.
+     */
+    public synchronized void record(String testName, boolean successful, long durationNanos, long cpuNanos) {
+        ObjectChecker.assertNonNull(testName);
+        Entry previous = this.entries.get(testName);
+        long smoothedDuration = (previous == null) ? durationNanos : (previous.durationNanos + durationNanos) / 2;
+        long smoothedCpu;
+        if (cpuNanos < 0) {
+            smoothedCpu = (previous == null) ? -1 : previous.cpuNanos;
+        } else {
+            smoothedCpu = ((previous == null) || (previous.cpuNanos < 0)) ? cpuNanos : (previous.cpuNanos + cpuNanos) / 2;
+        }
+        int runsSinceFailure;
+        if (!successful) {
+            runsSinceFailure = 0;
+        } else {
+            runsSinceFailure = ((previous == null) || (previous.runsSinceFailure < 0)) ? -1 : previous.runsSinceFailure + 1;
+        }
+        this.entries.put(testName, new Entry(smoothedDuration, smoothedCpu, runsSinceFailure));
+        this.isDirty = true;
+    }
+
+    /**
+     * Returns the fingerprint of the specified class as of the last time all of its tests were run, or null if it has
+     * none.
+     *
+     * @param className The name of the class.
+     * @return the fingerprint or null.
+     */
+    public synchronized String getClassFingerprint(String className) {
+        return this.classFingerprints.get(className);
+    }
+
+    /**
+     * Records the fingerprint of the specified class, all of whose tests have just been run.
+     *
+     * @param className The name of the class.
+     * @param fingerprint The fingerprint of the class file.
+     */
+    public synchronized void recordClassFingerprint(String className, String fingerprint) {
+        ObjectChecker.assertNonNull(className, fingerprint);
+        if (!fingerprint.equals(this.classFingerprints.put(className, fingerprint))) {
+            this.isDirty = true;
+        }
+    }
+
+    /**
+     * Saves the history to its file if anything was recorded since it was loaded or last saved. The file is replaced
+     * atomically so that a concurrent reader never sees a partially written history.
+     */
+    public synchronized void save() throws IOException {
+        if (!this.isDirty) {
+            return;
+        }
+
+        JsonObject tests = new JsonObject();
+        for (Map.Entry<String, Entry> test : this.entries.entrySet()) {
+            JsonObject measurements = new JsonObject();
+            measurements.addProperty(DURATION_KEY, test.getValue().durationNanos);
+            measurements.addProperty(CPU_KEY, test.getValue().cpuNanos);
+            measurements.addProperty(RUNS_SINCE_FAILURE_KEY, test.getValue().runsSinceFailure);
+            tests.add(test.getKey(), measurements);
+        }
+        JsonObject classes = new JsonObject();
+        for (Map.Entry<String, String> testClass : this.classFingerprints.entrySet()) {
+            classes.addProperty(testClass.getKey(), testClass.getValue());
+        }
+        JsonObject json = new JsonObject();
+        json.add(TESTS_KEY, tests);
+        json.add(CLASSES_KEY, classes);
+
+        Path directory = this.file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporaryFile = Files.createTempFile(directory, "test_history", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                writer.write(json.toString());
+            }
+            Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        this.isDirty = false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getSimpleName() + " { file: " + this.file + ", num tests: " + this.entries.size() + " }";
+    }
+
+    /**
+     * The smoothed measurements of a single test.
+     *
+     * This class is immutable.
+     */
+    public static final class Entry {
+        private final long durationNanos;
+        private final long cpuNanos;
+        private final int runsSinceFailure;
+
+        private Entry(long durationNanos, long cpuNanos, int runsSinceFailure) {
+            this.durationNanos = durationNanos;
+            this.cpuNanos = cpuNanos;
+            this.runsSinceFailure = runsSinceFailure;
+        }
+
+        public long getDurationNanos() {
+            return this.durationNanos;
+        }
+
+        /**
+         * Returns the fraction of the test's duration it spent on the CPU, or a negative value if its CPU time was
+         * never measured.
+         *
+         * @return the CPU fraction.
+         */
+        public double getCpuFraction() {
+            if (this.cpuNanos < 0) {
+                return -1;
+            }
+            return (this.durationNanos == 0) ? 1 : Math.min(1, (double) this.cpuNanos / this.durationNanos);
+        }
+
+        /**
+         * Returns true iff the test failed on one of its last given number of runs.
+         *
+         * @param numRuns The number of runs to look back over.
+         * @return whether or not the test failed recently.
+         */
+        public boolean hasFailedWithin(int numRuns) {
+            return (this.runsSinceFailure >= 0) && (this.runsSinceFailure < numRuns);
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + " { duration: " + this.durationNanos + " ns, cpu: " + this.cpuNanos + " ns, runs since failure: " + this.runsSinceFailure + " }";
+        }
+    }
+}
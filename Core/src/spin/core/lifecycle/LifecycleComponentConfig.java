@@ -1,31 +1,92 @@
 package spin.core.lifecycle;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public final class LifecycleComponentConfig {
     public final String databaseConfigPath;
     public final boolean doOutputToDatabase;
     public final int numExecutorThreads;
+    public final int minExecutorThreads;
+    public final int maxExecutorThreads;
+    public final boolean useVirtualThreads;
+    public final boolean splitIoBoundTests;
+    public final int numCpuBoundExecutorThreads;
     public final int interComponentQueueCapacity;
+    public final int numClassInitThreads;
+    public final int maxInMemoryOutputBytes;
+    public final boolean forkWorkers;
+    public final int numSuitesPerWorker;
+    public final List<String> workerJvmArguments;
+    public final boolean cacheResults;
 
-    private LifecycleComponentConfig(String dbConfigPath, boolean dbWrite, int numExecutors, int queueCap) {
+    private LifecycleComponentConfig(String dbConfigPath, boolean dbWrite, int numExecutors, int minExecutors, int maxExecutors, boolean useVirtualThreads, boolean splitIoBoundTests, int numCpuBoundExecutors, int queueCap, int numClassInitThreads, int maxInMemoryOutputBytes, boolean forkWorkers, int numSuitesPerWorker, List<String> workerJvmArguments, boolean cacheResults) {
         if (dbConfigPath == null) {
             throw new NullPointerException("dbConfigPath must be non-null.");
         }
         if (numExecutors < 1) {
             throw new IllegalArgumentException("numExecutors must be strictly positive but is: " + numExecutors);
         }
+        if ((minExecutors < 1) || (minExecutors > numExecutors) || (maxExecutors < numExecutors)) {
+            throw new IllegalArgumentException("executor bounds must satisfy 1 <= min <= num <= max but are: min " + minExecutors + ", num " + numExecutors + ", max " + maxExecutors);
+        }
+        if (useVirtualThreads && (minExecutors != maxExecutors)) {
+            throw new IllegalArgumentException("executor bounds cannot be adapted when running tests on virtual threads.");
+        }
+        if (numCpuBoundExecutors < 1) {
+            throw new IllegalArgumentException("numCpuBoundExecutors must be strictly positive but is: " + numCpuBoundExecutors);
+        }
         if (queueCap < 1) {
             throw new IllegalArgumentException("queueCap must be strictly positive but is: " + queueCap);
         }
+        if (numClassInitThreads < 0) {
+            throw new IllegalArgumentException("numClassInitThreads must be non-negative but is: " + numClassInitThreads);
+        }
+        if (maxInMemoryOutputBytes < 1) {
+            throw new IllegalArgumentException("maxInMemoryOutputBytes must be strictly positive but is: " + maxInMemoryOutputBytes);
+        }
+        if (forkWorkers && useVirtualThreads) {
+            throw new IllegalArgumentException("tests cannot be run on forked workers and on virtual threads at once.");
+        }
+        if (forkWorkers && (numClassInitThreads > 0)) {
+            // The static initializers of the test classes would then run in this JVM, out of the reach of the workers.
+            throw new IllegalArgumentException("test classes cannot be initialized up front when running tests on forked workers.");
+        }
+        if (numSuitesPerWorker < 1) {
+            throw new IllegalArgumentException("numSuitesPerWorker must be strictly positive but is: " + numSuitesPerWorker);
+        }
+        if (workerJvmArguments == null) {
+            throw new NullPointerException("workerJvmArguments must be non-null.");
+        }
         this.databaseConfigPath = dbConfigPath;
         this.doOutputToDatabase = dbWrite;
         this.numExecutorThreads = numExecutors;
+        this.minExecutorThreads = minExecutors;
+        this.maxExecutorThreads = maxExecutors;
+        this.useVirtualThreads = useVirtualThreads;
+        this.splitIoBoundTests = splitIoBoundTests;
+        this.numCpuBoundExecutorThreads = numCpuBoundExecutors;
         this.interComponentQueueCapacity = queueCap;
+        this.numClassInitThreads = numClassInitThreads;
+        this.maxInMemoryOutputBytes = maxInMemoryOutputBytes;
+        this.forkWorkers = forkWorkers;
+        this.numSuitesPerWorker = numSuitesPerWorker;
+        this.workerJvmArguments = Collections.unmodifiableList(new ArrayList<>(workerJvmArguments));
+        this.cacheResults = cacheResults;
     }
 
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + " { num executors: " + this.numExecutorThreads
+                + " [" + this.minExecutorThreads + ", " + this.maxExecutorThreads + "]"
+                + (this.useVirtualThreads ? " [virtual threads]" : "")
+                + (this.splitIoBoundTests ? ", num cpu-bound executors: " + this.numCpuBoundExecutorThreads : "")
                 + ", internal capacity: " + this.interComponentQueueCapacity
+                + ", class init threads: " + this.numClassInitThreads
+                + ", max in-memory output: " + this.maxInMemoryOutputBytes
+                + (this.forkWorkers ? ", forked workers: " + this.numSuitesPerWorker + " suites each, jvm args " + this.workerJvmArguments : "")
+                + (this.cacheResults ? ", [result cache]" : "")
                 + ", db config: " + this.databaseConfigPath
                 + ", " + (this.doOutputToDatabase ? "[write to db]" : "[no db write]") + " }";
     }
@@ -35,6 +96,17 @@ public final class LifecycleComponentConfig {
         private Boolean doOutputToDatabase;
         private Integer numExecutorThreads;
         private Integer interComponentQueueCapacity;
+        private Integer minExecutorThreads;
+        private Integer maxExecutorThreads;
+        private boolean useVirtualThreads = false;
+        private boolean splitIoBoundTests = false;
+        private int numCpuBoundExecutorThreads = Runtime.getRuntime().availableProcessors();
+        private int numClassInitThreads = 0;
+        private int maxInMemoryOutputBytes = 1024 * 1024;
+        private boolean forkWorkers = false;
+        private int numSuitesPerWorker = 50;
+        private List<String> workerJvmArguments = Collections.emptyList();
+        private boolean cacheResults = false;
 
         public static Builder newBuilder() {
             return new Builder();
@@ -72,10 +144,85 @@ public final class LifecycleComponentConfig {
             return this;
         }
 
+        /**
+         * Sets the bounds within which the number of test executors is adapted to their utilization, starting from the
+         * number of test executors. This is optional and defaults to both bounds being the number of test executors,
+         * which keeps the number of executors fixed.
+         */
+        public Builder setExecutorThreadBounds(int min, int max) {
+            this.minExecutorThreads = min;
+            this.maxExecutorThreads = max;
+            return this;
+        }
+
+        /**
+         * Sets whether to run each test on a virtual thread of its own, or on a pooled platform thread if the runtime
+         * does not support virtual threads, rather than on a fixed set of executor threads. The number of test executors
+         * then bounds how many tests run at once. This is optional and defaults to false.
+         */
+        public Builder setWhetherToRunTestsOnVirtualThreads(boolean useVirtualThreads) {
+            this.useVirtualThreads = useVirtualThreads;
+            return this;
+        }
+
+        /**
+         * Sets whether to run CPU-bound tests on a pool of their own, of the given number of executors, leaving the
+         * test executors configured otherwise to run the I/O-bound tests. This is optional and defaults to running all
+         * tests on the same executors, with the number of CPU-bound executors defaulting to the number of processors.
+         */
+        public Builder setWhetherToSplitIoBoundTests(boolean splitIoBoundTests, int numCpuBoundExecutors) {
+            this.splitIoBoundTests = splitIoBoundTests;
+            this.numCpuBoundExecutorThreads = numCpuBoundExecutors;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used to eagerly load and initialize test classes before their tests are run. This
+         * is optional and defaults to zero, which disables the eager initialization stage.
+         */
+        public Builder setNumberOfClassInitializationThreads(int num) {
+            this.numClassInitThreads = num;
+            return this;
+        }
+
+        /**
+         * Sets the most bytes of a single test's stdout, and of its stderr, that are held in memory before the rest is
+         * spilled to a temporary file. This is optional and defaults to 1 MiB.
+         */
+        public Builder setMaxInMemoryOutputBytesPerTest(int numBytes) {
+            this.maxInMemoryOutputBytes = numBytes;
+            return this;
+        }
+
+        /**
+         * Sets whether each test executor runs its tests in a worker JVM of its own, launched with the given arguments,
+         * which is recycled after it has run the given number of suites or once its heap is under pressure. Only a
+         * daemon that outlives a suite runs more than one suite on a worker. This is optional and defaults to running
+         * tests in this JVM. It cannot be combined with virtual threads.
+         */
+        public Builder setWhetherToForkWorkers(boolean forkWorkers, int numSuitesPerWorker, List<String> jvmArguments) {
+            this.forkWorkers = forkWorkers;
+            this.numSuitesPerWorker = numSuitesPerWorker;
+            this.workerJvmArguments = jvmArguments;
+            return this;
+        }
+
+        /**
+         * Sets whether to report the tests that passed on an earlier run with the same class file and classpath as passed
+         * again rather than run them, as recorded in the result cache in the Spin data directory. This is optional and
+         * defaults to running every test.
+         */
+        public Builder setWhetherToCacheResults(boolean cacheResults) {
+            this.cacheResults = cacheResults;
+            return this;
+        }
+
         //TODO: how does a null Boolean get unboxed? Does it throw or default to false?
 
         public LifecycleComponentConfig build() {
-            return new LifecycleComponentConfig(this.databaseConfigPath, this.doOutputToDatabase, this.numExecutorThreads, this.interComponentQueueCapacity);
+            int minExecutors = (this.minExecutorThreads == null) ? this.numExecutorThreads : this.minExecutorThreads;
+            int maxExecutors = (this.maxExecutorThreads == null) ? this.numExecutorThreads : this.maxExecutorThreads;
+            return new LifecycleComponentConfig(this.databaseConfigPath, this.doOutputToDatabase, this.numExecutorThreads, minExecutors, maxExecutors, this.useVirtualThreads, this.splitIoBoundTests, this.numCpuBoundExecutorThreads, this.interComponentQueueCapacity, this.numClassInitThreads, this.maxInMemoryOutputBytes, this.forkWorkers, this.numSuitesPerWorker, this.workerJvmArguments, this.cacheResults);
         }
     }
 }
@@ -4,13 +4,14 @@ import spin.core.LongLivedEntryPoint;
 import spin.core.runner.TestRunner;
 import spin.core.server.Server;
 import spin.core.server.request.parse.JsonClientRequestParser;
-import spin.core.execution.TestExecutor;
-import spin.core.execution.TestInfo;
-import spin.core.execution.TestResult;
+import spin.core.execution.ExecutorPool;
+import spin.core.execution.ExecutorPools;
+import spin.core.execution.ForkedWorker;
+import spin.core.history.ResultCache;
+import spin.core.history.TestHistory;
 import spin.core.output.DatabaseConnectionProvider;
 import spin.core.output.ResultOutputter;
 import spin.core.runner.TestSuiteRunner;
-import spin.core.util.CloseableBlockingQueue;
 import spin.core.util.Logger;
 import spin.core.util.ObjectChecker;
 
@@ -19,24 +20,20 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.CyclicBarrier;
 
 public final class LifecycleComponentManager {
     private static final Logger LOGGER = Logger.forClass(LifecycleComponentManager.class);
+    private static final int ADAPTIVE_LANE_TEST_QUEUE_CAPACITY = 8;
     private enum State { PRE_INIT, INIT, STARTED, STOPPED }
-    private State state = State.PRE_INIT;
-    private List<CloseableBlockingQueue<TestInfo>> testInfoQueues;
-    private List<CloseableBlockingQueue<TestResult>> testResultQueues;
+    private volatile State state = State.PRE_INIT;
+    private ExecutorPools executorPools;
     private Server server;
     private TestSuiteRunner testSuiteRunner;
     private ResultOutputter resultOutputter;
-    private List<TestExecutor> testExecutors;
     private Thread serverThread;
     private Thread suiteRunnerThread;
     private Thread outputterThread;
-    private List<Thread> executorThreads;
 
     private LifecycleComponentManager() {}
 
@@ -61,21 +58,30 @@ public final class LifecycleComponentManager {
             }
         }
 
-        CyclicBarrier barrier = new CyclicBarrier(config.numExecutorThreads + 3);
+        // When tests run on virtual threads, a single executor hands them out.
+        int numExecutors = (config.useVirtualThreads) ? 1 : config.numExecutorThreads;
+        if (config.splitIoBoundTests) {
+            numExecutors += config.numCpuBoundExecutorThreads;
+        }
+        CyclicBarrier barrier = new CyclicBarrier(numExecutors + 3);
 
         ShutdownMonitor shutdownMonitor = new ShutdownMonitor();
         NotifyOnlyMonitor notifyMonitor = NotifyOnlyMonitor.wrapForNotificationsOnly(shutdownMonitor);
         PanicOnlyMonitor panicMonitor = PanicOnlyMonitor.wrapForPanicsOnly(shutdownMonitor);
 
-        this.testInfoQueues = createTestQueues(config);
-        this.testResultQueues = createTestResultQueues(config);
-        this.testExecutors = createExecutors(config, this.testInfoQueues, this.testResultQueues, barrier, panicMonitor);
+        ForkedWorker.Launcher workerLauncher = (config.forkWorkers) ? ForkedWorker.Launcher.forCurrentJvm(config.workerJvmArguments, config.numSuitesPerWorker) : null;
+        ExecutorPool executorPool = createExecutorPool(config, barrier, panicMonitor, workerLauncher);
+        this.executorPools = (config.splitIoBoundTests)
+                ? ExecutorPools.split(ExecutorPool.fixed(barrier, panicMonitor, config.numCpuBoundExecutorThreads, config.interComponentQueueCapacity, config.doOutputToDatabase, config.maxInMemoryOutputBytes, workerLauncher), executorPool)
+                : ExecutorPools.single(executorPool);
+        TestHistory testHistory = TestHistory.loadFrom(TestHistory.defaultFile());
+        ResultCache resultCache = config.cacheResults ? ResultCache.loadFrom(ResultCache.defaultFile()) : null;
         this.resultOutputter = (config.doOutputToDatabase)
-                ? ResultOutputter.outputterToConsoleAndDb(barrier, panicMonitor, this.testResultQueues, databaseConnectionProvider.getConnection())
-                : ResultOutputter.outputter(barrier, panicMonitor, this.testResultQueues);
+                ? ResultOutputter.outputterToConsoleAndDb(barrier, panicMonitor, this.executorPools, testHistory, resultCache, databaseConnectionProvider.getConnection())
+                : ResultOutputter.outputter(barrier, panicMonitor, this.executorPools, testHistory, resultCache);
         this.testSuiteRunner = (config.doOutputToDatabase)
-                ? TestSuiteRunner.withDatabaseWriter(barrier, notifyMonitor, this.testInfoQueues, databaseConnectionProvider.getConnection())
-                : TestSuiteRunner.withOutgoingQueue(barrier, notifyMonitor, this.testInfoQueues);
+                ? TestSuiteRunner.withDatabaseWriter(barrier, notifyMonitor, this.executorPools, testHistory, resultCache, databaseConnectionProvider.getConnection(), config.numClassInitThreads)
+                : TestSuiteRunner.withOutgoingQueue(barrier, notifyMonitor, this.executorPools, testHistory, resultCache, config.numClassInitThreads);
         this.server = Server.Builder.newBuilder()
                 .forHost("127.0.0.1")
                 .withBarrier(barrier)
@@ -91,7 +97,7 @@ public final class LifecycleComponentManager {
         return ListenOnlyMonitor.wrapForListeningOnly(shutdownMonitor);
     }
 
-    void startAllComponents() throws IOException {
+    synchronized void startAllComponents() throws IOException {
         if (this.state != State.INIT) {
             throw new IllegalStateException("Cannot start components when in state: " + this.state);
         }
@@ -100,14 +106,11 @@ public final class LifecycleComponentManager {
         this.serverThread = new Thread(this.server, "Server");
         this.outputterThread = new Thread(this.resultOutputter, "ResultOutputter");
         this.suiteRunnerThread = new Thread(this.testSuiteRunner, "TestSuiteRunner");
-        this.executorThreads = createExecutorThreads(this.testExecutors);
 
         this.serverThread.start();
         this.outputterThread.start();
         this.suiteRunnerThread.start();
-        for (Thread executorThread : this.executorThreads) {
-            executorThread.start();
-        }
+        this.executorPools.start();
 
         ProgramInfoWriter.publish(this.server.getPort());
 
@@ -115,14 +118,14 @@ public final class LifecycleComponentManager {
         LOGGER.log("All life-cycled components started.");
     }
 
-    void shutdownAllComponents() {
+    synchronized void shutdownAllComponents() {
         if (this.state == State.STARTED) {
             LOGGER.log("Shutting down all life-cycled components...");
-            closeQueues();
+            this.executorPools.closeQueues();
             LOGGER.log("All queues closed.\nShutting down server...");
             this.server.shutdown();
             LOGGER.log("Server shut down.\nShutting down test executors...");
-            shutdownExecutors();
+            this.executorPools.shutdown();
             LOGGER.log("All test executors shut down.\nShutting down suite runner...");
             this.testSuiteRunner.shutdown();
             LOGGER.log("Suite runner shut down.");
@@ -144,70 +147,21 @@ public final class LifecycleComponentManager {
 
         this.serverThread.join();
         this.outputterThread.join();
-        waitForAllExecutorsToShutdown();
+        this.executorPools.waitForShutdown();
         this.suiteRunnerThread.join();
     }
 
-    private void waitForAllExecutorsToShutdown() throws InterruptedException {
-        for (Thread executor : this.executorThreads) {
-            executor.join();
-        }
-    }
-
-    private void closeQueues() {
-        for (CloseableBlockingQueue<TestResult> resultQueue : this.testResultQueues) {
-            resultQueue.close();
-        }
-        for (CloseableBlockingQueue<TestInfo> testQueue : this.testInfoQueues) {
-            testQueue.close();
-        }
-    }
-
-    private void shutdownExecutors() {
-        for (TestExecutor executor : this.testExecutors) {
-            executor.shutdown();
-        }
-    }
-
-    private List<Thread> createExecutorThreads(List<TestExecutor> executors) {
-        List<Thread> threads = new ArrayList<>();
-        int index = 0;
-        for (TestExecutor executor : executors) {
-            threads.add(new Thread(executor, "TestExecutor-" + index));
-            index++;
+    private ExecutorPool createExecutorPool(LifecycleComponentConfig config, CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, ForkedWorker.Launcher workerLauncher) {
+        if (config.useVirtualThreads) {
+            return ExecutorPool.onTestThreads(barrier, shutdownMonitor, config.numExecutorThreads, config.interComponentQueueCapacity, config.doOutputToDatabase, config.maxInMemoryOutputBytes);
         }
-        return threads;
-    }
-
-    private List<CloseableBlockingQueue<TestInfo>> createTestQueues(LifecycleComponentConfig config) {
-        List<CloseableBlockingQueue<TestInfo>> queues = new ArrayList<>();
-        for (int i = 0; i < config.numExecutorThreads; i++) {
-            queues.add(CloseableBlockingQueue.withCapacity(config.interComponentQueueCapacity));
+        if (config.minExecutorThreads == config.maxExecutorThreads) {
+            return ExecutorPool.fixed(barrier, shutdownMonitor, config.numExecutorThreads, config.interComponentQueueCapacity, config.doOutputToDatabase, config.maxInMemoryOutputBytes, workerLauncher);
         }
-        return queues;
-    }
 
-    private List<CloseableBlockingQueue<TestResult>> createTestResultQueues(LifecycleComponentConfig config) {
-        List<CloseableBlockingQueue<TestResult>> queues = new ArrayList<>();
-        for (int i = 0; i < config.numExecutorThreads; i++) {
-            queues.add(CloseableBlockingQueue.withCapacity(config.interComponentQueueCapacity));
-        }
-        return queues;
-    }
-
-    private List<TestExecutor> createExecutors(LifecycleComponentConfig config, List<CloseableBlockingQueue<TestInfo>> testsQueues, List<CloseableBlockingQueue<TestResult>> resultsQueues, CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor) {
-        if (testsQueues.size() != resultsQueues.size()) {
-            throw new IllegalArgumentException("num tests queues (" + testsQueues.size() + ") != num results queues (" + resultsQueues.size() + ").");
-        }
-        if (testsQueues.size() != config.numExecutorThreads) {
-            throw new IllegalArgumentException("num tests queues (" + testsQueues.size() + ") != num executor threads (" + config.numExecutorThreads + ").");
-        }
-
-        List<TestExecutor> executors = new ArrayList<>();
-        for (int i = 0; i < config.numExecutorThreads; i++) {
-            executors.add(TestExecutor.withQueues(barrier, shutdownMonitor, testsQueues.get(i), resultsQueues.get(i), config.doOutputToDatabase));
-        }
-        return executors;
+        // Lanes of an adaptive pool only take a few tests at a time so that the backlog can be spread over new lanes.
+        return ExecutorPool.adaptive(barrier, shutdownMonitor, config.numExecutorThreads, config.minExecutorThreads, config.maxExecutorThreads,
+                ADAPTIVE_LANE_TEST_QUEUE_CAPACITY, config.interComponentQueueCapacity, config.doOutputToDatabase, config.maxInMemoryOutputBytes, workerLauncher);
     }
 
     private void clearDatabase(Connection connection) throws SQLException {
@@ -0,0 +1,339 @@
+package spin.core.loader;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The class-level dependencies of the classes in the directories of a suite's classpath, used to work out which test
+ * classes can be affected by a change to some classes or jars.
+ *
+ * The dependencies of a class are the classes named in its constant pool, which covers every class it refers to in its
+ * code, its signatures and its annotations. Only classes in directories are followed any further: a class in a jar is
+ * a dependency on the jar as a whole, since a jar changes as a whole. A test class is affected by a change iff one of
+ * the changed classes or jars is among its transitive dependencies, or it is one of the changed classes itself. As with
+ * any static analysis, a dependency that is only made at runtime, such as by reflection, a resource or a service
+ * loader, is not seen.
+ *
+ * The graph is kept between suites: the dependencies of a class file are only read again once its size or last-modified
+ * time changes, and the classes of a jar are only listed again once the jar changes, so selecting the tests affected by
+ * a change to a few files costs little more than checking the files for changes.
+ *
+ * This class is thread-safe.
+ */
+public final class ClassDependencyGraph {
+    private static final Logger LOGGER = Logger.forClass(ClassDependencyGraph.class);
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private final Map<String, Node> classFiles = new HashMap<>();
+    private final Map<String, JarIndex> jars = new HashMap<>();
+
+    /**
+     * Returns those of the specified test classes that can be affected by a change to the specified classes or jars.
+     *
+     * @param classpath The classpath of the suite as URLs, such as a suite loader gives it, in the order in which
+     *                  classes are looked up on it.
+     * @param testClassNames The names of the test classes of the suite.
+     * @param changes The changed classes, each given by its binary name such as com.example.Foo or
+     *                com.example.Foo$Bar, and the changed jars, each given by its path or by its file name.
+     * @return the names of the affected test classes, in the order they were given in.
+     */
+    public synchronized List<String> selectAffectedTestClasses(List<String> classpath, List<String> testClassNames, Collection<String> changes) throws IOException {
+        ObjectChecker.assertNonNull(classpath, testClassNames, changes);
+        long startNanos = System.nanoTime();
+        List<File> entries = new ArrayList<>();
+        for (String url : classpath) {
+            entries.add(Paths.get(URI.create(url)).toFile());
+        }
+
+        Set<String> changedClasses = new HashSet<>();
+        Set<File> changedJars = new HashSet<>();
+        for (String change : changes) {
+            if (change.endsWith(".jar")) {
+                File changedJar = findJar(entries, change);
+                if (changedJar != null) {
+                    changedJars.add(changedJar);
+                } else {
+                    LOGGER.log("Ignoring changed jar that is not on the classpath: " + change);
+                }
+            } else {
+                changedClasses.add(toInternalName(change));
+            }
+        }
+
+        // Walk the dependencies of all of the test classes at once, recording who depends on whom as we go.
+        Map<String, Set<String>> dependents = new HashMap<>();
+        Map<String, File> locations = new HashMap<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        for (String testClassName : testClassNames) {
+            String internalName = toInternalName(testClassName);
+            if (visited.add(internalName)) {
+                toVisit.add(internalName);
+            }
+        }
+        while (!toVisit.isEmpty()) {
+            String className = toVisit.poll();
+            File location = locate(entries, className, locations);
+            if ((location == null) || (location.isFile())) {
+                continue;
+            }
+            for (String dependency : dependenciesOf(new File(location, className + CLASS_FILE_EXTENSION))) {
+                if (dependency.equals(className)) {
+                    continue;
+                }
+                dependents.computeIfAbsent(dependency, name -> new HashSet<>()).add(className);
+                File dependencyLocation = locate(entries, dependency, locations);
+                if ((dependencyLocation != null) && (changedJars.contains(dependencyLocation))) {
+                    changedClasses.add(dependency);
+                }
+                if (visited.add(dependency)) {
+                    toVisit.add(dependency);
+                }
+            }
+        }
+
+        // Then walk back from the changed classes to everything that depends on them.
+        Set<String> affected = new HashSet<>(changedClasses);
+        toVisit.addAll(changedClasses);
+        while (!toVisit.isEmpty()) {
+            for (String dependent : dependents.getOrDefault(toVisit.poll(), Collections.emptySet())) {
+                if (affected.add(dependent)) {
+                    toVisit.add(dependent);
+                }
+            }
+        }
+
+        List<String> affectedTestClassNames = new ArrayList<>();
+        for (String testClassName : testClassNames) {
+            if (affected.contains(toInternalName(testClassName))) {
+                affectedTestClassNames.add(testClassName);
+            }
+        }
+        LOGGER.log("Selected " + affectedTestClassNames.size() + " of " + testClassNames.size() + " test classes affected by " + changes.size()
+                + " changes, walking " + visited.size() + " classes in " + ((System.nanoTime() - startNanos) / 1_000_000) + "ms.");
+        return affectedTestClassNames;
+    }
+
+    private static File findJar(List<File> entries, String jar) throws IOException {
+        File jarFile = new File(jar);
+        boolean isFileName = jarFile.getParent() == null;
+        for (File entry : entries) {
+            if (isFileName ? entry.getName().equals(jar) : entry.getCanonicalPath().equals(jarFile.getCanonicalPath())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the classpath entry, a directory or a jar, that the specified class is loaded from, or null if it is not on
+     * the classpath, as for the classes of the runtime itself. Each class is only looked up once per selection.
+     */
+    private File locate(List<File> entries, String className, Map<String, File> locations) throws IOException {
+        if (locations.containsKey(className)) {
+            return locations.get(className);
+        }
+        File location = null;
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                if (new File(entry, className + CLASS_FILE_EXTENSION).isFile()) {
+                    location = entry;
+                    break;
+                }
+            } else if ((entry.isFile()) && (indexJar(entry).contains(className))) {
+                location = entry;
+                break;
+            }
+        }
+        locations.put(className, location);
+        return location;
+    }
+
+    private Set<String> indexJar(File jar) throws IOException {
+        String path = jar.getCanonicalPath();
+        JarIndex index = this.jars.get(path);
+        if ((index != null) && (index.size == jar.length()) && (index.lastModified == jar.lastModified())) {
+            return index.classNames;
+        }
+
+        Set<String> classNames = new HashSet<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> jarEntries = jarFile.entries();
+            while (jarEntries.hasMoreElements()) {
+                String name = jarEntries.nextElement().getName();
+                if (name.endsWith(CLASS_FILE_EXTENSION)) {
+                    classNames.add(name.substring(0, name.length() - CLASS_FILE_EXTENSION.length()));
+                }
+            }
+        }
+        this.jars.put(path, new JarIndex(jar.length(), jar.lastModified(), classNames));
+        return classNames;
+    }
+
+    private Set<String> dependenciesOf(File classFile) throws IOException {
+        String path = classFile.getPath();
+        Node node = this.classFiles.get(path);
+        if ((node != null) && (node.size == classFile.length()) && (node.lastModified == classFile.lastModified())) {
+            return node.dependencies;
+        }
+
+        Set<String> dependencies;
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(classFile))) {
+            dependencies = readDependencies(stream);
+        }
+        this.classFiles.put(path, new Node(classFile.length(), classFile.lastModified(), dependencies));
+        return dependencies;
+    }
+
+    /**
+     * Returns the internal names of the classes named in the constant pool of the specified class file: those of its
+     * class constants, and those that appear in any of its descriptors and signatures as L<name>; or L<name><...>;.
+     * Strings that merely look like descriptors may add classes that are not really dependencies, which only ever
+     * selects more tests than necessary.
+     */
+    static Set<String> readDependencies(InputStream classFile) throws IOException {
+        DataInputStream input = new DataInputStream(classFile);
+        if (input.readInt() != CLASS_FILE_MAGIC) {
+            throw new IOException("not a class file");
+        }
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+
+        int numConstants = input.readUnsignedShort();
+        String[] utf8Constants = new String[numConstants];
+        List<Integer> classNameIndices = new ArrayList<>();
+        for (int i = 1; i < numConstants; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8Constants[i] = input.readUTF();
+                    break;
+                case 7:
+                    classNameIndices.add(input.readUnsignedShort());
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    input.readUnsignedShort();
+                    break;
+                case 15:
+                    input.readUnsignedByte();
+                    input.readUnsignedShort();
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    input.readInt();
+                    break;
+                case 5:
+                case 6:
+                    // Longs and doubles take up two entries of the pool.
+                    input.readLong();
+                    i++;
+                    break;
+                default:
+                    throw new IOException("unknown constant pool tag " + tag + " at index " + i);
+            }
+        }
+
+        Set<String> dependencies = new HashSet<>();
+        for (int index : classNameIndices) {
+            String name = utf8Constants[index];
+            if ((name != null) && (!name.startsWith("["))) {
+                dependencies.add(name);
+            }
+        }
+        for (String constant : utf8Constants) {
+            if (constant != null) {
+                addClassesOfDescriptor(constant, dependencies);
+            }
+        }
+        return dependencies;
+    }
+
+    private static void addClassesOfDescriptor(String descriptor, Set<String> dependencies) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            int end = start + 1;
+            while ((end < descriptor.length()) && (isPartOfInternalName(descriptor.charAt(end)))) {
+                end++;
+            }
+            if ((end > start + 1) && (end < descriptor.length()) && ((descriptor.charAt(end) == ';') || (descriptor.charAt(end) == '<'))) {
+                dependencies.add(descriptor.substring(start + 1, end));
+            }
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    private static boolean isPartOfInternalName(char c) {
+        return (c != ';') && (c != '<') && (c != '>') && (c != '(') && (c != ')') && (c != '[') && (c != ':') && (c != '.') && (!Character.isWhitespace(c));
+    }
+
+    private static String toInternalName(String className) {
+        String name = className.endsWith(CLASS_FILE_EXTENSION) ? className.substring(0, className.length() - CLASS_FILE_EXTENSION.length()) : className;
+        return name.replace('.', '/');
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getSimpleName() + " { num class files: " + this.classFiles.size() + ", num jars: " + this.jars.size() + " }";
+    }
+
+    /**
+     * The dependencies of a class file as of the size and last-modified time it had when it was read.
+     */
+    private static final class Node {
+        private final long size;
+        private final long lastModified;
+        private final Set<String> dependencies;
+
+        private Node(long size, long lastModified, Set<String> dependencies) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * The classes in a jar as of the size and last-modified time it had when it was listed.
+     */
+    private static final class JarIndex {
+        private final long size;
+        private final long lastModified;
+        private final Set<String> classNames;
+
+        private JarIndex(long size, long lastModified, Set<String> classNames) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classNames = classNames;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package spin.core.loader;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class that keeps track of class loaders after they have been closed so that any loader that never gets unloaded
+ * can be detected.
+ *
+ * Once a loader is closed nothing in the system should be referencing it anymore, and so it and all of the classes it
+ * defined should eventually be garbage collected and their metaspace reclaimed. Each closed loader is held onto only
+ * weakly. If a loader is still reachable long after it was closed then something is leaking it (typically a static
+ * field or thread somewhere that holds onto one of its classes) and this is reported. Leaks are only checked for when
+ * another loader is closed, so they are only ever reported by a daemon that outlives a suite: one running shards,
+ * watching a suite or using a registered classpath. A daemon that runs an ordinary suite shuts down once the suite is
+ * complete, long before any of its loaders could be suspected of leaking.
+ *
+ * This class also samples the JVM-wide class loading and metaspace statistics so that they can be reported per suite.
+ *
+ * This class is thread-safe.
+ */
+public final class ClassLoaderTracker {
+    private static final Logger LOGGER = Logger.forClass(ClassLoaderTracker.class);
+    private static final long LEAK_THRESHOLD_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private final ReferenceQueue<ClassLoader> referenceQueue = new ReferenceQueue<>();
+    private final Set<TrackedLoader> closedLoaders = new HashSet<>();
+    private final ClassLoadingMXBean classLoadingBean = ManagementFactory.getClassLoadingMXBean();
+    private final MemoryPoolMXBean metaspaceBean = findMetaspacePool();
+    private long numLoadersUnloaded = 0;
+    private long numSuspectedLeaks = 0;
+
+    /**
+     * Begins tracking the specified loader, which has just been closed, and reports any previously closed loaders that
+     * have still not been unloaded after a reasonable amount of time.
+     *
+     * @param loader The loader that has been closed.
+     * @param description A description of what the loader was used for.
+     */
+    public void trackClosedLoader(ClassLoader loader, String description) {
+        ObjectChecker.assertNonNull(loader, description);
+
+        synchronized (this.closedLoaders) {
+            this.closedLoaders.add(new TrackedLoader(loader, description, this.referenceQueue));
+        }
+        checkForLeaks();
+    }
+
+    /**
+     * Removes all of the loaders that have been unloaded since the last check and reports any loader that has not been
+     * unloaded within a reasonable amount of time of being closed. Each loader is reported at most once.
+     */
+    public void checkForLeaks() {
+        long currentTime = System.nanoTime();
+
+        synchronized (this.closedLoaders) {
+            Reference<? extends ClassLoader> unloaded = this.referenceQueue.poll();
+            while (unloaded != null) {
+                if (this.closedLoaders.remove(unloaded)) {
+                    this.numLoadersUnloaded++;
+                }
+                unloaded = this.referenceQueue.poll();
+            }
+
+            for (TrackedLoader trackedLoader : this.closedLoaders) {
+                if ((!trackedLoader.isReported) && (currentTime - trackedLoader.closedAt > LEAK_THRESHOLD_NANOS)) {
+                    trackedLoader.isReported = true;
+                    this.numSuspectedLeaks++;
+                    LOGGER.log("Suspected class loader leak: loader for " + trackedLoader.description + " was closed "
+                            + TimeUnit.NANOSECONDS.toSeconds(currentTime - trackedLoader.closedAt) + " seconds ago but has not been unloaded.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the current JVM-wide class loading and metaspace statistics.
+     *
+     * @return the current statistics.
+     */
+    public Snapshot snapshot() {
+        long metaspaceUsed = (this.metaspaceBean == null) ? 0 : this.metaspaceBean.getUsage().getUsed();
+        return new Snapshot(this.classLoadingBean.getTotalLoadedClassCount(), this.classLoadingBean.getUnloadedClassCount(), metaspaceUsed);
+    }
+
+    private static MemoryPoolMXBean findMetaspacePool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace")) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (this.closedLoaders) {
+            return this.getClass().getSimpleName() + " { awaiting unload: " + this.closedLoaders.size()
+                    + ", unloaded: " + this.numLoadersUnloaded
+                    + ", suspected leaks: " + this.numSuspectedLeaks + " }";
+        }
+    }
+
+    /**
+     * The JVM-wide class loading and metaspace statistics at some point in time.
+     */
+    public static final class Snapshot {
+        public final long totalLoadedClasses;
+        public final long totalUnloadedClasses;
+        public final long metaspaceUsedBytes;
+
+        private Snapshot(long totalLoadedClasses, long totalUnloadedClasses, long metaspaceUsedBytes) {
+            this.totalLoadedClasses = totalLoadedClasses;
+            this.totalUnloadedClasses = totalUnloadedClasses;
+            this.metaspaceUsedBytes = metaspaceUsedBytes;
+        }
+
+        /**
+         * Returns a description of how the statistics changed between the given earlier snapshot and this one.
+         */
+        public String describeChangeSince(Snapshot earlier) {
+            return "loaded " + (this.totalLoadedClasses - earlier.totalLoadedClasses) + " class(es), unloaded "
+                    + (this.totalUnloadedClasses - earlier.totalUnloadedClasses) + " class(es), metaspace changed by "
+                    + ((this.metaspaceUsedBytes - earlier.metaspaceUsedBytes) / 1024) + " KB (now "
+                    + (this.metaspaceUsedBytes / 1024) + " KB)";
+        }
+    }
+
+    private static final class TrackedLoader extends WeakReference<ClassLoader> {
+        private final String description;
+        private final long closedAt = System.nanoTime();
+        private boolean isReported = false;
+
+        private TrackedLoader(ClassLoader loader, String description, ReferenceQueue<ClassLoader> queue) {
+            super(loader, queue);
+            this.description = description;
+        }
+    }
+}
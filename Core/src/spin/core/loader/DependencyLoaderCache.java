@@ -0,0 +1,261 @@
+package spin.core.loader;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that creates the class loaders used to load a test suite, caching the parts of them that can be shared across
+ * suites.
+ *
+ * A suite's dependencies are split into two layers. The jar files, which are typically libraries that rarely change
+ * between runs, are loaded by a parent {@link PackageIndexedClassLoader} that is cached and keyed by the canonical path
+ * and content hash of each jar. Any two suites with the same unchanged jars therefore share the same parent loader along
+ * with every class it has already defined. Everything else (the directories holding the suite's own compiled tests and
+ * sources) is loaded by a fresh child loader that is created for each suite.
+ *
+ * Note that since the child delegates to its parent first, a class present in both a jar and a directory is now loaded
+ * from the jar.
+ *
+ * A cached loader whose jars have changed is no longer handed out, and is closed as soon as the last suite using it
+ * closes its own {@link SuiteLoader}.
+ *
+ * The cache lives only as long as the daemon, so a cached loader is only ever shared by the suites of a daemon that
+ * outlives a suite: one running shards, watching a suite or using a registered classpath. A daemon that runs an
+ * ordinary suite shuts down once the suite is complete, taking its cache with it.
+ *
+ * A set of dependencies can also be registered ahead of time as a {@link RegisteredClasspath}, which holds onto its jar
+ * loader so that suites referring to it skip resolving and fingerprinting their dependencies altogether.
+ *
+ * This class is thread-safe.
+ */
+public final class DependencyLoaderCache {
+    private static final Logger LOGGER = Logger.forClass(DependencyLoaderCache.class);
+    private final FileFingerprinter fingerprinter = new FileFingerprinter();
+    private final ClassLoaderTracker tracker = new ClassLoaderTracker();
+    private final Map<List<String>, CachedLoader> loaders = new HashMap<>();
+    private final Map<Integer, RegisteredClasspath> registeredClasspaths = new HashMap<>();
+    private int nextClasspathId = 0;
+
+    /**
+     * Creates a new class loader for a suite with the specified dependencies. Any jar dependencies are loaded through a
+     * cached, shared parent loader and any other dependencies through a new child loader.
+     *
+     * The returned suite loader must be closed once the suite is done with it.
+     *
+     * @param suiteId The id of the suite the loader is for.
+     * @param dependencies The paths of all of the suite's dependencies.
+     * @return the new suite loader.
+     */
+    public SuiteLoader createSuiteLoader(int suiteId, String[] dependencies) throws IOException {
+        ObjectChecker.assertNonNull((Object) dependencies);
+
+        List<File> jars = new ArrayList<>();
+        List<URL> directoryUrls = new ArrayList<>();
+        splitDependencies(dependencies, jars, directoryUrls);
+
+        LOGGER.log("Suite has " + jars.size() + " jar dependencies and " + directoryUrls.size() + " other dependencies.");
+        CachedLoader parent = jars.isEmpty() ? null : acquireJarLoader(jars);
+        ClassLoader parentLoader = (parent == null) ? ClassLoader.getSystemClassLoader() : parent.loader;
+        return new SuiteLoader(suiteId, new URLClassLoader(directoryUrls.toArray(new URL[0]), parentLoader), parent, this, this.tracker);
+    }
+
+    /**
+     * Creates a new class loader for a suite that uses the specified registered classpath in addition to its own given
+     * dependencies, which must not be jars.
+     *
+     * The registered jars are only re-validated if their size or last-modified time has changed since they were last
+     * checked.
+     *
+     * @param suiteId The id of the suite the loader is for.
+     * @param classpath The registered classpath the suite uses.
+     * @param suiteDependencies The suite's own directory dependencies.
+     * @return the new suite loader.
+     */
+    public SuiteLoader createSuiteLoader(int suiteId, RegisteredClasspath classpath, String[] suiteDependencies) throws IOException {
+        ObjectChecker.assertNonNull(classpath, suiteDependencies);
+
+        List<URL> directoryUrls = new ArrayList<>(classpath.directoryUrls);
+        for (String dependency : suiteDependencies) {
+            directoryUrls.add(new File(dependency).toURI().toURL());
+        }
+
+        CachedLoader parent;
+        synchronized (this) {
+            refreshRegisteredClasspath(classpath);
+            parent = classpath.jarLoader;
+            if (parent != null) {
+                parent.numHolders++;
+            }
+        }
+
+        LOGGER.log("Suite uses registered classpath #" + classpath.id + " with " + directoryUrls.size() + " non-jar dependencies.");
+        ClassLoader parentLoader = (parent == null) ? ClassLoader.getSystemClassLoader() : parent.loader;
+        return new SuiteLoader(suiteId, new URLClassLoader(directoryUrls.toArray(new URL[0]), parentLoader), parent, this, this.tracker);
+    }
+
+    /**
+     * Validates that all of the given dependencies exist, opens all of the jars among them and registers them as a new
+     * classpath that suites can refer to by its id.
+     *
+     * @param dependencies The paths of all of the dependencies.
+     * @return the new registered classpath.
+     */
+    public RegisteredClasspath registerClasspath(String[] dependencies) throws IOException {
+        ObjectChecker.assertNonNull((Object) dependencies);
+
+        for (String dependency : dependencies) {
+            if (!new File(dependency).exists()) {
+                throw new IOException("Dependency does not exist: " + dependency);
+            }
+        }
+
+        List<File> jars = new ArrayList<>();
+        List<URL> directoryUrls = new ArrayList<>();
+        splitDependencies(dependencies, jars, directoryUrls);
+
+        synchronized (this) {
+            CachedLoader jarLoader = jars.isEmpty() ? null : acquireJarLoader(jars);
+            RegisteredClasspath classpath = new RegisteredClasspath(this.nextClasspathId++, jars, directoryUrls, jarLoader);
+            this.registeredClasspaths.put(classpath.id, classpath);
+            LOGGER.log("Registered classpath: " + classpath);
+            return classpath;
+        }
+    }
+
+    /**
+     * Returns the registered classpath with the specified id or null if there is no such classpath.
+     *
+     * @param id The id of the classpath.
+     * @return the classpath or null.
+     */
+    public synchronized RegisteredClasspath getRegisteredClasspath(int id) {
+        return this.registeredClasspaths.get(id);
+    }
+
+    /**
+     * Closes all of the cached jar loaders. This cache should not be used after it is closed.
+     */
+    public synchronized void close() {
+        for (CachedLoader cachedLoader : this.loaders.values()) {
+            closeLoader(cachedLoader);
+        }
+        this.loaders.clear();
+        this.registeredClasspaths.clear();
+    }
+
+    /**
+     * Releases one hold on the specified cached loader, closing it if it is no longer cached and nothing holds it.
+     */
+    synchronized void release(CachedLoader cachedLoader) {
+        cachedLoader.numHolders--;
+        if ((cachedLoader.numHolders == 0) && (this.loaders.get(cachedLoader.paths) != cachedLoader)) {
+            closeLoader(cachedLoader);
+        }
+    }
+
+    /**
+     * Returns the cached loader for the given jars if none of them have changed since it was created, otherwise creates,
+     * caches and returns a new one. The returned loader is held until it is released.
+     */
+    private synchronized CachedLoader acquireJarLoader(List<File> jars) throws IOException {
+        List<String> paths = new ArrayList<>();
+        List<FileFingerprinter.Fingerprint> fingerprints = new ArrayList<>();
+        for (File jar : jars) {
+            FileFingerprinter.Fingerprint fingerprint = this.fingerprinter.fingerprint(jar);
+            paths.add(fingerprint.path);
+            fingerprints.add(fingerprint);
+        }
+
+        CachedLoader cachedLoader = this.loaders.get(paths);
+        if ((cachedLoader != null) && (cachedLoader.fingerprints.equals(fingerprints))) {
+            LOGGER.log("Reusing cached class loader for " + jars.size() + " jar dependencies.");
+            cachedLoader.numHolders++;
+            return cachedLoader;
+        }
+
+        if (cachedLoader != null) {
+            LOGGER.log("Jar dependencies have changed since they were cached: creating a new class loader.");
+            this.loaders.remove(paths);
+            if (cachedLoader.numHolders == 0) {
+                closeLoader(cachedLoader);
+            }
+        }
+
+        List<File> canonicalJars = new ArrayList<>();
+        for (String path : paths) {
+            canonicalJars.add(new File(path));
+        }
+        PackageIndexedClassLoader loader = PackageIndexedClassLoader.overJars(canonicalJars, ClassLoader.getSystemClassLoader());
+        LOGGER.log("Indexed " + loader.getNumIndexedPackages() + " packages across " + jars.size() + " jar dependencies.");
+        CachedLoader newLoader = new CachedLoader(paths, fingerprints, loader);
+        newLoader.numHolders++;
+        this.loaders.put(paths, newLoader);
+        return newLoader;
+    }
+
+    /**
+     * Swaps out the jar loader of the given registered classpath for a new one if any of its jars really have changed
+     * since it was last checked.
+     */
+    private void refreshRegisteredClasspath(RegisteredClasspath classpath) throws IOException {
+        if ((classpath.jarLoader != null) && classpath.haveJarsChanged()) {
+            LOGGER.log("Jars of registered classpath #" + classpath.id + " may have changed: re-validating them.");
+            CachedLoader refreshed = acquireJarLoader(classpath.jars);
+            release(classpath.jarLoader);
+            classpath.jarLoader = refreshed;
+            classpath.recordJarStats();
+        }
+    }
+
+    private static void splitDependencies(String[] dependencies, List<File> jars, List<URL> directoryUrls) throws IOException {
+        for (String dependency : dependencies) {
+            File file = new File(dependency);
+            if (file.isFile()) {
+                jars.add(file);
+            } else {
+                directoryUrls.add(file.toURI().toURL());
+            }
+        }
+    }
+
+    private void closeLoader(CachedLoader cachedLoader) {
+        try {
+            cachedLoader.loader.close();
+        } catch (IOException e) {
+            LOGGER.log("Encountered error closing cached class loader.");
+            e.printStackTrace();
+        }
+        this.tracker.trackClosedLoader(cachedLoader.loader, "jar dependencies " + cachedLoader.paths);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getSimpleName() + " { num cached loaders: " + this.loaders.size() + " }";
+    }
+
+    static final class CachedLoader {
+        private final List<String> paths;
+        private final List<FileFingerprinter.Fingerprint> fingerprints;
+        private final PackageIndexedClassLoader loader;
+        private int numHolders = 0;
+
+        private CachedLoader(List<String> paths, List<FileFingerprinter.Fingerprint> fingerprints, PackageIndexedClassLoader loader) {
+            this.paths = paths;
+            this.fingerprints = fingerprints;
+            this.loader = loader;
+        }
+
+        List<String> getPaths() {
+            return this.paths;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package spin.core.loader;
+
+import spin.core.util.ObjectChecker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A class that computes content hashes of files and remembers them.
+ *
+ * Hashing a large jar file is expensive, so each computed hash is remembered alongside the size and last-modified time
+ * of the file at the time it was hashed. A file is only re-read and re-hashed if either of these has changed since.
+ *
+ * This class is thread-safe.
+ */
+public final class FileFingerprinter {
+    private static final int READ_BUFFER_SIZE = 65_536;
+    private final Map<String, Fingerprint> fingerprints = new HashMap<>();
+
+    /**
+     * Returns the fingerprint of the specified file, which is its canonical path and the hash of its current contents.
+     *
+     * @param file The file to fingerprint.
+     * @return the fingerprint of the file.
+     */
+    public Fingerprint fingerprint(File file) throws IOException {
+        ObjectChecker.assertNonNull(file);
+        if (!file.isFile()) {
+            throw new IOException("Cannot fingerprint file: not a file: " + file.getPath());
+        }
+
+        String path = file.getCanonicalPath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        synchronized (this.fingerprints) {
+            Fingerprint fingerprint = this.fingerprints.get(path);
+            if ((fingerprint != null) && (fingerprint.size == size) && (fingerprint.lastModified == lastModified)) {
+                return fingerprint;
+            }
+        }
+
+        Fingerprint fingerprint = new Fingerprint(path, size, lastModified, hashContents(file));
+        synchronized (this.fingerprints) {
+            this.fingerprints.put(path, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private static String hashContents(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try (InputStream stream = new FileInputStream(file)) {
+            int numBytesRead = stream.read(buffer);
+            while (numBytesRead != -1) {
+                digest.update(buffer, 0, numBytesRead);
+                numBytesRead = stream.read(buffer);
+            }
+        }
+        return toHexString(digest.digest());
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (this.fingerprints) {
+            return this.getClass().getSimpleName() + " { num fingerprints: " + this.fingerprints.size() + " }";
+        }
+    }
+
+    /**
+     * The canonical path and content hash of a file. Two fingerprints are equal iff both their paths and hashes are.
+     */
+    public static final class Fingerprint {
+        public final String path;
+        public final String hash;
+        private final long size;
+        private final long lastModified;
+
+        private Fingerprint(String path, long size, long lastModified, String hash) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint otherFingerprint = (Fingerprint) other;
+            return this.path.equals(otherFingerprint.path) && this.hash.equals(otherFingerprint.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.path.hashCode() + this.hash.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + " { path: " + this.path + ", hash: " + this.hash + " }";
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package spin.core.loader;
+
+import spin.core.util.ObjectChecker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * A class loader over a list of jar files that finds classes and resources by package rather than by searching each jar
+ * in turn.
+ *
+ * A {@link java.net.URLClassLoader} resolves each class by asking every one of its jars, in order, whether it contains
+ * the class. With hundreds of jars most of those lookups are misses. This loader instead opens every jar exactly once
+ * up front, while doing so it walks the jar's central directory and builds an index from each package (that is, each
+ * directory in the jar) to the jars that contain entries in that package. Finding a class is then a hash lookup of its
+ * package followed by a single entry lookup and read in the (almost always one) jar that holds it.
+ *
+ * The jars are kept open for the lifetime of the loader. The JDK's zip implementation keeps each jar's central directory
+ * in memory, so entry lookups never touch the disk; only reading the entry's bytes does.
+ *
+ * Resources are served as jar: URLs that read through the loader's own jar handles. Opening a plain jar: URL would
+ * instead open the jar a second time and cache it JVM-wide, keeping it open long after this loader is closed.
+ *
+ * Classes are searched for in jar order, same as a {@link java.net.URLClassLoader}, and this loader delegates to its
+ * parent first. This loader is parallel-capable.
+ */
+public final class PackageIndexedClassLoader extends ClassLoader implements Closeable {
+    private static final int[] NO_JARS = new int[0];
+    private final IndexedJar[] jars;
+    private final Map<String, int[]> packageToJars;
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private PackageIndexedClassLoader(IndexedJar[] jars, Map<String, int[]> packageToJars, ClassLoader parent) {
+        super(parent);
+        this.jars = jars;
+        this.packageToJars = packageToJars;
+    }
+
+    /**
+     * Opens all of the specified jar files and indexes their contents, returning a new loader over them. The jars are
+     * searched in the order given.
+     *
+     * @param jarFiles The jar files to load from.
+     * @param parent The parent class loader.
+     * @return the new loader.
+     */
+    public static PackageIndexedClassLoader overJars(List<File> jarFiles, ClassLoader parent) throws IOException {
+        ObjectChecker.assertNonNull(jarFiles);
+
+        IndexedJar[] jars = new IndexedJar[jarFiles.size()];
+        Map<String, List<Integer>> index = new HashMap<>();
+        try {
+            for (int i = 0; i < jars.length; i++) {
+                jars[i] = IndexedJar.open(jarFiles.get(i));
+                Enumeration<JarEntry> entries = jars[i].jar.entries();
+                while (entries.hasMoreElements()) {
+                    String packageName = packageOfEntry(entries.nextElement().getName());
+                    List<Integer> jarsInPackage = index.computeIfAbsent(packageName, k -> new ArrayList<>(1));
+                    if (jarsInPackage.isEmpty() || jarsInPackage.get(jarsInPackage.size() - 1) != i) {
+                        jarsInPackage.add(i);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            closeAll(jars);
+            throw e;
+        }
+
+        Map<String, int[]> packageToJars = new HashMap<>(index.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : index.entrySet()) {
+            int[] jarIndices = new int[entry.getValue().size()];
+            for (int i = 0; i < jarIndices.length; i++) {
+                jarIndices[i] = entry.getValue().get(i);
+            }
+            packageToJars.put(entry.getKey(), jarIndices);
+        }
+        return new PackageIndexedClassLoader(jars, packageToJars, parent);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String entryName = name.replace('.', '/') + ".class";
+        for (int jarIndex : jarsContaining(entryName)) {
+            IndexedJar indexedJar = this.jars[jarIndex];
+            JarEntry entry = indexedJar.jar.getJarEntry(entryName);
+            if (entry != null) {
+                try {
+                    byte[] bytes = readEntry(indexedJar.jar, entry);
+                    definePackageIfAbsent(name, indexedJar);
+                    return defineClass(name, bytes, 0, bytes.length, indexedJar.protectionDomain);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException("Failed to read class " + name + " from " + indexedJar.file, e);
+                }
+            }
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        for (int jarIndex : jarsContaining(name)) {
+            IndexedJar indexedJar = this.jars[jarIndex];
+            if (indexedJar.jar.getJarEntry(name) != null) {
+                return indexedJar.urlOf(name);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) {
+        List<URL> urls = new ArrayList<>();
+        for (int jarIndex : jarsContaining(name)) {
+            IndexedJar indexedJar = this.jars[jarIndex];
+            if (indexedJar.jar.getJarEntry(name) != null) {
+                URL url = indexedJar.urlOf(name);
+                if (url != null) {
+                    urls.add(url);
+                }
+            }
+        }
+        return Collections.enumeration(urls);
+    }
+
+    /**
+     * Returns the number of distinct packages across all jars in this loader.
+     *
+     * @return the number of indexed packages.
+     */
+    public int getNumIndexedPackages() {
+        return this.packageToJars.size();
+    }
+
+    /**
+     * Closes all of the jars held open by this loader. Classes already loaded remain usable but nothing new can be
+     * loaded afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        closeAll(this.jars);
+    }
+
+    private int[] jarsContaining(String entryName) {
+        int[] jarIndices = this.packageToJars.get(packageOfEntry(entryName));
+        return (jarIndices == null) ? NO_JARS : jarIndices;
+    }
+
+    private void definePackageIfAbsent(String className, IndexedJar indexedJar) {
+        int lastDot = className.lastIndexOf('.');
+        if (lastDot == -1) {
+            return;
+        }
+        String packageName = className.substring(0, lastDot);
+        if (getDefinedPackage(packageName) == null) {
+            try {
+                Attributes attributes = (indexedJar.manifest == null) ? null : indexedJar.manifest.getMainAttributes();
+                if (attributes == null) {
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                } else {
+                    definePackage(packageName,
+                            attributes.getValue(Attributes.Name.SPECIFICATION_TITLE),
+                            attributes.getValue(Attributes.Name.SPECIFICATION_VERSION),
+                            attributes.getValue(Attributes.Name.SPECIFICATION_VENDOR),
+                            attributes.getValue(Attributes.Name.IMPLEMENTATION_TITLE),
+                            attributes.getValue(Attributes.Name.IMPLEMENTATION_VERSION),
+                            attributes.getValue(Attributes.Name.IMPLEMENTATION_VENDOR),
+                            null);
+                }
+            } catch (IllegalArgumentException e) {
+                // Another thread defined the package concurrently, this is fine.
+            }
+        }
+    }
+
+    private static byte[] readEntry(JarFile jar, JarEntry entry) throws IOException {
+        try (InputStream stream = jar.getInputStream(entry)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    /**
+     * Returns the package an entry belongs to, which is the directory portion of its name, or the empty string for an
+     * entry at the root of a jar.
+     */
+    private static String packageOfEntry(String entryName) {
+        int lastSlash = entryName.lastIndexOf('/');
+        return (lastSlash == -1) ? "" : entryName.substring(0, lastSlash);
+    }
+
+    private static void closeAll(IndexedJar[] jars) throws IOException {
+        IOException error = null;
+        for (IndexedJar indexedJar : jars) {
+            if (indexedJar != null) {
+                try {
+                    indexedJar.jar.close();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { num jars: " + this.jars.length + ", num packages: " + this.packageToJars.size() + " }";
+    }
+
+    private static final class IndexedJar extends URLStreamHandler {
+        private final File file;
+        private final JarFile jar;
+        private final Manifest manifest;
+        private final String jarUrlPrefix;
+        private final ProtectionDomain protectionDomain;
+
+        private IndexedJar(File file, JarFile jar, Manifest manifest, URL fileUrl) {
+            this.file = file;
+            this.jar = jar;
+            this.manifest = manifest;
+            this.jarUrlPrefix = "jar:" + fileUrl + "!/";
+            this.protectionDomain = new ProtectionDomain(new CodeSource(fileUrl, (java.security.cert.Certificate[]) null), null);
+        }
+
+        private static IndexedJar open(File file) throws IOException {
+            JarFile jar = new JarFile(file, true, ZipFile.OPEN_READ, JarFile.runtimeVersion());
+            try {
+                return new IndexedJar(file, jar, jar.getManifest(), file.toURI().toURL());
+            } catch (IOException e) {
+                jar.close();
+                throw e;
+            }
+        }
+
+        private URL urlOf(String entryName) {
+            try {
+                return new URL(null, this.jarUrlPrefix + entryName, this);
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected void parseURL(URL url, String spec, int start, int limit) {
+            // The whole of a jar: URL after the scheme is its file, which is all that is needed to find its entry.
+            setURL(url, "jar", null, -1, null, null, spec.substring(start, limit), null, null);
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            return new EntryConnection(url, this);
+        }
+    }
+
+    /**
+     * A connection to an entry of one of the loader's jars, which reads the entry through the loader's own handle on the
+     * jar rather than through the JVM-wide cache of jar files. It never uses caches.
+     */
+    private static final class EntryConnection extends JarURLConnection {
+        private final IndexedJar indexedJar;
+        private JarEntry entry = null;
+
+        private EntryConnection(URL url, IndexedJar indexedJar) throws MalformedURLException {
+            super(url);
+            this.indexedJar = indexedJar;
+            this.useCaches = false;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (!this.connected) {
+                try {
+                    this.entry = this.indexedJar.jar.getJarEntry(getEntryName());
+                } catch (IllegalStateException e) {
+                    throw new IOException("The loader of " + this.indexedJar.file + " has been closed", e);
+                }
+                if (this.entry == null) {
+                    throw new FileNotFoundException("No entry " + getEntryName() + " in " + this.indexedJar.file);
+                }
+                this.connected = true;
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            try {
+                return this.indexedJar.jar.getInputStream(this.entry);
+            } catch (IllegalStateException e) {
+                throw new IOException("The loader of " + this.indexedJar.file + " has been closed", e);
+            }
+        }
+
+        @Override
+        public JarEntry getJarEntry() throws IOException {
+            connect();
+            return this.entry;
+        }
+
+        /**
+         * Returns a new handle on the jar, which the caller must close, so that closing it cannot close the loader's.
+         */
+        @Override
+        public JarFile getJarFile() throws IOException {
+            return new JarFile(this.indexedJar.file, true, ZipFile.OPEN_READ, JarFile.runtimeVersion());
+        }
+
+        @Override
+        public Manifest getManifest() {
+            return this.indexedJar.manifest;
+        }
+
+        @Override
+        public int getContentLength() {
+            long length = getContentLengthLong();
+            return (length > Integer.MAX_VALUE) ? -1 : (int) length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                return getJarEntry().getSize();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package spin.core.loader;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * A set of dependencies that has been registered with the server ahead of time, so that any number of suites can later
+ * refer to it by its id rather than each sending (and the server re-validating) the whole set again. The daemon stays
+ * up after registering a classpath and after each suite that uses one, rather than shutting down once the suite is
+ * complete as it does after an ordinary suite, so that the suites that follow can use it too.
+ *
+ * The jars of a registered classpath are opened once, when it is registered, and stay open. Each time a suite uses the
+ * classpath the size and last-modified time of every jar is checked, which is cheap, and only if one of them has
+ * changed are the jars re-hashed and, if their contents really did change, reopened.
+ *
+ * Instances of this class are only ever mutated by the {@link DependencyLoaderCache} that created them, under its lock.
+ */
+public final class RegisteredClasspath {
+    public final int id;
+    final List<File> jars;
+    final List<URL> directoryUrls;
+    final long[] jarSizes;
+    final long[] jarLastModifieds;
+    DependencyLoaderCache.CachedLoader jarLoader;
+
+    RegisteredClasspath(int id, List<File> jars, List<URL> directoryUrls, DependencyLoaderCache.CachedLoader jarLoader) {
+        this.id = id;
+        this.jars = jars;
+        this.directoryUrls = directoryUrls;
+        this.jarSizes = new long[jars.size()];
+        this.jarLastModifieds = new long[jars.size()];
+        this.jarLoader = jarLoader;
+        recordJarStats();
+    }
+
+    /**
+     * Returns true iff the size or last-modified time of any of the jars has changed since they were last recorded.
+     */
+    boolean haveJarsChanged() {
+        for (int i = 0; i < this.jars.size(); i++) {
+            File jar = this.jars.get(i);
+            if ((jar.length() != this.jarSizes[i]) || (jar.lastModified() != this.jarLastModifieds[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void recordJarStats() {
+        for (int i = 0; i < this.jars.size(); i++) {
+            this.jarSizes[i] = this.jars.get(i).length();
+            this.jarLastModifieds[i] = this.jars.get(i).lastModified();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { id: " + this.id + ", num jars: " + this.jars.size() + ", num directories: " + this.directoryUrls.size() + " }";
+    }
+}
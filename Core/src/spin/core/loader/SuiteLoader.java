@@ -0,0 +1,98 @@
+package spin.core.loader;
+
+import spin.core.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class loader of a single test suite, along with the means to close it once the suite is done with it.
+ *
+ * Closing a suite loader closes its own child loader, releases its hold on the shared parent loader of its jar
+ * dependencies and hands the closed loader off to be tracked so that a failure to unload it can be detected. The class
+ * loading statistics over the lifetime of the suite are logged at this point as well.
+ *
+ * This class is thread-safe.
+ */
+public final class SuiteLoader {
+    private static final Logger LOGGER = Logger.forClass(SuiteLoader.class);
+    private final int suiteId;
+    private final URLClassLoader classLoader;
+    private final DependencyLoaderCache.CachedLoader parent;
+    private final DependencyLoaderCache cache;
+    private final ClassLoaderTracker tracker;
+    private final ClassLoaderTracker.Snapshot snapshotAtCreation;
+    private boolean isClosed = false;
+
+    SuiteLoader(int suiteId, URLClassLoader classLoader, DependencyLoaderCache.CachedLoader parent, DependencyLoaderCache cache, ClassLoaderTracker tracker) {
+        this.suiteId = suiteId;
+        this.classLoader = classLoader;
+        this.parent = parent;
+        this.cache = cache;
+        this.tracker = tracker;
+        this.snapshotAtCreation = tracker.snapshot();
+    }
+
+    /**
+     * Returns the class loader to load the suite's classes with.
+     *
+     * @return the suite class loader.
+     */
+    public ClassLoader getClassLoader() {
+        return this.classLoader;
+    }
+
+    /**
+     * Returns the full classpath of the suite as URLs, its jar dependencies first, in the order they are searched in,
+     * so that the suite can be loaded the same way in another JVM.
+     *
+     * @return the classpath URLs.
+     */
+    public List<String> getClasspath() {
+        List<String> classpath = new ArrayList<>();
+        if (this.parent != null) {
+            for (String path : this.parent.getPaths()) {
+                classpath.add(new File(path).toURI().toString());
+            }
+        }
+        for (URL url : this.classLoader.getURLs()) {
+            classpath.add(url.toString());
+        }
+        return classpath;
+    }
+
+    /**
+     * Closes this suite loader. Nothing loaded by it should be used after this point. This method is idempotent.
+     */
+    public void close() {
+        synchronized (this) {
+            if (this.isClosed) {
+                return;
+            }
+            this.isClosed = true;
+        }
+
+        try {
+            this.classLoader.close();
+        } catch (IOException e) {
+            LOGGER.log("Encountered error closing class loader of suite #" + this.suiteId);
+            e.printStackTrace();
+        }
+        if (this.parent != null) {
+            this.cache.release(this.parent);
+        }
+        this.tracker.trackClosedLoader(this.classLoader, "suite #" + this.suiteId);
+
+        LOGGER.log("Class loading for suite #" + this.suiteId + ": " + this.tracker.snapshot().describeChangeSince(this.snapshotAtCreation));
+        LOGGER.log("Class loader tracking: " + this.tracker);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getSimpleName() + " { suite id: " + this.suiteId + (this.isClosed ? ", [closed] }" : ", [open] }");
+    }
+}
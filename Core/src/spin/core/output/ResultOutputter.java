@@ -1,21 +1,28 @@
 package spin.core.output;
 
 import spin.core.server.session.RequestSessionContext;
+import spin.core.server.response.ReportedTestResult;
 import spin.core.server.response.RunSuiteResponse;
+import spin.core.server.response.WatchSuiteResponse;
+import spin.core.execution.ExecutorLane;
+import spin.core.execution.ExecutorPools;
 import spin.core.execution.TestResult;
+import spin.core.history.ResultCache;
+import spin.core.history.TestHistory;
 import spin.core.lifecycle.PanicOnlyMonitor;
-import spin.core.util.CloseableBlockingQueue;
 import spin.core.util.Logger;
 import spin.core.util.ObjectChecker;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.List;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
 
@@ -23,52 +30,65 @@ import java.util.concurrent.TimeUnit;
  * The class that is responsible for outputting the test results to the console.
  *
  * This class has a finite amount of work to do and when it is complete it will notify its life-cycle listener via its
- * {@link PanicOnlyMonitor}.
+ * {@link PanicOnlyMonitor}. A suite that is a shard of a larger suite does not count as that work: its results are sent
+ * back to the shard's coordinator and the outputter carries on with the next suite.
  */
 public final class ResultOutputter implements Runnable {
     private static final Logger LOGGER = Logger.forClass(ResultOutputter.class);
     private final CyclicBarrier barrier;
     private final PanicOnlyMonitor shutdownMonitor;
-    private final List<CloseableBlockingQueue<TestResult>> incomingResultQueues;
+    private final ExecutorPools executorPools;
+    private final TestHistory testHistory;
+    private final ResultCache resultCache;
     private final Connection dbConnection;
     private volatile boolean isAlive = true;
 
-    private ResultOutputter(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, List<CloseableBlockingQueue<TestResult>> incomingResultQueues, Connection dbConnection) {
-        ObjectChecker.assertNonNull(barrier, shutdownMonitor, incomingResultQueues);
+    private ResultOutputter(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, ExecutorPools executorPools, TestHistory testHistory, ResultCache resultCache, Connection dbConnection) {
+        ObjectChecker.assertNonNull(barrier, shutdownMonitor, executorPools, testHistory);
         this.barrier = barrier;
         this.shutdownMonitor = shutdownMonitor;
-        this.incomingResultQueues = incomingResultQueues;
+        this.executorPools = executorPools;
+        this.testHistory = testHistory;
+        this.resultCache = resultCache;
         this.dbConnection = dbConnection;
     }
 
     /**
      * Creates a new result outputter that expects to witness the specified number of tests per each class as given by
-     * the mapping and which expects to find all of the test results on the list of queues given to it.
+     * the mapping and which expects to find all of the test results on the lanes of the pools given to it. The
+     * measurements of every test are recorded into the given history, and if a result cache is given the outcome of every
+     * test is recorded into it, both of which are saved once the suite is complete.
      *
      * @param barrier The barrier to wait on before running.
      * @param shutdownMonitor The shutdown monitor.
-     * @param incomingResultQueues The queues that test results may be coming in on asynchronously.
+     * @param executorPools The pools whose lanes test results may be coming in on asynchronously.
+     * @param testHistory The history to record the measurements of the tests into.
+     * @param resultCache The result cache to record the outcomes of the tests into, or null if it is not in use.
      * @return the new outputter.
      */
-    public static ResultOutputter outputter(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, List<CloseableBlockingQueue<TestResult>> incomingResultQueues) {
-        return new ResultOutputter(barrier, shutdownMonitor, incomingResultQueues, null);
+    public static ResultOutputter outputter(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, ExecutorPools executorPools, TestHistory testHistory, ResultCache resultCache) {
+        return new ResultOutputter(barrier, shutdownMonitor, executorPools, testHistory, resultCache, null);
     }
 
     /**
      * Creates a new result outputter that expects to witness the specified number of tests per each class as given by
-     * the mapping and which expects to find all of the test results on the list of queues given to it.
+     * the mapping and which expects to find all of the test results on the lanes of the pools given to it. The
+     * measurements of every test are recorded into the given history, and if a result cache is given the outcome of every
+     * test is recorded into it, both of which are saved once the suite is complete.
      *
      * As each entry comes in it will be written to a database using the database writer.
      *
      * @param barrier The barrier to wait on before running.
      * @param shutdownMonitor The shutdown monitor.
-     * @param incomingResultQueues The queues that test results may be coming in on asynchronously.
+     * @param executorPools The pools whose lanes test results may be coming in on asynchronously.
+     * @param testHistory The history to record the measurements of the tests into.
+     * @param resultCache The result cache to record the outcomes of the tests into, or null if it is not in use.
      * @param dbConnection The database connection.
      * @return the new outputter.
      */
-    public static ResultOutputter outputterToConsoleAndDb(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, List<CloseableBlockingQueue<TestResult>> incomingResultQueues, Connection dbConnection) {
+    public static ResultOutputter outputterToConsoleAndDb(CyclicBarrier barrier, PanicOnlyMonitor shutdownMonitor, ExecutorPools executorPools, TestHistory testHistory, ResultCache resultCache, Connection dbConnection) {
         ObjectChecker.assertNonNull(dbConnection);
-        return new ResultOutputter(barrier, shutdownMonitor, incomingResultQueues, dbConnection);
+        return new ResultOutputter(barrier, shutdownMonitor, executorPools, testHistory, resultCache, dbConnection);
     }
 
     @Override
@@ -81,22 +101,35 @@ public final class ResultOutputter implements Runnable {
             LOGGER.log(Thread.currentThread().getName() + " thread started.");
 
             System.out.println("\n===============================================================");
+            boolean wasLastSweepEmpty = true;
             while (this.isAlive) {
-                for (CloseableBlockingQueue<TestResult> incomingResultQueue : this.incomingResultQueues) {
+                // The lanes are looked up again on every sweep since the pool may have grown or shrunk. Lanes are only
+                // waited on, and then only briefly, once a whole sweep has come up empty. Otherwise a lane that has a
+                // backlog of results, such as one running a batch of short tests, would only be drained by one result
+                // per wait on each of the idle lanes.
+                boolean isSweepEmpty = true;
+                for (ExecutorLane lane : this.executorPools.getLanes()) {
                     if (!this.isAlive) {
                         break;
                     }
 
-                    LOGGER.log("Checking for new results...");
-
-                    result = incomingResultQueue.poll(5, TimeUnit.MINUTES);
+                    result = wasLastSweepEmpty ? lane.results.poll(10, TimeUnit.MILLISECONDS) : lane.results.tryPoll();
 
                     if (result != null) {
                         LOGGER.log("New result obtained.");
+                        isSweepEmpty = false;
 
-                        // Report the test as successful or failed.
+                        // Report the test as successful, failed or skipped.
                         System.out.println("\nTEST RESULT:");
-                        if (result.successful) {
+                        if (result.skipped) {
+                            System.out.println("\tTest: " + result.testMethod.getName() + ", Class: " + result.testClass.getName());
+                            System.out.println("\tSKIPPED");
+                            result.testSuiteDetails.incrementNumSkippedTestsInClass(result.testClass);
+                        } else if (result.cached) {
+                            System.out.println("\tTest: " + result.testMethod.getName() + ", Class: " + result.testClass.getName());
+                            System.out.println("\tSUCCESS (cached)");
+                            result.testSuiteDetails.incrementNumCachedTestsInClass(result.testClass);
+                        } else if (result.successful) {
                             System.out.println("\tTest: " + result.testMethod.getName() + ", Class: " + result.testClass.getName());
                             System.out.println("\tSUCCESS, duration: " + nanosToSecondsString(result.durationNanos));
                             result.testSuiteDetails.incrementNumSuccessfulTestsInClass(result.testClass, result.durationNanos);
@@ -109,40 +142,95 @@ public final class ResultOutputter implements Runnable {
                         // Display the test's output.
                         if (!result.stdout.isEmpty()) {
                             System.out.println("\t---- stdout ----");
-                            System.out.print(result.stdout);
+                            result.stdout.writeTo(System.out);
                             System.out.println("\t----------------");
                         }
                         if (!result.stderr.isEmpty()) {
                             System.err.println("\t---- stderr ----");
-                            System.err.print(result.stderr);
+                            result.stderr.writeTo(System.err);
                             System.err.println("\t----------------");
                         }
-                        writeTestResultToDatabase(result);
+                        // A skipped or cached test was never run, so there is nothing to record of it.
+                        if ((!result.skipped) && (!result.cached)) {
+                            writeTestResultToDatabase(result);
+                            this.testHistory.record(TestHistory.nameOf(result.testClass, result.testMethod), result.successful, result.durationNanos, result.cpuNanos);
+                            String resultCacheKey = result.testSuiteDetails.getResultCacheKey(result.testClass);
+                            if ((this.resultCache != null) && (resultCacheKey != null)) {
+                                this.resultCache.record(result.testClass.getName(), resultCacheKey, result.testMethod.getName(), result.successful);
+                            }
+                        }
+
+                        // A shard reports its results back to its coordinator once it is done, a watched suite streams them.
+                        if ((result.testSuiteDetails.isShard()) || (result.testSuiteDetails.isWatched())) {
+                            ReportedTestResult reportedResult = result.skipped
+                                    ? ReportedTestResult.skipped(result.testClass.getName(), result.testMethod.getName())
+                                    : result.cached
+                                    ? ReportedTestResult.cached(result.testClass.getName(), result.testMethod.getName())
+                                    : ReportedTestResult.result(result.testClass.getName(), result.testMethod.getName(), result.successful, result.durationNanos, result.cpuNanos, result.stdout.asString(), result.stderr.asString());
+                            if (result.testSuiteDetails.isShard()) {
+                                result.testSuiteDetails.addShardResult(reportedResult);
+                            } else {
+                                result.sessionContext.streamResponse(WatchSuiteResponse.result(result.testSuiteDetails.getWatchRun(), reportedResult).toJsonString() + "\n");
+                            }
+                        }
+
+                        // Every sink is done with the output so any spilled output can be deleted now.
+                        result.stdout.discard();
+                        result.stderr.discard();
 
                         // If all tests in class are complete then report the class as finished.
                         if (result.testSuiteDetails.isClassComplete(result.testClass)) {
                             System.out.println("\nCLASS RESULT:");
                             System.out.println("\tClass: " + result.testClass.getName());
-                            System.out.println("\tTests: " + result.testSuiteDetails.getNumTestsInClass(result.testClass) + ", Successes: " + result.testSuiteDetails.getTotalNumSuccessfulTestsInClass(result.testClass) + ", failures: " + result.testSuiteDetails.getTotalNumFailedTestsInClass(result.testClass));
+                            System.out.println("\tTests: " + result.testSuiteDetails.getNumTestsInClass(result.testClass) + ", Successes: " + result.testSuiteDetails.getTotalNumSuccessfulTestsInClass(result.testClass) + ", failures: " + result.testSuiteDetails.getTotalNumFailedTestsInClass(result.testClass)
+                                    + (result.testSuiteDetails.getTotalNumSkippedTestsInClass(result.testClass) > 0 ? ", skipped: " + result.testSuiteDetails.getTotalNumSkippedTestsInClass(result.testClass) : ""));
                             System.out.println("\tDuration: " + nanosToSecondsString(result.testSuiteDetails.getTotalDurationForClass(result.testClass)));
                             writeClassResultToDatabase(result);
+                            String classFingerprint = result.testSuiteDetails.getClassFingerprint(result.testClass);
+                            if (classFingerprint != null) {
+                                this.testHistory.recordClassFingerprint(result.testClass.getName(), classFingerprint);
+                            }
                             LOGGER.log("Witnessed all tests in class: " + result.testClass.getName());
                         }
 
                         // If all test classes are complete then report the suite as finished and exit.
                         if (result.testSuiteDetails.isSuiteComplete()) {
                             System.out.println("\nSUITE RESULT:");
-                            System.out.println("\tTests: " + result.testSuiteDetails.getTotalNumTests() + ", successes: " + result.testSuiteDetails.getTotalNumSuccessfulTests() + ", failures: " + result.testSuiteDetails.getTotalNumFailedTests());
+                            System.out.println("\tTests: " + result.testSuiteDetails.getTotalNumTests() + ", successes: " + result.testSuiteDetails.getTotalNumSuccessfulTests() + ", failures: " + result.testSuiteDetails.getTotalNumFailedTests()
+                                    + (result.testSuiteDetails.getTotalNumSkippedTests() > 0 ? ", skipped: " + result.testSuiteDetails.getTotalNumSkippedTests() : "")
+                                    + (result.testSuiteDetails.getTotalNumCachedTests() > 0 ? ", cached: " + result.testSuiteDetails.getTotalNumCachedTests() : ""));
                             System.out.println("\tDuration: " + nanosToSecondsString(result.testSuiteDetails.getTotalSuiteDuration()));
+                            if (result.testSuiteDetails.getTimeToFirstFailureMillis() >= 0) {
+                                System.out.println("\tTime to first failure: " + result.testSuiteDetails.getTimeToFirstFailureMillis() + "ms");
+                            }
                             writeSuiteResultToDatabase(result);
+                            saveTestHistory();
+                            saveResultCache();
 
-                            sendResponse(result.sessionContext, RunSuiteResponse.successful(result.testSuiteDbId));
+                            boolean isShard = result.testSuiteDetails.isShard();
+                            boolean isWatched = result.testSuiteDetails.isWatched();
+                            boolean keepsDaemonAlive = result.testSuiteDetails.keepsDaemonAlive();
+                            if (isWatched) {
+                                // The connection of a watched suite stays open for the runs to come.
+                                result.sessionContext.streamResponse(WatchSuiteResponse.runComplete(result.testSuiteDetails.getWatchRun(), result.testSuiteDetails.getTotalNumTests(), result.testSuiteDetails.getTotalNumSuccessfulTests(), result.testSuiteDetails.getTotalNumFailedTests(), result.testSuiteDetails.getTotalNumSkippedTests(), result.testSuiteDetails.getTotalNumCachedTests(), result.testSuiteDetails.getTotalSuiteDuration(), result.testSuiteDetails.getTimeToFirstFailureMillis()).toJsonString() + "\n");
+                            } else {
+                                sendResponse(result.sessionContext, isShard
+                                        ? RunSuiteResponse.shard(result.testSuiteDbId, result.testSuiteDetails.getTimeToFirstFailureMillis(), result.testSuiteDetails.getTotalNumSkippedTests(), result.testSuiteDetails.getTotalNumCachedTests(), result.testSuiteDetails.getShardResults())
+                                        : RunSuiteResponse.successful(result.testSuiteDbId, result.testSuiteDetails.getTimeToFirstFailureMillis(), result.testSuiteDetails.getTotalNumSkippedTests(), result.testSuiteDetails.getTotalNumCachedTests()));
+                            }
                             LOGGER.log("Witnessed all tests in suite.");
-                            this.isAlive = false;
+
+                            // The suite is done: close its class loader and drop our last reference to its classes.
+                            result.testSuiteDetails.releaseSuiteResources();
+                            result = null;
+                            if (!keepsDaemonAlive) {
+                                this.isAlive = false;
+                            }
                             break;
                         }
                     }
                 }
+                wasLastSweepEmpty = isSweepEmpty;
             }
 
         } catch (Throwable t) {
@@ -168,6 +256,32 @@ public final class ResultOutputter implements Runnable {
         }
     }
 
+    /**
+     * Saves the test history. Failing to do so does not fail the suite since the history only informs scheduling.
+     */
+    private void saveTestHistory() {
+        try {
+            this.testHistory.save();
+        } catch (IOException e) {
+            LOGGER.log("Unable to save test history: " + e);
+        }
+    }
+
+    /**
+     * Saves the result cache, if it is in use. Failing to do so does not fail the suite since the cache can always be
+     * rebuilt by running the tests again.
+     */
+    private void saveResultCache() {
+        if (this.resultCache == null) {
+            return;
+        }
+        try {
+            this.resultCache.save();
+        } catch (IOException e) {
+            LOGGER.log("Unable to save result cache: " + e);
+        }
+    }
+
     /**
      * Returns true iff this outputter is still alive.
      *
@@ -190,16 +304,20 @@ public final class ResultOutputter implements Runnable {
         return this.getClass().getName() + (this.isAlive ? " { [running] }" : " { [shutdown] }");
     }
 
-    private void writeTestResultToDatabase(TestResult testResult) throws SQLException {
+    private void writeTestResultToDatabase(TestResult testResult) throws SQLException, IOException {
         if (this.dbConnection != null) {
-            Statement statement = this.dbConnection.createStatement();
-            statement.execute("INSERT INTO test(name, is_success, stdout, stderr, duration, class) VALUES('"
-                    + testResult.testMethod.getName() + "', '"
-                    + (testResult.successful ? 1 : 0) + "', '"
-                    + testResult.stdout + "', '"
-                    + testResult.stderr + "', "
+            // The output is streamed into the statement since it may have been spilled to disk for being too large.
+            try (PreparedStatement statement = this.dbConnection.prepareStatement("INSERT INTO test(name, is_success, stdout, stderr, duration, class) VALUES(?, '"
+                    + (testResult.successful ? 1 : 0) + "', ?, ?, "
                     + testResult.durationNanos + ", "
                     + testResult.testClassDbId + ")");
+                 Reader stdout = testResult.stdout.openReader();
+                 Reader stderr = testResult.stderr.openReader()) {
+                statement.setString(1, testResult.testMethod.getName());
+                statement.setCharacterStream(2, stdout);
+                statement.setCharacterStream(3, stderr);
+                statement.execute();
+            }
         }
     }
 
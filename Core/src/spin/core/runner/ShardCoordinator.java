@@ -0,0 +1,315 @@
+package spin.core.runner;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import spin.core.exception.ParseException;
+import spin.core.execution.ExecutorPools;
+import spin.core.execution.TestInfo;
+import spin.core.server.request.RunSuiteClientRequest;
+import spin.core.server.response.ReportedTestResult;
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a suite as the coordinator of its shards: the suite's test classes are split into as many shards as there are
+ * workers, that is other Spin daemons, and each shard is sent to a worker as a run suite request of its own over the
+ * usual socket protocol. The result of each test that a worker reports back is published on this daemon's pools as if
+ * the test had run here, so the results of all of the shards are merged into the suite's one {@link TestSuiteDetails},
+ * its history and its response.
+ *
+ * The classes are split so that the shards are predicted to take about as long as each other: each class weighs as much
+ * as the predicted durations of its tests, or as many tests as it has if nothing is known of their durations, and the
+ * heaviest class that is left always goes to the lightest shard. A class is never split across shards, so that its class
+ * fixture and execution mode still apply to it as a whole.
+ *
+ * A shard whose worker cannot be reached, dies before it responds, does not respond in time or responds with an error
+ * is retried on the next worker, preferring the workers that have not failed a shard yet, until each worker has been
+ * tried once. A worker has twice as long to respond as the tests of its shard are predicted to take one after the
+ * other, plus a margin for loading the shard, so that a worker that hangs or is cut off without the connection being
+ * closed does not hold up the suite forever. The tests of a shard that no worker could run, and any test that a worker
+ * did not report a result for, are failed.
+ *
+ * Each shard is sent from a thread of its own.
+ */
+final class ShardCoordinator {
+    private static final Logger LOGGER = Logger.forClass(ShardCoordinator.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final long RESPONSE_MARGIN_MILLIS = 60_000;
+    private static final long UNPREDICTED_TEST_MILLIS = 10_000;
+    private final RunSuiteClientRequest request;
+    private final ExecutorPools executorPools;
+    private final Set<String> failedWorkers = ConcurrentHashMap.newKeySet();
+
+    private ShardCoordinator(RunSuiteClientRequest request, ExecutorPools executorPools) {
+        this.request = request;
+        this.executorPools = executorPools;
+    }
+
+    /**
+     * Creates a coordinator of the shards of the suite of the specified request.
+     *
+     * @param request The request to run the suite, which must be coordinated.
+     * @param executorPools The pools to publish the results of the tests on.
+     * @return the new coordinator.
+     */
+    static ShardCoordinator forRequest(RunSuiteClientRequest request, ExecutorPools executorPools) {
+        ObjectChecker.assertNonNull(request, executorPools);
+        if (!request.isCoordinated()) {
+            throw new IllegalArgumentException("request is not coordinated: " + request);
+        }
+        return new ShardCoordinator(request, executorPools);
+    }
+
+    /**
+     * Splits the specified tests into shards, runs each of them on a worker and publishes the results of all of the
+     * tests. Returns once every shard is done.
+     *
+     * @param classToTestInfoMap The tests of the suite by their class, whose durations have been predicted if known.
+     */
+    void runShards(Map<Class<?>, List<TestInfo>> classToTestInfoMap) throws InterruptedException {
+        List<List<Class<?>>> shards = splitIntoShards(classToTestInfoMap, this.request.getWorkers().size());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            int shardIndex = i;
+            List<Class<?>> shard = shards.get(i);
+            Thread thread = new Thread(() -> runShard(shardIndex, shard, classToTestInfoMap), "spin-shard-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        LOGGER.log("Sent " + shards.size() + " shards to " + this.request.getWorkers().size() + " workers.");
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    static List<List<Class<?>>> splitIntoShards(Map<Class<?>, List<TestInfo>> classToTestInfoMap, int numWorkers) {
+        boolean isAnyDurationKnown = false;
+        for (List<TestInfo> testInfos : classToTestInfoMap.values()) {
+            for (TestInfo testInfo : testInfos) {
+                isAnyDurationKnown |= testInfo.getPredictedDurationNanos() > 0;
+            }
+        }
+
+        Map<Class<?>, Long> weights = new HashMap<>();
+        for (Map.Entry<Class<?>, List<TestInfo>> entry : classToTestInfoMap.entrySet()) {
+            long weight = 0;
+            for (TestInfo testInfo : entry.getValue()) {
+                weight += isAnyDurationKnown ? testInfo.getPredictedDurationNanos() : 1;
+            }
+            // A class without tests has nothing to run and is already complete.
+            if (!entry.getValue().isEmpty()) {
+                weights.put(entry.getKey(), weight);
+            }
+        }
+
+        List<Class<?>> classes = new ArrayList<>(weights.keySet());
+        classes.sort(Comparator.comparing(Class::getName));
+        classes.sort(Comparator.comparing(weights::get, Comparator.reverseOrder()));
+
+        int numShards = Math.min(numWorkers, classes.size());
+        List<List<Class<?>>> shards = new ArrayList<>();
+        long[] shardWeights = new long[numShards];
+        for (int i = 0; i < numShards; i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (Class<?> testClass : classes) {
+            int lightest = 0;
+            for (int i = 1; i < numShards; i++) {
+                if (shardWeights[i] < shardWeights[lightest]) {
+                    lightest = i;
+                }
+            }
+            shards.get(lightest).add(testClass);
+            shardWeights[lightest] += weights.get(testClass);
+        }
+        return shards;
+    }
+
+    private void runShard(int shardIndex, List<Class<?>> shard, Map<Class<?>, List<TestInfo>> classToTestInfoMap) {
+        String shardRequest = createShardRequest(shard);
+        int responseTimeoutMillis = responseTimeoutMillis(shard, classToTestInfoMap);
+        String lastError = null;
+        for (String worker : workersToTry(shardIndex)) {
+            try {
+                List<ReportedTestResult> results = sendShard(worker, shardRequest, responseTimeoutMillis);
+                LOGGER.log("Shard #" + shardIndex + " of " + shard.size() + " classes completed on worker " + worker + ".");
+                publishResults(worker, shard, classToTestInfoMap, results);
+                return;
+            } catch (IOException | ParseException e) {
+                this.failedWorkers.add(worker);
+                lastError = "worker " + worker + " failed the shard: " + e.getMessage();
+                LOGGER.log("Shard #" + shardIndex + " failed, " + lastError);
+            }
+        }
+
+        String message = "The shard of this test could not be run on any of the workers, the last error was: " + lastError + "\n";
+        for (Class<?> testClass : shard) {
+            for (TestInfo testInfo : classToTestInfoMap.get(testClass)) {
+                this.executorPools.publishRemoteResult(testInfo, false, false, 0, -1, "", message);
+            }
+        }
+    }
+
+    /**
+     * Returns the workers to try the specified shard on in order: each worker once, starting from the shard's own, with
+     * those that have already failed a shard last.
+     */
+    private List<String> workersToTry(int shardIndex) {
+        List<String> workers = new ArrayList<>(this.request.getWorkers());
+        Collections.rotate(workers, -shardIndex);
+        // The sort is stable so the workers keep their order otherwise.
+        workers.sort(Comparator.comparing(this.failedWorkers::contains));
+        return workers;
+    }
+
+    /**
+     * Returns how long to wait on a worker to respond to the specified shard: twice as long as its tests are predicted
+     * to take one after the other, where a test whose duration is not predicted counts as long as its timeout or, if it
+     * has none, as {@link #UNPREDICTED_TEST_MILLIS}, plus {@link #RESPONSE_MARGIN_MILLIS}.
+     */
+    static int responseTimeoutMillis(List<Class<?>> shard, Map<Class<?>, List<TestInfo>> classToTestInfoMap) {
+        long timeoutMillis = RESPONSE_MARGIN_MILLIS;
+        for (Class<?> testClass : shard) {
+            for (TestInfo testInfo : classToTestInfoMap.get(testClass)) {
+                if (testInfo.getPredictedDurationNanos() > 0) {
+                    timeoutMillis += 2 * TimeUnit.NANOSECONDS.toMillis(testInfo.getPredictedDurationNanos());
+                } else {
+                    timeoutMillis += 2 * ((testInfo.getTimeoutMillis() > 0) ? testInfo.getTimeoutMillis() : UNPREDICTED_TEST_MILLIS);
+                }
+            }
+        }
+        return (int) Math.min(timeoutMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sends the specified request to run a shard to the worker at the given address and returns the results the worker
+     * reports back once it has run the shard, giving up on the worker if it does not respond within the specified time.
+     */
+    static List<ReportedTestResult> sendShard(String worker, String shardRequest, int responseTimeoutMillis) throws IOException, ParseException {
+        int separator = worker.lastIndexOf(':');
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(worker.substring(0, separator), Integer.parseInt(worker.substring(separator + 1))), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(responseTimeoutMillis);
+            OutputStream toWorker = socket.getOutputStream();
+            toWorker.write((shardRequest + "\n").getBytes(StandardCharsets.UTF_8));
+            toWorker.flush();
+
+            BufferedReader fromWorker = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String response;
+            try {
+                response = fromWorker.readLine();
+            } catch (SocketTimeoutException e) {
+                throw new IOException("the worker did not respond within " + responseTimeoutMillis + "ms", e);
+            }
+            if (response == null) {
+                throw new IOException("the worker closed the connection without responding");
+            }
+            return parseShardResponse(response);
+        }
+    }
+
+    private String createShardRequest(List<Class<?>> shard) {
+        JsonObject body = new JsonObject();
+        body.addProperty("base_dir", this.request.getBaseDirectory());
+        body.addProperty("matcher", this.request.getMatcher());
+
+        // The dependencies of a request end with its base directory, which the worker adds back itself.
+        JsonArray dependencies = new JsonArray();
+        String[] allDependencies = this.request.getDependencies();
+        for (int i = 0; i < allDependencies.length - 1; i++) {
+            dependencies.add(allDependencies[i]);
+        }
+        body.add("dependencies", dependencies);
+
+        body.addProperty("test_timeout_millis", this.request.getTestTimeoutMillis());
+        body.addProperty("failures_first", this.request.isFailuresFirst());
+        body.addProperty("class_execution_mode", this.request.getClassExecutionMode().name());
+        JsonArray classNames = new JsonArray();
+        for (Class<?> testClass : shard) {
+            classNames.add(testClass.getName());
+        }
+        body.add("shard_classes", classNames);
+
+        JsonObject request = new JsonObject();
+        request.addProperty("request_type", "run_suite");
+        request.add("body", body);
+        return request.toString();
+    }
+
+    static List<ReportedTestResult> parseShardResponse(String response) throws IOException, ParseException {
+        JsonObject json;
+        try {
+            JsonElement element = JsonParser.parseString(response);
+            if (!element.isJsonObject()) {
+                throw new ParseException("response is not a JSON object");
+            }
+            json = element.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new ParseException("malformed response: " + e.getMessage());
+        }
+
+        JsonElement isSuccess = json.get("is_success");
+        if ((isSuccess == null) || (!isSuccess.isJsonPrimitive()) || (!isSuccess.getAsBoolean())) {
+            JsonElement error = json.get("error");
+            throw new IOException((error != null) && error.isJsonPrimitive() ? error.getAsString() : "unsuccessful response");
+        }
+        JsonElement responseValue = json.get("response");
+        JsonElement results = (responseValue != null) && responseValue.isJsonObject() ? responseValue.getAsJsonObject().get("results") : null;
+        if ((results == null) || (!results.isJsonArray())) {
+            throw new ParseException("response holds no results");
+        }
+
+        List<ReportedTestResult> reportedResults = new ArrayList<>();
+        for (JsonElement result : results.getAsJsonArray()) {
+            reportedResults.add(ReportedTestResult.fromJson(result));
+        }
+        return reportedResults;
+    }
+
+    private void publishResults(String worker, List<Class<?>> shard, Map<Class<?>, List<TestInfo>> classToTestInfoMap, List<ReportedTestResult> results) {
+        Map<String, ReportedTestResult> resultsByTest = new HashMap<>();
+        for (ReportedTestResult result : results) {
+            resultsByTest.put(result.className + "#" + result.methodName, result);
+        }
+
+        for (Class<?> testClass : shard) {
+            for (TestInfo testInfo : classToTestInfoMap.get(testClass)) {
+                ReportedTestResult result = resultsByTest.get(testClass.getName() + "#" + testInfo.method.getName());
+                if ((result != null) && (result.cached)) {
+                    this.executorPools.publishCachedResults(Collections.singletonList(testInfo));
+                } else if (result == null) {
+                    this.executorPools.publishRemoteResult(testInfo, false, false, 0, -1, "", "Worker " + worker + " did not report a result for this test.\n");
+                } else {
+                    this.executorPools.publishRemoteResult(testInfo, result.skipped, result.successful, result.durationNanos, result.cpuNanos, result.stdout, result.stderr);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { workers: " + this.request.getWorkers() + ", failed workers: " + this.failedWorkers + " }";
+    }
+}
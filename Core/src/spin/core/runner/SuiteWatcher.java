@@ -0,0 +1,217 @@
+package spin.core.runner;
+
+import spin.core.server.request.RunSuiteClientRequest;
+import spin.core.server.request.WatchSuiteClientRequest;
+import spin.core.server.response.WatchSuiteResponse;
+import spin.core.server.session.RequestSessionContext;
+import spin.core.type.Result;
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches the directories of a suite for changed class files on behalf of a {@link WatchSuiteClientRequest}, and has
+ * the suite runner run the test classes that the changes can affect each time they change.
+ *
+ * The base directory of the suite is watched along with those of its dependencies that are directories, including all
+ * of their subdirectories. Changes are collected until none have come in for a short while, since a compiler writes many
+ * class files at once, and are then run together as the next run of the suite. Each run gets a suite loader of its own,
+ * so the classes in the watched directories are loaded afresh while the jars stay loaded. A change to any file that is
+ * not a class file, such as a resource, or more changes than the watch service could keep track of, rerun the whole
+ * suite.
+ *
+ * The watch ends once the client closes the connection, or once the runner is shut down.
+ *
+ * Each watch runs on a thread of its own.
+ */
+final class SuiteWatcher implements Runnable {
+    private static final Logger LOGGER = Logger.forClass(SuiteWatcher.class);
+    private static final long QUIET_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long POLL_MILLIS = 50;
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private final WatchSuiteClientRequest request;
+    private final RequestSessionContext sessionContext;
+    private final TestSuiteRunner runner;
+    private final WatchService watchService;
+    private final List<Path> roots;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private int numRuns = 0;
+
+    private SuiteWatcher(WatchSuiteClientRequest request, RequestSessionContext sessionContext, TestSuiteRunner runner, WatchService watchService, List<Path> roots) {
+        this.request = request;
+        this.sessionContext = sessionContext;
+        this.runner = runner;
+        this.watchService = watchService;
+        this.roots = roots;
+    }
+
+    /**
+     * Starts watching the suite of the specified request, whose runs the given runner runs and whose results are
+     * streamed back over the given session. The first run, of the whole suite, is requested right away.
+     *
+     * @param request The request to watch the suite.
+     * @param sessionContext The session of the client watching the suite.
+     * @param runner The runner to run the suite with.
+     * @return the watcher.
+     * @throws IOException If the directories of the suite cannot be watched.
+     */
+    static SuiteWatcher start(WatchSuiteClientRequest request, RequestSessionContext sessionContext, TestSuiteRunner runner) throws IOException {
+        ObjectChecker.assertNonNull(request, sessionContext, runner);
+        List<Path> roots = new ArrayList<>();
+        for (String dependency : request.getDependencies()) {
+            Path path = Paths.get(dependency).toAbsolutePath().normalize();
+            if ((Files.isDirectory(path)) && (!roots.contains(path))) {
+                roots.add(path);
+            }
+        }
+
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        SuiteWatcher watcher = new SuiteWatcher(request, sessionContext, runner, watchService, roots);
+        try {
+            for (Path root : roots) {
+                watcher.watchAll(root);
+            }
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+
+        Thread thread = new Thread(watcher, "spin-watch-" + sessionContext.clientSession.id);
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.log("Watching " + watcher.watchedDirectories.size() + " directories under " + roots + ".");
+        return watcher;
+    }
+
+    @Override
+    public void run() {
+        try {
+            requestRun(null);
+
+            Set<String> changedClasses = new LinkedHashSet<>();
+            boolean isRerunOfAll = false;
+            boolean hasChanges = false;
+            long lastChangeNanos = 0;
+            while ((this.sessionContext.socketChannel.isOpen()) && (this.runner.isAlive())) {
+                WatchKey key = this.watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path directory = this.watchedDirectories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        hasChanges = true;
+                        if ((event.kind() == StandardWatchEventKinds.OVERFLOW) || (directory == null)) {
+                            isRerunOfAll = true;
+                            continue;
+                        }
+
+                        Path path = directory.resolve((Path) event.context());
+                        if ((event.kind() == StandardWatchEventKinds.ENTRY_CREATE) && (Files.isDirectory(path))) {
+                            // Files may have been written into a new directory before we got to watch it.
+                            watchAll(path);
+                            for (Path file : listFiles(path)) {
+                                isRerunOfAll |= !addChangedClass(file, changedClasses);
+                            }
+                        } else if (!Files.isDirectory(path)) {
+                            isRerunOfAll |= !addChangedClass(path, changedClasses);
+                        }
+                    }
+                    if (!key.reset()) {
+                        this.watchedDirectories.remove(key);
+                    }
+                    lastChangeNanos = System.nanoTime();
+                } else if ((hasChanges) && (System.nanoTime() - lastChangeNanos >= QUIET_PERIOD_NANOS)) {
+                    requestRun(isRerunOfAll ? null : new ArrayList<>(changedClasses));
+                    changedClasses.clear();
+                    isRerunOfAll = false;
+                    hasChanges = false;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // We are being shut down.
+        } catch (IOException e) {
+            LOGGER.log("Stopped watching suite: " + e);
+            this.sessionContext.streamResponse(WatchSuiteResponse.failed("Stopped watching suite: " + e.getMessage()).toJsonString() + "\n");
+        } finally {
+            try {
+                this.watchService.close();
+            } catch (IOException e) {
+                LOGGER.log("Unable to close watch service: " + e);
+            }
+            LOGGER.log("Stopped watching suite after " + this.numRuns + " runs.");
+        }
+    }
+
+    /**
+     * Requests the next run of the suite, of all of its test classes if the changes are null or else of only those that
+     * can be affected by the changes.
+     */
+    private void requestRun(List<String> changedClasses) throws InterruptedException {
+        this.numRuns++;
+        LOGGER.log("Requesting run #" + this.numRuns + (changedClasses == null ? " of the whole suite." : " for " + changedClasses.size() + " changed classes."));
+        RunSuiteClientRequest runRequest = this.request.toRunRequest(changedClasses, this.numRuns);
+        runRequest.bindContext(this.sessionContext);
+        Result<Integer> addResult = this.runner.addRequest(runRequest, 5, TimeUnit.MINUTES);
+        if (!addResult.isSuccess()) {
+            this.sessionContext.streamResponse(WatchSuiteResponse.runFailed(this.numRuns, addResult.getError()).toJsonString() + "\n");
+        }
+    }
+
+    /**
+     * Adds the name of the class whose class file is at the specified path to the given changed classes. Returns false
+     * iff the path is not that of a class file.
+     */
+    private boolean addChangedClass(Path path, Set<String> changedClasses) {
+        Path root = null;
+        for (Path candidate : this.roots) {
+            if ((path.startsWith(candidate)) && ((root == null) || (candidate.getNameCount() > root.getNameCount()))) {
+                root = candidate;
+            }
+        }
+        String relativePath = (root == null) ? "" : root.relativize(path).toString().replace('\\', '/');
+        if (!relativePath.endsWith(CLASS_FILE_EXTENSION)) {
+            return false;
+        }
+        changedClasses.add(relativePath.substring(0, relativePath.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.'));
+        return true;
+    }
+
+    private void watchAll(Path directory) throws IOException {
+        List<Path> directories;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            directories = paths.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+        for (Path subdirectory : directories) {
+            WatchKey key = subdirectory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            this.watchedDirectories.put(key, subdirectory);
+        }
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { roots: " + this.roots + ", num watched directories: " + this.watchedDirectories.size() + ", num runs: " + this.numRuns + " }";
+    }
+}
@@ -0,0 +1,233 @@
+package spin.core.runner;
+
+import spin.core.util.Logger;
+import spin.core.util.ObjectChecker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class that loads and initializes the test classes of a suite in parallel on a bounded pool of threads, before the
+ * tests are handed off to be executed.
+ *
+ * Without this stage every test class is loaded serially by the {@link TestSuiteRunner} and its static initializer is
+ * run lazily by whichever executor first touches it, with any other executor that needs the same class blocked behind
+ * the class initialization lock in the meantime. With it, executors find their classes already initialized.
+ *
+ * Classes are initialized in waves ordered by the depth of their class hierarchy, so that a superclass is always done
+ * initializing before any subclass of it starts. A superclass whose initializer touches a subclass (while another
+ * thread initializes that subclass) is the classic class initialization deadlock and this ordering rules it out. Any
+ * other cycle between initializers could still deadlock, same as it could between executors, and so each wave is only
+ * waited on for a bounded amount of time before moving on. A class whose initializer is still running by then fails its
+ * tests straight away rather than have every executor that touches it block behind it, while a class whose initializer
+ * never got a thread is left to be initialized lazily. Loading is bounded the same way, with whatever classes are not
+ * loaded in time loaded on the calling thread instead.
+ *
+ * A thread that is stuck in an initializer cannot be reclaimed, so once any task overruns its deadline the pool is
+ * abandoned to its stuck threads and replaced by a fresh one, so that later waves and suites get all of the threads.
+ *
+ * This class is thread-safe.
+ */
+public final class TestClassInitializer {
+    private static final Logger LOGGER = Logger.forClass(TestClassInitializer.class);
+    private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private final int numThreads;
+    private final long timeoutMillis;
+    private final AtomicInteger threadIndex = new AtomicInteger(0);
+    private ExecutorService pool;
+
+    private TestClassInitializer(int numThreads, long timeoutMillis) {
+        this.numThreads = numThreads;
+        this.timeoutMillis = timeoutMillis;
+        this.pool = newPool();
+    }
+
+    /**
+     * Constructs a new initializer that runs on the specified number of threads.
+     *
+     * @param numThreads The number of threads to load and initialize classes on.
+     * @return the new initializer.
+     */
+    public static TestClassInitializer withThreads(int numThreads) {
+        return withThreads(numThreads, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructs a new initializer that runs on the specified number of threads and waits on loading all classes, and
+     * on initializing each wave of them, for at most the specified time.
+     */
+    static TestClassInitializer withThreads(int numThreads, long timeoutMillis) {
+        ObjectChecker.assertPositive(numThreads);
+        ObjectChecker.assertPositive(timeoutMillis);
+        return new TestClassInitializer(numThreads, timeoutMillis);
+    }
+
+    /**
+     * Loads all of the named classes in parallel using the given loader, without initializing them. The classes are
+     * returned in the same order as their names. Any class that is not loaded in time is loaded on the calling thread.
+     *
+     * @param classNames The binary names of the classes to load.
+     * @param classLoader The loader to load the classes with.
+     * @return the loaded classes.
+     */
+    public List<Class<?>> loadAll(List<String> classNames, ClassLoader classLoader) throws ClassNotFoundException, InterruptedException {
+        ObjectChecker.assertNonNull(classNames, classLoader);
+
+        ExecutorService pool = currentPool();
+        List<Future<Class<?>>> futures = new ArrayList<>();
+        for (String className : classNames) {
+            futures.add(pool.submit(() -> Class.forName(className, false, classLoader)));
+        }
+
+        long deadline = System.currentTimeMillis() + this.timeoutMillis;
+        boolean isPoolStuck = false;
+        List<Class<?>> classes = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Class<?>> future = futures.get(i);
+            try {
+                classes.add(isPoolStuck ? loadInstead(future, classNames.get(i), classLoader) : future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ClassNotFoundException) {
+                    throw (ClassNotFoundException) e.getCause();
+                }
+                throw new IllegalStateException("Unexpected error loading test class.", e.getCause());
+            } catch (TimeoutException e) {
+                LOGGER.log("Timed out waiting on loading of test class " + classNames.get(i) + ", loading the rest of the test classes serially.");
+                isPoolStuck = true;
+                replacePool(pool);
+                classes.add(loadInstead(future, classNames.get(i), classLoader));
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the class loaded by the specified task if it is done, and otherwise cancels it and loads the class on the
+     * calling thread.
+     */
+    private static Class<?> loadInstead(Future<Class<?>> future, String className, ClassLoader classLoader) throws ClassNotFoundException, InterruptedException {
+        if ((future.isDone()) && (!future.isCancelled())) {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                // Loading failed on the pool, so try it again here and have it fail here if it is going to.
+            }
+        }
+        future.cancel(true);
+        return Class.forName(className, false, classLoader);
+    }
+
+    /**
+     * Runs the static initializers of all of the given classes in parallel, superclasses first, and returns the error
+     * thrown by each class whose initialization failed. A class whose initializer was still running when we gave up
+     * waiting on it has failed with a {@link TimeoutException}. Classes that initialized successfully, or whose
+     * initialization never started before we gave up, have no entry in the returned map.
+     *
+     * @param classes The classes to initialize.
+     * @return the initialization failures.
+     */
+    public Map<Class<?>, Throwable> initializeAll(List<Class<?>> classes) throws InterruptedException {
+        ObjectChecker.assertNonNull(classes);
+
+        TreeMap<Integer, List<Class<?>>> waves = new TreeMap<>();
+        for (Class<?> testClass : classes) {
+            waves.computeIfAbsent(hierarchyDepth(testClass), k -> new ArrayList<>()).add(testClass);
+        }
+
+        Map<Class<?>, Throwable> failures = new HashMap<>();
+        for (List<Class<?>> wave : waves.values()) {
+            ExecutorService pool = currentPool();
+            Set<Class<?>> started = ConcurrentHashMap.newKeySet();
+            Map<Class<?>, Future<?>> futures = new HashMap<>();
+            for (Class<?> testClass : wave) {
+                futures.put(testClass, pool.submit(() -> {
+                    started.add(testClass);
+                    Class.forName(testClass.getName(), true, testClass.getClassLoader());
+                    return null;
+                }));
+            }
+
+            long deadline = System.currentTimeMillis() + this.timeoutMillis;
+            boolean isPoolStuck = false;
+            for (Map.Entry<Class<?>, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    LOGGER.log("Static initialization failed for test class: " + entry.getKey().getName());
+                    failures.put(entry.getKey(), e.getCause());
+                } catch (TimeoutException e) {
+                    entry.getValue().cancel(true);
+                    if (started.contains(entry.getKey())) {
+                        LOGGER.log("Timed out waiting on static initialization of test class: " + entry.getKey().getName());
+                        isPoolStuck = true;
+                        failures.put(entry.getKey(), new TimeoutException("static initialization of " + entry.getKey().getName() + " did not complete within "
+                                + this.timeoutMillis + "ms"));
+                    }
+                }
+            }
+            if (isPoolStuck) {
+                replacePool(pool);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Shuts down the threads of this initializer.
+     */
+    public synchronized void shutdown() {
+        this.pool.shutdownNow();
+    }
+
+    private synchronized ExecutorService currentPool() {
+        return this.pool;
+    }
+
+    /**
+     * Replaces the specified pool, some of whose threads are stuck, with a fresh one unless that was already done. The
+     * stuck threads are interrupted and left to finish on their own, which as daemons they need not do for us to exit.
+     */
+    private synchronized void replacePool(ExecutorService stuckPool) {
+        if ((this.pool != stuckPool) || (this.pool.isShutdown())) {
+            return;
+        }
+        LOGGER.log("Replacing the class initialization threads, some of which are stuck.");
+        stuckPool.shutdownNow();
+        this.pool = newPool();
+    }
+
+    private ExecutorService newPool() {
+        return Executors.newFixedThreadPool(this.numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "TestClassInitializer-" + this.threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static int hierarchyDepth(Class<?> testClass) {
+        int depth = 0;
+        Class<?> superclass = testClass.getSuperclass();
+        while (superclass != null) {
+            depth++;
+            superclass = superclass.getSuperclass();
+        }
+        return depth;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getSimpleName() + (this.pool.isShutdown() ? " { [shutdown] }" : " { [running] }");
+    }
+}
@@ -1,13 +1,16 @@
 package spin.core.runner;
 
 import spin.core.server.request.RunSuiteClientRequest;
+import spin.core.server.request.WatchSuiteClientRequest;
+import spin.core.server.session.RequestSessionContext;
 import spin.core.type.Result;
 import spin.core.util.ObjectChecker;
 
 import java.util.concurrent.TimeUnit;
 
 /**
- * A wrapper over {@link TestSuiteRunner} that only exposes the ability to add a request to the runner.
+ * A wrapper over {@link TestSuiteRunner} that only exposes the ability to add a request to the runner, to watch a suite
+ * and to register classpaths for those requests to use.
  *
  * This class is primarily to be passed to classes that are only interested in the ability to add tests and nothing
  * else.
@@ -30,4 +33,18 @@ public final class TestRunner {
     public Result<Integer> addRequest(RunSuiteClientRequest request, long timeout, TimeUnit unit) throws InterruptedException {
         return this.testSuiteRunner.addRequest(request, timeout, unit);
     }
+
+    /**
+     * @see TestSuiteRunner --> {@link TestSuiteRunner#watchSuite(WatchSuiteClientRequest, RequestSessionContext)}.
+     */
+    public Result<Void> watchSuite(WatchSuiteClientRequest request, RequestSessionContext sessionContext) {
+        return this.testSuiteRunner.watchSuite(request, sessionContext);
+    }
+
+    /**
+     * @see TestSuiteRunner --> {@link TestSuiteRunner#registerClasspath(String[])}.
+     */
+    public Result<Integer> registerClasspath(String[] dependencies) {
+        return this.testSuiteRunner.registerClasspath(dependencies);
+    }
 }
@@ -1,24 +1,45 @@
 package spin.core.runner;
 
+import spin.core.annotation.ClassExecutionMode;
+import spin.core.loader.SuiteLoader;
+import spin.core.server.request.TestPlan;
 import spin.core.server.session.RequestSessionContext;
 
 import java.util.List;
 
 /**
  * A description of the test suite. The list of all paths to each test class file in the suite, and a classloader used
- * to load these classes with.
+ * to load these classes with. The suite loader owns the classloader and must be closed once the suite is done.
+ *
+ * The suite also carries the timeout that applies to each of its tests that does not declare its own, which is zero if
+ * the tests may run indefinitely, whether the tests that failed recently or whose class changed are to be run first, and
+ * the number of failed tests after which the rest of the suite is skipped, which is zero if it is never skipped, and the
+ * execution mode of the test classes that do not declare their own. A suite whose tests were planned by the client
+ * carries its plan, which limits the test methods run of each class, and is otherwise null.
  */
 public final class TestSuite {
     final List<String> testClassPaths;
     final ClassLoader classLoader;
+    final SuiteLoader suiteLoader;
     final RequestSessionContext sessionContext;
     final int suiteId;
+    final long testTimeoutMillis;
+    final boolean failuresFirst;
+    final int maxFailures;
+    final ClassExecutionMode.Mode classExecutionMode;
+    final TestPlan testPlan;
 
-    public TestSuite(List<String> testClassPaths, ClassLoader classLoader, RequestSessionContext context, int suiteId) {
+    public TestSuite(List<String> testClassPaths, SuiteLoader suiteLoader, RequestSessionContext context, int suiteId, long testTimeoutMillis, boolean failuresFirst, int maxFailures, ClassExecutionMode.Mode classExecutionMode, TestPlan testPlan) {
         this.testClassPaths = testClassPaths;
-        this.classLoader = classLoader;
+        this.classLoader = suiteLoader.getClassLoader();
+        this.suiteLoader = suiteLoader;
         this.sessionContext = context;
         this.suiteId = suiteId;
+        this.testTimeoutMillis = testTimeoutMillis;
+        this.failuresFirst = failuresFirst;
+        this.maxFailures = maxFailures;
+        this.classExecutionMode = classExecutionMode;
+        this.testPlan = testPlan;
     }
 
     @Override
@@ -1,22 +1,145 @@
 package spin.core.runner;
 
+import spin.core.loader.SuiteLoader;
+import spin.core.server.response.ReportedTestResult;
+import spin.core.util.ObjectChecker;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class that holds the live details of a test suite. These details are updated as the program runs. This object is
  * held by multiple parties and for most of them constitutes the only reference point they have into the larger details
  * of the suite. These details accompany each test and this allows the tests to be broken up and passed around and for
  * the state of the suite to be updated and managed through this class.
+ *
+ * Since these details are keyed by the suite's test classes they also hold onto the suite's class loader, and so once
+ * the suite is complete and its results are all reported, {@link TestSuiteDetails#releaseSuiteResources()} must be
+ * invoked to close the loader and drop every reference to the suite's classes.
+ *
+ * The details also record when the suite started and when its first failure was reported, and hold the fingerprints of
+ * the suite's test class files so that they can be recorded in the test history once each class is complete.
+ *
+ * If the suite is limited to a number of failures, then once that many of its tests have failed the rest of its tests
+ * are skipped rather than run. A class or suite is complete once each of its tests has either been run or skipped.
+ *
+ * If the result cache is in use, the details hold the key of each test class in the cache, and count the tests that were
+ * reported from the cache rather than run. Such tests count as successful.
+ *
+ * If the suite is a shard of a larger suite, the details also collect the result of each of its tests so that they can
+ * be reported back to the coordinator of the larger suite once the shard is complete.
+ *
+ * If the suite is a run of a watched suite, the details hold the number of the run, and the result of each of its tests
+ * is streamed back to the client as soon as it is reported.
+ *
+ * The daemon shuts down once an ordinary suite is complete. It stays up after a shard, a run of a watched suite or a
+ * suite that uses a registered classpath, since more suites are expected to follow.
  */
 public final class TestSuiteDetails {
     private final Map<Class<?>, TestClassStats> testClassStats = new HashMap<>();
     private final Map<Class<?>, Integer> numTestsPerClass = new HashMap<>();
+    private final Map<Class<?>, String> classFingerprints = new HashMap<>();
+    private final Map<Class<?>, String> resultCacheKeys = new HashMap<>();
+    private final SuiteLoader suiteLoader;
+    private final long startNanos;
+    private final int maxFailures;
+    private final List<ReportedTestResult> shardResults;
+    private final int watchRun;
+    private final boolean usesRegisteredClasspath;
+    private long firstFailureNanos = -1;
     private int totalNumSuccessfulTests = 0;
     private int totalNumFailedTests = 0;
+    private int totalNumSkippedTests = 0;
+    private int totalNumCachedTests = 0;
     private long totalSuiteDuration = 0;
     private int numClassesFinished = 0;
 
+    public TestSuiteDetails(SuiteLoader suiteLoader, long startNanos, int maxFailures, boolean isShard, int watchRun, boolean usesRegisteredClasspath) {
+        ObjectChecker.assertNonNull(suiteLoader);
+        ObjectChecker.assertNonNegative(maxFailures);
+        ObjectChecker.assertNonNegative(watchRun);
+        this.suiteLoader = suiteLoader;
+        this.startNanos = startNanos;
+        this.maxFailures = maxFailures;
+        this.shardResults = isShard ? new ArrayList<>() : null;
+        this.watchRun = watchRun;
+        this.usesRegisteredClasspath = usesRegisteredClasspath;
+    }
+
+    /**
+     * Returns true iff the suite is a run of a watched suite.
+     *
+     * @return whether or not the suite is watched.
+     */
+    public boolean isWatched() {
+        return this.watchRun > 0;
+    }
+
+    /**
+     * Returns the number of the run of the watched suite, counting from one, or zero if the suite is not watched.
+     *
+     * @return the number of the run.
+     */
+    public int getWatchRun() {
+        return this.watchRun;
+    }
+
+    /**
+     * Returns true iff the suite is a shard of a larger suite, run on behalf of the larger suite's coordinator.
+     *
+     * @return whether or not the suite is a shard.
+     */
+    public boolean isShard() {
+        return this.shardResults != null;
+    }
+
+    /**
+     * Returns true iff the daemon is to stay up once the suite is complete, rather than shut down, since more suites are
+     * expected to follow: the suite is a shard, a run of a watched suite or uses a registered classpath.
+     *
+     * @return whether or not the daemon stays up after the suite.
+     */
+    public boolean keepsDaemonAlive() {
+        return (isShard()) || (isWatched()) || (this.usesRegisteredClasspath);
+    }
+
+    /**
+     * Adds the result of one of the tests of the shard to the results to report back to the coordinator.
+     *
+     * @param result The result of the test.
+     */
+    public synchronized void addShardResult(ReportedTestResult result) {
+        ObjectChecker.assertNonNull(result);
+        if (this.shardResults == null) {
+            throw new IllegalStateException("Cannot add shard result: suite is not a shard.");
+        }
+        this.shardResults.add(result);
+    }
+
+    /**
+     * Returns a snapshot of the results of the tests of the shard reported so far.
+     *
+     * @return the results.
+     */
+    public synchronized List<ReportedTestResult> getShardResults() {
+        if (this.shardResults == null) {
+            throw new IllegalStateException("Cannot get shard results: suite is not a shard.");
+        }
+        return new ArrayList<>(this.shardResults);
+    }
+
+    /**
+     * Returns the full classpath of the suite as URLs, for running its tests in another JVM.
+     *
+     * @return the classpath URLs.
+     */
+    public List<String> getClasspath() {
+        return this.suiteLoader.getClasspath();
+    }
+
     public synchronized void setNumTestsPerClass(Class<?> testClass, int num) {
         if (this.numTestsPerClass.containsKey(testClass)) {
             throw new IllegalStateException("Cannot set testClass test count: count has already been set for this class.");
@@ -55,7 +178,37 @@ public final class TestSuiteDetails {
         this.totalSuiteDuration += duration;
 
         int numTestsTotal = this.numTestsPerClass.get(testClass);
-        this.numClassesFinished += (testClassStats.numSuccesses + testClassStats.numFailures == numTestsTotal) ? 1 : 0;
+        this.numClassesFinished += (testClassStats.getNumFinished() == numTestsTotal) ? 1 : 0;
+    }
+
+    /**
+     * Counts a test of the specified class that passed before with the same inputs and so was reported from the result
+     * cache rather than run, as a successful test that took no time.
+     *
+     * @param testClass The class of the test.
+     */
+    public synchronized void incrementNumCachedTestsInClass(Class<?> testClass) {
+        incrementNumSuccessfulTestsInClass(testClass, 0);
+        this.totalNumCachedTests++;
+    }
+
+    public synchronized int getTotalNumCachedTests() {
+        return this.totalNumCachedTests;
+    }
+
+    public synchronized void setResultCacheKey(Class<?> testClass, String key) {
+        ObjectChecker.assertNonNull(testClass, key);
+        this.resultCacheKeys.put(testClass, key);
+    }
+
+    /**
+     * Returns the key of the specified class in the result cache, or null if the cache is not in use for the class.
+     *
+     * @param testClass The test class.
+     * @return the key or null.
+     */
+    public synchronized String getResultCacheKey(Class<?> testClass) {
+        return this.resultCacheKeys.get(testClass);
     }
 
     public synchronized int getTotalNumSuccessfulTestsInClass(Class<?> testClass) {
@@ -85,6 +238,9 @@ public final class TestSuiteDetails {
         if (!this.testClassStats.containsKey(testClass)) {
             this.testClassStats.put(testClass, new TestClassStats());
         }
+        if (this.totalNumFailedTests == 0) {
+            this.firstFailureNanos = System.nanoTime();
+        }
         TestClassStats testClassStats = this.testClassStats.get(testClass);
         testClassStats.numFailures++;
         testClassStats.totalDurationNanos += duration;
@@ -92,7 +248,7 @@ public final class TestSuiteDetails {
         this.totalSuiteDuration += duration;
 
         int numTestsTotal = this.numTestsPerClass.get(testClass);
-        this.numClassesFinished += (testClassStats.numSuccesses + testClassStats.numFailures == numTestsTotal) ? 1 : 0;
+        this.numClassesFinished += (testClassStats.getNumFinished() == numTestsTotal) ? 1 : 0;
     }
 
     public synchronized int getTotalNumFailedTestsInClass(Class<?> testClass) {
@@ -109,6 +265,70 @@ public final class TestSuiteDetails {
         return this.totalNumFailedTests;
     }
 
+    public synchronized void incrementNumSkippedTestsInClass(Class<?> testClass) {
+        if (testClass == null) {
+            throw new NullPointerException("testClass must be non-null.");
+        }
+        if (!this.numTestsPerClass.containsKey(testClass)) {
+            throw new IllegalArgumentException("no entry for specified test class: " + testClass);
+        }
+        if (!this.testClassStats.containsKey(testClass)) {
+            this.testClassStats.put(testClass, new TestClassStats());
+        }
+        TestClassStats testClassStats = this.testClassStats.get(testClass);
+        testClassStats.numSkipped++;
+        this.totalNumSkippedTests++;
+
+        int numTestsTotal = this.numTestsPerClass.get(testClass);
+        this.numClassesFinished += (testClassStats.getNumFinished() == numTestsTotal) ? 1 : 0;
+    }
+
+    public synchronized int getTotalNumSkippedTestsInClass(Class<?> testClass) {
+        if (testClass == null) {
+            throw new NullPointerException("testClass must be non-null.");
+        }
+        if (!this.testClassStats.containsKey(testClass)) {
+            throw new IllegalArgumentException("no entry for specified test class: " + testClass);
+        }
+        return this.testClassStats.get(testClass).numSkipped;
+    }
+
+    public synchronized int getTotalNumSkippedTests() {
+        return this.totalNumSkippedTests;
+    }
+
+    /**
+     * Returns true iff the suite is limited to a number of failures and that many of its tests have failed, in which
+     * case the rest of its tests are to be skipped.
+     *
+     * @return whether or not the failure limit is reached.
+     */
+    public synchronized boolean isFailureLimitReached() {
+        return (this.maxFailures > 0) && (this.totalNumFailedTests >= this.maxFailures);
+    }
+
+    /**
+     * Returns the time between the start of the suite and the reporting of its first failure in milliseconds, or -1 if
+     * no test has failed.
+     *
+     * @return the time to the first failure.
+     */
+    public synchronized long getTimeToFirstFailureMillis() {
+        return (this.firstFailureNanos < 0) ? -1 : TimeUnit.NANOSECONDS.toMillis(this.firstFailureNanos - this.startNanos);
+    }
+
+    public synchronized void setClassFingerprint(Class<?> testClass, String fingerprint) {
+        ObjectChecker.assertNonNull(testClass, fingerprint);
+        this.classFingerprints.put(testClass, fingerprint);
+    }
+
+    /**
+     * Returns the fingerprint of the file of the specified test class, or null if it could not be read.
+     */
+    public synchronized String getClassFingerprint(Class<?> testClass) {
+        return this.classFingerprints.get(testClass);
+    }
+
     public synchronized long getTotalDurationForClass(Class<?> testClass) {
         if (testClass == null) {
             throw new NullPointerException("testClass must be non-null.");
@@ -123,8 +343,18 @@ public final class TestSuiteDetails {
         return this.totalSuiteDuration;
     }
 
+    /**
+     * Returns the mean duration of the tests of the suite that have been run so far, or -1 if none have.
+     *
+     * @return the mean test duration in nanoseconds.
+     */
+    public synchronized long getMeanTestDurationNanos() {
+        int numRun = this.totalNumSuccessfulTests + this.totalNumFailedTests;
+        return (numRun == 0) ? -1 : this.totalSuiteDuration / numRun;
+    }
+
     public synchronized int getTotalNumTests() {
-        return this.totalNumFailedTests + this.totalNumSuccessfulTests;
+        return this.totalNumFailedTests + this.totalNumSuccessfulTests + this.totalNumSkippedTests;
     }
 
     public synchronized boolean isSuiteComplete() {
@@ -141,12 +371,37 @@ public final class TestSuiteDetails {
 
         TestClassStats testClassStats = this.testClassStats.get(testClass);
         int numTestsTotal = this.numTestsPerClass.get(testClass);
-        return testClassStats.numSuccesses + testClassStats.numFailures == numTestsTotal;
+        return testClassStats.getNumFinished() == numTestsTotal;
+    }
+
+    /**
+     * Closes the suite's class loader and forgets all of the per-class details of the suite, so that none of the suite's
+     * classes are reachable through these details anymore. Only the suite-wide totals remain available.
+     *
+     * This should only be invoked once the suite is complete and all of its results have been reported.
+     */
+    public void releaseSuiteResources() {
+        synchronized (this) {
+            this.testClassStats.clear();
+            this.numTestsPerClass.clear();
+            this.classFingerprints.clear();
+            this.resultCacheKeys.clear();
+            if (this.shardResults != null) {
+                this.shardResults.clear();
+            }
+            this.numClassesFinished = 0;
+        }
+        this.suiteLoader.close();
     }
 
     private static class TestClassStats {
         private int numSuccesses = 0;
         private int numFailures = 0;
+        private int numSkipped = 0;
         private long totalDurationNanos = 0;
+
+        private int getNumFinished() {
+            return this.numSuccesses + this.numFailures + this.numSkipped;
+        }
     }
 }
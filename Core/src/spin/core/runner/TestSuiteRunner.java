@@ -2,19 +2,37 @@ package spin.core.runner;
 
 import spin.core.server.session.RequestSessionContext;
 import spin.core.server.request.RunSuiteClientRequest;
+import spin.core.server.request.TestPlan;
+import spin.core.server.request.WatchSuiteClientRequest;
 import spin.core.server.response.RunSuiteResponse;
+import spin.core.server.response.WatchSuiteResponse;
+import spin.core.annotation.ClassExecutionMode;
+import spin.core.annotation.IoBound;
+import spin.core.execution.ClassFixture;
+import spin.core.execution.ResourceLockSet;
+import spin.core.execution.ResourceLockTable;
+import spin.core.execution.ExecutorPool;
+import spin.core.execution.ExecutorPools;
+import spin.core.execution.TestBatch;
 import spin.core.execution.TestInfo;
+import spin.core.execution.TestInvoker;
+import spin.core.history.ResultCache;
+import spin.core.history.TestHistory;
 import spin.core.lifecycle.NotifyOnlyMonitor;
+import spin.core.loader.ClassDependencyGraph;
+import spin.core.loader.DependencyLoaderCache;
+import spin.core.loader.RegisteredClasspath;
+import spin.core.loader.SuiteLoader;
 import spin.core.type.Result;
-import spin.core.util.CloseableBlockingQueue;
 import spin.core.util.Logger;
 import spin.core.util.ObjectChecker;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.sql.Connection;
@@ -24,6 +42,7 @@ import java.util.*;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 /**
  * A class that is responsible for receiving a {@link RunSuiteClientRequest} object and for loading all of the test suite
@@ -32,51 +51,80 @@ import java.util.regex.Pattern;
  */
 public final class TestSuiteRunner implements Runnable {
     private static final Logger LOGGER = Logger.forClass(TestSuiteRunner.class);
+    private static final double MAX_IO_BOUND_CPU_FRACTION = 0.2;
+    private static final int RECENT_FAILURE_RUNS = 3;
+    private static final long TARGET_BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final int MAX_BATCH_LOOKAHEAD = 256;
     private final Object monitor = new Object();
     private final NotifyOnlyMonitor shutdownMonitor;
     private final CyclicBarrier barrier;
-    private final List<CloseableBlockingQueue<TestInfo>> outgoingTestQueues;
+    private final ExecutorPools executorPools;
+    private final TestHistory testHistory;
+    private final ResultCache resultCache;
     private final Connection dbConnection;
+    private final DependencyLoaderCache dependencyLoaders = new DependencyLoaderCache();
+    private final ClassDependencyGraph dependencyGraph = new ClassDependencyGraph();
+    private final TestClassInitializer classInitializer;
     private volatile boolean isAlive = true;
     private RunRequest runRequest = null;
 
-    private TestSuiteRunner(CyclicBarrier barrier, NotifyOnlyMonitor shutdownMonitor, List<CloseableBlockingQueue<TestInfo>> outgoingTestQueues, Connection dbConnection) {
-        ObjectChecker.assertNonNull(barrier, shutdownMonitor, outgoingTestQueues);
+    private TestSuiteRunner(CyclicBarrier barrier, NotifyOnlyMonitor shutdownMonitor, ExecutorPools executorPools, TestHistory testHistory, ResultCache resultCache, Connection dbConnection, int numClassInitThreads) {
+        ObjectChecker.assertNonNull(barrier, shutdownMonitor, executorPools, testHistory);
+        if (numClassInitThreads < 0) {
+            throw new IllegalArgumentException("numClassInitThreads must be non-negative but was: " + numClassInitThreads);
+        }
         this.barrier = barrier;
         this.shutdownMonitor = shutdownMonitor;
-        this.outgoingTestQueues = outgoingTestQueues;
+        this.executorPools = executorPools;
+        this.testHistory = testHistory;
+        this.resultCache = resultCache;
         this.dbConnection = dbConnection;
+        this.classInitializer = (numClassInitThreads == 0) ? null : TestClassInitializer.withThreads(numClassInitThreads);
     }
 
     /**
-     * Constructs a new suite runner that will put all of the tests it receives into the given outgoing queues.
-     * It will attempt to add tests to these queues fairly so that they each receive a roughly equal load.
+     * Constructs a new suite runner that will put all of the tests it receives into the lanes of the given pools.
+     * It will attempt to add tests to the lanes of each pool fairly so that they each receive a roughly equal load.
+     *
+     * If the pools are split, each test is classified as CPU-bound or I/O-bound, by the {@link IoBound} annotation or
+     * else by how much of its time it spent on the CPU on earlier runs as recorded in the given history.
+     *
+     * If a result cache is given, the tests that passed before with the same inputs are reported from it rather than run.
      *
      * @param barrier The barrier to wait on before running.
      * @param shutdownMonitor The shutdown monitor.
-     * @param outgoingTestQueues The queues to load the tests into.
+     * @param executorPools The pools whose lanes to load the tests into.
+     * @param testHistory The measurements of tests from earlier runs.
+     * @param resultCache The tests that passed on earlier runs, or null if the result cache is not in use.
+     * @param numClassInitThreads The number of threads to eagerly load and initialize test classes on, or zero to load
+     *                            them serially and leave their initialization to the executors.
      * @return the suite runner.
      */
-    public static TestSuiteRunner withOutgoingQueue(CyclicBarrier barrier, NotifyOnlyMonitor shutdownMonitor, List<CloseableBlockingQueue<TestInfo>> outgoingTestQueues) {
-        return new TestSuiteRunner(barrier, shutdownMonitor, outgoingTestQueues, null);
+    public static TestSuiteRunner withOutgoingQueue(CyclicBarrier barrier, NotifyOnlyMonitor shutdownMonitor, ExecutorPools executorPools, TestHistory testHistory, ResultCache resultCache, int numClassInitThreads) {
+        return new TestSuiteRunner(barrier, shutdownMonitor, executorPools, testHistory, resultCache, null, numClassInitThreads);
     }
 
     /**
-     * Constructs a new suite runner that will put all of the tests it receives into the given queues. It will attempt
-     * to add tests to these queues fairly so that they each receive a roughly equal load.
+     * Constructs a new suite runner that will put all of the tests it receives into the lanes of the given pools, like
+     * {@link #withOutgoingQueue(CyclicBarrier, NotifyOnlyMonitor, ExecutorPools, TestHistory, ResultCache, int)} does.
      *
      * This test suite will write all of the tests, test classes and suites it receives into a database using the given
      * database writer.
      *
      * @param barrier The barrier to wait on before running.
      * @param shutdownMonitor The shutdown monitor.
-     * @param outgoingTestQueues The queues to load the tests into.
+     * @param executorPools The pools whose lanes to load the tests into.
+     * @param testHistory The measurements of tests from earlier runs.
+     * @param resultCache The tests that passed on earlier runs, or null if the result cache is not in use.
      * @param dbConnection The database connection.
+     * @param numClassInitThreads The number of threads to eagerly load and initialize test classes on, or zero to load
+     *                            them serially and leave their initialization to the executors.
      * @return the suite runner.
      */
-    public static TestSuiteRunner withDatabaseWriter(CyclicBarrier barrier, NotifyOnlyMonitor shutdownMonitor, List<CloseableBlockingQueue<TestInfo>> outgoingTestQueues, Connection dbConnection) {
+    public static TestSuiteRunner withDatabaseWriter(CyclicBarrier barrier, NotifyOnlyMonitor shutdownMonitor, ExecutorPools executorPools, TestHistory testHistory, ResultCache resultCache, Connection dbConnection, int numClassInitThreads) {
         ObjectChecker.assertNonNull(dbConnection);
-        return new TestSuiteRunner(barrier, shutdownMonitor, outgoingTestQueues, dbConnection);
+        return new TestSuiteRunner(barrier, shutdownMonitor, executorPools, testHistory, resultCache, dbConnection, numClassInitThreads);
     }
 
     @Override
@@ -87,10 +135,12 @@ public final class TestSuiteRunner implements Runnable {
             LOGGER.log(Thread.currentThread().getName() + " thread started.");
 
             while (this.isAlive) {
+                RunRequest request = null;
                 try {
                     LOGGER.log("Attempting to fetch next test suite request to load...");
-                    RunRequest request = this.blockingGetNextRequest();
+                    request = this.blockingGetNextRequest();
                     if (request != null) {
+                        long suiteStartNanos = System.nanoTime();
                         LOGGER.log("Got next test suite request to load.");
                         TestSuite testSuite = createTestSuiteFromRequest(request);
                         LOGGER.log("Loaded test suite.");
@@ -98,15 +148,31 @@ public final class TestSuiteRunner implements Runnable {
                         // Load all of the submitted test classes.
                         LOGGER.log("Loading all test classes as Class objects.");
                         Map<Class<?>, List<TestInfo>> classToTestInfoMap = new HashMap<>();
-                        List<Class<?>> testClasses = new ArrayList<>();
-                        for (String className : testSuite.testClassPaths) {
-                            testClasses.add(testSuite.classLoader.loadClass(className));
+                        List<Class<?>> testClasses;
+                        try {
+                            testClasses = loadTestClasses(testSuite);
+                        } catch (ClassNotFoundException | LinkageError | IllegalStateException e) {
+                            testSuite.suiteLoader.close();
+                            throw e;
                         }
 
-                        TestSuiteDetails testSuiteDetails = new TestSuiteDetails();
+                        // Run the static initializers of the test classes up front if we've been configured to.
+                        Map<Class<?>, Throwable> classInitFailures = (this.classInitializer == null)
+                                ? Collections.emptyMap()
+                                : this.classInitializer.initializeAll(testClasses);
+
+                        TestSuiteDetails testSuiteDetails = new TestSuiteDetails(testSuite.suiteLoader, suiteStartNanos, testSuite.maxFailures, request.request.isShard(), request.request.getWatchRun(), request.request.hasRegisteredClasspath());
+                        for (Class<?> testClass : testClasses) {
+                            String fingerprint = fingerprintClassFile(testSuite.classLoader, testClass);
+                            if (fingerprint != null) {
+                                testSuiteDetails.setClassFingerprint(testClass, fingerprint);
+                            }
+                        }
 
                         // Split out each of the test methods declared in the given test classes.
-                        List<TestInfo> allTestInfos = createTestInfos(testSuite, testClasses, testSuiteDetails, classToTestInfoMap);
+                        Map<Class<?>, ClassFixture> classFixtures = new HashMap<>();
+                        Set<Class<?>> serialClasses = new HashSet<>();
+                        List<TestInfo> allTestInfos = createTestInfos(testSuite, testClasses, testSuiteDetails, classToTestInfoMap, classFixtures, serialClasses, classInitFailures);
 
                         for (Map.Entry<Class<?>, List<TestInfo>> classToInfoEntry : classToTestInfoMap.entrySet()) {
                             testSuiteDetails.setNumTestsPerClass(classToInfoEntry.getKey(), classToInfoEntry.getValue().size());
@@ -116,12 +182,30 @@ public final class TestSuiteRunner implements Runnable {
 
                         writeInitialValuesToDatabase(classToTestInfoMap, allTestInfos, testSuite.suiteId);
 
-                        // Execute each of the declared test methods.
-                        runTests(testSuite, allTestInfos, classToTestInfoMap);
+                        // Execute each of the declared test methods, or have other daemons execute them.
+                        if ((request.request.isCoordinated()) && (!allTestInfos.isEmpty())) {
+                            orderLongestFirst(allTestInfos);
+                            ShardCoordinator.forRequest(request.request, this.executorPools).runShards(classToTestInfoMap);
+                        } else if ((this.resultCache != null) && (!allTestInfos.isEmpty())) {
+                            List<TestInfo> testInfosToRun = reportCachedResults(testSuite, request.request, testClasses, allTestInfos, testSuiteDetails);
+                            // If every test was reported from the cache, the outputter completes the suite on its own.
+                            if (!testInfosToRun.isEmpty()) {
+                                runTests(testSuite, testInfosToRun, classToTestInfoMap, classFixtures, serialClasses, testSuiteDetails);
+                            }
+                        } else {
+                            runTests(testSuite, allTestInfos, classToTestInfoMap, classFixtures, serialClasses, testSuiteDetails);
+                        }
                     }
                 } catch (ClassNotFoundException | InterruptedException e) {
                     LOGGER.log("Unexpected error.");
                     e.printStackTrace();
+                    failWatchedRun(request, e);
+                } catch (IOException | LinkageError | IllegalStateException e) {
+                    // The classes of a watched suite may be changed under us at any time, which only fails the one run.
+                    if ((request == null) || (!request.request.isWatched())) {
+                        throw e;
+                    }
+                    failWatchedRun(request, e);
                 }
             }
 
@@ -129,6 +213,10 @@ public final class TestSuiteRunner implements Runnable {
             this.shutdownMonitor.panic(t);
         } finally {
             this.isAlive = false;
+            this.dependencyLoaders.close();
+            if (this.classInitializer != null) {
+                this.classInitializer.shutdown();
+            }
             if (this.dbConnection != null) {
                 try {
                     this.dbConnection.close();
@@ -166,6 +254,18 @@ public final class TestSuiteRunner implements Runnable {
         ObjectChecker.assertNonNull(request, unit);
         ObjectChecker.assertPositive(timeout);
 
+        if ((request.hasRegisteredClasspath()) && (this.dependencyLoaders.getRegisteredClasspath(request.getClasspathId()) == null)) {
+            return Result.error("Unable to add request: no classpath is registered with id " + request.getClasspathId());
+        }
+        if (request.hasTestPlan()) {
+            // A misspelled class is cheap to catch here, while the client still waits on the response to its request.
+            for (String className : request.getTestPlan().getClassNames()) {
+                if (!new File(request.getBaseDirectory(), className.replace('.', File.separatorChar) + ".class").isFile()) {
+                    return Result.error("Unable to add request: no class file in the tests base dir for planned class " + className);
+                }
+            }
+        }
+
         long currentTime = System.nanoTime();
         long deadline = currentTime + unit.toNanos(timeout);
 
@@ -187,6 +287,72 @@ public final class TestSuiteRunner implements Runnable {
         }
     }
 
+    /**
+     * Attempts to register the specified dependencies as a classpath that later requests can refer to by id.
+     *
+     * Returns a successful result that holds the id of the newly registered classpath or else an error result if any
+     * of the dependencies could not be opened.
+     *
+     * @param dependencies The paths of all of the dependencies.
+     * @return the result of registering the classpath.
+     */
+    public Result<Integer> registerClasspath(String[] dependencies) {
+        ObjectChecker.assertNonNull((Object) dependencies);
+
+        if (!this.isAlive) {
+            return Result.error("Unable to register classpath: runner is shutdown.");
+        }
+        try {
+            return Result.successful(this.dependencyLoaders.registerClasspath(dependencies).id);
+        } catch (IOException e) {
+            return Result.error("Unable to register classpath: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts watching the suite of the specified request. The suite is run once in full right away, and then again each
+     * time its classes change, until the client closes the connection.
+     *
+     * Returns a successful result once the suite is watched or else an error result if it cannot be watched.
+     *
+     * @param request The request to watch the suite.
+     * @param sessionContext The session of the client watching the suite, to stream the results of each run over.
+     * @return the result of starting to watch the suite.
+     */
+    public Result<Void> watchSuite(WatchSuiteClientRequest request, RequestSessionContext sessionContext) {
+        ObjectChecker.assertNonNull(request, sessionContext);
+
+        if (!this.isAlive) {
+            return Result.error("Unable to watch suite: runner is shutdown.");
+        }
+        if (!new File(request.getBaseDirectory()).isDirectory()) {
+            return Result.error("Unable to watch suite: tests base dir is not a directory: " + request.getBaseDirectory());
+        }
+        try {
+            SuiteWatcher.start(request, sessionContext, this);
+            return Result.successful(null);
+        } catch (IOException e) {
+            return Result.error("Unable to watch suite: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns true iff this runner has not been shut down.
+     */
+    boolean isAlive() {
+        return this.isAlive;
+    }
+
+    /**
+     * Reports to the client of a watched suite that the specified run of the suite could not be run. Does nothing for a
+     * suite that is not watched.
+     */
+    private static void failWatchedRun(RunRequest request, Throwable error) {
+        if ((request != null) && (request.request.isWatched())) {
+            request.request.getSessionContext().streamResponse(WatchSuiteResponse.runFailed(request.request.getWatchRun(), "Unable to run suite: " + error).toJsonString() + "\n");
+        }
+    }
+
     private RunRequest blockingGetNextRequest() throws InterruptedException {
         synchronized (this.monitor) {
             while ((this.isAlive) && (this.runRequest == null)) {
@@ -199,7 +365,7 @@ public final class TestSuiteRunner implements Runnable {
         }
     }
 
-    private static TestSuite createTestSuiteFromRequest(RunRequest runRequest) throws IOException {
+    private TestSuite createTestSuiteFromRequest(RunRequest runRequest) throws IOException {
         File baseDir = new File(runRequest.request.getBaseDirectory());
         if (!baseDir.exists()) {
             throw new IllegalStateException("Tests base dir does not exist.");
@@ -207,21 +373,42 @@ public final class TestSuiteRunner implements Runnable {
         if (!baseDir.isDirectory()) {
             throw new IllegalStateException("Tests base dir is not a directory.");
         }
+        // A planned suite already names its test classes, so there is no need to search the base directory for them.
         List<String> classNames = new ArrayList<>();
-        fetchAllFullyQualifiedTestClassNames(Pattern.compile(runRequest.request.getMatcher()), baseDir.getCanonicalPath().length(), baseDir, classNames);
+        if (runRequest.request.hasTestPlan()) {
+            classNames.addAll(runRequest.request.getTestPlan().getClassNames());
+        } else {
+            fetchAllFullyQualifiedTestClassNames(Pattern.compile(runRequest.request.getMatcher()), baseDir.getCanonicalPath().length(), baseDir, classNames);
+        }
+        if (runRequest.request.isShard()) {
+            classNames.retainAll(new HashSet<>(runRequest.request.getShardClassNames()));
+        }
 
-        LOGGER.log("Number of given dependencies: " + (runRequest.request.getDependencies().length - 1));
+        SuiteLoader suiteLoader;
+        if (runRequest.request.hasRegisteredClasspath()) {
+            RegisteredClasspath classpath = this.dependencyLoaders.getRegisteredClasspath(runRequest.request.getClasspathId());
+            suiteLoader = this.dependencyLoaders.createSuiteLoader(runRequest.id, classpath, runRequest.request.getDependencies());
+        } else {
+            LOGGER.log("Number of given dependencies: " + (runRequest.request.getDependencies().length - 1));
 
-        URL[] dependencyUrls = new URL[runRequest.request.getDependencies().length];
-        for (int i = 0; i < runRequest.request.getDependencies().length; i++) {
-            dependencyUrls[i] = new File(runRequest.request.getDependencies()[i]).toURI().toURL();
+            // Jar dependencies are loaded by a cached loader shared across suites, only the rest get a fresh loader.
+            suiteLoader = this.dependencyLoaders.createSuiteLoader(runRequest.id, runRequest.request.getDependencies());
         }
-        URLClassLoader classLoader = new URLClassLoader(dependencyUrls);
 
-        return new TestSuite(classNames, classLoader, runRequest.request.getSessionContext(), runRequest.id);
+        // Only run the test classes that the changes can affect, or all of them if we can't tell which those are.
+        if (runRequest.request.hasChanges()) {
+            try {
+                classNames = this.dependencyGraph.selectAffectedTestClasses(suiteLoader.getClasspath(), classNames, runRequest.request.getChanges());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log("Unable to select the test classes affected by the changes, running all of them: " + e);
+            }
+        }
+
+        return new TestSuite(classNames, suiteLoader, runRequest.request.getSessionContext(), runRequest.id, runRequest.request.getTestTimeoutMillis(), runRequest.request.isFailuresFirst(), runRequest.request.getMaxFailures(), runRequest.request.getClassExecutionMode(),
+                runRequest.request.hasTestPlan() ? runRequest.request.getTestPlan() : null);
     }
 
-    private void runTests(TestSuite testSuite, List<TestInfo> testInfos, Map<Class<?>, List<TestInfo>> classToTestInfoMap) throws SQLException, ClosedChannelException, InterruptedException {
+    private void runTests(TestSuite testSuite, List<TestInfo> testInfos, Map<Class<?>, List<TestInfo>> classToTestInfoMap, Map<Class<?>, ClassFixture> classFixtures, Set<Class<?>> serialClasses, TestSuiteDetails testSuiteDetails) throws SQLException, ClosedChannelException, InterruptedException {
         if (testInfos.isEmpty()) {
             // If we had zero tests to submit then our downstream consumers will never receive anything
             // and wait forever. In this case, we write the results to the database, respond to the client
@@ -230,44 +417,511 @@ public final class TestSuiteRunner implements Runnable {
                 writeEmptyClassResultToDatabase(classToTestInfoMap.keySet().iterator().next().getName(), testSuite.suiteId);
             }
             writeSuiteResultToDatabase(testSuite.suiteId);
-            sendResponse(testSuite.sessionContext, RunSuiteResponse.successful(testSuite.suiteId));
+            if (testSuiteDetails.isWatched()) {
+                testSuite.sessionContext.streamResponse(WatchSuiteResponse.runComplete(testSuiteDetails.getWatchRun(), 0, 0, 0, 0, 0, 0, -1).toJsonString() + "\n");
+            } else {
+                sendResponse(testSuite.sessionContext, testSuiteDetails.isShard()
+                        ? RunSuiteResponse.shard(testSuite.suiteId, -1, 0, 0, Collections.emptyList())
+                        : RunSuiteResponse.successful(testSuite.suiteId));
+            }
+            testSuiteDetails.releaseSuiteResources();
 
-            LOGGER.log("Notifying listener suite is done due to it having zero tests.");
-            this.shutdownMonitor.requestGracefulShutdown();
+            // A daemon running shards stays up for the next shard, one watching a suite for its next run, and one with a
+            // registered classpath for the next suite to use it.
+            if (!testSuiteDetails.keepsDaemonAlive()) {
+                LOGGER.log("Notifying listener suite is done due to it having zero tests.");
+                this.shutdownMonitor.requestGracefulShutdown();
+            }
         } else {
-            int index = 0;
-            while (index < testInfos.size()) {
-                if (!this.isAlive) {
-                    break;
+            orderLongestFirst(testInfos);
+            if (testSuite.failuresFirst) {
+                moveLikelyFailuresToFront(testInfos, testSuiteDetails);
+            }
+
+            // Each pool is fed from its own backlog so that a pool that is full does not hold up the other.
+            Map<ExecutorPool, Deque<TestInfo>> backlogs = new LinkedHashMap<>();
+            for (TestInfo testInfo : testInfos) {
+                backlogs.computeIfAbsent(this.executorPools.poolFor(testInfo), (ExecutorPool pool) -> new ArrayDeque<>()).add(testInfo);
+            }
+            Map<Class<?>, Integer> shareSizes = computeShareSizes(backlogs, classFixtures);
+            Map<Class<?>, ClassFixture.Share> inProcessShares = new HashMap<>();
+            ResourceLockTable resourceLocks = new ResourceLockTable();
+
+            // The next batch of each pool is only formed once the previous one is submitted, so that its size reflects
+            // the durations measured so far.
+            Map<ExecutorPool, TestBatch> nextBatches = new HashMap<>();
+            int numSubmitted = 0;
+            while (numSubmitted < testInfos.size()) {
+                if (testSuiteDetails.isFailureLimitReached()) {
+                    skipRemainingTests(backlogs, nextBatches.values(), testSuiteDetails);
+                    return;
                 }
 
-                for (CloseableBlockingQueue<TestInfo> outgoingTestQueue : this.outgoingTestQueues) {
+                boolean hasBatch = false;
+                for (Map.Entry<ExecutorPool, Deque<TestInfo>> backlog : backlogs.entrySet()) {
                     if (!this.isAlive) {
-                        break;
+                        return;
                     }
 
-                    LOGGER.log("Attempting to submit test #" + (index + 1) + " of " + testInfos.size());
-                    if (outgoingTestQueue.add(testInfos.get(index), 15, TimeUnit.SECONDS)) {
-                        LOGGER.log("Submitted test #" + (index + 1));
-                        index++;
+                    TestBatch batch = nextBatches.get(backlog.getKey());
+                    if ((batch == null) && (!backlog.getValue().isEmpty())) {
+                        batch = takeNextBatch(backlog.getValue(), classFixtures, shareSizes, backlog.getKey().isForked() ? null : inProcessShares, serialClasses, resourceLocks, testSuiteDetails);
+                        if (batch != null) {
+                            nextBatches.put(backlog.getKey(), batch);
+                        }
                     }
-
-                    if (index >= testInfos.size()) {
-                        break;
+                    if (batch != null) {
+                        hasBatch = true;
+                        if (backlog.getKey().submit(batch, 10, TimeUnit.MILLISECONDS)) {
+                            nextBatches.remove(backlog.getKey());
+                            numSubmitted += batch.size();
+                            LOGGER.log("Submitted batch of " + batch.size() + " tests, now at " + numSubmitted + " of " + testInfos.size());
+                        }
                     }
                 }
+
+                // Every test left uses resources held by tests that are queued up or running, or belongs to a class whose
+                // previous share is not done yet, so wait for one of them.
+                if (!hasBatch) {
+                    resourceLocks.awaitRelease(10, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops feeding the tests of a suite that has reached its failure limit: the tests still in the backlogs or in the
+     * batches yet to be submitted, and those queued up on the executor lanes but not yet taken, are all reported as
+     * skipped. Tests already taken by an executor are skipped by the executor itself.
+     */
+    private void skipRemainingTests(Map<ExecutorPool, Deque<TestInfo>> backlogs, Collection<TestBatch> unsubmittedBatches, TestSuiteDetails testSuiteDetails) {
+        List<TestInfo> unsubmittedTests = new ArrayList<>();
+        for (TestBatch batch : unsubmittedBatches) {
+            unsubmittedTests.addAll(batch.getTestInfos());
+        }
+        for (Deque<TestInfo> backlog : backlogs.values()) {
+            unsubmittedTests.addAll(backlog);
+            backlog.clear();
+        }
+        int numSkipped = this.executorPools.skipTests(testSuiteDetails, unsubmittedTests);
+        LOGGER.log("Suite reached its failure limit, skipped " + numSkipped + " remaining tests.");
+    }
+
+    /**
+     * Works out how many tests go into each share of each class with a class fixture. A class is kept to a single share,
+     * and so to a single executor, unless its pool runs its tests in forked workers and the class has more work than one
+     * lane of the pool would get if the work were spread evenly. It is then split evenly into as many shares as that
+     * takes, but never more than there are lanes, so that the fixture is set up about once per worker. Work is measured
+     * in predicted duration, or in tests if there are no predictions.
+     *
+     * The shares of a class run in this JVM would share the static state of its fixture, so they are never split up to
+     * run at once. See {@link ClassFixture}.
+     */
+    private static Map<Class<?>, Integer> computeShareSizes(Map<ExecutorPool, Deque<TestInfo>> backlogs, Map<Class<?>, ClassFixture> classFixtures) {
+        Map<Class<?>, Integer> shareSizes = new HashMap<>();
+        if (classFixtures.isEmpty()) {
+            return shareSizes;
+        }
+
+        for (Map.Entry<ExecutorPool, Deque<TestInfo>> backlog : backlogs.entrySet()) {
+            int numLanes = Math.max(1, backlog.getKey().getLanes().size());
+            Map<Class<?>, long[]> classTotals = new HashMap<>();
+            long poolWork = 0;
+            for (TestInfo testInfo : backlog.getValue()) {
+                long work = Math.max(1, testInfo.getPredictedDurationNanos());
+                poolWork += work;
+                if (classFixtures.containsKey(testInfo.testClass)) {
+                    long[] classTotal = classTotals.computeIfAbsent(testInfo.testClass, (Class<?> testClass) -> new long[2]);
+                    classTotal[0] += work;
+                    classTotal[1]++;
+                }
             }
+
+            long workPerLane = Math.max(1, poolWork / numLanes);
+            for (Map.Entry<Class<?>, long[]> classTotal : classTotals.entrySet()) {
+                long classWork = classTotal.getValue()[0];
+                long numTests = classTotal.getValue()[1];
+                long numShares = backlog.getKey().isForked() ? Math.min(Math.min(numLanes, numTests), Math.max(1, (classWork + workPerLane - 1) / workPerLane)) : 1;
+                shareSizes.put(classTotal.getKey(), (int) ((numTests + numShares - 1) / numShares));
+            }
+        }
+        return shareSizes;
+    }
+
+    /**
+     * Takes the next batch to hand to an executor off of the specified backlog, starting from the first test in it whose
+     * shared resources are free, or returns null if every test left uses resources that are held. The resources of the
+     * batch are acquired for its tests before it is returned.
+     *
+     * Where the tests run in this JVM, the share of each class with a class fixture last handed out is kept in the given
+     * map, and a test whose class has a share that is not done yet is passed over, so that the shares of a class run one
+     * after another. The map is null where the tests run in forked workers.
+     *
+     * All of the tests of a serial class make up a single serial batch, which is also the one share of its class
+     * fixture, if it has one. Otherwise a test that uses shared resources makes up a batch of its own, so that the tests
+     * of a batch never conflict even when run at once on test threads, unless its class has a class fixture. Then the
+     * tests of the class that use exactly the same resources, as they all do when the locks are declared on the class,
+     * make up one batch and one share, so that the fixture is not set up once per test. That batch is serial if the
+     * tests would conflict. Tests that use no shared resources are batched as usual.
+     */
+    static TestBatch takeNextBatch(Deque<TestInfo> backlog, Map<Class<?>, ClassFixture> classFixtures, Map<Class<?>, Integer> shareSizes, Map<Class<?>, ClassFixture.Share> inProcessShares, Set<Class<?>> serialClasses, ResourceLockTable resourceLocks, TestSuiteDetails testSuiteDetails) {
+        TestInfo first = null;
+        Iterator<TestInfo> candidates = backlog.iterator();
+        while ((first == null) && (candidates.hasNext())) {
+            TestInfo candidate = candidates.next();
+            ClassFixture.Share previousShare = (inProcessShares == null) ? null : inProcessShares.get(candidate.testClass);
+            if (((candidate.getResourceLocks().isEmpty()) || (resourceLocks.isFree(candidate.getResourceLocks()))) && ((previousShare == null) || (previousShare.isDone()))) {
+                first = candidate;
+            }
+        }
+        if (first == null) {
+            return null;
+        }
+        candidates.remove();
+
+        ClassFixture classFixture = classFixtures.get(first.testClass);
+        TestBatch batch;
+        if (serialClasses.contains(first.testClass)) {
+            List<TestInfo> serialTests = new ArrayList<>();
+            serialTests.add(first);
+            Iterator<TestInfo> rest = backlog.iterator();
+            while (rest.hasNext()) {
+                TestInfo testInfo = rest.next();
+                if (testInfo.testClass == first.testClass) {
+                    rest.remove();
+                    serialTests.add(testInfo);
+                }
+            }
+            batch = TestBatch.serial(serialTests);
+            if (classFixture != null) {
+                shareClassFixture(classFixture, serialTests);
+            }
+        } else if ((!first.getResourceLocks().isEmpty()) && (classFixture == null)) {
+            batch = TestBatch.of(first);
+        } else if (!first.getResourceLocks().isEmpty()) {
+            List<TestInfo> lockedTests = new ArrayList<>();
+            lockedTests.add(first);
+            Iterator<TestInfo> rest = backlog.iterator();
+            while (rest.hasNext()) {
+                TestInfo testInfo = rest.next();
+                if ((testInfo.testClass == first.testClass) && (testInfo.getResourceLocks().equals(first.getResourceLocks()))) {
+                    rest.remove();
+                    lockedTests.add(testInfo);
+                }
+            }
+            batch = first.getResourceLocks().hasExclusive() ? TestBatch.serial(lockedTests) : TestBatch.of(lockedTests);
+            shareClassFixture(classFixture, lockedTests);
+        } else if (classFixture != null) {
+            batch = takeShare(first, backlog, classFixture, shareSizes.get(first.testClass));
+        } else {
+            return takeBatch(first, backlog, testSuiteDetails);
         }
+
+        if ((classFixture != null) && (inProcessShares != null)) {
+            inProcessShares.put(first.testClass, first.getClassFixtureShare());
+        }
+
+        if (!first.getResourceLocks().isEmpty()) {
+            ResourceLockTable.Grant grant = resourceLocks.acquire(first.getResourceLocks(), batch.size());
+            for (TestInfo testInfo : batch.getTestInfos()) {
+                testInfo.setResourceLockGrant(grant);
+            }
+        }
+        return batch;
     }
 
-    private List<TestInfo> createTestInfos(TestSuite testSuite, List<Class<?>> testClasses, TestSuiteDetails testSuiteDetails, Map<Class<?>, List<TestInfo>> classToTestInfoMap) {
+    /**
+     * Takes the next share of the class of the specified test off of the backlog: the test together with the tests of
+     * the same class that follow it, up to the given share size, all of which are handed to a single executor as one
+     * batch and run under one set up of the class fixture.
+     */
+    private static TestBatch takeShare(TestInfo first, Deque<TestInfo> backlog, ClassFixture classFixture, int shareSize) {
+        List<TestInfo> share = new ArrayList<>(shareSize);
+        share.add(first);
+        Iterator<TestInfo> candidates = backlog.iterator();
+        while ((share.size() < shareSize) && (candidates.hasNext())) {
+            TestInfo candidate = candidates.next();
+            if ((candidate.testClass == first.testClass) && (candidate.getResourceLocks().isEmpty())) {
+                candidates.remove();
+                share.add(candidate);
+            }
+        }
+        shareClassFixture(classFixture, share);
+        return TestBatch.of(share);
+    }
+
+    private static void shareClassFixture(ClassFixture classFixture, List<TestInfo> share) {
+        ClassFixture.Share fixtureShare = classFixture.newShare(share.size());
+        for (TestInfo testInfo : share) {
+            testInfo.setClassFixtureShare(fixtureShare);
+        }
+    }
+
+    /**
+     * Takes the next batch of tests off of the specified backlog: the specified test, together with as many of the
+     * tests of the same class that follow it as are expected to run within {@link #TARGET_BATCH_NANOS} altogether. Only
+     * the first {@link #MAX_BATCH_LOOKAHEAD} tests that follow are considered, so that forming a batch stays cheap.
+     *
+     * A test's expected duration is its predicted duration if it has one, and otherwise the mean duration of the tests
+     * of the suite run so far. If neither is known the test makes up a batch of its own, so that slow tests never end up
+     * queued behind one another on one lane while other lanes sit idle.
+     */
+    private static TestBatch takeBatch(TestInfo first, Deque<TestInfo> backlog, TestSuiteDetails testSuiteDetails) {
+        long expectedNanos = (first.getPredictedDurationNanos() > 0) ? first.getPredictedDurationNanos() : testSuiteDetails.getMeanTestDurationNanos();
+        int batchSize = (expectedNanos < 0) ? 1 : (int) Math.max(1, Math.min(MAX_BATCH_SIZE, TARGET_BATCH_NANOS / Math.max(1, expectedNanos)));
+        if (batchSize == 1) {
+            return TestBatch.of(first);
+        }
+
+        List<TestInfo> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        Iterator<TestInfo> candidates = backlog.iterator();
+        for (int i = 0; (i < MAX_BATCH_LOOKAHEAD) && (batch.size() < batchSize) && (candidates.hasNext()); i++) {
+            TestInfo candidate = candidates.next();
+            if ((candidate.testClass == first.testClass) && (candidate.getResourceLocks().isEmpty())) {
+                candidates.remove();
+                batch.add(candidate);
+            }
+        }
+        return TestBatch.of(batch);
+    }
+
+    /**
+     * Predicts how long each of the specified tests will take from the test history and orders them longest first, so
+     * that the longest tests start early rather than starting last and setting the suite's wall time.
+     *
+     * A test that has no history is predicted to take as long as the average of the tests of its class that do, or
+     * else the average of all of the tests that do. Without any history at all the tests keep their discovery order.
+     */
+    private void orderLongestFirst(List<TestInfo> testInfos) {
+        Map<Class<?>, long[]> classTotals = new HashMap<>();
+        List<TestInfo> unknownTests = new ArrayList<>();
+        long suiteTotalNanos = 0;
+        int numKnown = 0;
+        for (TestInfo testInfo : testInfos) {
+            TestHistory.Entry history = this.testHistory.get(TestHistory.nameOf(testInfo.testClass, testInfo.method));
+            if (history == null) {
+                unknownTests.add(testInfo);
+            } else {
+                testInfo.setPredictedDurationNanos(history.getDurationNanos());
+                long[] classTotal = classTotals.computeIfAbsent(testInfo.testClass, (Class<?> testClass) -> new long[2]);
+                classTotal[0] += history.getDurationNanos();
+                classTotal[1]++;
+                suiteTotalNanos += history.getDurationNanos();
+                numKnown++;
+            }
+        }
+        if (numKnown == 0) {
+            return;
+        }
+
+        for (TestInfo testInfo : unknownTests) {
+            long[] classTotal = classTotals.get(testInfo.testClass);
+            testInfo.setPredictedDurationNanos((classTotal != null) ? classTotal[0] / classTotal[1] : suiteTotalNanos / numKnown);
+        }
+
+        // The sort is stable so tests predicted to take equally long keep their discovery order.
+        testInfos.sort(Comparator.comparingLong(TestInfo::getPredictedDurationNanos).reversed());
+    }
+
+    /**
+     * Moves the tests that failed within their last few runs, and the tests of classes that have changed since they were
+     * last run, to the front of the specified tests so that a failure is reported as early as possible. Both groups keep
+     * their longest first order among themselves, as do the remaining tests.
+     *
+     * A class that has never been run before counts as changed, as does a class whose fingerprint is unknown.
+     */
+    private void moveLikelyFailuresToFront(List<TestInfo> testInfos, TestSuiteDetails testSuiteDetails) {
+        Map<Class<?>, Boolean> changedClasses = new HashMap<>();
+        List<TestInfo> likelyFailures = new ArrayList<>();
+        List<TestInfo> remainingTests = new ArrayList<>();
+        for (TestInfo testInfo : testInfos) {
+            boolean isClassChanged = changedClasses.computeIfAbsent(testInfo.testClass, (Class<?> testClass) -> {
+                String fingerprint = testSuiteDetails.getClassFingerprint(testClass);
+                return (fingerprint == null) || (!fingerprint.equals(this.testHistory.getClassFingerprint(testClass.getName())));
+            });
+            TestHistory.Entry history = this.testHistory.get(TestHistory.nameOf(testInfo.testClass, testInfo.method));
+            if ((isClassChanged) || ((history != null) && (history.hasFailedWithin(RECENT_FAILURE_RUNS)))) {
+                likelyFailures.add(testInfo);
+            } else {
+                remainingTests.add(testInfo);
+            }
+        }
+        LOGGER.log("Running " + likelyFailures.size() + " recently failed or changed tests first.");
+
+        testInfos.clear();
+        testInfos.addAll(likelyFailures);
+        testInfos.addAll(remainingTests);
+    }
+
+    /**
+     * Works out the key of each of the specified test classes in the result cache and publishes a cached result for each
+     * of the specified tests that passed before with its class having the same key, returning the rest of the tests,
+     * which are the ones to run. A test whose class failed to initialize is always run.
+     *
+     * The classpath hash leaves out every test class the request's matcher finds in its base directory rather than only
+     * the classes of the suite, so that the keys do not depend on which of the test classes were selected to run.
+     * If the suite's classpath cannot be hashed the cache is not used for the suite at all.
+     */
+    private List<TestInfo> reportCachedResults(TestSuite testSuite, RunSuiteClientRequest request, List<Class<?>> testClasses, List<TestInfo> testInfos, TestSuiteDetails testSuiteDetails) {
+        String classpathHash;
+        try {
+            classpathHash = this.resultCache.hashClasspath(testSuite.suiteLoader.getClasspath(), new File(request.getBaseDirectory()), Pattern.compile(request.getMatcher()));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log("Unable to hash the classpath of the suite, not using the result cache: " + e);
+            return testInfos;
+        }
+        for (Class<?> testClass : testClasses) {
+            try (InputStream classFile = testSuite.classLoader.getResourceAsStream(testClass.getName().replace('.', '/') + ".class")) {
+                if (classFile != null) {
+                    testSuiteDetails.setResultCacheKey(testClass, ResultCache.keyOf(classFile, classpathHash));
+                }
+            } catch (IOException e) {
+                LOGGER.log("Unable to read class file of " + testClass.getName() + ", not using the result cache for it: " + e);
+            }
+        }
+
+        List<TestInfo> cachedTests = new ArrayList<>();
+        List<TestInfo> testsToRun = new ArrayList<>();
+        for (TestInfo testInfo : testInfos) {
+            String key = testSuiteDetails.getResultCacheKey(testInfo.testClass);
+            if ((key != null) && (testInfo.getClassInitializationFailure() == null) && (this.resultCache.hasPassed(testInfo.testClass.getName(), key, testInfo.method.getName()))) {
+                cachedTests.add(testInfo);
+            } else {
+                testsToRun.add(testInfo);
+            }
+        }
+        LOGGER.log("Reporting " + cachedTests.size() + " tests from the result cache, running " + testsToRun.size() + " tests.");
+        this.executorPools.publishCachedResults(cachedTests);
+        return testsToRun;
+    }
+
+    /**
+     * Returns a fingerprint of the class file the specified class was loaded from, or null if the class file cannot
+     * be read.
+     */
+    private static String fingerprintClassFile(ClassLoader classLoader, Class<?> testClass) {
+        try (InputStream classFile = classLoader.getResourceAsStream(testClass.getName().replace('.', '/') + ".class")) {
+            if (classFile == null) {
+                return null;
+            }
+            CRC32 checksum = new CRC32();
+            byte[] buffer = new byte[8192];
+            int numRead;
+            while ((numRead = classFile.read(buffer)) != -1) {
+                checksum.update(buffer, 0, numRead);
+            }
+            return Long.toHexString(checksum.getValue());
+        } catch (IOException e) {
+            LOGGER.log("Unable to fingerprint class file of " + testClass.getName() + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns true iff the specified test is annotated as I/O-bound or, failing that, spent at most a fifth of its time
+     * on the CPU on earlier runs. The bar is set low since a CPU-bound test that had to share a busy processor shows
+     * far less CPU time than wall time too. A test that has not been measured yet is treated as CPU-bound so that it
+     * cannot oversubscribe the processors.
+     */
+    private boolean isIoBound(Class<?> testClass, Method method) {
+        if (isAnnotatedIoBound(method) || isAnnotatedIoBound(testClass)) {
+            return true;
+        }
+        TestHistory.Entry history = this.testHistory.get(TestHistory.nameOf(testClass, method));
+        return (history != null) && (history.getCpuFraction() >= 0) && (history.getCpuFraction() <= MAX_IO_BOUND_CPU_FRACTION);
+    }
+
+    /**
+     * The annotation is matched by name so that it is recognized even if the test suite brings its own copy of it.
+     */
+    private static boolean isAnnotatedIoBound(AnnotatedElement element) {
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType().getName().equals(IoBound.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the execution mode declared by the {@link ClassExecutionMode} annotation of the specified class, matched
+     * by name like {@link IoBound}, or the given default mode of the suite if it declares none.
+     */
+    private static ClassExecutionMode.Mode classExecutionModeOf(Class<?> testClass, ClassExecutionMode.Mode defaultMode) {
+        for (Annotation annotation : testClass.getAnnotations()) {
+            if (annotation.annotationType().getName().equals(ClassExecutionMode.class.getName())) {
+                return ClassExecutionMode.Mode.valueOf(((Enum<?>) annotationElement(annotation, "value")).name());
+            }
+        }
+        return defaultMode;
+    }
+
+    /**
+     * Prepares the tests of a serial class to be dispatched together as one batch: they are sent to the same pool, the
+     * I/O-bound one only if all of them are I/O-bound, each of them holds the shared resources of all of them, and
+     * they run on the given shared instance of the class, if there is one.
+     */
+    private static void pinToOneExecutor(List<TestInfo> testInfos, TestInvoker.SharedInstance sharedInstance) {
+        boolean isIoBound = true;
+        ResourceLockSet resourceLocks = ResourceLockSet.EMPTY;
+        for (TestInfo testInfo : testInfos) {
+            isIoBound &= testInfo.isIoBound();
+            resourceLocks = resourceLocks.union(testInfo.getResourceLocks());
+        }
+        for (TestInfo testInfo : testInfos) {
+            testInfo.setIoBound(isIoBound);
+            testInfo.setResourceLocks(resourceLocks);
+            testInfo.setSharedInstance(sharedInstance);
+        }
+    }
+
+    private static Object annotationElement(Annotation annotation, String elementName) {
+        try {
+            return annotation.annotationType().getMethod(elementName).invoke(annotation);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("unable to read element " + elementName + " of " + annotation, e);
+        }
+    }
+
+    private List<Class<?>> loadTestClasses(TestSuite testSuite) throws ClassNotFoundException, InterruptedException {
+        if (this.classInitializer != null) {
+            return this.classInitializer.loadAll(testSuite.testClassPaths, testSuite.classLoader);
+        }
+
+        List<Class<?>> testClasses = new ArrayList<>();
+        for (String className : testSuite.testClassPaths) {
+            testClasses.add(testSuite.classLoader.loadClass(className));
+        }
+        return testClasses;
+    }
+
+    private List<TestInfo> createTestInfos(TestSuite testSuite, List<Class<?>> testClasses, TestSuiteDetails testSuiteDetails, Map<Class<?>, List<TestInfo>> classToTestInfoMap, Map<Class<?>, ClassFixture> classFixtures, Set<Class<?>> serialClasses, Map<Class<?>, Throwable> classInitFailures) {
         List<TestInfo> allTestInfos = new ArrayList<>();
         int classDbId = 0;
         for (Class<?> testClass : testClasses) {
             List<TestInfo> testInfos = new ArrayList<>();
+            TestInvoker classInvoker = null;
             for (Method method : testClass.getDeclaredMethods()) {
-                if (method.getAnnotation(org.junit.Test.class) != null) {
-                    TestInfo testInfo = new TestInfo(testClass, method, testSuiteDetails, testSuite.sessionContext);
+                if ((method.getAnnotation(org.junit.Test.class) != null) && ((testSuite.testPlan == null) || (testSuite.testPlan.includes(testClass.getName(), method.getName())))) {
+                    // The constructor and fixtures are resolved once per class and shared by all of its tests.
+                    if (classInvoker == null) {
+                        classInvoker = TestInvoker.forClass(testClass);
+                        ClassFixture classFixture = ClassFixture.forClass(testClass);
+                        if (classFixture != null) {
+                            classFixtures.put(testClass, classFixture);
+                        }
+                    }
+                    TestInfo testInfo = new TestInfo(testClass, method, classInvoker.forMethod(method), testSuiteDetails, testSuite.sessionContext);
+                    testInfo.setClassInitializationFailure(classInitFailures.get(testClass));
+
+                    // A timeout declared on the test itself takes precedence over the one given for the suite.
+                    long declaredTimeout = method.getAnnotation(org.junit.Test.class).timeout();
+                    testInfo.setTimeoutMillis((declaredTimeout > 0) ? declaredTimeout : testSuite.testTimeoutMillis);
+                    if (this.executorPools.isSplit()) {
+                        testInfo.setIoBound(isIoBound(testClass, method));
+                    }
+                    testInfo.setResourceLocks(ResourceLockSet.declaredOn(testClass, method));
                     testInfos.add(testInfo);
                     allTestInfos.add(testInfo);
 
@@ -278,6 +932,15 @@ public final class TestSuiteRunner implements Runnable {
                 }
             }
             classToTestInfoMap.put(testClass, testInfos);
+            if (testSuite.testPlan != null) {
+                logUnknownPlannedMethods(testSuite.testPlan, testClass, testInfos);
+            }
+
+            ClassExecutionMode.Mode executionMode = classExecutionModeOf(testClass, testSuite.classExecutionMode);
+            if ((executionMode != ClassExecutionMode.Mode.PARALLEL_METHODS) && (!testInfos.isEmpty())) {
+                serialClasses.add(testClass);
+                pinToOneExecutor(testInfos, (executionMode == ClassExecutionMode.Mode.SAME_INSTANCE) ? testInfos.get(0).invoker.newSharedInstance() : null);
+            }
 
             if (this.dbConnection != null) {
                 classDbId++;
@@ -286,6 +949,19 @@ public final class TestSuiteRunner implements Runnable {
         return allTestInfos;
     }
 
+    /**
+     * Logs those of the planned methods of the specified class that are not among its tests, which are not run.
+     */
+    private static void logUnknownPlannedMethods(TestPlan testPlan, Class<?> testClass, List<TestInfo> testInfos) {
+        Set<String> unknownMethodNames = new HashSet<>(testPlan.getMethodNames(testClass.getName()));
+        for (TestInfo testInfo : testInfos) {
+            unknownMethodNames.remove(testInfo.method.getName());
+        }
+        if (!unknownMethodNames.isEmpty()) {
+            LOGGER.log("Ignoring planned methods of " + testClass.getName() + " that are not tests: " + unknownMethodNames);
+        }
+    }
+
     private static void fetchAllFullyQualifiedTestClassNames(Pattern testPattern, int baseDirLength, File currDir, List<String> classNames) throws IOException {
         for (File file : currDir.listFiles()) {
             if (file.isFile() && testPattern.matcher(file.getName()).matches()) {
@@ -23,6 +23,7 @@ import java.util.concurrent.CyclicBarrier;
 public final class Server implements Runnable {
     private static final Logger LOGGER = Logger.forClass(Server.class);
     private static final int BUFFER_CAPACITIES = 16_384;
+    private static final int MAX_REQUEST_BYTES = 16 * 1024 * 1024;
     private final CyclicBarrier barrier;
     private final ServerContext context;
     private final NotifyOnlyMonitor shutdownMonitor;
@@ -66,6 +67,10 @@ public final class Server implements Runnable {
                         if (key.isReadable()) {
                             readFromConnection(key);
                         }
+                        // Reading may have found the connection closed by the client.
+                        if (!key.isValid()) {
+                            continue;
+                        }
                         if (key.isWritable()) {
                             writeToConnection(key);
                         }
@@ -102,7 +107,7 @@ public final class Server implements Runnable {
      */
     private void acceptNewConnection() throws IOException {
         // Create a new client session object that will hold any session data we need to persist.
-        ClientSession newSession = ClientSession.withCapacities(BUFFER_CAPACITIES, BUFFER_CAPACITIES);
+        ClientSession newSession = ClientSession.withCapacities(BUFFER_CAPACITIES, BUFFER_CAPACITIES, MAX_REQUEST_BYTES);
 
         SocketChannel channel = this.context.socketChannel.accept();
         channel.configureBlocking(false);
@@ -131,7 +136,11 @@ public final class Server implements Runnable {
         // that we may have read an incomplete request and thus when we attempt to get it we get a null request back.
         // In this case, we have to wait for the next READ operation on the socket to attempt to read the remainder.
         SocketChannel channel = (SocketChannel) key.channel();
-        clientSession.writeRequestFromSocket(channel);
+        if ((clientSession.writeRequestFromSocket(channel) < 0) && (clientSession.isStreamingResponses())) {
+            // A session that streams its responses lasts until the client closes the connection.
+            endStreamingConnection(key, clientSession);
+            return;
+        }
         String request = clientSession.getNextClientRequest();
 
         if (request != null) {
@@ -144,14 +153,24 @@ public final class Server implements Runnable {
                 this.requestHandler.handleRequest(parseResult.getData(), context);
             } else {
                 // Failed to parse the request. We respond with an error to the client and terminate the session.
-                clientSession.putServerResponse(RunSuiteResponse.failed(parseResult.getError()).toJsonString());
-                clientSession.terminateSession();
-                channel.register(this.context.selector, SelectionKey.OP_WRITE, clientSession);
-                this.context.selector.wakeup();
+                respondWithError(channel, clientSession, parseResult.getError());
             }
+        } else if (clientSession.isRequestOversized()) {
+            // The request will never fit, so we give up on it rather than hold ever more of it in memory.
+            respondWithError(channel, clientSession, "Request exceeds the maximum size of " + MAX_REQUEST_BYTES + " bytes.");
         }
     }
 
+    /**
+     * Responds to the client with the specified error and terminates the session once the response is written.
+     */
+    private void respondWithError(SocketChannel channel, ClientSession clientSession, String error) throws ClosedChannelException {
+        clientSession.putServerResponse(RunSuiteResponse.failed(error).toJsonString() + "\n");
+        clientSession.terminateSession();
+        channel.register(this.context.selector, SelectionKey.OP_WRITE, clientSession);
+        this.context.selector.wakeup();
+    }
+
     /**
      * Attempts to write to the selected connection.
      *
@@ -167,14 +186,23 @@ public final class Server implements Runnable {
     private void writeToConnection(SelectionKey key) throws IOException {
         ClientSession clientSession = (ClientSession) key.attachment();
         SocketChannel channel = (SocketChannel) key.channel();
-        clientSession.writeResponseToSocket(channel);
+        synchronized (clientSession) {
+            clientSession.writeResponseToSocket(channel);
+
+            // A streaming session goes back to waiting on the client, so that we notice when it closes the connection,
+            // until the next response is put into it.
+            if ((clientSession.isStreamingResponses()) && (!clientSession.hasPendingResponse())) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
     }
 
     /**
      * Checks the selected connection for whether or not the session is complete and if so closes the connection.
      *
      * In addition to closing the connection, this method will also notify the system to shutdown since we are still in
-     * a single-use mode.
+     * a single-use mode, unless the session was one that is meant to be followed by others (such as registering a
+     * classpath).
      */
     private void endConnectionIfComplete(SelectionKey key) throws IOException {
         ClientSession clientSession = (ClientSession) key.attachment();
@@ -183,6 +211,23 @@ public final class Server implements Runnable {
             // we are done and should shut down.
             key.channel().close();
             System.out.println("Connection closed for client #" + clientSession.id);
+            if (clientSession.shouldShutdownServerOnTermination()) {
+                this.shutdownMonitor.requestGracefulShutdown();
+            }
+        }
+    }
+
+    /**
+     * Closes the connection of a session that streams its responses once the client has closed its end. The server is
+     * notified to shutdown as for any other session that ends.
+     */
+    private void endStreamingConnection(SelectionKey key, ClientSession clientSession) throws IOException {
+        synchronized (clientSession) {
+            key.cancel();
+            key.channel().close();
+        }
+        System.out.println("Connection closed by client #" + clientSession.id);
+        if (clientSession.shouldShutdownServerOnTermination()) {
             this.shutdownMonitor.requestGracefulShutdown();
         }
     }
@@ -3,9 +3,13 @@ package spin.core.server.handler;
 import spin.core.exception.UnreachableException;
 import spin.core.runner.TestRunner;
 import spin.core.server.request.ClientRequest;
+import spin.core.server.request.RegisterClasspathClientRequest;
 import spin.core.server.request.RequestType;
 import spin.core.server.request.RunSuiteClientRequest;
+import spin.core.server.request.WatchSuiteClientRequest;
+import spin.core.server.response.RegisterClasspathResponse;
 import spin.core.server.response.RunSuiteResponse;
+import spin.core.server.response.WatchSuiteResponse;
 import spin.core.server.session.RequestSessionContext;
 import spin.core.type.Result;
 import spin.core.util.Logger;
@@ -47,6 +51,11 @@ public final class RequestHandler {
             LOGGER.log("Submitting " + RequestType.RUN_SUITE + " request");
             RunSuiteClientRequest runSuiteRequest = (RunSuiteClientRequest) clientRequest;
             runSuiteRequest.bindContext(sessionContext);
+            if ((runSuiteRequest.isShard()) || (runSuiteRequest.hasRegisteredClasspath())) {
+                // The daemon stays up to run the other shards its coordinator sends it, now and in later suites, or the
+                // other suites that use the registered classpath.
+                sessionContext.clientSession.keepServerAliveOnTermination();
+            }
 
             Result<Integer> addResult = this.testRunner.addRequest(runSuiteRequest, 5, TimeUnit.MINUTES);
             if (!addResult.isSuccess()) {
@@ -56,6 +65,35 @@ public final class RequestHandler {
                 sessionContext.selector.wakeup();
             }
 
+        } else if (clientRequest.getType() == RequestType.REGISTER_CLASSPATH) {
+            LOGGER.log("Handling " + RequestType.REGISTER_CLASSPATH + " request");
+            RegisterClasspathClientRequest registerRequest = (RegisterClasspathClientRequest) clientRequest;
+
+            // Registering a classpath only sets things up for the suites to come, so it must not end the server.
+            Result<Integer> registerResult = this.testRunner.registerClasspath(registerRequest.getDependencies());
+            RegisterClasspathResponse response = registerResult.isSuccess()
+                    ? RegisterClasspathResponse.successful(registerResult.getData())
+                    : RegisterClasspathResponse.failed(registerResult.getError());
+            sessionContext.clientSession.putServerResponse(response.toJsonString() + "\n");
+            sessionContext.clientSession.keepServerAliveOnTermination();
+            sessionContext.clientSession.terminateSession();
+            sessionContext.socketChannel.register(sessionContext.selector, SelectionKey.OP_WRITE, sessionContext.clientSession);
+            sessionContext.selector.wakeup();
+
+        } else if (clientRequest.getType() == RequestType.WATCH_SUITE) {
+            LOGGER.log("Handling " + RequestType.WATCH_SUITE + " request");
+            WatchSuiteClientRequest watchRequest = (WatchSuiteClientRequest) clientRequest;
+
+            // The results of each run are streamed back until the client closes the connection.
+            sessionContext.clientSession.streamResponses();
+            Result<Void> watchResult = this.testRunner.watchSuite(watchRequest, sessionContext);
+            if (!watchResult.isSuccess()) {
+                sessionContext.clientSession.putServerResponse(WatchSuiteResponse.failed(watchResult.getError()).toJsonString() + "\n");
+                sessionContext.clientSession.terminateSession();
+                sessionContext.socketChannel.register(sessionContext.selector, SelectionKey.OP_WRITE, sessionContext.clientSession);
+                sessionContext.selector.wakeup();
+            }
+
         } else {
             sessionContext.clientSession.putServerResponse(RunSuiteResponse.failed("unknown request type: " + clientRequest.getType()).toJsonString() + "\n");
             sessionContext.clientSession.terminateSession();
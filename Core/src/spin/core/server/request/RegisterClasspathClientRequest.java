@@ -0,0 +1,34 @@
+package spin.core.server.request;
+
+import spin.core.util.ObjectChecker;
+
+/**
+ * A client request to register a set of dependencies with the server so that any number of later suites can refer to
+ * them by id.
+ */
+public final class RegisterClasspathClientRequest implements ClientRequest {
+    private final String[] dependencies;
+
+    private RegisterClasspathClientRequest(String[] dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    public static RegisterClasspathClientRequest from(String[] dependencies) {
+        ObjectChecker.assertNonNull((Object) dependencies);
+        return new RegisterClasspathClientRequest(dependencies);
+    }
+
+    public String[] getDependencies() {
+        return this.dependencies;
+    }
+
+    @Override
+    public RequestType getType() {
+        return RequestType.REGISTER_CLASSPATH;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { num dependencies: " + this.dependencies.length + " }";
+    }
+}
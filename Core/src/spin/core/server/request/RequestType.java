@@ -1,7 +1,9 @@
 package spin.core.server.request;
 
 public enum RequestType {
-    RUN_SUITE("run_suite")
+    RUN_SUITE("run_suite"),
+    REGISTER_CLASSPATH("register_classpath"),
+    WATCH_SUITE("watch_suite")
     ;
 
     public final String asString;
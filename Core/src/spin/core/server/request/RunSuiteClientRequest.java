@@ -1,26 +1,123 @@
 package spin.core.server.request;
 
+import spin.core.annotation.ClassExecutionMode;
 import spin.core.server.session.RequestSessionContext;
 import spin.core.util.ObjectChecker;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * A client request to run a test suite.
+ *
+ * A suite may be split into shards that are run by other Spin daemons, in which case this daemon is the coordinator of
+ * the suite and the request lists the addresses of the daemons to run the shards on. Each shard is in turn sent to one
+ * of those daemons as a request of its own, which lists the test classes of the shard.
+ *
+ * A request may also list the classes and jars that changed since the suite was last run, in which case only the test
+ * classes that can be affected by those changes are run.
+ *
+ * A request may carry a {@link TestPlan} that lists the tests of the suite outright, in which case the base directory is
+ * not searched for test classes and only the planned tests are run.
+ *
+ * The runs of a watched suite are requested by the daemon itself on behalf of a {@link WatchSuiteClientRequest}, each time
+ * the suite's classes change, and stream their results back on the connection of the watch.
  */
 public final class RunSuiteClientRequest implements ClientRequest {
     private final String baseDirectory;
     private final String matcher;
     private final String[] dependencies;
+    private final int classpathId;
+    private final long testTimeoutMillis;
+    private final boolean failuresFirst;
+    private final int maxFailures;
+    private final ClassExecutionMode.Mode classExecutionMode;
+    private final List<String> classNames;
+    private final List<String> workers;
+    private final List<String> changes;
+    private final int watchRun;
+    private final TestPlan testPlan;
     private RequestSessionContext sessionContext = null;
 
-    private RunSuiteClientRequest(String baseDirectory, String matcher, String[] dependencies) {
+    private RunSuiteClientRequest(String baseDirectory, String matcher, String[] dependencies, int classpathId, long testTimeoutMillis, boolean failuresFirst, int maxFailures, ClassExecutionMode.Mode classExecutionMode, List<String> classNames, List<String> workers, List<String> changes, int watchRun, TestPlan testPlan) {
         this.baseDirectory = baseDirectory;
         this.matcher = matcher;
         this.dependencies = dependencies;
+        this.classpathId = classpathId;
+        this.testTimeoutMillis = testTimeoutMillis;
+        this.failuresFirst = failuresFirst;
+        this.maxFailures = maxFailures;
+        this.classExecutionMode = classExecutionMode;
+        this.classNames = classNames;
+        this.workers = workers;
+        this.changes = changes;
+        this.watchRun = watchRun;
+        this.testPlan = testPlan;
+    }
+
+    /**
+     * Constructs a request to run a suite, or only the test classes of the suite that can be affected by the specified
+     * changes if they are non-null. The tests of the suite are those of the specified plan if it is non-null, and are
+     * otherwise found in the base directory with the matcher.
+     */
+    public static RunSuiteClientRequest from(String baseDirectory, String matcher, String[] dependencies, long testTimeoutMillis, boolean failuresFirst, int maxFailures, ClassExecutionMode.Mode classExecutionMode, List<String> changes, TestPlan testPlan) {
+        ObjectChecker.assertNonNull(baseDirectory, matcher, dependencies, classExecutionMode);
+        ObjectChecker.assertNonNegative(testTimeoutMillis);
+        ObjectChecker.assertNonNegative(maxFailures);
+        return new RunSuiteClientRequest(baseDirectory, matcher, dependencies, -1, testTimeoutMillis, failuresFirst, maxFailures, classExecutionMode, null, Collections.emptyList(), unmodifiableOrNull(changes), 0, testPlan);
+    }
+
+    /**
+     * Constructs a request to run a suite whose dependencies are those of a previously registered classpath, in addition
+     * to the specified dependencies of the suite itself, or only the test classes of the suite that can be affected by
+     * the specified changes if they are non-null. The tests of the suite are those of the specified plan if it is
+     * non-null, and are otherwise found in the base directory with the matcher.
+     */
+    public static RunSuiteClientRequest withRegisteredClasspath(String baseDirectory, String matcher, String[] dependencies, int classpathId, long testTimeoutMillis, boolean failuresFirst, int maxFailures, ClassExecutionMode.Mode classExecutionMode, List<String> changes, TestPlan testPlan) {
+        ObjectChecker.assertNonNull(baseDirectory, matcher, dependencies, classExecutionMode);
+        ObjectChecker.assertNonNegative(classpathId);
+        ObjectChecker.assertNonNegative(testTimeoutMillis);
+        ObjectChecker.assertNonNegative(maxFailures);
+        return new RunSuiteClientRequest(baseDirectory, matcher, dependencies, classpathId, testTimeoutMillis, failuresFirst, maxFailures, classExecutionMode, null, Collections.emptyList(), unmodifiableOrNull(changes), 0, testPlan);
+    }
+
+    /**
+     * Constructs a request to run a suite as the coordinator of its shards, which are run by the daemons at the specified
+     * addresses, each given as host:port. Only the test classes that can be affected by the specified changes are split
+     * into shards if the changes are non-null.
+     */
+    public static RunSuiteClientRequest coordinated(String baseDirectory, String matcher, String[] dependencies, List<String> workers, long testTimeoutMillis, boolean failuresFirst, ClassExecutionMode.Mode classExecutionMode, List<String> changes) {
+        ObjectChecker.assertNonNull(baseDirectory, matcher, dependencies, workers, classExecutionMode);
+        ObjectChecker.assertNonNegative(testTimeoutMillis);
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("workers must be non-empty.");
+        }
+        return new RunSuiteClientRequest(baseDirectory, matcher, dependencies, -1, testTimeoutMillis, failuresFirst, 0, classExecutionMode, null, Collections.unmodifiableList(workers), unmodifiableOrNull(changes), 0, null);
+    }
+
+    /**
+     * Constructs a request to run a shard of a suite on behalf of its coordinator, that is just the specified test classes
+     * of the suite.
+     */
+    public static RunSuiteClientRequest shard(String baseDirectory, String matcher, String[] dependencies, List<String> classNames, long testTimeoutMillis, boolean failuresFirst, ClassExecutionMode.Mode classExecutionMode) {
+        ObjectChecker.assertNonNull(baseDirectory, matcher, dependencies, classNames, classExecutionMode);
+        ObjectChecker.assertNonNegative(testTimeoutMillis);
+        return new RunSuiteClientRequest(baseDirectory, matcher, dependencies, -1, testTimeoutMillis, failuresFirst, 0, classExecutionMode, Collections.unmodifiableList(classNames), Collections.emptyList(), null, 0, null);
+    }
+
+    /**
+     * Constructs a request for the specified run of a watched suite, which is numbered from one, of all of the suite's
+     * test classes if the changes are null, or else of only those that can be affected by the changes.
+     */
+    public static RunSuiteClientRequest watched(String baseDirectory, String matcher, String[] dependencies, long testTimeoutMillis, boolean failuresFirst, ClassExecutionMode.Mode classExecutionMode, List<String> changes, int watchRun) {
+        ObjectChecker.assertNonNull(baseDirectory, matcher, dependencies, classExecutionMode);
+        ObjectChecker.assertNonNegative(testTimeoutMillis);
+        ObjectChecker.assertPositive(watchRun);
+        return new RunSuiteClientRequest(baseDirectory, matcher, dependencies, -1, testTimeoutMillis, failuresFirst, 0, classExecutionMode, null, Collections.emptyList(), unmodifiableOrNull(changes), watchRun, null);
     }
 
-    public static RunSuiteClientRequest from(String baseDirectory, String matcher, String[] dependencies) {
-        ObjectChecker.assertNonNull(baseDirectory, matcher, dependencies);
-        return new RunSuiteClientRequest(baseDirectory, matcher, dependencies);
+    private static List<String> unmodifiableOrNull(List<String> list) {
+        return (list == null) ? null : Collections.unmodifiableList(list);
     }
 
     public String getBaseDirectory() {
@@ -35,6 +132,127 @@ public final class RunSuiteClientRequest implements ClientRequest {
         return this.dependencies;
     }
 
+    public boolean hasRegisteredClasspath() {
+        return this.classpathId >= 0;
+    }
+
+    public int getClasspathId() {
+        return this.classpathId;
+    }
+
+    /**
+     * Returns the timeout in milliseconds of each test in the suite that does not declare its own timeout, or zero if
+     * such tests may run indefinitely.
+     */
+    public long getTestTimeoutMillis() {
+        return this.testTimeoutMillis;
+    }
+
+    /**
+     * Returns true iff the tests that failed recently, or whose class changed since it was last run, are to be run
+     * before the rest of the suite.
+     */
+    public boolean isFailuresFirst() {
+        return this.failuresFirst;
+    }
+
+    /**
+     * Returns the number of failed tests after which the rest of the suite is skipped, or zero if the whole suite is to
+     * be run regardless of how many of its tests fail.
+     */
+    public int getMaxFailures() {
+        return this.maxFailures;
+    }
+
+    /**
+     * Returns the execution mode of the test classes of the suite that do not declare their own.
+     */
+    public ClassExecutionMode.Mode getClassExecutionMode() {
+        return this.classExecutionMode;
+    }
+
+    /**
+     * Returns true iff the suite is a shard of a larger suite that is run on behalf of the suite's coordinator.
+     */
+    public boolean isShard() {
+        return this.classNames != null;
+    }
+
+    /**
+     * Returns the names of the test classes of the shard, which must be among those the matcher finds in the base
+     * directory. Only defined for shards.
+     */
+    public List<String> getShardClassNames() {
+        if (this.classNames == null) {
+            throw new IllegalStateException("Cannot get class names: request is not for a shard.");
+        }
+        return this.classNames;
+    }
+
+    /**
+     * Returns true iff this daemon is to coordinate the suite, running its shards on other daemons.
+     */
+    public boolean isCoordinated() {
+        return !this.workers.isEmpty();
+    }
+
+    /**
+     * Returns the addresses, each given as host:port, of the daemons to run the shards of the suite on, which is empty
+     * unless the suite is coordinated.
+     */
+    public List<String> getWorkers() {
+        return this.workers;
+    }
+
+    /**
+     * Returns true iff only the test classes of the suite that can be affected by the request's changes are to be run.
+     */
+    public boolean hasChanges() {
+        return this.changes != null;
+    }
+
+    /**
+     * Returns the classes, each given by its binary name, and the jars, each given by its path or file name, that changed
+     * since the suite was last run. Only defined for requests that have changes.
+     */
+    public List<String> getChanges() {
+        if (this.changes == null) {
+            throw new IllegalStateException("Cannot get changes: request has no changes.");
+        }
+        return this.changes;
+    }
+
+    /**
+     * Returns true iff the suite is a run of a watched suite, whose results are streamed back as they come in.
+     */
+    public boolean isWatched() {
+        return this.watchRun > 0;
+    }
+
+    /**
+     * Returns the number of the run of the watched suite, counting from one, or zero if the suite is not watched.
+     */
+    public int getWatchRun() {
+        return this.watchRun;
+    }
+
+    /**
+     * Returns true iff the tests of the suite are listed by the request's plan rather than found in the base directory.
+     */
+    public boolean hasTestPlan() {
+        return this.testPlan != null;
+    }
+
+    /**
+     * Returns the plan that lists the tests of the suite. Only defined for requests that have a plan.
+     */
+    public TestPlan getTestPlan() {
+        if (this.testPlan == null) {
+            throw new IllegalStateException("Cannot get test plan: request has no test plan.");
+        }
+        return this.testPlan;
+    }
+
     public RequestSessionContext getSessionContext() {
         if (this.sessionContext == null) {
             throw new IllegalStateException("Cannot get session context: no context has been bound.");
@@ -66,6 +284,16 @@ public final class RunSuiteClientRequest implements ClientRequest {
         return this.getClass().getSimpleName() + " { base dir: " + this.baseDirectory
                 + ", matcher: " + this.matcher
                 + ", num dependencies: " + this.dependencies.length
+                + (this.classpathId >= 0 ? ", classpath id: " + this.classpathId : "")
+                + (this.testTimeoutMillis > 0 ? ", test timeout: " + this.testTimeoutMillis + "ms" : "")
+                + (this.failuresFirst ? ", [failures first]" : "")
+                + (this.maxFailures > 0 ? ", max failures: " + this.maxFailures : "")
+                + ", class execution mode: " + this.classExecutionMode
+                + (this.classNames != null ? ", shard of " + this.classNames.size() + " classes" : "")
+                + (!this.workers.isEmpty() ? ", workers: " + this.workers : "")
+                + (this.changes != null ? ", num changes: " + this.changes.size() : "")
+                + (this.watchRun > 0 ? ", watch run: " + this.watchRun : "")
+                + (this.testPlan != null ? ", planned classes: " + this.testPlan.getNumClasses() : "")
                 + ", " + (this.sessionContext == null ? "no context bound" : "context is bound") + " }";
     }
 }
@@ -0,0 +1,73 @@
+package spin.core.server.request;
+
+import spin.core.util.ObjectChecker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The explicit list of tests to run of a suite, as given by a client that already knows them, such as a build tool.
+ * A suite with a plan is not discovered in its base directory: only the planned test classes are loaded, and of each of
+ * them only its planned test methods are run, or all of its test methods if none are planned.
+ *
+ * The test classes of a plan are kept in the order they were planned in.
+ */
+public final class TestPlan {
+    private final Map<String, Set<String>> classToMethodNames;
+
+    private TestPlan(Map<String, Set<String>> classToMethodNames) {
+        this.classToMethodNames = classToMethodNames;
+    }
+
+    /**
+     * Constructs a plan from the specified test classes, each given by its binary name, and the names of their test
+     * methods to run. A class that is mapped to no methods has all of its test methods run.
+     */
+    public static TestPlan from(Map<String, ? extends Collection<String>> classToMethodNames) {
+        ObjectChecker.assertNonNull(classToMethodNames);
+        Map<String, Set<String>> plan = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : classToMethodNames.entrySet()) {
+            ObjectChecker.assertNonNull(entry.getKey(), entry.getValue());
+            plan.put(entry.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(entry.getValue())));
+        }
+        return new TestPlan(plan);
+    }
+
+    /**
+     * Returns the binary names of the planned test classes.
+     */
+    public List<String> getClassNames() {
+        return new ArrayList<>(this.classToMethodNames.keySet());
+    }
+
+    /**
+     * Returns the names of the planned test methods of the specified class, which is empty if all of its test methods
+     * are to be run.
+     */
+    public Set<String> getMethodNames(String className) {
+        return this.classToMethodNames.getOrDefault(className, Collections.emptySet());
+    }
+
+    /**
+     * Returns true iff the specified test method of the specified class is to be run.
+     */
+    public boolean includes(String className, String methodName) {
+        Set<String> methodNames = this.classToMethodNames.get(className);
+        return (methodNames != null) && ((methodNames.isEmpty()) || (methodNames.contains(methodName)));
+    }
+
+    public int getNumClasses() {
+        return this.classToMethodNames.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { num classes: " + this.classToMethodNames.size() + " }";
+    }
+}
@@ -0,0 +1,73 @@
+package spin.core.server.request;
+
+import spin.core.annotation.ClassExecutionMode;
+import spin.core.util.ObjectChecker;
+
+import java.util.List;
+
+/**
+ * A client request to watch a test suite: the suite is run once in full and then again each time its classes change,
+ * each time running only the test classes that the changes can affect, until the client closes the connection. The
+ * results of each run are streamed back on the connection as they come in.
+ */
+public final class WatchSuiteClientRequest implements ClientRequest {
+    private final String baseDirectory;
+    private final String matcher;
+    private final String[] dependencies;
+    private final long testTimeoutMillis;
+    private final boolean failuresFirst;
+    private final ClassExecutionMode.Mode classExecutionMode;
+
+    private WatchSuiteClientRequest(String baseDirectory, String matcher, String[] dependencies, long testTimeoutMillis, boolean failuresFirst, ClassExecutionMode.Mode classExecutionMode) {
+        this.baseDirectory = baseDirectory;
+        this.matcher = matcher;
+        this.dependencies = dependencies;
+        this.testTimeoutMillis = testTimeoutMillis;
+        this.failuresFirst = failuresFirst;
+        this.classExecutionMode = classExecutionMode;
+    }
+
+    public static WatchSuiteClientRequest from(String baseDirectory, String matcher, String[] dependencies, long testTimeoutMillis, boolean failuresFirst, ClassExecutionMode.Mode classExecutionMode) {
+        ObjectChecker.assertNonNull(baseDirectory, matcher, dependencies, classExecutionMode);
+        ObjectChecker.assertNonNegative(testTimeoutMillis);
+        return new WatchSuiteClientRequest(baseDirectory, matcher, dependencies, testTimeoutMillis, failuresFirst, classExecutionMode);
+    }
+
+    public String getBaseDirectory() {
+        return this.baseDirectory;
+    }
+
+    /**
+     * Returns the dependencies of the suite, which end with its base directory.
+     */
+    public String[] getDependencies() {
+        return this.dependencies;
+    }
+
+    /**
+     * Returns a request for the specified run of the suite, numbered from one, of all of its test classes if the changes
+     * are null, or else of only those that can be affected by the changes.
+     *
+     * @param changes The classes that changed since the last run, or null.
+     * @param run The number of the run.
+     * @return the request for the run.
+     */
+    public RunSuiteClientRequest toRunRequest(List<String> changes, int run) {
+        return RunSuiteClientRequest.watched(this.baseDirectory, this.matcher, this.dependencies, this.testTimeoutMillis, this.failuresFirst, this.classExecutionMode, changes, run);
+    }
+
+    @Override
+    public RequestType getType() {
+        return RequestType.WATCH_SUITE;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { base dir: " + this.baseDirectory
+                + ", matcher: " + this.matcher
+                + ", num dependencies: " + this.dependencies.length
+                + (this.testTimeoutMillis > 0 ? ", test timeout: " + this.testTimeoutMillis + "ms" : "")
+                + (this.failuresFirst ? ", [failures first]" : "")
+                + ", class execution mode: " + this.classExecutionMode + " }";
+    }
+}
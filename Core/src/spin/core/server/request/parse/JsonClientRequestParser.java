@@ -1,13 +1,24 @@
 package spin.core.server.request.parse;
 
 import com.google.gson.*;
+import spin.core.annotation.ClassExecutionMode;
 import spin.core.exception.ParseException;
 import spin.core.server.request.ClientRequest;
+import spin.core.server.request.RegisterClasspathClientRequest;
 import spin.core.server.request.RequestType;
 import spin.core.server.request.RunSuiteClientRequest;
+import spin.core.server.request.TestPlan;
+import spin.core.server.request.WatchSuiteClientRequest;
 import spin.core.type.Result;
 import spin.core.util.ObjectChecker;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * A class that is used to parse incoming client requests under the assumption that those requests are JSON requests.
  */
@@ -17,6 +28,15 @@ public final class JsonClientRequestParser implements ClientRequestParser {
     private static final String BASE_DIR_KEY = "base_dir";
     private static final String MATCHER_KEY = "matcher";
     private static final String DEPENDENCIES_KEY = "dependencies";
+    private static final String CLASSPATH_ID_KEY = "classpath_id";
+    private static final String TEST_TIMEOUT_KEY = "test_timeout_millis";
+    private static final String FAILURES_FIRST_KEY = "failures_first";
+    private static final String MAX_FAILURES_KEY = "max_failures";
+    private static final String CLASS_EXECUTION_MODE_KEY = "class_execution_mode";
+    private static final String WORKERS_KEY = "workers";
+    private static final String SHARD_CLASSES_KEY = "shard_classes";
+    private static final String CHANGED_KEY = "changed";
+    private static final String TESTS_KEY = "tests";
     private static final String DEFAULT_MATCHER = ".*\\.class";
 
     @Override
@@ -38,6 +58,10 @@ public final class JsonClientRequestParser implements ClientRequestParser {
 
             if (requestType == RequestType.RUN_SUITE) {
                 return parseRunSuiteRequest(parseAsJsonObject(jsonRequest, BODY_KEY));
+            } else if (requestType == RequestType.REGISTER_CLASSPATH) {
+                return parseRegisterClasspathRequest(parseAsJsonObject(jsonRequest, BODY_KEY));
+            } else if (requestType == RequestType.WATCH_SUITE) {
+                return parseWatchSuiteRequest(parseAsJsonObject(jsonRequest, BODY_KEY));
             } else {
                 return Result.error(createParseFailureMessage("unsupported " + REQUEST_TYPE_KEY + ": " + requestType));
             }
@@ -55,24 +79,220 @@ public final class JsonClientRequestParser implements ClientRequestParser {
 
         String matcher = DEFAULT_MATCHER;
         if (requestBody.has(MATCHER_KEY)) {
+            if (requestBody.has(TESTS_KEY)) {
+                return Result.error(createParseFailureMessage("cannot specify both " + TESTS_KEY + " and " + MATCHER_KEY));
+            }
             matcher = parseAsString(requestBody, MATCHER_KEY);
         }
 
-        String[] dependencies = new String[]{ baseDir };
-        if (requestBody.has(DEPENDENCIES_KEY)) {
-            JsonArray dependenciesAsJson = parseAsJsonArray(requestBody, DEPENDENCIES_KEY);
+        long testTimeoutMillis = parseTestTimeoutMillis(requestBody);
+
+        boolean failuresFirst = false;
+        if (requestBody.has(FAILURES_FIRST_KEY)) {
+            failuresFirst = parseAsBoolean(requestBody, FAILURES_FIRST_KEY);
+        }
+
+        int maxFailures = 0;
+        if (requestBody.has(MAX_FAILURES_KEY)) {
+            maxFailures = parseAsInt(requestBody, MAX_FAILURES_KEY);
+            if (maxFailures < 0) {
+                return Result.error(createParseFailureMessage("expected " + MAX_FAILURES_KEY + " to be non-negative"));
+            }
+        }
+
+        ClassExecutionMode.Mode classExecutionMode = parseClassExecutionMode(requestBody);
+
+        if (requestBody.has(WORKERS_KEY)) {
+            for (String conflictingKey : new String[]{ CLASSPATH_ID_KEY, MAX_FAILURES_KEY, SHARD_CLASSES_KEY, TESTS_KEY }) {
+                if (requestBody.has(conflictingKey)) {
+                    return Result.error(createParseFailureMessage("cannot specify both " + WORKERS_KEY + " and " + conflictingKey));
+                }
+            }
+        }
+        if (requestBody.has(SHARD_CLASSES_KEY)) {
+            for (String conflictingKey : new String[]{ CLASSPATH_ID_KEY, CHANGED_KEY, TESTS_KEY }) {
+                if (requestBody.has(conflictingKey)) {
+                    return Result.error(createParseFailureMessage("cannot specify both " + SHARD_CLASSES_KEY + " and " + conflictingKey));
+                }
+            }
+        }
+
+        List<String> changes = null;
+        if (requestBody.has(CHANGED_KEY)) {
+            changes = parseAsStringList(requestBody, CHANGED_KEY);
+        }
+
+        TestPlan testPlan = null;
+        if (requestBody.has(TESTS_KEY)) {
+            testPlan = parseTestPlan(requestBody);
+        }
+
+        if (requestBody.has(CLASSPATH_ID_KEY)) {
+            if (requestBody.has(DEPENDENCIES_KEY)) {
+                return Result.error(createParseFailureMessage("cannot specify both " + DEPENDENCIES_KEY + " and " + CLASSPATH_ID_KEY));
+            }
+            int classpathId = parseAsInt(requestBody, CLASSPATH_ID_KEY);
+            if (classpathId < 0) {
+                return Result.error(createParseFailureMessage("expected " + CLASSPATH_ID_KEY + " to be non-negative"));
+            }
+            return Result.successful(RunSuiteClientRequest.withRegisteredClasspath(baseDir, matcher, new String[]{ baseDir }, classpathId, testTimeoutMillis, failuresFirst, maxFailures, classExecutionMode, changes, testPlan));
+        }
+
+        String[] dependencies = parseSuiteDependencies(requestBody, baseDir);
+
+        if (requestBody.has(WORKERS_KEY)) {
+            List<String> workers = parseAsStringList(requestBody, WORKERS_KEY);
+            if (workers.isEmpty()) {
+                return Result.error(createParseFailureMessage("expected " + WORKERS_KEY + " to be non-empty"));
+            }
+            for (String worker : workers) {
+                if (!isHostAndPort(worker)) {
+                    return Result.error(createParseFailureMessage("expected worker to be host:port but was: " + worker));
+                }
+            }
+            return Result.successful(RunSuiteClientRequest.coordinated(baseDir, matcher, dependencies, workers, testTimeoutMillis, failuresFirst, classExecutionMode, changes));
+        }
+        if (requestBody.has(SHARD_CLASSES_KEY)) {
+            List<String> classNames = parseAsStringList(requestBody, SHARD_CLASSES_KEY);
+            return Result.successful(RunSuiteClientRequest.shard(baseDir, matcher, dependencies, classNames, testTimeoutMillis, failuresFirst, classExecutionMode));
+        }
+
+        return Result.successful(RunSuiteClientRequest.from(baseDir, matcher, dependencies, testTimeoutMillis, failuresFirst, maxFailures, classExecutionMode, changes, testPlan));
+    }
+
+    private Result<ClientRequest> parseWatchSuiteRequest(JsonObject requestBody) throws ParseException {
+        for (String unsupportedKey : new String[]{ CLASSPATH_ID_KEY, MAX_FAILURES_KEY, WORKERS_KEY, SHARD_CLASSES_KEY, CHANGED_KEY, TESTS_KEY }) {
+            if (requestBody.has(unsupportedKey)) {
+                return Result.error(createParseFailureMessage("cannot specify " + unsupportedKey + " when watching a suite"));
+            }
+        }
+
+        String baseDir = parseAsString(requestBody, BASE_DIR_KEY);
+        String matcher = requestBody.has(MATCHER_KEY) ? parseAsString(requestBody, MATCHER_KEY) : DEFAULT_MATCHER;
+        boolean failuresFirst = requestBody.has(FAILURES_FIRST_KEY) && parseAsBoolean(requestBody, FAILURES_FIRST_KEY);
+        return Result.successful(WatchSuiteClientRequest.from(baseDir, matcher, parseSuiteDependencies(requestBody, baseDir), parseTestTimeoutMillis(requestBody), failuresFirst, parseClassExecutionMode(requestBody)));
+    }
+
+    private static long parseTestTimeoutMillis(JsonObject requestBody) throws ParseException {
+        if (!requestBody.has(TEST_TIMEOUT_KEY)) {
+            return 0;
+        }
+        long testTimeoutMillis = parseAsLong(requestBody, TEST_TIMEOUT_KEY);
+        if (testTimeoutMillis < 0) {
+            throw new ParseException("expected " + TEST_TIMEOUT_KEY + " to be non-negative");
+        }
+        return testTimeoutMillis;
+    }
+
+    private static ClassExecutionMode.Mode parseClassExecutionMode(JsonObject requestBody) throws ParseException {
+        if (!requestBody.has(CLASS_EXECUTION_MODE_KEY)) {
+            return ClassExecutionMode.Mode.PARALLEL_METHODS;
+        }
+        String mode = parseAsString(requestBody, CLASS_EXECUTION_MODE_KEY);
+        try {
+            return ClassExecutionMode.Mode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("unknown " + CLASS_EXECUTION_MODE_KEY + ": " + mode);
+        }
+    }
 
-            dependencies = new String[dependenciesAsJson.size() + 1];
-            for (int i = 0; i < dependenciesAsJson.size(); i++) {
-                if (!dependenciesAsJson.get(i).isJsonPrimitive()) {
-                    return Result.error(createParseFailureMessage("expected dependency to be a String"));
+    /**
+     * Parses the plan of a suite, which is either an array of tests, each given as a class such as com.example.FooTest,
+     * or as a class and some of its methods such as com.example.FooTest#test1,test2, or else an object that maps each
+     * class to an array of its methods, which is empty to run all of them.
+     */
+    private static TestPlan parseTestPlan(JsonObject requestBody) throws ParseException {
+        Map<String, List<String>> classToMethodNames = new LinkedHashMap<>();
+        Set<String> wholeClasses = new HashSet<>();
+        if (getElementFromAttribute(requestBody, TESTS_KEY).isJsonObject()) {
+            JsonObject planAsJson = parseAsJsonObject(requestBody, TESTS_KEY);
+            for (String className : planAsJson.keySet()) {
+                List<String> methodNames = parseAsStringList(planAsJson, className);
+                addPlannedTests(className, methodNames, classToMethodNames);
+                if (methodNames.isEmpty()) {
+                    wholeClasses.add(className.trim());
+                }
+            }
+        } else {
+            for (String test : parseAsStringList(requestBody, TESTS_KEY)) {
+                int methodsStart = test.indexOf('#');
+                if (methodsStart < 0) {
+                    addPlannedTests(test, new ArrayList<>(), classToMethodNames);
+                    wholeClasses.add(test.trim());
+                } else {
+                    List<String> methodNames = new ArrayList<>();
+                    for (String methodName : test.substring(methodsStart + 1).split(",", -1)) {
+                        methodNames.add(methodName.trim());
+                    }
+                    addPlannedTests(test.substring(0, methodsStart), methodNames, classToMethodNames);
                 }
-                dependencies[i] = dependenciesAsJson.get(i).getAsString();
             }
-            dependencies[dependenciesAsJson.size()] = baseDir;
         }
 
-        return Result.successful(RunSuiteClientRequest.from(baseDir, matcher, dependencies));
+        // A class that is planned as a whole runs all of its methods, even if some of them are planned as well.
+        for (String className : wholeClasses) {
+            classToMethodNames.get(className).clear();
+        }
+        return TestPlan.from(classToMethodNames);
+    }
+
+    private static void addPlannedTests(String className, List<String> methodNames, Map<String, List<String>> classToMethodNames) throws ParseException {
+        if (className.trim().isEmpty()) {
+            throw new ParseException("expected each of " + TESTS_KEY + " to name a class");
+        }
+        for (String methodName : methodNames) {
+            if (methodName.isEmpty()) {
+                throw new ParseException("expected each method of " + className + " in " + TESTS_KEY + " to be non-empty");
+            }
+        }
+        classToMethodNames.computeIfAbsent(className.trim(), name -> new ArrayList<>()).addAll(methodNames);
+    }
+
+    /**
+     * Parses the dependencies of a suite, which end with the suite's base directory.
+     */
+    private static String[] parseSuiteDependencies(JsonObject requestBody, String baseDir) throws ParseException {
+        if (!requestBody.has(DEPENDENCIES_KEY)) {
+            return new String[]{ baseDir };
+        }
+        JsonArray dependenciesAsJson = parseAsJsonArray(requestBody, DEPENDENCIES_KEY);
+
+        String[] dependencies = new String[dependenciesAsJson.size() + 1];
+        for (int i = 0; i < dependenciesAsJson.size(); i++) {
+            if (!dependenciesAsJson.get(i).isJsonPrimitive()) {
+                throw new ParseException("expected dependency to be a String");
+            }
+            dependencies[i] = dependenciesAsJson.get(i).getAsString();
+        }
+        dependencies[dependenciesAsJson.size()] = baseDir;
+        return dependencies;
+    }
+
+    private static boolean isHostAndPort(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0) {
+            return false;
+        }
+        try {
+            int port = Integer.parseInt(address.substring(separator + 1));
+            return (port > 0) && (port <= 65535);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private Result<ClientRequest> parseRegisterClasspathRequest(JsonObject requestBody) throws ParseException {
+        JsonArray dependenciesAsJson = parseAsJsonArray(requestBody, DEPENDENCIES_KEY);
+
+        String[] dependencies = new String[dependenciesAsJson.size()];
+        for (int i = 0; i < dependenciesAsJson.size(); i++) {
+            if (!dependenciesAsJson.get(i).isJsonPrimitive()) {
+                return Result.error(createParseFailureMessage("expected dependency to be a String"));
+            }
+            dependencies[i] = dependenciesAsJson.get(i).getAsString();
+        }
+
+        return Result.successful(RegisterClasspathClientRequest.from(dependencies));
     }
 
     private static String createParseFailureMessage(String cause) {
@@ -87,6 +307,40 @@ public final class JsonClientRequestParser implements ClientRequestParser {
         return element.getAsString();
     }
 
+    private static int parseAsInt(JsonObject json, String attribute) throws ParseException {
+        JsonElement element = getElementFromAttribute(json, attribute);
+        if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isNumber()) {
+            throw new ParseException("expected " + attribute + " to be a Number");
+        }
+        // Gson would silently truncate a fractional or out of range number, so only exact values are accepted.
+        try {
+            return element.getAsBigDecimal().intValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new ParseException("expected " + attribute + " to be an integer but was: " + element);
+        }
+    }
+
+    private static boolean parseAsBoolean(JsonObject json, String attribute) throws ParseException {
+        JsonElement element = getElementFromAttribute(json, attribute);
+        if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isBoolean()) {
+            throw new ParseException("expected " + attribute + " to be a Boolean");
+        }
+        return element.getAsBoolean();
+    }
+
+    private static long parseAsLong(JsonObject json, String attribute) throws ParseException {
+        JsonElement element = getElementFromAttribute(json, attribute);
+        if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isNumber()) {
+            throw new ParseException("expected " + attribute + " to be a Number");
+        }
+        // Gson would silently truncate a fractional or out of range number, so only exact values are accepted.
+        try {
+            return element.getAsBigDecimal().longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new ParseException("expected " + attribute + " to be an integer but was: " + element);
+        }
+    }
+
     private static JsonObject parseAsJsonObject(JsonObject json, String attribute) throws ParseException {
         JsonElement element = getElementFromAttribute(json, attribute);
         if (!element.isJsonObject()) {
@@ -103,6 +357,18 @@ public final class JsonClientRequestParser implements ClientRequestParser {
         return element.getAsJsonArray();
     }
 
+    private static List<String> parseAsStringList(JsonObject json, String attribute) throws ParseException {
+        JsonArray array = parseAsJsonArray(json, attribute);
+        List<String> strings = new ArrayList<>();
+        for (JsonElement element : array) {
+            if ((!element.isJsonPrimitive()) || (!element.getAsJsonPrimitive().isString())) {
+                throw new ParseException("expected each of " + attribute + " to be a String");
+            }
+            strings.add(element.getAsString());
+        }
+        return strings;
+    }
+
     private static JsonElement getElementFromAttribute(JsonObject json, String attribute) throws ParseException {
         if (!json.has(attribute)) {
             throw new ParseException("missing " + attribute);
@@ -0,0 +1,44 @@
+package spin.core.server.response;
+
+import com.google.gson.JsonObject;
+
+public final class RegisterClasspathResponse implements ServerResponse {
+    private final boolean success;
+    private final int classpathId;
+    private final String error;
+
+    private RegisterClasspathResponse(boolean success, int classpathId, String error) {
+        this.success = success;
+        this.classpathId = classpathId;
+        this.error = error;
+    }
+
+    public static RegisterClasspathResponse successful(int classpathId) {
+        return new RegisterClasspathResponse(true, classpathId, null);
+    }
+
+    public static RegisterClasspathResponse failed(String error) {
+        return new RegisterClasspathResponse(false, -1, error);
+    }
+
+    @Override
+    public String toJsonString() {
+        JsonObject response = new JsonObject();
+        response.addProperty("is_success", this.success);
+
+        if (this.success) {
+            JsonObject responseValue = new JsonObject();
+            responseValue.addProperty("classpath_id", this.classpathId);
+            response.add("response", responseValue);
+        } else {
+            response.addProperty("error", this.error);
+        }
+
+        return response.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { " + (this.success ? "successful, classpath id: " + this.classpathId : "failed") + ", error: " + this.error + " }";
+    }
+}
@@ -0,0 +1,139 @@
+package spin.core.server.response;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import spin.core.exception.ParseException;
+import spin.core.util.ObjectChecker;
+
+/**
+ * The result of a single test as it is reported back to the coordinator of a sharded suite by the daemon that ran it.
+ * Unlike the results passed around within a daemon, this refers to the test by the names of its class and method and
+ * holds its output as text, so that it can be sent over the wire as JSON.
+ *
+ * This class is immutable.
+ */
+public final class ReportedTestResult {
+    private static final String CLASS_KEY = "class";
+    private static final String METHOD_KEY = "method";
+    private static final String STATUS_KEY = "status";
+    private static final String DURATION_KEY = "duration_nanos";
+    private static final String CPU_KEY = "cpu_nanos";
+    private static final String STDOUT_KEY = "stdout";
+    private static final String STDERR_KEY = "stderr";
+    private static final String PASSED = "passed";
+    private static final String FAILED = "failed";
+    private static final String SKIPPED = "skipped";
+    private static final String CACHED = "cached";
+    public final String className;
+    public final String methodName;
+    public final boolean successful;
+    public final boolean skipped;
+    public final boolean cached;
+    public final long durationNanos;
+    public final long cpuNanos;
+    public final String stdout;
+    public final String stderr;
+
+    private ReportedTestResult(String className, String methodName, boolean successful, boolean skipped, boolean cached, long durationNanos, long cpuNanos, String stdout, String stderr) {
+        this.className = className;
+        this.methodName = methodName;
+        this.successful = successful;
+        this.skipped = skipped;
+        this.cached = cached;
+        this.durationNanos = durationNanos;
+        this.cpuNanos = cpuNanos;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    public static ReportedTestResult result(String className, String methodName, boolean successful, long durationNanos, long cpuNanos, String stdout, String stderr) {
+        ObjectChecker.assertNonNull(className, methodName, stdout, stderr);
+        ObjectChecker.assertNonNegative(durationNanos);
+        return new ReportedTestResult(className, methodName, successful, false, false, durationNanos, cpuNanos, stdout, stderr);
+    }
+
+    public static ReportedTestResult skipped(String className, String methodName) {
+        ObjectChecker.assertNonNull(className, methodName);
+        return new ReportedTestResult(className, methodName, false, true, false, 0, -1, "", "");
+    }
+
+    /**
+     * Constructs the result of a test that was reported from the result cache of the daemon rather than run.
+     */
+    public static ReportedTestResult cached(String className, String methodName) {
+        ObjectChecker.assertNonNull(className, methodName);
+        return new ReportedTestResult(className, methodName, true, false, true, 0, -1, "", "");
+    }
+
+    /**
+     * Reads a result back from the JSON that {@link #toJson()} produced.
+     *
+     * @param json The result as JSON.
+     * @return the result.
+     * @throws ParseException If the JSON is not a result.
+     */
+    public static ReportedTestResult fromJson(JsonElement json) throws ParseException {
+        ObjectChecker.assertNonNull(json);
+        if (!json.isJsonObject()) {
+            throw new ParseException("expected result to be a JSON Object");
+        }
+        JsonObject result = json.getAsJsonObject();
+        String className = getString(result, CLASS_KEY);
+        String methodName = getString(result, METHOD_KEY);
+        String status = getString(result, STATUS_KEY);
+        if (SKIPPED.equals(status)) {
+            return skipped(className, methodName);
+        }
+        if (CACHED.equals(status)) {
+            return cached(className, methodName);
+        }
+        if ((!PASSED.equals(status)) && (!FAILED.equals(status))) {
+            throw new ParseException("unknown " + STATUS_KEY + ": " + status);
+        }
+        long durationNanos = getLong(result, DURATION_KEY);
+        if (durationNanos < 0) {
+            throw new ParseException("expected " + DURATION_KEY + " to be non-negative");
+        }
+        return result(className, methodName, PASSED.equals(status), durationNanos, getLong(result, CPU_KEY), getString(result, STDOUT_KEY), getString(result, STDERR_KEY));
+    }
+
+    /**
+     * Returns this result as JSON.
+     *
+     * @return the JSON.
+     */
+    public JsonObject toJson() {
+        JsonObject result = new JsonObject();
+        result.addProperty(CLASS_KEY, this.className);
+        result.addProperty(METHOD_KEY, this.methodName);
+        result.addProperty(STATUS_KEY, this.skipped ? SKIPPED : (this.cached ? CACHED : (this.successful ? PASSED : FAILED)));
+        if ((!this.skipped) && (!this.cached)) {
+            result.addProperty(DURATION_KEY, this.durationNanos);
+            result.addProperty(CPU_KEY, this.cpuNanos);
+            result.addProperty(STDOUT_KEY, this.stdout);
+            result.addProperty(STDERR_KEY, this.stderr);
+        }
+        return result;
+    }
+
+    private static String getString(JsonObject json, String attribute) throws ParseException {
+        JsonElement element = json.get(attribute);
+        if ((element == null) || (!element.isJsonPrimitive())) {
+            throw new ParseException("expected " + attribute + " to be a String");
+        }
+        return element.getAsString();
+    }
+
+    private static long getLong(JsonObject json, String attribute) throws ParseException {
+        JsonElement element = json.get(attribute);
+        if ((element == null) || (!element.isJsonPrimitive()) || (!element.getAsJsonPrimitive().isNumber())) {
+            throw new ParseException("expected " + attribute + " to be a Number");
+        }
+        return element.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { test: " + this.className + "#" + this.methodName + ", " + (this.skipped ? SKIPPED : (this.cached ? CACHED : (this.successful ? PASSED : FAILED))) + " }";
+    }
+}
@@ -1,24 +1,53 @@
 package spin.core.server.response;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
+import java.util.List;
+
 public final class RunSuiteResponse implements ServerResponse {
     private final boolean success;
     private final int suiteId;
+    private final long timeToFirstFailureMillis;
+    private final int numSkippedTests;
+    private final int numCachedTests;
+    private final List<ReportedTestResult> results;
     private final String error;
 
-    private RunSuiteResponse(boolean success, int suiteId, String error) {
+    private RunSuiteResponse(boolean success, int suiteId, long timeToFirstFailureMillis, int numSkippedTests, int numCachedTests, List<ReportedTestResult> results, String error) {
         this.success = success;
         this.suiteId = suiteId;
+        this.timeToFirstFailureMillis = timeToFirstFailureMillis;
+        this.numSkippedTests = numSkippedTests;
+        this.numCachedTests = numCachedTests;
+        this.results = results;
         this.error = error;
     }
 
     public static RunSuiteResponse successful(int suiteId) {
-        return new RunSuiteResponse(true, suiteId, null);
+        return new RunSuiteResponse(true, suiteId, -1, 0, 0, null, null);
+    }
+
+    /**
+     * Constructs a successful response for a suite in which at least one test failed, the first of which was reported
+     * the given number of milliseconds after the suite started, and of which the given number of tests were skipped for
+     * the suite reaching its failure limit and the given number of tests were reported from the result cache rather than
+     * run. If the time is negative no test failed.
+     */
+    public static RunSuiteResponse successful(int suiteId, long timeToFirstFailureMillis, int numSkippedTests, int numCachedTests) {
+        return new RunSuiteResponse(true, suiteId, timeToFirstFailureMillis, numSkippedTests, numCachedTests, null, null);
+    }
+
+    /**
+     * Constructs a successful response for a suite that was run as a shard of a larger suite, which carries the result
+     * of each of its tests back to the coordinator of the larger suite.
+     */
+    public static RunSuiteResponse shard(int suiteId, long timeToFirstFailureMillis, int numSkippedTests, int numCachedTests, List<ReportedTestResult> results) {
+        return new RunSuiteResponse(true, suiteId, timeToFirstFailureMillis, numSkippedTests, numCachedTests, results, null);
     }
 
     public static RunSuiteResponse failed(String error) {
-        return new RunSuiteResponse(false, -1, error);
+        return new RunSuiteResponse(false, -1, -1, 0, 0, null, error);
     }
 
     @Override
@@ -29,6 +58,22 @@ public final class RunSuiteResponse implements ServerResponse {
         if (this.success) {
             JsonObject responseValue = new JsonObject();
             responseValue.addProperty("suite_id", this.suiteId);
+            if (this.timeToFirstFailureMillis >= 0) {
+                responseValue.addProperty("first_failure_millis", this.timeToFirstFailureMillis);
+            }
+            if (this.numSkippedTests > 0) {
+                responseValue.addProperty("num_skipped", this.numSkippedTests);
+            }
+            if (this.numCachedTests > 0) {
+                responseValue.addProperty("num_cached", this.numCachedTests);
+            }
+            if (this.results != null) {
+                JsonArray results = new JsonArray();
+                for (ReportedTestResult result : this.results) {
+                    results.add(result.toJson());
+                }
+                responseValue.add("results", results);
+            }
             response.add("response", responseValue);
         } else {
             response.addProperty("error", this.error);
@@ -0,0 +1,98 @@
+package spin.core.server.response;
+
+import com.google.gson.JsonObject;
+
+/**
+ * One of the responses streamed back to a client that watches a suite, each of which is written as a line of its own:
+ * the result of a test of one of the runs of the suite as soon as it is reported, the summary of a run once it is
+ * complete, or the error that a run or the watch itself failed with.
+ *
+ * Each of the responses of a run carries the number of the run, counting from one, since a run that is started while
+ * another is still going may report its results in between those of the other.
+ */
+public final class WatchSuiteResponse implements ServerResponse {
+    private final boolean success;
+    private final int run;
+    private final ReportedTestResult result;
+    private final JsonObject summary;
+    private final String error;
+
+    private WatchSuiteResponse(boolean success, int run, ReportedTestResult result, JsonObject summary, String error) {
+        this.success = success;
+        this.run = run;
+        this.result = result;
+        this.summary = summary;
+        this.error = error;
+    }
+
+    /**
+     * Constructs the response that carries the result of one of the tests of the specified run.
+     */
+    public static WatchSuiteResponse result(int run, ReportedTestResult result) {
+        return new WatchSuiteResponse(true, run, result, null, null);
+    }
+
+    /**
+     * Constructs the response that marks the specified run as complete, having run the given numbers of tests. If the
+     * time to the first failure is negative no test failed.
+     */
+    public static WatchSuiteResponse runComplete(int run, int numTests, int numSuccesses, int numFailures, int numSkipped, int numCached, long durationNanos, long timeToFirstFailureMillis) {
+        JsonObject summary = new JsonObject();
+        summary.addProperty("num_tests", numTests);
+        summary.addProperty("num_success", numSuccesses);
+        summary.addProperty("num_failures", numFailures);
+        if (numSkipped > 0) {
+            summary.addProperty("num_skipped", numSkipped);
+        }
+        if (numCached > 0) {
+            summary.addProperty("num_cached", numCached);
+        }
+        summary.addProperty("duration_nanos", durationNanos);
+        if (timeToFirstFailureMillis >= 0) {
+            summary.addProperty("first_failure_millis", timeToFirstFailureMillis);
+        }
+        return new WatchSuiteResponse(true, run, null, summary, null);
+    }
+
+    /**
+     * Constructs the response for a run that could not be run at all. The suite is still watched.
+     */
+    public static WatchSuiteResponse runFailed(int run, String error) {
+        return new WatchSuiteResponse(false, run, null, null, error);
+    }
+
+    /**
+     * Constructs the response for a suite that cannot be watched.
+     */
+    public static WatchSuiteResponse failed(String error) {
+        return new WatchSuiteResponse(false, 0, null, null, error);
+    }
+
+    @Override
+    public String toJsonString() {
+        JsonObject response = new JsonObject();
+        response.addProperty("is_success", this.success);
+        if (this.run > 0) {
+            response.addProperty("run", this.run);
+        }
+
+        if (this.success) {
+            JsonObject responseValue = new JsonObject();
+            if (this.result != null) {
+                responseValue.add("result", this.result.toJson());
+            } else {
+                responseValue.add("run_complete", this.summary);
+            }
+            response.add("response", responseValue);
+        } else {
+            response.addProperty("error", this.error);
+        }
+
+        return response.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " { run: " + this.run + ", " + (this.success ? (this.result != null ? "result: " + this.result : "run complete") : "failed") + ", error: " + this.error + " }";
+    }
+}
@@ -17,38 +17,76 @@ import java.util.Arrays;
  *
  * Each client session has a unique integer id associated with it. These ids are guaranteed to be unique within the
  * same JVM context unless all possible integer values are exhausted.
+ *
+ * The request buffer grows to fit a request that does not fit into it, but never beyond a maximum size, so that a client
+ * cannot exhaust the heap by sending a request without ever terminating it. Once a request reaches that size without
+ * being terminated the session stops reading it and reports it as oversized. The response buffer grows to fit whatever
+ * responses the server puts into it.
+ *
+ * A session may stream any number of responses back to the client, such as one that watches a suite, in which case it
+ * only ends once the client closes the connection. Responses are put into the session by other threads than the one
+ * that writes them to the socket, so the methods that touch the responses are synchronized on the session.
  */
 public final class ClientSession {
     private static int ids = 0;
     private final CircularByteBuffer clientRequestBuffer;
     private final CircularByteBuffer serverResponseBuffer;
+    private final int maxRequestBytes;
+    private boolean isRequestOversized = false;
     private boolean isSessionTerminated = false;
+    private boolean shutdownServerOnTermination = true;
+    private boolean isStreamingResponses = false;
     public final int id = ids++;
 
-    private ClientSession(int requestBufferCapacity, int responseBufferCapacity) {
+    private ClientSession(int requestBufferCapacity, int responseBufferCapacity, int maxRequestBytes) {
         this.clientRequestBuffer = CircularByteBuffer.withCapacity(requestBufferCapacity);
         this.serverResponseBuffer = CircularByteBuffer.withCapacity(responseBufferCapacity);
+        this.maxRequestBytes = maxRequestBytes;
     }
 
-    public static ClientSession withCapacities(int requestBufferCapacity, int responseBufferCapacity) {
-        return new ClientSession(requestBufferCapacity, responseBufferCapacity);
+    /**
+     * Creates a new session with buffers of the specified initial capacities.
+     *
+     * @param requestBufferCapacity The initial capacity of the request buffer.
+     * @param responseBufferCapacity The initial capacity of the response buffer.
+     * @param maxRequestBytes The most bytes of a request the session holds before it gives up on the request.
+     * @return the new session.
+     */
+    public static ClientSession withCapacities(int requestBufferCapacity, int responseBufferCapacity, int maxRequestBytes) {
+        ObjectChecker.assertPositive(maxRequestBytes);
+        return new ClientSession(requestBufferCapacity, responseBufferCapacity, maxRequestBytes);
     }
 
     /**
      * Writes however many bytes were able to be read from the specified socket into this session object so that they
-     * can be gotten at a later time as a complete request.
+     * can be gotten at a later time as a complete request. The session's buffer grows if a request does not fit into it.
+     *
+     * Nothing is read once the session holds as many bytes as a request may have, in which case the request is marked
+     * as oversized instead.
      *
      * @param socketChannel The socket to read the bytes from.
+     * @return the number of bytes read, or -1 if the client has closed the connection.
      */
-    public void writeRequestFromSocket(SocketChannel socketChannel) throws IOException {
+    public int writeRequestFromSocket(SocketChannel socketChannel) throws IOException {
         ObjectChecker.assertNonNull(socketChannel);
 
+        int maxBytesToRead = this.maxRequestBytes - this.clientRequestBuffer.size();
+        if (maxBytesToRead <= 0) {
+            this.isRequestOversized = true;
+            return 0;
+        }
+        // A request that does not fit into the buffer yet has no terminator in it either, so it would never be read.
+        if (this.clientRequestBuffer.availableSpace() == 0) {
+            this.clientRequestBuffer.ensureAvailableSpace(1);
+        }
+
         //TODO: byte buffer position?
-        byte[] bytes = new byte[this.clientRequestBuffer.availableSpace()];
+        byte[] bytes = new byte[Math.min(this.clientRequestBuffer.availableSpace(), maxBytesToRead)];
         int numBytesRead = socketChannel.read(ByteBuffer.wrap(bytes));
         if (numBytesRead > 0) {
             this.clientRequestBuffer.writeBytes(Arrays.copyOf(bytes, numBytesRead));
         }
+        return numBytesRead;
     }
 
     /**
@@ -61,15 +99,28 @@ public final class ClientSession {
         return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
     }
 
+    /**
+     * Returns {@code true} if and only if the client sent a request that reached the maximum size without being
+     * terminated, which the session will not read any further.
+     *
+     * @return whether or not the request is oversized.
+     */
+    public boolean isRequestOversized() {
+        return this.isRequestOversized;
+    }
+
     /**
      * Saves the specified server response to this session object so that it can be written to a socket at a later time.
+     * The session's buffer grows to fit the response if need be.
      *
      * @param response The response.
      */
-    public void putServerResponse(String response) {
+    public synchronized void putServerResponse(String response) {
         ObjectChecker.assertNonNull(response);
 
-        this.serverResponseBuffer.writeBytes(response.getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        this.serverResponseBuffer.ensureAvailableSpace(bytes.length);
+        this.serverResponseBuffer.writeBytes(bytes);
     }
 
     /**
@@ -83,7 +134,7 @@ public final class ClientSession {
      *
      * @param channel The socket to write to.
      */
-    public void writeResponseToSocket(SocketChannel channel) throws IOException {
+    public synchronized void writeResponseToSocket(SocketChannel channel) throws IOException {
         byte[] bytes = this.serverResponseBuffer.readBytesUpToIfPresent((byte) '\n');
         if (bytes == null) {
             throw new IllegalStateException("Cannot write response: buffer contains no response.");
@@ -96,19 +147,62 @@ public final class ClientSession {
         }
     }
 
+    /**
+     * Returns {@code true} if and only if some response has yet to be completely written to the socket.
+     *
+     * @return whether or not a response is pending.
+     */
+    public synchronized boolean hasPendingResponse() {
+        return !this.serverResponseBuffer.isEmpty();
+    }
+
+    /**
+     * Signals that the session streams responses back to the client until the client closes the connection, rather than
+     * ending once its response is written.
+     */
+    public synchronized void streamResponses() {
+        this.isStreamingResponses = true;
+    }
+
+    /**
+     * Returns {@code true} if and only if the session streams responses until the client closes the connection.
+     *
+     * @return whether or not the session streams responses.
+     */
+    public synchronized boolean isStreamingResponses() {
+        return this.isStreamingResponses;
+    }
+
     /**
      * Signals that the session is over.
      */
-    public void terminateSession() {
+    public synchronized void terminateSession() {
         this.isSessionTerminated = true;
     }
 
+    /**
+     * Signals that the server should keep running once this session is over, because the session only set something up
+     * for the sessions that follow it.
+     */
+    public void keepServerAliveOnTermination() {
+        this.shutdownServerOnTermination = false;
+    }
+
+    /**
+     * Returns {@code true} if and only if the server should shut down once this session is over.
+     *
+     * @return whether or not to shut down the server after this session.
+     */
+    public boolean shouldShutdownServerOnTermination() {
+        return this.shutdownServerOnTermination;
+    }
+
     /**
      * Returns {@code true} if and only if the session is over.
      *
      * @return whether or not the session is over.
      */
-    public boolean isSessionTerminated() {
+    public synchronized boolean isSessionTerminated() {
         return this.isSessionTerminated && this.serverResponseBuffer.isEmpty();
     }
 }
@@ -2,6 +2,9 @@ package spin.core.server.session;
 
 import spin.core.util.ObjectChecker;
 
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 
@@ -25,6 +28,29 @@ public final class RequestSessionContext {
         return new RequestSessionContext(selector, socket, session);
     }
 
+    /**
+     * Streams the specified response back to the client without ending the session. The response is dropped if the
+     * client has already closed the connection.
+     *
+     * @param response The response, terminated by a newline.
+     */
+    public void streamResponse(String response) {
+        ObjectChecker.assertNonNull(response);
+        synchronized (this.clientSession) {
+            if (!this.socketChannel.isOpen()) {
+                return;
+            }
+            this.clientSession.putServerResponse(response);
+            try {
+                this.socketChannel.register(this.selector, SelectionKey.OP_WRITE, this.clientSession);
+            } catch (ClosedChannelException | CancelledKeyException e) {
+                // The client closed the connection in the meantime, so there is no one left to respond to.
+                return;
+            }
+        }
+        this.selector.wakeup();
+    }
+
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + " { socket context for client id: " + this.clientSession.id + " }";
@@ -14,7 +14,7 @@ public final class CircularByteBuffer {
     // interpretation and opt for the former since this is consistent with the buffer's initial state. For this reason,
     // the writeHead can never overtake the readHead or else that's overflow. Whereas the readHead can overtake the
     // writeHead iff it does not explicitly pass it.
-    private final byte[] buffer;
+    private byte[] buffer;
     private int writeHead = 0;
     private int readHead = 0;
 
@@ -43,6 +43,15 @@ public final class CircularByteBuffer {
         }
     }
 
+    /**
+     * Returns the number of bytes that were written to this buffer and are yet to be read.
+     *
+     * @return the number of unread bytes.
+     */
+    public int size() {
+        return this.buffer.length - 1 - availableSpace();
+    }
+
     /**
      * Returns {@code true} if and only if the buffer has no bytes to be read from it.
      *
@@ -67,6 +76,36 @@ public final class CircularByteBuffer {
         }
     }
 
+    /**
+     * Grows the buffer, if need be, so that at least the specified number of bytes can be written to it. The bytes yet to
+     * be read are kept, but the bytes that were already read are not, so a read from before the buffer grew can no
+     * longer be rolled back afterwards.
+     *
+     * @param numBytes The number of bytes that must fit into the buffer.
+     */
+    public void ensureAvailableSpace(int numBytes) {
+        if (numBytes < 0) {
+            throw new IllegalArgumentException("numBytes must be non-negative.");
+        }
+        int availableSpace = availableSpace();
+        if (availableSpace >= numBytes) {
+            return;
+        }
+
+        int numUnread = this.buffer.length - 1 - availableSpace;
+        int capacity = Math.max(2 * (this.buffer.length - 1), numUnread + numBytes);
+        byte[] grown = new byte[capacity + 1];
+        if (this.readHead <= this.writeHead) {
+            System.arraycopy(this.buffer, this.readHead, grown, 0, numUnread);
+        } else {
+            System.arraycopy(this.buffer, this.readHead, grown, 0, this.buffer.length - this.readHead);
+            System.arraycopy(this.buffer, 0, grown, this.buffer.length - this.readHead, this.writeHead);
+        }
+        this.buffer = grown;
+        this.readHead = 0;
+        this.writeHead = numUnread;
+    }
+
     /**
      * Attempts to read the bytes of the buffer up to and including the specified terminatingByte if and only if the
      * terminatingByte is encountered.
@@ -1,8 +1,12 @@
 package spin.core.util;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * A thread-safe blocking queue that can be closed.
@@ -152,6 +156,57 @@ public final class CloseableBlockingQueue<E> {
         }
     }
 
+    /**
+     * Removes every element in the queue that matches the given filter, without blocking, and returns the removed
+     * elements in the order they were queued in.
+     *
+     * @param filter The filter of the elements to remove.
+     * @return the removed elements.
+     */
+    public List<E> removeMatching(Predicate<? super E> filter) {
+        if (filter == null) {
+            throw new NullPointerException("filter must be non-null.");
+        }
+
+        synchronized (this.monitor) {
+            List<E> removed = new ArrayList<>();
+            Iterator<E> elements = this.queue.iterator();
+            while (elements.hasNext()) {
+                E element = elements.next();
+                if (filter.test(element)) {
+                    elements.remove();
+                    removed.add(element);
+                }
+            }
+            if (!removed.isEmpty()) {
+                this.monitor.notifyAll();
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Returns a copy of the elements currently in the queue, in the order they were queued in.
+     *
+     * @return the queued elements.
+     */
+    public List<E> snapshot() {
+        synchronized (this.monitor) {
+            return new ArrayList<>(this.queue);
+        }
+    }
+
+    /**
+     * Returns the number of elements currently in the queue.
+     *
+     * @return the size of the queue.
+     */
+    public int size() {
+        synchronized (this.monitor) {
+            return this.queue.size();
+        }
+    }
+
     /**
      * Closes this queue. Once this queue is closed it cannot be reopened.
      */
@@ -21,4 +21,10 @@ public final class ObjectChecker {
             throw new IllegalArgumentException("value must be strictly positive but was: " + value);
         }
     }
+
+    public static void assertNonNegative(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be non-negative but was: " + value);
+        }
+    }
 }
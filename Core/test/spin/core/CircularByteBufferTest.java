@@ -183,6 +183,24 @@ public class CircularByteBufferTest {
         }
     }
 
+    @Test
+    public void testGrowKeepsUnreadBytes() {
+        if (this.capacity > 1) {
+            // Move into the middle of the buffer first so that the unread message wraps around when it is grown.
+            this.buffer.writeBytes(randomTerminatingArray(this.capacity / 2));
+            this.buffer.readBytesUpToIfPresent(TERMINATOR);
+            byte[] message = randomTerminatingArray(this.capacity);
+            this.buffer.writeBytes(Arrays.copyOf(message, this.capacity - 1));
+            Assert.assertEquals(1, this.buffer.availableSpace());
+
+            this.buffer.ensureAvailableSpace(this.capacity + 1);
+            Assert.assertTrue(this.buffer.availableSpace() >= this.capacity + 1);
+            this.buffer.writeBytes(new byte[]{ TERMINATOR });
+            Assert.assertArrayEquals(message, this.buffer.readBytesUpToIfPresent(TERMINATOR));
+            Assert.assertTrue(this.buffer.isEmpty());
+        }
+    }
+
     private static byte[] randomTerminatingArray(int len) {
         byte[] bytes = new byte[len];
         RANDOM.nextBytes(bytes);
@@ -0,0 +1,76 @@
+package spin.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import spin.core.server.session.ClientSession;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ClientSessionTest {
+    private static final int MAX_REQUEST_BYTES = 64;
+    private ServerSocketChannel serverChannel;
+    private SocketChannel client;
+    private SocketChannel server;
+
+    @Before
+    public void connect() throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        this.client = SocketChannel.open(this.serverChannel.getLocalAddress());
+        this.server = this.serverChannel.accept();
+    }
+
+    @After
+    public void disconnect() throws IOException {
+        this.client.close();
+        this.server.close();
+        this.serverChannel.close();
+    }
+
+    @Test
+    public void testRequestGrowsBuffer() throws IOException {
+        ClientSession session = ClientSession.withCapacities(4, 4, MAX_REQUEST_BYTES);
+        String request = "{\"request_type\": \"run_suite\"}\n";
+        send(request.getBytes(StandardCharsets.UTF_8));
+
+        String received = null;
+        while (received == null) {
+            session.writeRequestFromSocket(this.server);
+            received = session.getNextClientRequest();
+        }
+        Assert.assertEquals(request, received);
+        Assert.assertFalse(session.isRequestOversized());
+    }
+
+    @Test
+    public void testOversizedRequestIsNotRead() throws IOException {
+        ClientSession session = ClientSession.withCapacities(4, 4, MAX_REQUEST_BYTES);
+        byte[] request = new byte[MAX_REQUEST_BYTES * 4];
+        Arrays.fill(request, (byte) 'a');
+        send(request);
+
+        int numBytesHeld = 0;
+        while (!session.isRequestOversized()) {
+            numBytesHeld += session.writeRequestFromSocket(this.server);
+            Assert.assertNull(session.getNextClientRequest());
+        }
+        Assert.assertEquals(MAX_REQUEST_BYTES, numBytesHeld);
+        Assert.assertEquals(0, session.writeRequestFromSocket(this.server));
+    }
+
+    private void send(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            this.client.write(buffer);
+        }
+    }
+}
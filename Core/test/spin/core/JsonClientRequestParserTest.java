@@ -0,0 +1,118 @@
+package spin.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import spin.core.server.request.ClientRequest;
+import spin.core.server.request.RunSuiteClientRequest;
+import spin.core.server.request.TestPlan;
+import spin.core.server.request.parse.JsonClientRequestParser;
+import spin.core.type.Result;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+public class JsonClientRequestParserTest {
+    private final JsonClientRequestParser parser = new JsonClientRequestParser();
+
+    @Test
+    public void testParseRegisteredClasspathId() {
+        RunSuiteClientRequest request = parseRunSuite("\"classpath_id\": 3");
+        Assert.assertTrue(request.hasRegisteredClasspath());
+        Assert.assertEquals(3, request.getClasspathId());
+
+        // An integral number written with a fraction is still that number.
+        Assert.assertEquals(3, parseRunSuite("\"classpath_id\": 3.0").getClasspathId());
+    }
+
+    @Test
+    public void testRejectFractionalInt() {
+        assertParseError("\"classpath_id\": 1.7", "expected classpath_id to be an integer but was: 1.7");
+        assertParseError("\"max_failures\": 0.5", "expected max_failures to be an integer but was: 0.5");
+    }
+
+    @Test
+    public void testRejectOutOfRangeInt() {
+        assertParseError("\"classpath_id\": 4294967296", "expected classpath_id to be an integer but was: 4294967296");
+    }
+
+    @Test
+    public void testRejectFractionalLong() {
+        assertParseError("\"test_timeout_millis\": 100.25", "expected test_timeout_millis to be an integer but was: 100.25");
+        Assert.assertEquals(100, parseRunSuite("\"test_timeout_millis\": 100").getTestTimeoutMillis());
+    }
+
+    @Test
+    public void testParseTestPlanArray() {
+        TestPlan plan = parseRunSuite("\"tests\": [\"a.FooTest\", \"a.BarTest#test1,test2\", \"a.BarTest#test3\"]").getTestPlan();
+        Assert.assertEquals(Arrays.asList("a.FooTest", "a.BarTest"), plan.getClassNames());
+        Assert.assertEquals(Collections.emptySet(), plan.getMethodNames("a.FooTest"));
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("test1", "test2", "test3")), plan.getMethodNames("a.BarTest"));
+        Assert.assertTrue(plan.includes("a.FooTest", "anything"));
+        Assert.assertTrue(plan.includes("a.BarTest", "test3"));
+        Assert.assertFalse(plan.includes("a.BarTest", "test4"));
+        Assert.assertFalse(plan.includes("a.BazTest", "test1"));
+    }
+
+    @Test
+    public void testParseTestPlanObject() {
+        TestPlan plan = parseRunSuite("\"tests\": {\"a.FooTest\": [], \"a.BarTest\": [\"test1\"]}").getTestPlan();
+        Assert.assertEquals(Arrays.asList("a.FooTest", "a.BarTest"), plan.getClassNames());
+        Assert.assertTrue(plan.includes("a.FooTest", "test1"));
+        Assert.assertTrue(plan.includes("a.BarTest", "test1"));
+        Assert.assertFalse(plan.includes("a.BarTest", "test2"));
+    }
+
+    @Test
+    public void testWholeClassOverridesPlannedMethods() {
+        TestPlan plan = parseRunSuite("\"tests\": [\"a.FooTest#test1\", \"a.FooTest\"]").getTestPlan();
+        Assert.assertEquals(Collections.emptySet(), plan.getMethodNames("a.FooTest"));
+        Assert.assertTrue(plan.includes("a.FooTest", "test2"));
+
+        plan = parseRunSuite("\"tests\": [\"a.FooTest\", \"a.FooTest#test1\"]").getTestPlan();
+        Assert.assertTrue(plan.includes("a.FooTest", "test2"));
+    }
+
+    @Test
+    public void testParseEmptyTestPlan() {
+        RunSuiteClientRequest request = parseRunSuite("\"tests\": []");
+        Assert.assertTrue(request.hasTestPlan());
+        Assert.assertEquals(0, request.getTestPlan().getNumClasses());
+        Assert.assertFalse(parseRunSuite("\"matcher\": \".*Test\\\\.class\"").hasTestPlan());
+    }
+
+    @Test
+    public void testRejectMalformedTestPlan() {
+        assertParseError("\"tests\": [\"a.FooTest#\"]", "expected each method of a.FooTest in tests to be non-empty");
+        assertParseError("\"tests\": [\"a.FooTest#test1,\"]", "expected each method of a.FooTest in tests to be non-empty");
+        assertParseError("\"tests\": [\"#test1\"]", "expected each of tests to name a class");
+        assertParseError("\"tests\": [1]", "expected each of tests to be a String");
+        assertParseError("\"tests\": [[\"a.FooTest\"]]", "expected each of tests to be a String");
+        assertParseError("\"tests\": {\"a.FooTest\": [true]}", "expected each of a.FooTest to be a String");
+        assertParseError("\"tests\": {\"a.FooTest\": \"test1\"}", "expected a.FooTest to be a JSON Array");
+        assertParseError("\"tests\": \"a.FooTest\"", "expected tests to be a JSON Array");
+    }
+
+    @Test
+    public void testRejectTestPlanWithConflictingKeys() {
+        assertParseError("\"tests\": [\"a.FooTest\"], \"matcher\": \".*\"", "cannot specify both tests and matcher");
+        assertParseError("\"tests\": [\"a.FooTest\"], \"shard_classes\": [\"a.FooTest\"]", "cannot specify both shard_classes and tests");
+        assertParseError("\"tests\": [\"a.FooTest\"], \"workers\": [\"localhost:1\"]", "cannot specify both workers and tests");
+    }
+
+    private RunSuiteClientRequest parseRunSuite(String body) {
+        Result<ClientRequest> result = this.parser.parseClientRequest(runSuiteRequest(body));
+        Assert.assertTrue(result.getError(), result.isSuccess());
+        return (RunSuiteClientRequest) result.getData();
+    }
+
+    private void assertParseError(String body, String expectedCause) {
+        Result<ClientRequest> result = this.parser.parseClientRequest(runSuiteRequest(body));
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertTrue(result.getError(), result.getError().endsWith(expectedCause));
+    }
+
+    private static String runSuiteRequest(String body) {
+        return "{\"request_type\": \"run_suite\", \"body\": {\"base_dir\": \"/tmp/tests\", " + body + "}}";
+    }
+}
@@ -0,0 +1,91 @@
+package spin.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import spin.core.helper.AssertHelper;
+import spin.core.loader.PackageIndexedClassLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+
+public class PackageIndexedClassLoaderTest {
+    private static final File JUNIT_JAR = new File("../lib/junit-4.12.jar");
+    private static final File HAMCREST_JAR = new File("../lib/hamcrest-all-1.3.jar");
+    private PackageIndexedClassLoader loader;
+
+    @Before
+    public void setup() throws IOException {
+        // We use the bootstrap loader as the parent so that the classes in these jars can only be found by our loader.
+        this.loader = PackageIndexedClassLoader.overJars(Arrays.asList(JUNIT_JAR, HAMCREST_JAR), null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.loader.close();
+    }
+
+    @Test
+    public void testLoadClassFromEachJar() throws ClassNotFoundException {
+        Class<?> assertClass = this.loader.loadClass("org.junit.Assert");
+        Assert.assertSame(this.loader, assertClass.getClassLoader());
+        Assert.assertEquals("org.junit", assertClass.getPackage().getName());
+
+        Class<?> matchersClass = this.loader.loadClass("org.hamcrest.Matchers");
+        Assert.assertSame(this.loader, matchersClass.getClassLoader());
+
+        // Loading the same class again must give back the same class.
+        Assert.assertSame(assertClass, this.loader.loadClass("org.junit.Assert"));
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testLoadClassInUnknownPackage() throws ClassNotFoundException {
+        this.loader.loadClass("no.such.pkg.Missing");
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testLoadMissingClassInKnownPackage() throws ClassNotFoundException {
+        this.loader.loadClass("org.junit.Missing");
+    }
+
+    @Test
+    public void testFindResources() throws IOException {
+        URL logo = this.loader.getResource("junit/runner/logo.gif");
+        Assert.assertNotNull(logo);
+        Assert.assertTrue(logo.toString().startsWith("jar:"));
+        Assert.assertTrue(logo.openStream().readAllBytes().length > 0);
+
+        // Both jars have a manifest at their root.
+        Enumeration<URL> manifests = this.loader.getResources("META-INF/MANIFEST.MF");
+        Assert.assertEquals(2, Collections.list(manifests).size());
+
+        Assert.assertNull(this.loader.getResource("junit/runner/missing.gif"));
+    }
+
+    @Test
+    public void testResourcesDoNotOutliveLoader() throws IOException {
+        URL logo = this.loader.getResource("junit/runner/logo.gif");
+        Assert.assertEquals(JUNIT_JAR.toURI().toURL(), ((JarURLConnection) logo.openConnection()).getJarFileURL());
+        Assert.assertFalse(logo.openConnection().getUseCaches());
+        Assert.assertNotNull(((JarURLConnection) logo.openConnection()).getManifest());
+        try (InputStream stream = logo.openStream()) {
+            Assert.assertTrue(stream.readAllBytes().length > 0);
+        }
+
+        // A jar: URL cached in the JVM would still be readable once the loader has closed its jars.
+        this.loader.close();
+        AssertHelper.assertThrows(IOException.class, () -> logo.openStream().close());
+    }
+
+    @Test
+    public void testIndexContainsPackagesOfBothJars() {
+        Assert.assertTrue(this.loader.getNumIndexedPackages() > 2);
+    }
+}
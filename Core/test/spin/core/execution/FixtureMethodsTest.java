@@ -0,0 +1,199 @@
+package spin.core.execution;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import spin.core.helper.AssertHelper;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FixtureMethodsTest {
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Before
+    public void clearCalls() {
+        CALLS.clear();
+    }
+
+    @Test
+    public void testSetUpRunsSuperclassFirst() throws Throwable {
+        runTestFixture(Bottom.class, Before.class, true);
+        Assert.assertEquals(Arrays.asList("Top.before", "Middle.before", "Bottom.before"), CALLS);
+    }
+
+    @Test
+    public void testTearDownRunsSubclassFirst() throws Throwable {
+        runTestFixture(Bottom.class, After.class, false);
+        Assert.assertEquals(Arrays.asList("Bottom.after", "Middle.after", "Top.after"), CALLS);
+    }
+
+    @Test
+    public void testClassSetUpRunsSuperclassFirst() throws Throwable {
+        runClassFixture(Bottom.class, BeforeClass.class, true);
+        Assert.assertEquals(Arrays.asList("Top.beforeClass", "Middle.beforeClass", "Bottom.beforeClass"), CALLS);
+    }
+
+    @Test
+    public void testClassTearDownRunsSubclassFirst() throws Throwable {
+        runClassFixture(Bottom.class, AfterClass.class, false);
+        Assert.assertEquals(Arrays.asList("Bottom.afterClass", "Middle.afterClass", "Top.afterClass"), CALLS);
+    }
+
+    @Test
+    public void testOverriddenFixtureRunsOnce() throws Throwable {
+        runTestFixture(Overriding.class, Before.class, true);
+        Assert.assertEquals(Collections.singletonList("Overriding.setUp"), CALLS);
+
+        // An override that is not annotated itself still runs, once, in place of the annotated method it overrides.
+        CALLS.clear();
+        runTestFixture(OverridingWithoutAnnotation.class, Before.class, true);
+        Assert.assertEquals(Collections.singletonList("OverridingWithoutAnnotation.setUp"), CALLS);
+    }
+
+    @Test
+    public void testShadowedClassFixtureRunsOnce() throws Throwable {
+        runClassFixture(Overriding.class, BeforeClass.class, true);
+        Assert.assertEquals(Collections.singletonList("Overriding.setUpClass"), CALLS);
+    }
+
+    @Test
+    public void testNoFixtureMethods() throws IllegalAccessException {
+        Assert.assertTrue(FixtureMethods.resolve(Object.class, Before.class, false, true).isEmpty());
+        Assert.assertTrue(FixtureMethods.resolve(OverridingWithoutAnnotation.class, After.class, false, false).isEmpty());
+    }
+
+    @Test
+    public void testRejectInvalidFixtureMethods() {
+        AssertHelper.assertThrows(IllegalAccessException.class, () -> FixtureMethods.resolve(Invalid.class, Before.class, false, true));
+        AssertHelper.assertThrows(IllegalAccessException.class, () -> FixtureMethods.resolve(Invalid.class, BeforeClass.class, true, true));
+    }
+
+    private static void runTestFixture(Class<?> testClass, Class<? extends Annotation> annotation, boolean superclassFirst) throws Throwable {
+        Object instance = testClass.getConstructor().newInstance();
+        for (MethodHandle handle : FixtureMethods.resolve(testClass, annotation, false, superclassFirst)) {
+            handle.invokeWithArguments(instance);
+        }
+    }
+
+    private static void runClassFixture(Class<?> testClass, Class<? extends Annotation> annotation, boolean superclassFirst) throws Throwable {
+        for (MethodHandle handle : FixtureMethods.resolve(testClass, annotation, true, superclassFirst)) {
+            handle.invokeWithArguments();
+        }
+    }
+
+    public static class Top {
+        @BeforeClass
+        public static void topBeforeClass() {
+            CALLS.add("Top.beforeClass");
+        }
+
+        @AfterClass
+        public static void topAfterClass() {
+            CALLS.add("Top.afterClass");
+        }
+
+        @Before
+        public void topBefore() {
+            CALLS.add("Top.before");
+        }
+
+        @After
+        public void topAfter() {
+            CALLS.add("Top.after");
+        }
+    }
+
+    public static class Middle extends Top {
+        @BeforeClass
+        public static void middleBeforeClass() {
+            CALLS.add("Middle.beforeClass");
+        }
+
+        @AfterClass
+        public static void middleAfterClass() {
+            CALLS.add("Middle.afterClass");
+        }
+
+        @Before
+        public void middleBefore() {
+            CALLS.add("Middle.before");
+        }
+
+        @After
+        public void middleAfter() {
+            CALLS.add("Middle.after");
+        }
+    }
+
+    public static class Bottom extends Middle {
+        @BeforeClass
+        public static void bottomBeforeClass() {
+            CALLS.add("Bottom.beforeClass");
+        }
+
+        @AfterClass
+        public static void bottomAfterClass() {
+            CALLS.add("Bottom.afterClass");
+        }
+
+        @Before
+        public void bottomBefore() {
+            CALLS.add("Bottom.before");
+        }
+
+        @After
+        public void bottomAfter() {
+            CALLS.add("Bottom.after");
+        }
+    }
+
+    public static class Overridden {
+        @BeforeClass
+        public static void setUpClass() {
+            CALLS.add("Overridden.setUpClass");
+        }
+
+        @Before
+        public void setUp() {
+            CALLS.add("Overridden.setUp");
+        }
+    }
+
+    public static class Overriding extends Overridden {
+        @BeforeClass
+        public static void setUpClass() {
+            CALLS.add("Overriding.setUpClass");
+        }
+
+        @Before
+        @Override
+        public void setUp() {
+            CALLS.add("Overriding.setUp");
+        }
+    }
+
+    public static class OverridingWithoutAnnotation extends Overridden {
+        @Override
+        public void setUp() {
+            CALLS.add("OverridingWithoutAnnotation.setUp");
+        }
+    }
+
+    public static class Invalid {
+        @BeforeClass
+        public void notStatic() {
+        }
+
+        @Before
+        void notPublic() {
+        }
+    }
+}
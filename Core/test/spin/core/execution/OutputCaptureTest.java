@@ -0,0 +1,46 @@
+package spin.core.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OutputCaptureTest {
+    private static final int MAX_IN_MEMORY_BYTES = 1024 * 1024;
+    private final OutputCapture capture = OutputCapture.withMaxInMemoryBytes(MAX_IN_MEMORY_BYTES);
+
+    @Test
+    public void testBufferShrinksAfterLargeTest() {
+        // Half the limit is held in memory, growing the buffer well past what is worth keeping for the next test.
+        this.capture.stream.write(new byte[MAX_IN_MEMORY_BYTES / 2], 0, MAX_IN_MEMORY_BYTES / 2);
+        Assert.assertTrue(this.capture.getBufferCapacity() >= MAX_IN_MEMORY_BYTES / 2);
+        CapturedOutput output = this.capture.takeCapturedOutput();
+        Assert.assertFalse(output.isSpilled());
+        Assert.assertEquals(MAX_IN_MEMORY_BYTES / 2, output.size());
+        Assert.assertTrue(this.capture.getBufferCapacity() < MAX_IN_MEMORY_BYTES / 16);
+
+        this.capture.stream.print("next test");
+        Assert.assertEquals("next test", this.capture.takeCapturedOutput().asString());
+    }
+
+    @Test
+    public void testBufferKeptAfterSmallTest() {
+        this.capture.stream.write(new byte[8 * 1024], 0, 8 * 1024);
+        int capacity = this.capture.getBufferCapacity();
+        this.capture.takeCapturedOutput();
+        Assert.assertEquals(capacity, this.capture.getBufferCapacity());
+    }
+
+    @Test
+    public void testBufferShrinksAfterSpilledTest() {
+        // The buffer grows until the output goes past the limit and is spilled to disk.
+        this.capture.stream.write(new byte[MAX_IN_MEMORY_BYTES / 2], 0, MAX_IN_MEMORY_BYTES / 2);
+        this.capture.stream.write(new byte[MAX_IN_MEMORY_BYTES], 0, MAX_IN_MEMORY_BYTES);
+        CapturedOutput output = this.capture.takeCapturedOutput();
+        try {
+            Assert.assertTrue(output.isSpilled());
+            Assert.assertEquals(MAX_IN_MEMORY_BYTES / 2 + MAX_IN_MEMORY_BYTES, output.size());
+            Assert.assertTrue(this.capture.getBufferCapacity() < MAX_IN_MEMORY_BYTES / 16);
+        } finally {
+            output.discard();
+        }
+    }
+}
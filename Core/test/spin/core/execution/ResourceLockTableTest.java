@@ -0,0 +1,136 @@
+package spin.core.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+import spin.core.annotation.ResourceLock;
+import spin.core.helper.AssertHelper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ResourceLockTableTest {
+    private static final ResourceLockSet READ_DB = ResourceLockSet.of(Collections.singletonMap("db", false));
+    private static final ResourceLockSet WRITE_DB = ResourceLockSet.of(Collections.singletonMap("db", true));
+    private static final ResourceLockSet WRITE_CACHE = ResourceLockSet.of(Collections.singletonMap("cache", true));
+    private final ResourceLockTable table = new ResourceLockTable();
+
+    @Test
+    public void testReadersShare() {
+        ResourceLockTable.Grant first = this.table.acquire(READ_DB, 1);
+        Assert.assertTrue(this.table.isFree(READ_DB));
+        ResourceLockTable.Grant second = this.table.acquire(READ_DB, 1);
+        Assert.assertFalse(this.table.isFree(WRITE_DB));
+
+        // The writer has to wait for every reader to be done.
+        first.release();
+        Assert.assertFalse(this.table.isFree(WRITE_DB));
+        second.release();
+        Assert.assertTrue(this.table.isFree(WRITE_DB));
+    }
+
+    @Test
+    public void testWriterExcludesEveryone() {
+        ResourceLockTable.Grant grant = this.table.acquire(WRITE_DB, 1);
+        Assert.assertFalse(this.table.isFree(READ_DB));
+        Assert.assertFalse(this.table.isFree(WRITE_DB));
+        AssertHelper.assertThrows(IllegalStateException.class, () -> this.table.acquire(READ_DB, 1));
+
+        // Other resources are unaffected.
+        Assert.assertTrue(this.table.isFree(WRITE_CACHE));
+        Assert.assertTrue(this.table.isFree(ResourceLockSet.EMPTY));
+
+        grant.release();
+        Assert.assertTrue(this.table.isFree(READ_DB));
+        Assert.assertTrue(this.table.isFree(WRITE_DB));
+    }
+
+    @Test
+    public void testAcquireIsAllOrNothing() {
+        ResourceLockTable.Grant grant = this.table.acquire(WRITE_CACHE, 1);
+        ResourceLockSet both = READ_DB.union(WRITE_CACHE);
+        Assert.assertFalse(this.table.isFree(both));
+        AssertHelper.assertThrows(IllegalStateException.class, () -> this.table.acquire(both, 1));
+
+        // The failed acquisition must not have taken the resource that was free.
+        Assert.assertTrue(this.table.isFree(WRITE_DB));
+        grant.release();
+        Assert.assertTrue(this.table.isFree(both));
+    }
+
+    @Test
+    public void testGrantOfSeveralTestsIsReleasedByTheLast() {
+        ResourceLockTable.Grant grant = this.table.acquire(WRITE_DB, 3);
+        grant.release();
+        grant.release();
+        Assert.assertFalse(this.table.isFree(READ_DB));
+        grant.release();
+        Assert.assertTrue(this.table.isFree(WRITE_DB));
+    }
+
+    @Test
+    public void testReleaseWakesWaiters() throws InterruptedException {
+        ResourceLockTable.Grant grant = this.table.acquire(WRITE_DB, 1);
+        CountDownLatch isWaiting = new CountDownLatch(1);
+        CountDownLatch isFree = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                isWaiting.countDown();
+                while (!this.table.isFree(WRITE_DB)) {
+                    this.table.awaitRelease(10, TimeUnit.SECONDS);
+                }
+                isFree.countDown();
+            } catch (InterruptedException e) {
+                // The test fails on the latch below.
+            }
+        });
+        waiter.start();
+        isWaiting.await();
+        grant.release();
+        Assert.assertTrue(isFree.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    @Test
+    public void testUnionMergesReadAndReadWrite() {
+        Map<String, Boolean> expected = new HashMap<>();
+        expected.put("db", true);
+        expected.put("cache", true);
+        Assert.assertEquals(ResourceLockSet.of(expected), READ_DB.union(WRITE_DB).union(WRITE_CACHE));
+        Assert.assertEquals(WRITE_DB, WRITE_DB.union(READ_DB));
+        Assert.assertEquals(READ_DB, READ_DB.union(READ_DB));
+        Assert.assertSame(READ_DB, READ_DB.union(ResourceLockSet.EMPTY));
+        Assert.assertEquals(READ_DB, ResourceLockSet.EMPTY.union(READ_DB));
+    }
+
+    @Test
+    public void testDeclaredReadAndReadWriteMergeToReadWrite() throws NoSuchMethodException {
+        Assert.assertEquals(WRITE_DB, ResourceLockSet.declaredOn(ReadsDb.class, ReadsDb.class.getMethod("writesDb")));
+        Assert.assertEquals(READ_DB, ResourceLockSet.declaredOn(ReadsDb.class, ReadsDb.class.getMethod("readsDbAgain")));
+        Assert.assertEquals(WRITE_DB, ResourceLockSet.declaredOn(Object.class, ReadsDb.class.getMethod("readsAndWritesDb")));
+        Assert.assertEquals(READ_DB.union(WRITE_CACHE), ResourceLockSet.declaredOn(ReadsDb.class, ReadsDb.class.getMethod("writesCache")));
+        Assert.assertSame(ResourceLockSet.EMPTY, ResourceLockSet.declaredOn(Object.class, Object.class.getMethod("toString")));
+    }
+
+    @ResourceLock(value = "db", mode = ResourceLock.Mode.READ)
+    public static final class ReadsDb {
+        @ResourceLock("db")
+        public void writesDb() {
+        }
+
+        @ResourceLock(value = "db", mode = ResourceLock.Mode.READ)
+        public void readsDbAgain() {
+        }
+
+        @ResourceLock(value = "db", mode = ResourceLock.Mode.READ)
+        @ResourceLock(value = "db", mode = ResourceLock.Mode.READ_WRITE)
+        public void readsAndWritesDb() {
+        }
+
+        @ResourceLock("cache")
+        public void writesCache() {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package spin.core.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+import spin.core.helper.AssertHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class WorkerProtocolTest {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream stream = new DataOutputStream(this.bytes);
+
+    @Test
+    public void testSuiteRoundTrip() throws IOException {
+        List<String> classpath = Arrays.asList("file:/tmp/tests/", "file:/tmp/deps/junit-4.12.jar", "file:/tmp/d\u00e9pendances/\u00fc.jar");
+        WorkerProtocol.writeSuite(this.stream, classpath);
+
+        WorkerProtocol.Frame frame = WorkerProtocol.readFrame(input());
+        Assert.assertEquals(WorkerProtocol.SUITE, frame.type);
+        Assert.assertEquals(classpath, WorkerProtocol.readSuite(frame.payload));
+        Assert.assertEquals(0, frame.payload.available());
+    }
+
+    @Test
+    public void testEmptySuiteRoundTrip() throws IOException {
+        WorkerProtocol.writeSuite(this.stream, Collections.emptyList());
+        Assert.assertEquals(Collections.emptyList(), WorkerProtocol.readSuite(WorkerProtocol.readFrame(input()).payload));
+    }
+
+    @Test
+    public void testTestRoundTrip() throws IOException {
+        byte flags = WorkerProtocol.SHARED_INSTANCE_FLAG | WorkerProtocol.LAST_OF_SHARE_FLAG;
+        WorkerProtocol.writeTest(this.stream, "spin.example.Example1Test$Inner", "test1", flags);
+
+        WorkerProtocol.Frame frame = WorkerProtocol.readFrame(input());
+        Assert.assertEquals(WorkerProtocol.TEST, frame.type);
+        Assert.assertEquals("spin.example.Example1Test$Inner", frame.payload.readUTF());
+        Assert.assertEquals("test1", frame.payload.readUTF());
+        Assert.assertEquals(flags, frame.payload.readByte());
+        Assert.assertEquals(0, frame.payload.available());
+    }
+
+    @Test
+    public void testResultRoundTrip() throws IOException {
+        byte[] stdout = "hello\n".getBytes(StandardCharsets.UTF_8);
+        byte[] stderr = "oops\nmore".getBytes(StandardCharsets.UTF_8);
+        WorkerProtocol.FrameWriter frame = WorkerProtocol.startResult(true, 1_234_567L, -1, 42L << 20, 1L << 32);
+        WorkerProtocol.writeBytes(frame.payload, stdout, stdout.length);
+        // Only the given length of the buffer is sent, as with a partly filled output buffer.
+        WorkerProtocol.writeBytes(frame.payload, Arrays.copyOf(stderr, 64), stderr.length);
+        frame.writeTo(this.stream);
+
+        WorkerProtocol.Frame readFrame = WorkerProtocol.readFrame(input());
+        Assert.assertEquals(WorkerProtocol.RESULT, readFrame.type);
+        WorkerProtocol.WorkerResult result = WorkerProtocol.readResult(readFrame.payload);
+        Assert.assertTrue(result.successful);
+        Assert.assertEquals(1_234_567L, result.durationNanos);
+        Assert.assertEquals(-1, result.cpuNanos);
+        Assert.assertEquals(42L << 20, result.heapUsedAfterGc);
+        Assert.assertEquals(1L << 32, result.maxHeap);
+        Assert.assertArrayEquals(stdout, result.stdout);
+        Assert.assertArrayEquals(stderr, result.stderr);
+        Assert.assertEquals(0, readFrame.payload.available());
+    }
+
+    @Test
+    public void testFramesFollowEachOther() throws IOException {
+        WorkerProtocol.writeSuite(this.stream, Collections.singletonList("file:/tmp/tests/"));
+        WorkerProtocol.writeTest(this.stream, "a.FooTest", "test1", (byte) 0);
+        WorkerProtocol.writeTest(this.stream, "a.FooTest", "test2", (byte) 0);
+        new WorkerProtocol.FrameWriter(WorkerProtocol.EXIT).writeTo(this.stream);
+
+        DataInputStream input = input();
+        Assert.assertEquals(WorkerProtocol.SUITE, WorkerProtocol.readFrame(input).type);
+        Assert.assertEquals("a.FooTest", WorkerProtocol.readFrame(input).payload.readUTF());
+        WorkerProtocol.Frame second = WorkerProtocol.readFrame(input);
+        second.payload.readUTF();
+        Assert.assertEquals("test2", second.payload.readUTF());
+        WorkerProtocol.Frame exit = WorkerProtocol.readFrame(input);
+        Assert.assertEquals(WorkerProtocol.EXIT, exit.type);
+        Assert.assertEquals(0, exit.payload.available());
+        AssertHelper.assertThrows(EOFException.class, () -> WorkerProtocol.readFrame(input));
+    }
+
+    @Test
+    public void testRejectMalformedFrameLength() throws IOException {
+        this.stream.writeInt(-1);
+        this.stream.writeByte(WorkerProtocol.TEST);
+        AssertHelper.assertThrows(IOException.class, () -> WorkerProtocol.readFrame(input()));
+    }
+
+    @Test
+    public void testRejectOversizedFrameLength() throws IOException {
+        // The length is rejected before anything is allocated for the payload, however much of it follows.
+        this.stream.writeInt(Integer.MAX_VALUE);
+        this.stream.writeByte(WorkerProtocol.RESULT);
+        AssertHelper.assertThrows(IOException.class, () -> WorkerProtocol.readFrame(input()));
+    }
+
+    @Test
+    public void testRejectTruncatedFrame() throws IOException {
+        WorkerProtocol.writeTest(this.stream, "a.FooTest", "test1", (byte) 0);
+        byte[] frame = this.bytes.toByteArray();
+        DataInputStream truncated = new DataInputStream(new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 1)));
+        AssertHelper.assertThrows(EOFException.class, () -> WorkerProtocol.readFrame(truncated));
+    }
+
+    @Test
+    public void testRejectMalformedOutputLength() throws IOException {
+        WorkerProtocol.FrameWriter frame = WorkerProtocol.startResult(false, 1, 1, 0, 0);
+        frame.payload.writeInt(-5);
+        frame.writeTo(this.stream);
+        DataInputStream payload = WorkerProtocol.readFrame(input()).payload;
+        AssertHelper.assertThrows(IOException.class, () -> WorkerProtocol.readResult(payload));
+    }
+
+    private DataInputStream input() {
+        return new DataInputStream(new ByteArrayInputStream(this.bytes.toByteArray()));
+    }
+}
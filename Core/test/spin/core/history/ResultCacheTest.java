@@ -0,0 +1,111 @@
+package spin.core.history;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class ResultCacheTest {
+    private static final Pattern ALL_CLASSES = Pattern.compile(".*\\.class");
+    private static final Pattern TEST_CLASSES = Pattern.compile(".*Test\\.class");
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private File testDirectory;
+    private File helperDirectory;
+    private List<String> classpath;
+    private ResultCache cache;
+
+    @Before
+    public void createClasspath() throws IOException {
+        this.testDirectory = this.folder.newFolder("tests");
+        this.helperDirectory = this.folder.newFolder("helpers");
+        write(new File(this.testDirectory, "a/FooTest.class"), "foo");
+        write(new File(this.testDirectory, "a/BarTest.class"), "bar");
+        write(new File(this.testDirectory, "a/Fixture.class"), "fixture");
+        write(new File(this.helperDirectory, "b/Helper.class"), "helper");
+        this.classpath = Arrays.asList(this.testDirectory.toURI().toString(), this.helperDirectory.toURI().toString());
+        this.cache = ResultCache.loadFrom(new File(this.folder.getRoot(), "result_cache.json").toPath());
+    }
+
+    @Test
+    public void testClasspathHashIgnoresTestClasses() throws IOException {
+        String hash = this.cache.hashClasspath(this.classpath, this.testDirectory, TEST_CLASSES);
+
+        // Neither changing a test class nor adding or removing one changes the hash, whichever test classes are run.
+        write(new File(this.testDirectory, "a/FooTest.class"), "foo, changed");
+        Assert.assertEquals(hash, this.cache.hashClasspath(this.classpath, this.testDirectory, TEST_CLASSES));
+        write(new File(this.testDirectory, "a/BazTest.class"), "baz");
+        Assert.assertEquals(hash, this.cache.hashClasspath(this.classpath, this.testDirectory, TEST_CLASSES));
+        Files.delete(new File(this.testDirectory, "a/BarTest.class").toPath());
+        Assert.assertEquals(hash, this.cache.hashClasspath(this.classpath, this.testDirectory, TEST_CLASSES));
+
+        // Other files in the test directory are not test classes, so changing one does.
+        write(new File(this.testDirectory, "a/Fixture.class"), "fixture, changed");
+        Assert.assertNotEquals(hash, this.cache.hashClasspath(this.classpath, this.testDirectory, TEST_CLASSES));
+    }
+
+    @Test
+    public void testClasspathHashCoversRestOfClasspath() throws IOException {
+        String hash = this.cache.hashClasspath(this.classpath, this.testDirectory, ALL_CLASSES);
+        Assert.assertEquals(hash, this.cache.hashClasspath(this.classpath, this.testDirectory, ALL_CLASSES));
+
+        // The test class pattern only applies to the test directory.
+        write(new File(this.helperDirectory, "b/Helper.class"), "helper, changed");
+        String changedHash = this.cache.hashClasspath(this.classpath, this.testDirectory, ALL_CLASSES);
+        Assert.assertNotEquals(hash, changedHash);
+        write(new File(this.helperDirectory, "b/resource.txt"), "resource");
+        Assert.assertNotEquals(changedHash, this.cache.hashClasspath(this.classpath, this.testDirectory, ALL_CLASSES));
+    }
+
+    @Test
+    public void testPassedTestsSurviveRunsOfOtherTests() throws IOException {
+        String hash = this.cache.hashClasspath(this.classpath, this.testDirectory, TEST_CLASSES);
+        String fooKey = ResultCache.keyOf(new ByteArrayInputStream(bytes("foo")), hash);
+        this.cache.record("a.FooTest", fooKey, "test1", true);
+
+        // A later run of only another test class, after it changed, works out the same key for the first class.
+        write(new File(this.testDirectory, "a/BarTest.class"), "bar, changed");
+        String laterHash = this.cache.hashClasspath(this.classpath, this.testDirectory, TEST_CLASSES);
+        this.cache.record("a.BarTest", ResultCache.keyOf(new ByteArrayInputStream(bytes("bar, changed")), laterHash), "test1", true);
+        String laterFooKey = ResultCache.keyOf(new ByteArrayInputStream(bytes("foo")), laterHash);
+        Assert.assertEquals(fooKey, laterFooKey);
+        Assert.assertTrue(this.cache.hasPassed("a.FooTest", laterFooKey, "test1"));
+        Assert.assertFalse(this.cache.hasPassed("a.FooTest", laterFooKey, "test2"));
+
+        // Whereas a changed test class has its passed tests forgotten.
+        String changedFooKey = ResultCache.keyOf(new ByteArrayInputStream(bytes("foo, changed")), laterHash);
+        Assert.assertFalse(this.cache.hasPassed("a.FooTest", changedFooKey, "test1"));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        this.cache.record("a.FooTest", "key", "test1", true);
+        this.cache.record("a.FooTest", "key", "test2", true);
+        this.cache.record("a.FooTest", "key", "test2", false);
+        this.cache.save();
+
+        ResultCache loaded = ResultCache.loadFrom(new File(this.folder.getRoot(), "result_cache.json").toPath());
+        Assert.assertTrue(loaded.hasPassed("a.FooTest", "key", "test1"));
+        Assert.assertFalse(loaded.hasPassed("a.FooTest", "key", "test2"));
+        Assert.assertFalse(loaded.hasPassed("a.FooTest", "other key", "test1"));
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), bytes(contents));
+    }
+
+    private static byte[] bytes(String contents) {
+        return contents.getBytes(StandardCharsets.UTF_8);
+    }
+}
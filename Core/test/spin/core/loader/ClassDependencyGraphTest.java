@@ -0,0 +1,99 @@
+package spin.core.loader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import spin.core.helper.AssertHelper;
+import spin.core.loader.fixture.Constants;
+import spin.core.loader.fixture.Descriptors;
+import spin.core.loader.fixture.IndependentCase;
+import spin.core.loader.fixture.Leaf;
+import spin.core.loader.fixture.Middle;
+import spin.core.loader.fixture.TransitiveCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class ClassDependencyGraphTest {
+    private static final List<String> TEST_CLASS_NAMES = Arrays.asList(TransitiveCase.class.getName(), IndependentCase.class.getName());
+    private final ClassDependencyGraph graph = new ClassDependencyGraph();
+
+    @Test
+    public void testReadDependenciesAfterLongAndDoubleConstants() throws IOException {
+        // Misreading the two entries that each long and double takes up would shift every later index of the pool.
+        Set<String> dependencies = readDependencies(Constants.class);
+        Assert.assertTrue(dependencies.toString(), dependencies.contains(internalName(Leaf.class)));
+        Assert.assertTrue(dependencies.toString(), dependencies.contains("java/lang/Math"));
+    }
+
+    @Test
+    public void testReadDependenciesOfDescriptorsAndSignatures() throws IOException {
+        Set<String> dependencies = readDependencies(Descriptors.class);
+        Assert.assertTrue(dependencies.toString(), dependencies.containsAll(Arrays.asList(
+                "java/util/concurrent/atomic/AtomicLong", "java/util/List", "java/util/UUID", "java/util/Map", "java/util/function/Supplier",
+                "java/time/Duration", "java/net/URI")));
+        // Middle is only named by the generic signature of a field.
+        Assert.assertTrue(dependencies.toString(), dependencies.contains(internalName(Middle.class)));
+        Assert.assertFalse(dependencies.toString(), dependencies.contains(internalName(Leaf.class)));
+    }
+
+    @Test
+    public void testReadDependenciesOfCode() throws IOException {
+        Set<String> dependencies = readDependencies(TransitiveCase.class);
+        Assert.assertTrue(dependencies.toString(), dependencies.containsAll(Arrays.asList(
+                internalName(Middle.class), "org/junit/Assert", "org/junit/Test")));
+        Assert.assertFalse(dependencies.toString(), dependencies.contains(internalName(Leaf.class)));
+    }
+
+    @Test
+    public void testRejectNonClassFile() {
+        AssertHelper.assertThrows(IOException.class, () -> ClassDependencyGraph.readDependencies(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6})));
+    }
+
+    @Test
+    public void testSelectTransitivelyAffectedTests() throws IOException, URISyntaxException {
+        List<String> classpath = Arrays.asList(location(TransitiveCase.class), location(Test.class));
+        Assert.assertEquals(Collections.singletonList(TransitiveCase.class.getName()),
+                this.graph.selectAffectedTestClasses(classpath, TEST_CLASS_NAMES, Collections.singleton(Leaf.class.getName())));
+        Assert.assertEquals(Collections.singletonList(TransitiveCase.class.getName()),
+                this.graph.selectAffectedTestClasses(classpath, TEST_CLASS_NAMES, Collections.singleton(Middle.class.getName())));
+
+        // A changed test class is affected itself, and a class that nothing depends on affects nothing.
+        Assert.assertEquals(Collections.singletonList(IndependentCase.class.getName()),
+                this.graph.selectAffectedTestClasses(classpath, TEST_CLASS_NAMES, Collections.singleton(IndependentCase.class.getName() + ".class")));
+        Assert.assertEquals(Collections.emptyList(),
+                this.graph.selectAffectedTestClasses(classpath, TEST_CLASS_NAMES, Collections.singleton(Constants.class.getName())));
+    }
+
+    @Test
+    public void testChangedJarSelectsEveryDependentTest() throws IOException, URISyntaxException {
+        String junitJar = location(Test.class);
+        List<String> classpath = Arrays.asList(location(TransitiveCase.class), junitJar);
+        Assert.assertEquals(TEST_CLASS_NAMES, this.graph.selectAffectedTestClasses(classpath, TEST_CLASS_NAMES, Collections.singleton("junit-4.12.jar")));
+        Assert.assertEquals(TEST_CLASS_NAMES, this.graph.selectAffectedTestClasses(classpath, TEST_CLASS_NAMES,
+                Collections.singleton(new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath())));
+
+        // A jar that is not on the classpath is ignored.
+        Assert.assertEquals(Collections.emptyList(), this.graph.selectAffectedTestClasses(classpath, TEST_CLASS_NAMES, Collections.singleton("other.jar")));
+    }
+
+    private static Set<String> readDependencies(Class<?> fixtureClass) throws IOException {
+        try (InputStream stream = fixtureClass.getResourceAsStream(fixtureClass.getSimpleName() + ".class")) {
+            return ClassDependencyGraph.readDependencies(stream);
+        }
+    }
+
+    private static String internalName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    private static String location(Class<?> clazz) throws URISyntaxException {
+        return clazz.getProtectionDomain().getCodeSource().getLocation().toURI().toString();
+    }
+}
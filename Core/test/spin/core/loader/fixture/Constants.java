@@ -0,0 +1,14 @@
+package spin.core.loader.fixture;
+
+/**
+ * Puts long and double constants, which take up two entries each, into the constant pool ahead of a class constant.
+ */
+public final class Constants {
+    public static final long MAX_NANOS = 123_456_789_012L;
+    public static final double RATIO = 0.123456789;
+
+    public static long scale(long nanos) {
+        long scaled = (long) (Math.min(nanos, MAX_NANOS) * RATIO) + 987_654_321_098L;
+        return scaled * (long) 2.718281828 + new Leaf().value();
+    }
+}
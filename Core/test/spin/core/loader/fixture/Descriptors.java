@@ -0,0 +1,20 @@
+package spin.core.loader.fixture;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Refers to classes only in the descriptors and generic signatures of its fields and methods, never in its code.
+ */
+public abstract class Descriptors {
+    public AtomicLong counter;
+    public List<UUID> ids;
+    public Map<String, Supplier<Middle>> suppliers;
+
+    public abstract URI resolve(Duration[] timeouts);
+}
@@ -0,0 +1,14 @@
+package spin.core.loader.fixture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class that depends on none of the other fixture classes.
+ */
+public class IndependentCase {
+    @Test
+    public void testNothing() {
+        Assert.assertTrue(true);
+    }
+}
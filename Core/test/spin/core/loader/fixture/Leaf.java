@@ -0,0 +1,7 @@
+package spin.core.loader.fixture;
+
+public final class Leaf {
+    public int value() {
+        return 1;
+    }
+}
@@ -0,0 +1,7 @@
+package spin.core.loader.fixture;
+
+public final class Middle {
+    public int value() {
+        return new Leaf().value() + 1;
+    }
+}
@@ -0,0 +1,14 @@
+package spin.core.loader.fixture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class that depends on {@link Leaf} only through {@link Middle}.
+ */
+public class TransitiveCase {
+    @Test
+    public void testValue() {
+        Assert.assertEquals(2, new Middle().value());
+    }
+}
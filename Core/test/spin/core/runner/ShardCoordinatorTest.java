@@ -0,0 +1,244 @@
+package spin.core.runner;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import spin.core.exception.ParseException;
+import spin.core.execution.TestInfo;
+import spin.core.helper.AssertHelper;
+import spin.core.runner.fixture.QuickShardCase;
+import spin.core.runner.fixture.SlowShardCase;
+import spin.core.server.response.ReportedTestResult;
+import spin.core.server.response.RunSuiteResponse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ShardCoordinatorTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final List<Process> daemons = new ArrayList<>();
+    private final List<ServerSocket> fakeWorkers = new ArrayList<>();
+    private final CountDownLatch releaseFakeWorkers = new CountDownLatch(1);
+
+    @After
+    public void stopWorkers() throws IOException {
+        this.releaseFakeWorkers.countDown();
+        for (ServerSocket fakeWorker : this.fakeWorkers) {
+            fakeWorker.close();
+        }
+        for (Process daemon : this.daemons) {
+            daemon.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testSplitIntoShardsByNumberOfTests() {
+        Map<Class<?>, List<TestInfo>> classToTestInfoMap = new LinkedHashMap<>();
+        classToTestInfoMap.put(Double.class, testInfos(Double.class, 0));
+        classToTestInfoMap.put(Long.class, testInfos(Long.class, 0, 0));
+        classToTestInfoMap.put(String.class, testInfos(String.class, 0, 0, 0));
+        classToTestInfoMap.put(Integer.class, testInfos(Integer.class, 0, 0));
+        classToTestInfoMap.put(Object.class, Collections.emptyList());
+
+        // The heaviest class goes to the lightest shard first, with classes of the same weight taken in order of name.
+        Assert.assertEquals(Arrays.asList(Arrays.asList(String.class, Double.class), Arrays.asList(Integer.class, Long.class)),
+                ShardCoordinator.splitIntoShards(classToTestInfoMap, 2));
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(String.class, Integer.class, Long.class, Double.class)),
+                ShardCoordinator.splitIntoShards(classToTestInfoMap, 1));
+
+        // There are never more shards than classes with tests to run.
+        Assert.assertEquals(4, ShardCoordinator.splitIntoShards(classToTestInfoMap, 10).size());
+        Assert.assertEquals(Collections.emptyList(), ShardCoordinator.splitIntoShards(Collections.singletonMap(Object.class, Collections.emptyList()), 2));
+    }
+
+    @Test
+    public void testSplitIntoShardsByPredictedDuration() {
+        Map<Class<?>, List<TestInfo>> classToTestInfoMap = new LinkedHashMap<>();
+        classToTestInfoMap.put(Integer.class, testInfos(Integer.class, 10, 10, 10));
+        classToTestInfoMap.put(String.class, testInfos(String.class, 100));
+        classToTestInfoMap.put(Long.class, testInfos(Long.class, 50));
+
+        // One slow test outweighs three quick ones.
+        Assert.assertEquals(Arrays.asList(Collections.singletonList(String.class), Arrays.asList(Long.class, Integer.class)),
+                ShardCoordinator.splitIntoShards(classToTestInfoMap, 2));
+    }
+
+    @Test
+    public void testResponseTimeout() {
+        Map<Class<?>, List<TestInfo>> classToTestInfoMap = new LinkedHashMap<>();
+        classToTestInfoMap.put(String.class, testInfos(String.class, 100, 2_000));
+        List<TestInfo> unpredicted = testInfos(Integer.class, 0, 0);
+        unpredicted.get(1).setTimeoutMillis(500);
+        classToTestInfoMap.put(Integer.class, unpredicted);
+
+        Assert.assertEquals(60_000 + 2 * 2_100, ShardCoordinator.responseTimeoutMillis(Collections.singletonList(String.class), classToTestInfoMap));
+        Assert.assertEquals(60_000 + 2 * (10_000 + 500), ShardCoordinator.responseTimeoutMillis(Collections.singletonList(Integer.class), classToTestInfoMap));
+        Assert.assertEquals(60_000, ShardCoordinator.responseTimeoutMillis(Collections.emptyList(), classToTestInfoMap));
+    }
+
+    @Test
+    public void testParseShardResponse() throws IOException, ParseException {
+        List<ReportedTestResult> results = Arrays.asList(
+                ReportedTestResult.result("a.FooTest", "test1", true, 1_000, 900, "out", ""),
+                ReportedTestResult.result("a.FooTest", "test2", false, 2_000, -1, "", "trace"),
+                ReportedTestResult.skipped("a.BarTest", "test1"),
+                ReportedTestResult.cached("a.BarTest", "test2"));
+        List<ReportedTestResult> parsed = ShardCoordinator.parseShardResponse(RunSuiteResponse.shard(3, -1, 1, 1, results).toJsonString());
+        Assert.assertEquals(4, parsed.size());
+        Assert.assertEquals("test2", parsed.get(1).methodName);
+        Assert.assertFalse(parsed.get(1).successful);
+        Assert.assertEquals(2_000, parsed.get(1).durationNanos);
+        Assert.assertEquals("trace", parsed.get(1).stderr);
+        Assert.assertTrue(parsed.get(2).skipped);
+        Assert.assertTrue(parsed.get(3).cached);
+        Assert.assertEquals(Collections.emptyList(), ShardCoordinator.parseShardResponse(RunSuiteResponse.shard(3, -1, 0, 0, Collections.emptyList()).toJsonString()));
+    }
+
+    @Test
+    public void testRejectFailedOrMalformedShardResponse() {
+        AssertHelper.assertThrows(IOException.class, () -> ShardCoordinator.parseShardResponse(RunSuiteResponse.failed("no such base dir").toJsonString()));
+        AssertHelper.assertThrows(IOException.class, () -> ShardCoordinator.parseShardResponse("{\"is_success\": false}"));
+        AssertHelper.assertThrows(ParseException.class, () -> ShardCoordinator.parseShardResponse("{\"is_success\": true"));
+        AssertHelper.assertThrows(ParseException.class, () -> ShardCoordinator.parseShardResponse("[1, 2]"));
+        AssertHelper.assertThrows(ParseException.class, () -> ShardCoordinator.parseShardResponse(RunSuiteResponse.successful(3).toJsonString()));
+        AssertHelper.assertThrows(ParseException.class, () -> ShardCoordinator.parseShardResponse(
+                "{\"is_success\": true, \"response\": {\"results\": [{\"class\": \"a.FooTest\", \"method\": \"test1\", \"status\": \"lost\"}]}}"));
+    }
+
+    @Test
+    public void testSendShard() throws IOException, ParseException {
+        String response = RunSuiteResponse.shard(1, -1, 0, 0, Collections.singletonList(ReportedTestResult.skipped("a.FooTest", "test1"))).toJsonString();
+        List<ReportedTestResult> results = ShardCoordinator.sendShard(startFakeWorker(response), "{}", 10_000);
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("a.FooTest", results.get(0).className);
+    }
+
+    @Test
+    public void testGiveUpOnWorkerThatDoesNotRespond() throws IOException {
+        String silentWorker = startFakeWorker(null);
+        long startMillis = System.currentTimeMillis();
+        AssertHelper.assertThrows(IOException.class, () -> ShardCoordinator.sendShard(silentWorker, "{}", 200));
+        Assert.assertTrue(System.currentTimeMillis() - startMillis < 10_000);
+
+        AssertHelper.assertThrows(IOException.class, () -> ShardCoordinator.sendShard(startFakeWorker(""), "{}", 10_000));
+    }
+
+    @Test
+    public void testReassignShardOfKilledWorker() throws IOException, InterruptedException, URISyntaxException {
+        File home = this.folder.newFolder("home");
+        Process firstWorker = startDaemon(home, "first_worker");
+        Process secondWorker = startDaemon(home, "second_worker");
+        Process coordinator = startDaemon(home, "coordinator");
+
+        // The slow class has the most tests, so its shard goes to the first worker, which is killed while running it.
+        String baseDir = new File(SlowShardCase.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        String junitJar = new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        String request = "{\"request_type\": \"run_suite\", \"body\": {\"base_dir\": " + quote(baseDir) + ", \"matcher\": \".*ShardCase\\\\.class\", "
+                + "\"dependencies\": [" + quote(junitJar) + "], \"workers\": [\"127.0.0.1:" + portOf(home, firstWorker) + "\", \"127.0.0.1:" + portOf(home, secondWorker) + "\"]}}";
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), portOf(home, coordinator))) {
+            socket.setSoTimeout(120_000);
+            socket.getOutputStream().write((request + "\n").getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+
+            File started = new File(home, SlowShardCase.STARTED_FILE_NAME);
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (!started.exists()) {
+                Assert.assertTrue("the slow shard never started", System.currentTimeMillis() < deadline);
+                Thread.sleep(50);
+            }
+            firstWorker.destroyForcibly().waitFor();
+
+            String response = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+            Assert.assertNotNull(response);
+            Assert.assertTrue(response, response.contains("\"is_success\":true"));
+        }
+        Assert.assertTrue(coordinator.waitFor(60, TimeUnit.SECONDS));
+        String output = new String(Files.readAllBytes(new File(home, "coordinator.txt").toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(output, output.contains("Class: " + SlowShardCase.class.getName()));
+        Assert.assertTrue(output, output.contains("Class: " + QuickShardCase.class.getName()));
+        Assert.assertTrue(output, output.contains("Tests: 3, successes: 3, failures: 0"));
+        Assert.assertTrue(secondWorker.isAlive());
+    }
+
+    private static String quote(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static List<TestInfo> testInfos(Class<?> testClass, long... predictedDurationsMillis) {
+        List<TestInfo> testInfos = new ArrayList<>();
+        for (long predictedDurationMillis : predictedDurationsMillis) {
+            TestInfo testInfo = new TestInfo(testClass, null, null, null, null);
+            testInfo.setPredictedDurationNanos(TimeUnit.MILLISECONDS.toNanos(predictedDurationMillis));
+            testInfos.add(testInfo);
+        }
+        return testInfos;
+    }
+
+    /**
+     * Starts a worker on this host that reads a request and then responds with the specified line, closes the connection
+     * without responding if the line is empty or never responds at all if it is null. Returns the address of the worker.
+     */
+    private String startFakeWorker(String response) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        this.fakeWorkers.add(serverSocket);
+        Thread thread = new Thread(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                if (response == null) {
+                    this.releaseFakeWorkers.await();
+                } else if (!response.isEmpty()) {
+                    OutputStream toCoordinator = socket.getOutputStream();
+                    toCoordinator.write((response + "\n").getBytes(StandardCharsets.UTF_8));
+                    toCoordinator.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // The test fails on what the coordinator sees.
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return "127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    private Process startDaemon(File home, String name) throws IOException {
+        Process daemon = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-Duser.home=" + home.getPath(), "-Denable_logger=false", "-Dwrite_to_db=false", "-Ddb_config_path=unused", "-Dnum_threads=2",
+                "-cp", System.getProperty("java.class.path"), "spin.core.LongLivedEntryPoint")
+                .redirectErrorStream(true)
+                .redirectOutput(new File(home, name + ".txt"))
+                .start();
+        this.daemons.add(daemon);
+        return daemon;
+    }
+
+    private static int portOf(File home, Process daemon) throws IOException, InterruptedException {
+        File info = new File(new File(home, ".spin"), "info_" + daemon.pid());
+        long deadline = System.currentTimeMillis() + 60_000;
+        while ((!info.isFile()) || (info.length() == 0)) {
+            Assert.assertTrue("the daemon did not start", (daemon.isAlive()) && (System.currentTimeMillis() < deadline));
+            Thread.sleep(50);
+        }
+        return Integer.parseInt(new String(Files.readAllBytes(info.toPath()), StandardCharsets.UTF_8).trim());
+    }
+}
@@ -0,0 +1,133 @@
+package spin.core.runner;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TestClassInitializerTest {
+    private static final long TIMEOUT_MILLIS = 200;
+    private static final CountDownLatch STUCK_RELEASE = new CountDownLatch(1);
+    private static volatile boolean isLazyInitialized = false;
+    private final TestClassInitializer initializer = TestClassInitializer.withThreads(1, TIMEOUT_MILLIS);
+    private final CountDownLatch loadRelease = new CountDownLatch(1);
+
+    @After
+    public void releaseStuckThreads() {
+        this.loadRelease.countDown();
+        this.initializer.shutdown();
+    }
+
+    @AfterClass
+    public static void releaseStuckInitializer() {
+        STUCK_RELEASE.countDown();
+    }
+
+    @Test
+    public void testInitializeAll() throws InterruptedException {
+        Map<Class<?>, Throwable> failures = this.initializer.initializeAll(Arrays.asList(Fine.class, Failing.class));
+        Assert.assertEquals(Collections.singleton(Failing.class), failures.keySet());
+        Assert.assertTrue(failures.get(Failing.class) instanceof ExceptionInInitializerError);
+    }
+
+    @Test
+    public void testStuckInitializerFailsAndFreesThePool() throws InterruptedException {
+        // The only thread gets stuck on the first class, so the second never starts and is left to be initialized lazily.
+        long startMillis = System.currentTimeMillis();
+        Map<Class<?>, Throwable> failures = this.initializer.initializeAll(Arrays.asList(Stuck.class, Lazy.class));
+        Assert.assertTrue(System.currentTimeMillis() - startMillis < 10 * TIMEOUT_MILLIS);
+        Assert.assertEquals(Collections.singleton(Stuck.class), failures.keySet());
+        Assert.assertTrue(failures.get(Stuck.class) instanceof TimeoutException);
+        Assert.assertFalse(isLazyInitialized);
+
+        // Later work gets a fresh thread rather than queue up behind the stuck one.
+        Assert.assertEquals(Collections.emptyMap(), this.initializer.initializeAll(Collections.singletonList(Lazy.class)));
+        Assert.assertTrue(isLazyInitialized);
+    }
+
+    @Test
+    public void testStuckLoadFallsBackToCallingThread() throws ClassNotFoundException, InterruptedException {
+        ClassLoader stuckOnPool = new StuckOnPoolLoader(this.loadRelease);
+        List<Class<?>> classes = this.initializer.loadAll(Arrays.asList(String.class.getName(), Fine.class.getName(), Integer.class.getName()), stuckOnPool);
+        Assert.assertEquals(Arrays.asList(String.class, Fine.class, Integer.class), classes);
+    }
+
+    @Test
+    public void testLoadAllReportsMissingClass() {
+        try {
+            this.initializer.loadAll(Arrays.asList(Fine.class.getName(), "spin.core.runner.NoSuchTest"), TestClassInitializerTest.class.getClassLoader());
+            Assert.fail("expected a ClassNotFoundException");
+        } catch (ClassNotFoundException e) {
+            Assert.assertEquals("spin.core.runner.NoSuchTest", e.getMessage());
+        } catch (InterruptedException e) {
+            Assert.fail("interrupted");
+        }
+    }
+
+    private static void awaitRelease(CountDownLatch release) {
+        boolean isReleased = false;
+        while (!isReleased) {
+            try {
+                isReleased = release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // Keep waiting, as a thread stuck in an initializer would.
+            }
+        }
+    }
+
+    /**
+     * A loader that never loads a class on the initializer's threads. It must be parallel capable, or the calling thread
+     * would block on the lock of the loader that a stuck thread holds.
+     */
+    private static final class StuckOnPoolLoader extends ClassLoader {
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final CountDownLatch release;
+
+        private StuckOnPoolLoader(CountDownLatch release) {
+            super(TestClassInitializerTest.class.getClassLoader());
+            this.release = release;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (Thread.currentThread().getName().startsWith("TestClassInitializer-")) {
+                awaitRelease(this.release);
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+
+    public static final class Fine {
+    }
+
+    public static final class Failing {
+        static {
+            if (Fine.class != null) {
+                throw new IllegalStateException("cannot initialize");
+            }
+        }
+    }
+
+    public static final class Stuck {
+        static {
+            awaitRelease(STUCK_RELEASE);
+        }
+    }
+
+    public static final class Lazy {
+        static {
+            isLazyInitialized = true;
+        }
+    }
+}
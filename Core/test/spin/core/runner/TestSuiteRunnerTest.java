@@ -0,0 +1,134 @@
+package spin.core.runner;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import spin.core.execution.ClassFixture;
+import spin.core.execution.ResourceLockSet;
+import spin.core.execution.ResourceLockTable;
+import spin.core.execution.TestBatch;
+import spin.core.execution.TestInfo;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestSuiteRunnerTest {
+    private final Map<Class<?>, ClassFixture> classFixtures = Collections.singletonMap(DatabaseCase.class, ClassFixture.forClass(DatabaseCase.class));
+    private final Map<Class<?>, Integer> shareSizes = Collections.singletonMap(DatabaseCase.class, 2);
+    private final ResourceLockTable resourceLocks = new ResourceLockTable();
+    private final Deque<TestInfo> backlog = new ArrayDeque<>();
+
+    @Before
+    public void fillBacklog() throws NoSuchMethodException {
+        // The tests hold different locks, so each makes up a share of its own.
+        this.backlog.add(testInfo("testRead", "table a"));
+        this.backlog.add(testInfo("testWrite", "table b"));
+        DatabaseCase.connection = null;
+    }
+
+    @Test
+    public void testSharesInThisJvmRunOneAfterAnother() {
+        Map<Class<?>, ClassFixture.Share> inProcessShares = new HashMap<>();
+        TestBatch first = takeNextBatch(inProcessShares);
+        Assert.assertEquals(1, first.size());
+        ClassFixture.Share firstShare = first.getTestInfos().get(0).getClassFixtureShare();
+        Assert.assertNull(firstShare.setUp());
+        Assert.assertEquals("open", DatabaseCase.connection);
+
+        // The second share would set up the fixture again under the first, and then have it torn down from under it.
+        Assert.assertNull(takeNextBatch(inProcessShares));
+        Assert.assertEquals(1, this.backlog.size());
+
+        Assert.assertNull(firstShare.finishTest());
+        Assert.assertNull(DatabaseCase.connection);
+        TestBatch second = takeNextBatch(inProcessShares);
+        Assert.assertEquals(1, second.size());
+        Assert.assertNotSame(firstShare, second.getTestInfos().get(0).getClassFixtureShare());
+        Assert.assertTrue(this.backlog.isEmpty());
+    }
+
+    @Test
+    public void testSharesInForkedWorkersRunAtOnce() {
+        // Each forked worker has static state of its own.
+        TestBatch first = takeNextBatch(null);
+        first.getTestInfos().get(0).getClassFixtureShare().setUp();
+        TestBatch second = takeNextBatch(null);
+        Assert.assertNotNull(second);
+        Assert.assertNotSame(first.getTestInfos().get(0).getClassFixtureShare(), second.getTestInfos().get(0).getClassFixtureShare());
+    }
+
+    @Test
+    public void testTestsWithoutLocksShareOneSetUp() throws NoSuchMethodException {
+        this.backlog.clear();
+        this.backlog.addAll(Arrays.asList(testInfo("testRead", null), testInfo("testWrite", null)));
+        TestBatch share = takeNextBatch(new HashMap<>());
+        Assert.assertEquals(2, share.size());
+        Assert.assertSame(share.getTestInfos().get(0).getClassFixtureShare(), share.getTestInfos().get(1).getClassFixtureShare());
+    }
+
+    @Test
+    public void testTestsWithSameLocksShareOneSetUp() throws NoSuchMethodException {
+        // As the tests of a class with a lock declared on the class do.
+        this.backlog.clear();
+        this.backlog.addAll(Arrays.asList(testInfo("testRead", "table a"), testInfo("testWrite", "table a")));
+        TestBatch share = takeNextBatch(new HashMap<>());
+        Assert.assertEquals(2, share.size());
+        Assert.assertSame(share.getTestInfos().get(0).getClassFixtureShare(), share.getTestInfos().get(1).getClassFixtureShare());
+        // The tests hold the same resource exclusively, so they must not run at once.
+        Assert.assertTrue(share.isSerial());
+        Assert.assertTrue(this.backlog.isEmpty());
+    }
+
+    @Test
+    public void testTestsWithSameReadLocksRunAtOnce() throws NoSuchMethodException {
+        this.backlog.clear();
+        for (String methodName : Arrays.asList("testRead", "testWrite")) {
+            TestInfo testInfo = testInfo(methodName, null);
+            testInfo.setResourceLocks(ResourceLockSet.of(Collections.singletonMap("table a", false)));
+            this.backlog.add(testInfo);
+        }
+        TestBatch share = takeNextBatch(new HashMap<>());
+        Assert.assertEquals(2, share.size());
+        Assert.assertFalse(share.isSerial());
+    }
+
+    private TestBatch takeNextBatch(Map<Class<?>, ClassFixture.Share> inProcessShares) {
+        return TestSuiteRunner.takeNextBatch(this.backlog, this.classFixtures, this.shareSizes, inProcessShares, Collections.emptySet(), this.resourceLocks, null);
+    }
+
+    private static TestInfo testInfo(String methodName, String resource) throws NoSuchMethodException {
+        TestInfo testInfo = new TestInfo(DatabaseCase.class, DatabaseCase.class.getMethod(methodName), null, null, null);
+        if (resource != null) {
+            testInfo.setResourceLocks(ResourceLockSet.of(Collections.singletonMap(resource, true)));
+        }
+        return testInfo;
+    }
+
+    public static class DatabaseCase {
+        static String connection = null;
+
+        @BeforeClass
+        public static void openConnection() {
+            connection = "open";
+        }
+
+        @AfterClass
+        public static void closeConnection() {
+            connection = null;
+        }
+
+        @Test
+        public void testRead() {
+        }
+
+        @Test
+        public void testWrite() {
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package spin.core.runner.fixture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class whose one test is done straight away.
+ */
+public class QuickShardCase {
+    @Test
+    public void testQuick() {
+        Assert.assertEquals(4, 2 + 2);
+    }
+}
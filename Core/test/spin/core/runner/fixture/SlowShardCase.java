@@ -0,0 +1,29 @@
+package spin.core.runner.fixture;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A test class whose tests take long enough for the daemon running them to be killed halfway, which they let on by
+ * creating the file {@link #STARTED_FILE_NAME} in the daemon's home directory once they start.
+ */
+public class SlowShardCase {
+    public static final String STARTED_FILE_NAME = "slow_shard_started";
+
+    @Test
+    public void testSlow1() throws IOException, InterruptedException {
+        runSlowly();
+    }
+
+    @Test
+    public void testSlow2() throws IOException, InterruptedException {
+        runSlowly();
+    }
+
+    private static void runSlowly() throws IOException, InterruptedException {
+        new File(System.getProperty("user.home"), STARTED_FILE_NAME).createNewFile();
+        Thread.sleep(3_000);
+    }
+}